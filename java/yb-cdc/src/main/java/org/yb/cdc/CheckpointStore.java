@@ -0,0 +1,46 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import org.yb.Opid;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Durable record of how far each tablet of a CDC stream was applied, so that pollers resume
+ * from there after a restart instead of replaying the whole stream.
+ * <p>
+ * Implementations have to be thread-safe. Checkpoints may be made durable asynchronously, so
+ * after a crash a tablet can resume from a checkpoint slightly older than the last one
+ * recorded, and changes are delivered at least once.
+ */
+public interface CheckpointStore extends Closeable {
+
+  /**
+   * @return the last checkpoint recorded for the given tablet of the given stream, or null if
+   * there is none
+   */
+  Opid.OpIdPB get(String streamId, String tabletId) throws IOException;
+
+  /**
+   * Records that the changes of the given tablet were applied up to the given checkpoint.
+   */
+  void put(String streamId, String tabletId, long term, long index) throws IOException;
+
+  /**
+   * Makes all the checkpoints recorded so far durable.
+   */
+  void flush() throws IOException;
+}
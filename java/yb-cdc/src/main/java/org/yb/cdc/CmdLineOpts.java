@@ -19,10 +19,12 @@ import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.log4j.Logger;
+import org.yb.Common;
 
 public class CmdLineOpts {
 
   private static final String DEFAULT_MASTER_ADDRS = "127.0.0.1:7100";
+  private static final String DEFAULT_CHECKPOINT_FILE = "yb-cdc-checkpoints";
 
   private static final Logger LOG = Logger.getLogger(CmdLineOpts.class);
 
@@ -30,6 +32,13 @@ public class CmdLineOpts {
   public String namespaceName;
   public String masterAddrs = DEFAULT_MASTER_ADDRS;
   public String streamId = "";
+  public int prefetchDepth = Poller.DEFAULT_PREFETCH_DEPTH;
+  public long idleBackoffMinMs = Poller.DEFAULT_IDLE_BACKOFF_MIN_MS;
+  public long idleBackoffMaxMs = Poller.DEFAULT_IDLE_BACKOFF_MAX_MS;
+  public int outputQueueSize = OutputQueue.DEFAULT_CAPACITY;
+  public String checkpointFile = DEFAULT_CHECKPOINT_FILE;
+  public long checkpointFlushIntervalMs = MappedFileCheckpointStore.DEFAULT_FLUSH_INTERVAL_MS;
+  public Common.CloudInfoPB followerReadPlacement = null;
 
   public static CmdLineOpts createFromArgs(String[] args) throws Exception {
     Options options = new Options();
@@ -39,6 +48,30 @@ public class CmdLineOpts {
             "Table to get change capture from in format <namespace>.<table>");
     options.addOption("stream_id", true,
             "Optional stream ID. Use this if you already have a CDC stream set up on the table");
+    options.addOption("prefetch_depth", true,
+            "Maximum number of batches of changes fetched ahead per tablet, counting the one " +
+            "being applied. Defaults to " + Poller.DEFAULT_PREFETCH_DEPTH);
+    options.addOption("idle_backoff_min_ms", true,
+            "Delay before polling a tablet again after it returned no changes, doubled for " +
+            "each empty batch that follows. 0 polls idle tablets continuously. Defaults to " +
+            Poller.DEFAULT_IDLE_BACKOFF_MIN_MS);
+    options.addOption("idle_backoff_max_ms", true,
+            "Maximum delay before polling an idle tablet again. Defaults to " +
+            Poller.DEFAULT_IDLE_BACKOFF_MAX_MS);
+    options.addOption("output_queue_size", true,
+            "Maximum number of batches of changes waiting to be applied, across all tablets. " +
+            "Polling pauses while it is reached. Defaults to " + OutputQueue.DEFAULT_CAPACITY);
+    options.addOption("checkpoint_file", true,
+            "File the last applied checkpoint of each tablet is recorded in, and resumed from " +
+            "on restart. An empty value disables checkpointing. Defaults to " +
+            DEFAULT_CHECKPOINT_FILE);
+    options.addOption("checkpoint_flush_interval_ms", true,
+            "How often the recorded checkpoints are synced to disk. Defaults to " +
+            MappedFileCheckpointStore.DEFAULT_FLUSH_INTERVAL_MS);
+    options.addOption("follower_read_placement", true,
+            "Placement of the connector, as cloud.region.zone. When set, changes are read " +
+            "from the closest replica of each tablet rather than from its leader, for " +
+            "clusters that serve changes from followers. Unset by default");
 
     // Do the actual arg parsing.
     CommandLineParser parser = new BasicParser();
@@ -85,5 +118,52 @@ public class CmdLineOpts {
       streamId = commandLine.getOptionValue("stream_id");
     }
 
+    if (commandLine.hasOption("prefetch_depth")) {
+      prefetchDepth = Integer.parseInt(commandLine.getOptionValue("prefetch_depth"));
+      if (prefetchDepth < 1) {
+        throw new Exception("Expected --prefetch_depth to be at least 1");
+      }
+    }
+
+    if (commandLine.hasOption("idle_backoff_min_ms")) {
+      idleBackoffMinMs = Long.parseLong(commandLine.getOptionValue("idle_backoff_min_ms"));
+    }
+    if (commandLine.hasOption("idle_backoff_max_ms")) {
+      idleBackoffMaxMs = Long.parseLong(commandLine.getOptionValue("idle_backoff_max_ms"));
+    }
+    if (idleBackoffMinMs < 0 || idleBackoffMaxMs < idleBackoffMinMs) {
+      throw new Exception("Expected 0 <= --idle_backoff_min_ms <= --idle_backoff_max_ms");
+    }
+
+    if (commandLine.hasOption("output_queue_size")) {
+      outputQueueSize = Integer.parseInt(commandLine.getOptionValue("output_queue_size"));
+      if (outputQueueSize < 1) {
+        throw new Exception("Expected --output_queue_size to be at least 1");
+      }
+    }
+
+    if (commandLine.hasOption("checkpoint_file")) {
+      checkpointFile = commandLine.getOptionValue("checkpoint_file");
+    }
+    if (commandLine.hasOption("checkpoint_flush_interval_ms")) {
+      checkpointFlushIntervalMs =
+          Long.parseLong(commandLine.getOptionValue("checkpoint_flush_interval_ms"));
+      if (checkpointFlushIntervalMs <= 0) {
+        throw new Exception("Expected --checkpoint_flush_interval_ms to be greater than 0");
+      }
+    }
+
+    if (commandLine.hasOption("follower_read_placement")) {
+      String[] placement = commandLine.getOptionValue("follower_read_placement").split("\\.");
+      if (placement.length != 3) {
+        throw new Exception("Expected --follower_read_placement to be cloud.region.zone");
+      }
+      followerReadPlacement = Common.CloudInfoPB.newBuilder()
+          .setPlacementCloud(placement[0])
+          .setPlacementRegion(placement[1])
+          .setPlacementZone(placement[2])
+          .build();
+    }
+
   }
 }
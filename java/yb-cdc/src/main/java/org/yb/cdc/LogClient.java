@@ -14,13 +14,22 @@
 package org.yb.cdc;
 
 import org.apache.log4j.Logger;
+import org.yb.Opid;
 import org.yb.client.YBTable;
 
+import java.util.List;
+
 public class LogClient implements OutputClient {
   private static final Logger LOG = Logger.getLogger(LogClient.class);
 
   @Override
-  public void applyChange(YBTable table, CdcService.CDCRecordPB changeRecord) throws Exception {
-    LOG.info(changeRecord.toString());
+  public void applyChanges(YBTable table, String tabletId, List<CdcService.CDCRecordPB> changes,
+                           Opid.OpIdPB checkpoint) throws Exception {
+    // Log the whole batch at once rather than one call per change.
+    StringBuilder sb = new StringBuilder();
+    for (CdcService.CDCRecordPB change : changes) {
+      sb.append(change.toString());
+    }
+    LOG.info(sb.toString());
   }
 }
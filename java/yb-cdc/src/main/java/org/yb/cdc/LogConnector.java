@@ -21,9 +21,11 @@ import org.yb.client.ListTablesResponse;
 import org.yb.client.ListTabletServersResponse;
 import org.yb.client.LocatedTablet;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.*;
 import org.apache.log4j.Logger;
 import org.yb.master.Master;
@@ -35,10 +37,11 @@ class LogConnector {
   private static AsyncYBClient client;
   private static YBClient syncClient;
 
-  private ExecutorService executor;
+  private ScheduledExecutorService executor;
 
   private static final int DEFAULT_TIMEOUT = 30000;
   private static final int DEFAULT_NUM_THREADS = 8;
+  private static final int METRICS_LOG_INTERVAL_SEC = 60;
 
   private YBTable table;
 
@@ -46,10 +49,20 @@ class LogConnector {
 
   List<HostAndPort> hps = new ArrayList<>();
 
-  private OutputClient outputClient;
+  private OutputQueue outputQueue;
 
   private String streamId;
 
+  private int prefetchDepth;
+
+  private long idleBackoffMinMs;
+
+  private long idleBackoffMaxMs;
+
+  private CheckpointStore checkpointStore;
+
+  private TabletLocator tabletLocator;
+
   public LogConnector(CmdLineOpts opts) throws Exception {
     LOG.info("Creating new YB client...");
     client = new AsyncYBClient.AsyncYBClientBuilder(opts.masterAddrs)
@@ -60,7 +73,7 @@ class LogConnector {
 
     syncClient = new YBClient(client);
 
-    executor = Executors.newFixedThreadPool(DEFAULT_NUM_THREADS);
+    executor = Executors.newScheduledThreadPool(DEFAULT_NUM_THREADS);
 
     String tableId = null;
     ListTablesResponse tablesResp = syncClient.getTablesList();
@@ -78,15 +91,35 @@ class LogConnector {
     }
 
     table = syncClient.openTableByUUID(tableId);
+    tabletLocator = new TabletLocator(table, DEFAULT_TIMEOUT, opts.followerReadPlacement);
 
     ListTabletServersResponse serversResp = syncClient.listTabletServers();
     for (ServerInfo serverInfo : serversResp.getTabletServersList()) {
       hps.add(HostAndPort.fromParts(serverInfo.getHost(), serverInfo.getPort()));
     }
 
-    outputClient = new LogClient();
+    outputQueue = new OutputQueue(new LogClient(), opts.outputQueueSize);
 
     streamId = opts.streamId;
+
+    prefetchDepth = opts.prefetchDepth;
+    idleBackoffMinMs = opts.idleBackoffMinMs;
+    idleBackoffMaxMs = opts.idleBackoffMaxMs;
+
+    if (!opts.checkpointFile.isEmpty()) {
+      checkpointStore = new MappedFileCheckpointStore(new File(opts.checkpointFile),
+                                                      opts.checkpointFlushIntervalMs);
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override
+        public void run() {
+          try {
+            checkpointStore.close();
+          } catch (Exception e) {
+            LOG.error("Failed to close the checkpoint store", e);
+          }
+        }
+      });
+    }
   }
 
   public void run() throws Exception {
@@ -99,13 +132,41 @@ class LogConnector {
     }
 
     List<LocatedTablet> tabletLocations = table.getTabletsLocations(DEFAULT_TIMEOUT);
+    tabletLocator.update(tabletLocations);
 
     for (LocatedTablet tablet : tabletLocations) {
       String tabletId = new String(tablet.getTabletId());
       LOG.info(String.format("Polling for new tablet %s", tabletId));
-      Poller poller = new Poller(outputClient, hps, table, streamId, tabletId, executor, client);
+      Poller poller = new Poller(outputQueue, hps, table, streamId, tabletId, executor, client,
+                                 prefetchDepth, idleBackoffMinMs, idleBackoffMaxMs,
+                                 checkpointStore, tabletLocator);
       pollers.add(poller);
       poller.poll();
     }
+
+    executor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        logPollerMetrics();
+      }
+    }, METRICS_LOG_INTERVAL_SEC, METRICS_LOG_INTERVAL_SEC, TimeUnit.SECONDS);
+  }
+
+  private void logPollerMetrics() {
+    double totalPollsPerSecond = 0;
+    int numIdleTablets = 0;
+    for (Poller poller : pollers) {
+      PollerMetrics metrics = poller.getMetrics();
+      double pollsPerSecond = metrics.takePollsPerSecond();
+      totalPollsPerSecond += pollsPerSecond;
+      if (metrics.getIdleDelayMs() > 0) {
+        numIdleTablets++;
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("%s, pollsPerSecond=%.1f", metrics, pollsPerSecond));
+      }
+    }
+    LOG.info(String.format("Polling %d tablets (%d idle) at %.1f GetChanges calls per second",
+                           pollers.size(), numIdleTablets, totalPollsPerSecond));
   }
 }
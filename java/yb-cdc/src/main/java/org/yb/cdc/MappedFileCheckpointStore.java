@@ -0,0 +1,283 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.yb.Opid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * {@link CheckpointStore} backed by a local memory-mapped file.
+ * <p>
+ * The file is an array of fixed-size slots, one per (stream, tablet) pair, after a header slot.
+ * Recording a checkpoint only writes to the mapped memory. A background thread forces the
+ * dirty pages to disk every {@code flushIntervalMs}, so a single fsync commits all the
+ * checkpoints recorded in the meantime and applying changes never waits on the disk.
+ * <p>
+ * Each slot holds two versions of its checkpoint, each with a sequence number and a checksum,
+ * and updates overwrite the older one. A write torn by a crash therefore leaves the previous
+ * checkpoint readable.
+ * <p>
+ * The file must not be shared between processes.
+ */
+public class MappedFileCheckpointStore implements CheckpointStore {
+  private static final Logger LOG = Logger.getLogger(MappedFileCheckpointStore.class);
+
+  public static final long DEFAULT_FLUSH_INTERVAL_MS = 100;
+
+  private static final int MAGIC = 0x5942434b;  // "YBCK"
+  private static final int VERSION = 1;
+
+  // Slots never cross a page boundary, since pages are multiples of their size.
+  static final int SLOT_SIZE = 128;
+  static final int INITIAL_NUM_SLOTS = 1024;
+
+  // Slot layout: key length, key, then two checkpoint versions.
+  private static final int KEY_LENGTH_OFFSET = 0;
+  private static final int KEY_OFFSET = 2;
+  static final int MAX_KEY_LENGTH = 70;
+  static final int VERSIONS_OFFSET = KEY_OFFSET + MAX_KEY_LENGTH;
+  // Version layout: term, index, sequence number, checksum.
+  static final int VERSION_SIZE = 28;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final ScheduledExecutorService flusher;
+
+  // Guarded by 'this'.
+  private MappedByteBuffer buffer;
+  private int numSlots;
+  private int nextFreeSlot;
+  private boolean dirty;
+  private final Map<String, Slot> slots = new HashMap<>();
+  private boolean closed;
+
+  // Location, latest sequence number and checkpoint of a key's slot.
+  private static final class Slot {
+    final int index;
+    long seq;
+    Opid.OpIdPB checkpoint;
+
+    Slot(int index) {
+      this.index = index;
+    }
+  }
+
+  public MappedFileCheckpointStore(File path) throws IOException {
+    this(path, DEFAULT_FLUSH_INTERVAL_MS);
+  }
+
+  /**
+   * Opens the store, creating the file if it doesn't exist.
+   * @param path the file to store the checkpoints in
+   * @param flushIntervalMs how often the recorded checkpoints are made durable
+   */
+  public MappedFileCheckpointStore(File path, long flushIntervalMs) throws IOException {
+    Preconditions.checkArgument(flushIntervalMs > 0, "flushIntervalMs should be greater than 0");
+    this.file = new RandomAccessFile(path, "rw");
+    this.channel = file.getChannel();
+    try {
+      load(path);
+    } catch (IOException | RuntimeException e) {
+      file.close();
+      throw e;
+    }
+    this.flusher = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("cdc-checkpoint-flusher").setDaemon(true).build());
+    flusher.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          flush();
+        } catch (Exception e) {
+          LOG.error("Failed to flush the CDC checkpoints", e);
+        }
+      }
+    }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  private void load(File path) throws IOException {
+    final long length = channel.size();
+    if (length % SLOT_SIZE != 0) {
+      throw new IOException("Invalid checkpoint file " + path + ": size " + length +
+                            " isn't a multiple of " + SLOT_SIZE);
+    }
+    map((int) Math.max(length / SLOT_SIZE, INITIAL_NUM_SLOTS));
+    if (length == 0) {
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(4, VERSION);
+      buffer.force();
+    } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException("Invalid checkpoint file " + path + ": bad header");
+    }
+
+    nextFreeSlot = 1;
+    for (int i = 1; i < numSlots; i++) {
+      final int keyLength = buffer.getShort(i * SLOT_SIZE + KEY_LENGTH_OFFSET);
+      if (keyLength <= 0 || keyLength > MAX_KEY_LENGTH) {
+        // Slots are allocated in order, the first free one ends the used ones.
+        break;
+      }
+      final byte[] key = new byte[keyLength];
+      for (int j = 0; j < keyLength; j++) {
+        key[j] = buffer.get(i * SLOT_SIZE + KEY_OFFSET + j);
+      }
+      final Slot slot = new Slot(i);
+      for (int version = 0; version < 2; version++) {
+        readVersion(slot, key, version);
+      }
+      slots.put(new String(key, StandardCharsets.UTF_8), slot);
+      nextFreeSlot = i + 1;
+    }
+    LOG.info(String.format("Loaded %d CDC checkpoints from %s", slots.size(), path));
+  }
+
+  // Keeps the given version of the slot if it's valid and newer than what the slot has.
+  private void readVersion(Slot slot, byte[] key, int version) {
+    final int offset = versionOffset(slot.index, version);
+    final long term = buffer.getLong(offset);
+    final long index = buffer.getLong(offset + 8);
+    final long seq = buffer.getLong(offset + 16);
+    final int checksum = buffer.getInt(offset + 24);
+    if (seq > slot.seq && checksum == checksum(key, term, index, seq)) {
+      slot.seq = seq;
+      slot.checkpoint = Opid.OpIdPB.newBuilder().setTerm(term).setIndex(index).build();
+    }
+  }
+
+  private void map(int numSlots) throws IOException {
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) numSlots * SLOT_SIZE);
+    this.numSlots = numSlots;
+  }
+
+  private static String key(String streamId, String tabletId) {
+    return streamId + "/" + tabletId;
+  }
+
+  private static int versionOffset(int slot, int version) {
+    return slot * SLOT_SIZE + VERSIONS_OFFSET + version * VERSION_SIZE;
+  }
+
+  private static int checksum(byte[] key, long term, long index, long seq) {
+    final CRC32 crc = new CRC32();
+    crc.update(key);
+    for (long value : new long[] { term, index, seq }) {
+      for (int shift = 0; shift < 64; shift += 8) {
+        crc.update((int) (value >>> shift));
+      }
+    }
+    return (int) crc.getValue();
+  }
+
+  @Override
+  public synchronized Opid.OpIdPB get(String streamId, String tabletId) throws IOException {
+    final Slot slot = slots.get(key(streamId, tabletId));
+    return slot == null ? null : slot.checkpoint;
+  }
+
+  @Override
+  public synchronized void put(String streamId, String tabletId, long term, long index)
+      throws IOException {
+    Preconditions.checkState(!closed, "Checkpoint store is closed");
+    final String key = key(streamId, tabletId);
+    final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    Slot slot = slots.get(key);
+    if (slot == null) {
+      Preconditions.checkArgument(keyBytes.length <= MAX_KEY_LENGTH,
+                                  "Stream and tablet ids are too long: %s", key);
+      slot = allocateSlot(keyBytes);
+      slots.put(key, slot);
+    }
+    final long seq = slot.seq + 1;
+    writeVersion(slot.index, keyBytes, (int) (seq % 2), term, index, seq);
+    slot.seq = seq;
+    slot.checkpoint = Opid.OpIdPB.newBuilder().setTerm(term).setIndex(index).build();
+    dirty = true;
+  }
+
+  private Slot allocateSlot(byte[] key) throws IOException {
+    if (nextFreeSlot == numSlots) {
+      // Make sure nothing is lost if the old mapping goes away before the new one is flushed.
+      buffer.force();
+      map(numSlots * 2);
+    }
+    final int index = nextFreeSlot++;
+    for (int j = 0; j < key.length; j++) {
+      buffer.put(index * SLOT_SIZE + KEY_OFFSET + j, key[j]);
+    }
+    // The length goes last, a slot is only considered used once its key is complete.
+    buffer.putShort(index * SLOT_SIZE + KEY_LENGTH_OFFSET, (short) key.length);
+    return new Slot(index);
+  }
+
+  private void writeVersion(int slot, byte[] key, int version, long term, long index, long seq) {
+    final int offset = versionOffset(slot, version);
+    buffer.putLong(offset, term);
+    buffer.putLong(offset + 8, index);
+    buffer.putLong(offset + 16, seq);
+    buffer.putInt(offset + 24, checksum(key, term, index, seq));
+  }
+
+  @Override
+  public void flush() throws IOException {
+    final MappedByteBuffer toFlush;
+    synchronized (this) {
+      if (!dirty || closed) {
+        return;
+      }
+      dirty = false;
+      toFlush = buffer;
+    }
+    // Don't block the pollers recording checkpoints while the pages are written out. Checkpoints
+    // recorded meanwhile mark the store dirty again, a failed flush has to as well.
+    boolean forced = false;
+    try {
+      toFlush.force();
+      forced = true;
+    } finally {
+      if (!forced) {
+        synchronized (this) {
+          dirty = true;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    flusher.shutdown();
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      buffer.force();
+      closed = true;
+    }
+    file.close();
+  }
+}
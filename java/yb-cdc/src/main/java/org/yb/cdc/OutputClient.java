@@ -13,8 +13,21 @@
 
 package org.yb.cdc;
 
+import org.yb.Opid;
 import org.yb.client.YBTable;
 
+import java.util.List;
+
 public interface OutputClient {
-  public void applyChange(YBTable table, CdcService.CDCRecordPB changeRecord) throws Exception;
+  /**
+   * Applies a batch of changes of a tablet. Batches are applied one at a time, and the batches
+   * of a tablet are applied in order.
+   *
+   * @param table the table the tablet belongs to
+   * @param tabletId the tablet the changes were made to
+   * @param changes the changes, in order
+   * @param checkpoint the checkpoint of the tablet once the batch is applied
+   */
+  public void applyChanges(YBTable table, String tabletId, List<CdcService.CDCRecordPB> changes,
+                           Opid.OpIdPB checkpoint) throws Exception;
 }
@@ -0,0 +1,217 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+
+package org.yb.cdc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.yb.Opid;
+import org.yb.client.GetChangesResponse;
+import org.yb.client.YBTable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the batches fetched by the pollers to an {@link OutputClient}.
+ * <p>
+ * Batches are applied one at a time on a dedicated thread, in the order they were queued, so
+ * the batches of a tablet are applied in order and a slow output client doesn't hold up the
+ * threads polling the tablets. The queue holds at most {@code capacity} batches. Once it is
+ * full, {@link #offer} turns batches away and remembers the pollers it turned away; those stop
+ * fetching until a batch is applied and they are resumed.
+ * <p>
+ * A batch that fails to be applied is retried until it is, waiting longer and longer between
+ * attempts, from {@link #RETRY_MIN_DELAY_MS} up to {@link #RETRY_MAX_DELAY_MS}. The later
+ * batches of its tablet wait for it meanwhile, so a tablet's checkpoint never moves past changes
+ * that weren't applied. The other tablets keep going.
+ */
+public class OutputQueue {
+  private static final Logger LOG = Logger.getLogger(OutputQueue.class);
+
+  public static final int DEFAULT_CAPACITY = 64;
+
+  /** Delay before applying a failed batch again for the first time. */
+  static final long RETRY_MIN_DELAY_MS = 100;
+  /** Longest delay between two attempts at applying a batch. */
+  static final long RETRY_MAX_DELAY_MS = 10000;
+
+  /**
+   * A batch of changes of a tablet, along with the checkpoint of the tablet once it is applied.
+   * The changes are kept in the response they came with, off the heap if the client reads
+   * responses into direct buffers, and are only parsed when the batch is applied.
+   */
+  static class Batch {
+    final Poller poller;
+    final YBTable table;
+    final String tabletId;
+    final GetChangesResponse response;
+    final Opid.OpIdPB checkpoint;
+
+    Batch(Poller poller, YBTable table, String tabletId, GetChangesResponse response,
+          Opid.OpIdPB checkpoint) {
+      this.poller = poller;
+      this.table = table;
+      this.tabletId = tabletId;
+      this.response = response;
+      this.checkpoint = checkpoint;
+    }
+  }
+
+  private final OutputClient outputClient;
+  private final int capacity;
+  private final ScheduledExecutorService executor;
+
+  // Number of batches queued and not applied yet. Guarded by 'this'.
+  private int numQueued;
+  // Pollers turned away since the last batch was applied. Guarded by 'this'.
+  private final Set<Poller> waiting = new LinkedHashSet<>();
+  // Batches of the pollers that have a batch to retry, the failed one first.
+  // Only accessed by the output thread.
+  private final Map<Poller, Retry> retries = new HashMap<>();
+
+  public OutputQueue(OutputClient outputClient) {
+    this(outputClient, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param outputClient the client to apply the batches with
+   * @param capacity the maximum number of batches queued at once
+   */
+  public OutputQueue(OutputClient outputClient, int capacity) {
+    Preconditions.checkArgument(capacity > 0, "capacity should be greater than 0");
+    this.outputClient = outputClient;
+    this.capacity = capacity;
+    this.executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("cdc-output").setDaemon(true).build());
+  }
+
+  /**
+   * Queues a batch to be applied, unless the queue is full. If it is, the poller of the batch
+   * is resumed once there is room again.
+   *
+   * @return whether or not the batch was queued
+   */
+  boolean offer(final Batch batch) {
+    synchronized (this) {
+      if (numQueued >= capacity) {
+        waiting.add(batch.poller);
+        return false;
+      }
+      numQueued++;
+    }
+    executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        return apply(batch);
+      }
+    });
+    return true;
+  }
+
+  private Void apply(Batch batch) {
+    final Retry retry = retries.get(batch.poller);
+    if (retry != null) {
+      // An earlier batch of the tablet has to be applied first.
+      retry.batches.add(batch);
+      return null;
+    }
+    if (!tryApply(batch)) {
+      final Retry newRetry = new Retry(batch.poller);
+      newRetry.batches.add(batch);
+      retries.put(batch.poller, newRetry);
+      newRetry.schedule();
+    }
+    return null;
+  }
+
+  /**
+   * Applies a batch, and lets its poller know if it was.
+   * @return whether or not the batch was applied
+   */
+  private boolean tryApply(Batch batch) {
+    try {
+      if (batch.response.getRecordsCount() > 0) {
+        outputClient.applyChanges(batch.table, batch.tabletId, batch.response.readRecords(),
+                                  batch.checkpoint);
+      }
+    } catch (Exception e) {
+      LOG.error(String.format("Failed to apply changes of tablet %s, will retry",
+                              batch.tabletId), e);
+      return false;
+    }
+    batch.response.release();
+
+    final List<Poller> resumed;
+    synchronized (this) {
+      numQueued--;
+      resumed = new ArrayList<>(waiting);
+      waiting.clear();
+    }
+    batch.poller.batchApplied(batch);
+    for (Poller poller : resumed) {
+      poller.resume();
+    }
+    return true;
+  }
+
+  /**
+   * Applies the batches of a poller held up by a failed one, in order, once it's time to retry.
+   */
+  private final class Retry implements Callable<Void> {
+    private final Poller poller;
+    private final Queue<Batch> batches = new ArrayDeque<>();
+    private long delayMs = RETRY_MIN_DELAY_MS;
+
+    Retry(Poller poller) {
+      this.poller = poller;
+    }
+
+    void schedule() {
+      executor.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+      delayMs = Math.min(delayMs * 2, RETRY_MAX_DELAY_MS);
+    }
+
+    @Override
+    public Void call() throws Exception {
+      while (!batches.isEmpty()) {
+        if (!tryApply(batches.peek())) {
+          schedule();
+          return null;
+        }
+        batches.remove();
+      }
+      retries.remove(poller);
+      return null;
+    }
+  }
+
+  /**
+   * @return the number of batches queued and not applied yet
+   */
+  public synchronized int size() {
+    return numQueued;
+  }
+}
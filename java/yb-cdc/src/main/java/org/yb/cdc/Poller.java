@@ -13,35 +13,115 @@
 
 package org.yb.cdc;
 
+import com.google.common.base.Preconditions;
 import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
 import org.apache.log4j.Logger;
+import org.yb.Opid;
 import org.yb.client.AsyncYBClient;
 import org.yb.client.GetChangesResponse;
 import org.yb.client.YBTable;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.List;
 
 import com.google.common.net.HostAndPort;
 
-
+/**
+ * Polls the changes of a single tablet and hands them to the output queue, in order.
+ * <p>
+ * GetChanges calls are pipelined with applying the changes: as soon as a batch comes back,
+ * the next one is requested from the checkpoint it returned, while the batch is queued to be
+ * applied. Up to {@code prefetchDepth} batches can be held at once, counting the ones queued,
+ * after which fetching waits for the output client to catch up. Fetching also stops while the
+ * output queue is full, until the queue resumes the poller.
+ * <p>
+ * While a tablet keeps returning empty batches, the poller waits longer and longer before
+ * polling it again, doubling the delay from {@code idleBackoffMinMs} up to
+ * {@code idleBackoffMaxMs}. The first batch with changes resets the delay, so busy tablets are
+ * polled back to back while idle ones cost a few calls per second at most.
+ * <p>
+ * With a {@link CheckpointStore}, the poller resumes from the checkpoint recorded for its
+ * tablet, and records the checkpoint of every batch it applies.
+ * <p>
+ * With a {@link TabletLocator}, GetChanges are sent to the server the locator picks for the
+ * tablet, normally its leader, and the tablet is looked up again when that server fails or turns
+ * the call away. Otherwise, or while the tablet has no known leader, they are sent to a random
+ * tablet server.
+ */
 public class Poller {
   private static final Logger LOG = Logger.getLogger(Poller.class);
 
-  private long term;
-  private long index;
+  public static final int DEFAULT_PREFETCH_DEPTH = 2;
+  public static final long DEFAULT_IDLE_BACKOFF_MIN_MS = 10;
+  public static final long DEFAULT_IDLE_BACKOFF_MAX_MS = 1000;
+
+  // Checkpoint of the last applied batch.
+  private volatile long term;
+  private volatile long index;
+  // Checkpoint the next GetChanges starts from, i.e. that of the last fetched batch.
+  // Guarded by 'this'.
+  private long fetchTerm;
+  private long fetchIndex;
   private String streamId;
   private String tabletId;
-  private ExecutorService executor;
+  private ScheduledExecutorService executor;
   private YBTable table;
   private AsyncYBClient client;
   private List<HostAndPort> hps;
-  private OutputClient outputClient;
+  private OutputQueue outputQueue;
+  private final int prefetchDepth;
+  private final long idleBackoffMinMs;
+  private final long idleBackoffMaxMs;
+  private final PollerMetrics metrics;
+  private final CheckpointStore checkpointStore;
+  private final TabletLocator tabletLocator;
 
-  public Poller(OutputClient outputClient, List<HostAndPort> hps, YBTable table, String streamId,
-                String tabletId, ExecutorService executor, AsyncYBClient client) {
+  // Fetched batches the output queue turned away, waiting to be queued again.
+  // Guarded by 'this'.
+  private final Queue<OutputQueue.Batch> fetchedBatches = new ArrayDeque<>();
+  // Number of batches fetched and not yet applied, including the queued ones.
+  // Guarded by 'this'.
+  private int heldBatches;
+  // Whether or not a GetChanges call is in flight. Guarded by 'this'.
+  private boolean fetching;
+  // How long to wait before the next GetChanges, 0 unless the tablet is idle. Guarded by 'this'.
+  private long idleDelayMs;
+
+  public Poller(OutputQueue outputQueue, List<HostAndPort> hps, YBTable table, String streamId,
+                String tabletId, ScheduledExecutorService executor, AsyncYBClient client)
+      throws IOException {
+    this(outputQueue, hps, table, streamId, tabletId, executor, client,
+         DEFAULT_PREFETCH_DEPTH, DEFAULT_IDLE_BACKOFF_MIN_MS, DEFAULT_IDLE_BACKOFF_MAX_MS, null,
+         null);
+  }
+
+  /**
+   * @param prefetchDepth the maximum number of batches fetched but not applied yet, 1 to only
+   *                      request the next batch once the previous one is applied
+   * @param idleBackoffMinMs the delay before polling again after the first empty batch, 0 to
+   *                         always poll again right away
+   * @param idleBackoffMaxMs the longest delay before polling again after empty batches
+   * @param checkpointStore the store to resume from and record checkpoints to, or null to
+   *                        start from the beginning of the stream
+   * @param tabletLocator the locator picking the server to poll the tablet from, or null to
+   *                      poll random tablet servers
+   */
+  public Poller(OutputQueue outputQueue, List<HostAndPort> hps, YBTable table, String streamId,
+                String tabletId, ScheduledExecutorService executor, AsyncYBClient client,
+                int prefetchDepth, long idleBackoffMinMs, long idleBackoffMaxMs,
+                CheckpointStore checkpointStore, TabletLocator tabletLocator)
+      throws IOException {
+    Preconditions.checkArgument(prefetchDepth > 0, "prefetchDepth should be greater than 0");
+    Preconditions.checkArgument(idleBackoffMinMs >= 0, "idleBackoffMinMs should not be negative");
+    Preconditions.checkArgument(idleBackoffMaxMs >= idleBackoffMinMs,
+                                "idleBackoffMaxMs should not be less than idleBackoffMinMs");
     this.streamId = streamId;
     this.tabletId = tabletId;
     this.term = 0;
@@ -50,62 +130,280 @@ public class Poller {
     this.client = client;
     this.table = table;
     this.hps = hps;
-    this.outputClient = outputClient;
+    this.outputQueue = outputQueue;
+    this.prefetchDepth = prefetchDepth;
+    this.idleBackoffMinMs = idleBackoffMinMs;
+    this.idleBackoffMaxMs = idleBackoffMaxMs;
+    this.metrics = new PollerMetrics(tabletId);
+    this.checkpointStore = checkpointStore;
+    this.tabletLocator = tabletLocator;
+    if (checkpointStore != null) {
+      Opid.OpIdPB checkpoint = checkpointStore.get(streamId, tabletId);
+      if (checkpoint != null) {
+        LOG.info(String.format("Resuming tablet %s from checkpoint %d.%d",
+                               tabletId, checkpoint.getTerm(), checkpoint.getIndex()));
+        this.term = this.fetchTerm = checkpoint.getTerm();
+        this.index = this.fetchIndex = checkpoint.getIndex();
+      }
+    }
   }
 
+  /**
+   * Starts polling the tablet.
+   */
   public Void poll() {
-    executor.submit(new Callable<Void>() {
+    return poll(0);
+  }
+
+  private Void poll(long delayMs) {
+    synchronized (this) {
+      if (fetching) {
+        return null;
+      }
+      fetching = true;
+    }
+    Callable<Void> task = new Callable<Void>() {
       @Override
       public Void call() throws Exception {
         return doPoll();
       }
-    });
+    };
+    if (delayMs > 0) {
+      executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    } else {
+      executor.submit(task);
+    }
     return null;
   }
 
+  /**
+   * @return the poll counters of this tablet
+   */
+  public PollerMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @return the term of the checkpoint of the last batch applied by the output client
+   */
+  public long getTerm() {
+    return term;
+  }
+
+  /**
+   * @return the index of the checkpoint of the last batch applied by the output client
+   */
+  public long getIndex() {
+    return index;
+  }
+
   private Void doPoll() {
-    Random rand = new Random();
-    HostAndPort hp = hps.get(rand.nextInt(hps.size()));
+    HostAndPort server = tabletLocator == null ? null : tabletLocator.getServer(tabletId);
+    if (server == null) {
+      Random rand = new Random();
+      server = hps.get(rand.nextInt(hps.size()));
+    }
+    final HostAndPort hp = server;
+    final long fromTerm;
+    final long fromIndex;
+    synchronized (this) {
+      fromTerm = fetchTerm;
+      fromIndex = fetchIndex;
+    }
+
+    final Deferred<Void> d;
+    try {
+      d = getChanges(hp, fromTerm, fromIndex, new Callback<Void, GetChangesResponse>() {
+        @Override
+        public Void call(GetChangesResponse getChangesResponse) throws Exception {
+          return handlePoll(getChangesResponse, hp);
+        }
+      });
+    } catch (Exception e) {
+      // Failing before sending anything, e.g. when no connection can be made to the server,
+      // must not leave the tablet marked as being fetched.
+      LOG.warn(String.format("GetChanges failed for tablet %s on %s, retrying", tabletId, hp), e);
+      return relocateAndRetryPoll(hp);
+    }
+    d.addErrback(new Callback<Void, Exception>() {
+      @Override
+      public Void call(Exception e) throws Exception {
+        LOG.warn(String.format("GetChanges failed for tablet %s on %s, retrying", tabletId, hp),
+                 e);
+        return relocateAndRetryPoll(hp);
+      }
+    });
+    return null;
+  }
+
+  /**
+   * Sends a GetChanges for the tablet to the given server, starting after the given checkpoint.
+   * Tests override it to poll without a cluster.
+   *
+   * @param cb the callback handling the response
+   * @return the deferred result of the callback
+   */
+  Deferred<Void> getChanges(HostAndPort hp, long fromTerm, long fromIndex,
+                            Callback<Void, GetChangesResponse> cb) {
+    return client.getChanges(hp, table, streamId, tabletId, fromTerm, fromIndex, cb);
+  }
 
-    client.getChanges(hp, table, streamId, tabletId, term, index,
-                      new Callback<Void, GetChangesResponse>() {
+  // Looks the tablet up again before retrying, when the server polled is no good anymore.
+  private Void relocateAndRetryPoll(HostAndPort hp) {
+    if (tabletLocator == null) {
+      return retryPoll();
+    }
+    final Deferred<Void> d;
+    try {
+      d = tabletLocator.relocate(tabletId, hp);
+    } catch (Exception e) {
+      LOG.warn(String.format("Failed to locate tablet %s", tabletId), e);
+      return retryPoll();
+    }
+    d.addCallback(new Callback<Void, Void>() {
+      @Override
+      public Void call(Void arg) throws Exception {
+        return retryPoll();
+      }
+    }).addErrback(new Callback<Void, Exception>() {
       @Override
-      public Void call(GetChangesResponse getChangesResponse) throws Exception {
-        return handlePoll(getChangesResponse);
+      public Void call(Exception e) throws Exception {
+        LOG.warn(String.format("Failed to locate tablet %s", tabletId), e);
+        return retryPoll();
       }
     });
     return null;
   }
 
-  private Void handlePoll(GetChangesResponse getChangesResponse) {
+  private Void retryPoll() {
+    final long delayMs;
+    synchronized (this) {
+      fetching = false;
+      // Don't hammer a server that keeps failing either.
+      delayMs = Math.max(idleDelayMs, idleBackoffMinMs);
+    }
+    return poll(delayMs);
+  }
+
+  private Void handlePoll(GetChangesResponse getChangesResponse, HostAndPort hp) {
+    // Parse the response off of the client's I/O threads.
     executor.submit(new Callable<Void>() {
       @Override
       public Void call() throws Exception {
-        return doHandlePoll(getChangesResponse);
+        try {
+          return handleBatch(getChangesResponse, hp);
+        } catch (Exception e) {
+          // The future of this task is dropped, so nothing else would hear about the failure and
+          // the tablet would never be polled again. handleBatch only throws while parsing the
+          // response, before the batch is handed to anyone.
+          getChangesResponse.release();
+          LOG.warn(String.format("Failed to handle GetChanges response for tablet %s from %s, " +
+                                 "retrying", tabletId, hp), e);
+          return relocateAndRetryPoll(hp);
+        }
       }
     });
     return null;
   }
 
-  private Void doHandlePoll(GetChangesResponse getChangesResponse) throws Exception {
-    // Handle the poll
-    if (getChangesResponse.getResp().hasError()) {
-      if (getChangesResponse.getResp().getError().getCode() ==
-              CdcService.CDCErrorPB.Code.INVALID_REQUEST) {
-        LOG.error("Invalid Request");
-        System.exit(0);
+  private Void handleBatch(GetChangesResponse getChangesResponse, HostAndPort hp) {
+    // The records stay serialized until the batch is applied. Everything the batch needs is
+    // parsed up front, so a malformed response fails before anything is changed.
+    final CdcService.GetChangesResponsePB resp = getChangesResponse.getRespWithoutRecords();
+    final int numRecords = resp.hasError() ? 0 : getChangesResponse.getRecordsCount();
+    if (resp.hasError()) {
+      getChangesResponse.release();
+      switch (resp.getError().getCode()) {
+        case INVALID_REQUEST:
+          LOG.error("Invalid Request");
+          System.exit(0);
+          break;
+        case NOT_LEADER:
+        case TABLET_NOT_FOUND:
+        case TABLET_NOT_RUNNING:
+          return relocateAndRetryPoll(hp);
+        default:
+          break;
       }
-      return poll();
+      return retryPoll();
     }
 
-    for (org.yb.cdc.CdcService.CDCRecordPB record : getChangesResponse.getResp().getRecordsList()) {
-      outputClient.applyChange(table, record);
+    metrics.recordPoll(numRecords);
+    synchronized (this) {
+      fetching = false;
+      if (numRecords > 0 || idleBackoffMinMs == 0) {
+        idleDelayMs = 0;
+      } else if (idleDelayMs == 0) {
+        idleDelayMs = idleBackoffMinMs;
+      } else {
+        idleDelayMs = Math.min(idleDelayMs * 2, idleBackoffMaxMs);
+      }
+      metrics.setIdleDelayMs(idleDelayMs);
+      fetchTerm = resp.getCheckpoint().getOpId().getTerm();
+      fetchIndex = resp.getCheckpoint().getOpId().getIndex();
+      fetchedBatches.add(new OutputQueue.Batch(
+          this, table, tabletId, getChangesResponse, resp.getCheckpoint().getOpId()));
+      heldBatches++;
+      queueBatches();
+    }
+    // Request the next batch while this one is applied, if there's room for it.
+    return maybePoll();
+  }
+
+  // Hands the fetched batches to the output queue until they are all queued or the queue is
+  // full. Called with 'this' held, so batches are queued in the order they were fetched.
+  private void queueBatches() {
+    while (!fetchedBatches.isEmpty() && outputQueue.offer(fetchedBatches.peek())) {
+      fetchedBatches.remove();
     }
+  }
+
+  /**
+   * Queues the batches the output queue turned away, and resumes fetching. Called by the output
+   * queue once it has room again.
+   */
+  void resume() {
+    executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        synchronized (Poller.this) {
+          queueBatches();
+        }
+        return maybePoll();
+      }
+    });
+  }
 
-    this.term = getChangesResponse.getResp().getCheckpoint().getOpId().getTerm();
-    this.index = getChangesResponse.getResp().getCheckpoint().getOpId().getIndex();
+  /**
+   * Records the checkpoint of a batch. Called by the output queue once the batch is applied,
+   * which failed batches are retried until.
+   */
+  void batchApplied(OutputQueue.Batch batch) {
+    term = batch.checkpoint.getTerm();
+    index = batch.checkpoint.getIndex();
+    if (checkpointStore != null) {
+      try {
+        checkpointStore.put(streamId, tabletId, term, index);
+      } catch (IOException e) {
+        LOG.error(String.format("Failed to record the checkpoint of tablet %s", tabletId), e);
+      }
+    }
+    synchronized (this) {
+      heldBatches--;
+    }
+    maybePoll();
+  }
 
-    return poll();
+  private Void maybePoll() {
+    final long delayMs;
+    synchronized (this) {
+      // Don't fetch more while the output queue is full.
+      if (heldBatches >= prefetchDepth || !fetchedBatches.isEmpty()) {
+        return null;
+      }
+      delayMs = idleDelayMs;
+    }
+    return poll(delayMs);
   }
 
 }
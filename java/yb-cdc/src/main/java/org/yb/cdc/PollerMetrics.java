@@ -0,0 +1,108 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the GetChanges calls of a single tablet's {@link Poller}.
+ * <p>
+ * This class is thread-safe.
+ */
+public class PollerMetrics {
+
+  private final String tabletId;
+  private final AtomicLong numPolls = new AtomicLong();
+  private final AtomicLong numEmptyPolls = new AtomicLong();
+  private final AtomicLong numRecords = new AtomicLong();
+  private volatile long idleDelayMs;
+
+  // Polls count and time of the last poll rate computation, guarded by 'this'.
+  private long lastNumPolls;
+  private long lastRateNanos = System.nanoTime();
+
+  PollerMetrics(String tabletId) {
+    this.tabletId = tabletId;
+  }
+
+  void recordPoll(int numRecords) {
+    numPolls.incrementAndGet();
+    if (numRecords == 0) {
+      numEmptyPolls.incrementAndGet();
+    } else {
+      this.numRecords.addAndGet(numRecords);
+    }
+  }
+
+  void setIdleDelayMs(long idleDelayMs) {
+    this.idleDelayMs = idleDelayMs;
+  }
+
+  public String getTabletId() {
+    return tabletId;
+  }
+
+  /**
+   * @return the number of GetChanges calls that returned a batch
+   */
+  public long getNumPolls() {
+    return numPolls.get();
+  }
+
+  /**
+   * @return the number of GetChanges calls that returned no changes
+   */
+  public long getNumEmptyPolls() {
+    return numEmptyPolls.get();
+  }
+
+  /**
+   * @return the number of changes received
+   */
+  public long getNumRecords() {
+    return numRecords.get();
+  }
+
+  /**
+   * @return how long the poller currently waits before polling again because the tablet is
+   * idle, in milliseconds, 0 if it isn't idle
+   */
+  public long getIdleDelayMs() {
+    return idleDelayMs;
+  }
+
+  /**
+   * Computes the rate of GetChanges calls since the previous call of this method, or since the
+   * metrics were created for the first call.
+   * @return a number of calls per second
+   */
+  public synchronized double takePollsPerSecond() {
+    final long now = System.nanoTime();
+    final long polls = numPolls.get();
+    final long elapsedNanos = Math.max(now - lastRateNanos, 1);
+    final double rate = (polls - lastNumPolls) * (double) TimeUnit.SECONDS.toNanos(1) /
+        elapsedNanos;
+    lastNumPolls = polls;
+    lastRateNanos = now;
+    return rate;
+  }
+
+  @Override
+  public String toString() {
+    return "tablet=" + tabletId + ", polls=" + getNumPolls() + ", emptyPolls=" +
+        getNumEmptyPolls() + ", records=" + getNumRecords() + ", idleDelayMs=" +
+        getIdleDelayMs();
+  }
+}
@@ -0,0 +1,152 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+
+package org.yb.cdc;
+
+import com.google.common.net.HostAndPort;
+import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
+import org.apache.log4j.Logger;
+import org.yb.Common;
+import org.yb.client.LocatedTablet;
+import org.yb.client.YBTable;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the replicas of the tablets of a table, so that each GetChanges is sent to the
+ * leader of its tablet rather than to a random tablet server.
+ * <p>
+ * With a placement, GetChanges are sent to the replica closest to it instead, favoring the
+ * leader among equally close ones, for clusters that serve changes from followers. The first
+ * time a follower turns a GetChanges away, all following ones go back to the leaders.
+ */
+public class TabletLocator {
+  private static final Logger LOG = Logger.getLogger(TabletLocator.class);
+
+  private final YBTable table;
+  private final long timeoutMs;
+  // Placement to read from the closest replica to, or null to read from leaders.
+  private volatile Common.CloudInfoPB placement;
+
+  // Last known locations of each tablet, by tablet id.
+  private final ConcurrentMap<String, LocatedTablet> tablets = new ConcurrentHashMap<>();
+
+  /**
+   * @param table the table to locate the tablets of
+   * @param timeoutMs the timeout of looking tablets up again
+   * @param placement the placement to read from the closest replica to, or null to always read
+   *                  from leaders
+   */
+  public TabletLocator(YBTable table, long timeoutMs, Common.CloudInfoPB placement) {
+    this.table = table;
+    this.timeoutMs = timeoutMs;
+    this.placement = placement;
+  }
+
+  /**
+   * Records the locations of the given tablets, replacing the ones known so far.
+   */
+  public void update(List<LocatedTablet> locatedTablets) {
+    for (LocatedTablet tablet : locatedTablets) {
+      tablets.put(new String(tablet.getTabletId()), tablet);
+    }
+  }
+
+  /**
+   * @return the server to send the GetChanges of the tablet to, or null if the tablet or its
+   *         leader isn't known
+   */
+  public HostAndPort getServer(String tabletId) {
+    LocatedTablet tablet = tablets.get(tabletId);
+    if (tablet == null) {
+      return null;
+    }
+    LocatedTablet.Replica best = tablet.getLeaderReplica();
+    Common.CloudInfoPB placement = this.placement;
+    if (placement != null) {
+      int bestDistance = best == null ? Integer.MAX_VALUE : distance(best, placement);
+      for (LocatedTablet.Replica replica : tablet.getReplicas()) {
+        int distance = distance(replica, placement);
+        if (distance < bestDistance) {
+          best = replica;
+          bestDistance = distance;
+        }
+      }
+    }
+    return best == null ? null : getHostAndPort(best);
+  }
+
+  /**
+   * Looks the tablet up again, after a GetChanges sent to the given server failed or was
+   * turned away.
+   *
+   * @return a deferred object called back once the locations of the tablet are updated
+   */
+  public Deferred<Void> relocate(String tabletId, HostAndPort server) {
+    LocatedTablet tablet = tablets.get(tabletId);
+    if (tablet != null && placement != null && tablet.getLeaderReplica() != null &&
+        !server.equals(getHostAndPort(tablet.getLeaderReplica()))) {
+      LOG.warn(String.format("Follower %s did not serve changes of tablet %s, reading from " +
+                             "leaders from now on", server, tabletId));
+      placement = null;
+    }
+
+    byte[] startKey = null;
+    byte[] endKey = null;
+    if (tablet != null) {
+      startKey = tablet.getPartition().getPartitionKeyStart();
+      endKey = tablet.getPartition().getPartitionKeyEnd();
+      if (endKey.length == 0) {
+        endKey = null;
+      }
+    }
+    try {
+      return table.asyncGetTabletsLocations(startKey, endKey, timeoutMs).addCallback(
+          new Callback<Void, List<LocatedTablet>>() {
+        @Override
+        public Void call(List<LocatedTablet> locatedTablets) throws Exception {
+          update(locatedTablets);
+          return null;
+        }
+      });
+    } catch (Exception e) {
+      return Deferred.fromError(e);
+    }
+  }
+
+  // 0 for the same zone, 1 for the same region, 2 for the same cloud, 3 otherwise.
+  private static int distance(LocatedTablet.Replica replica, Common.CloudInfoPB placement) {
+    Common.CloudInfoPB cloudInfo = replica.getCloudInfo();
+    if (!cloudInfo.getPlacementCloud().equals(placement.getPlacementCloud())) {
+      return 3;
+    }
+    if (!cloudInfo.getPlacementRegion().equals(placement.getPlacementRegion())) {
+      return 2;
+    }
+    if (!cloudInfo.getPlacementZone().equals(placement.getPlacementZone())) {
+      return 1;
+    }
+    return 0;
+  }
+
+  private static HostAndPort getHostAndPort(LocatedTablet.Replica replica) {
+    if (replica.getRpcHost() == null) {
+      return null;
+    }
+    return HostAndPort.fromParts(replica.getRpcHost(), replica.getRpcPort());
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertNull;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Opid;
+import org.yb.YBTestRunner;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+@RunWith(value=YBTestRunner.class)
+public class TestMappedFileCheckpointStore {
+
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("cdc-checkpoints", ".dat");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private static Opid.OpIdPB opId(long term, long index) {
+    return Opid.OpIdPB.newBuilder().setTerm(term).setIndex(index).build();
+  }
+
+  @Test
+  public void testReopen() throws Exception {
+    MappedFileCheckpointStore store = new MappedFileCheckpointStore(file);
+    assertNull(store.get("stream", "tablet1"));
+    store.put("stream", "tablet1", 1, 10);
+    store.put("stream", "tablet2", 2, 20);
+    store.put("stream", "tablet1", 1, 11);
+    assertEquals(opId(1, 11), store.get("stream", "tablet1"));
+    store.close();
+
+    store = new MappedFileCheckpointStore(file);
+    assertEquals(opId(1, 11), store.get("stream", "tablet1"));
+    assertEquals(opId(2, 20), store.get("stream", "tablet2"));
+    assertNull(store.get("stream", "tablet3"));
+    assertNull(store.get("other-stream", "tablet1"));
+
+    // Keep recording on top of what was loaded.
+    store.put("stream", "tablet1", 2, 12);
+    store.close();
+    store = new MappedFileCheckpointStore(file);
+    assertEquals(opId(2, 12), store.get("stream", "tablet1"));
+    store.close();
+  }
+
+  @Test
+  public void testCorruptVersion() throws Exception {
+    MappedFileCheckpointStore store = new MappedFileCheckpointStore(file);
+    // The first checkpoint of a slot goes to version 1, the second one to version 0.
+    store.put("stream", "tablet", 3, 30);
+    store.put("stream", "tablet", 3, 31);
+    store.close();
+
+    // Tear the latest version of the only used slot, as if the process died writing it out.
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      final long offset = MappedFileCheckpointStore.SLOT_SIZE +
+          MappedFileCheckpointStore.VERSIONS_OFFSET;
+      raf.seek(offset + 8);
+      raf.writeLong(raf.readLong() + 1);
+    }
+
+    store = new MappedFileCheckpointStore(file);
+    assertEquals(opId(3, 30), store.get("stream", "tablet"));
+    // The next checkpoint overwrites the torn version and wins again.
+    store.put("stream", "tablet", 3, 32);
+    store.close();
+    store = new MappedFileCheckpointStore(file);
+    assertEquals(opId(3, 32), store.get("stream", "tablet"));
+    store.close();
+  }
+
+  @Test
+  public void testGrow() throws Exception {
+    // More tablets than the initial slots, one of which is the header.
+    final int numTablets = MappedFileCheckpointStore.INITIAL_NUM_SLOTS + 100;
+    MappedFileCheckpointStore store = new MappedFileCheckpointStore(file);
+    for (int i = 0; i < numTablets; i++) {
+      store.put("stream", "tablet" + i, 1, i);
+    }
+    for (int i = 0; i < numTablets; i++) {
+      assertEquals(opId(1, i), store.get("stream", "tablet" + i));
+    }
+    store.close();
+    assertTrue(file.length() >
+               (long) MappedFileCheckpointStore.INITIAL_NUM_SLOTS *
+                   MappedFileCheckpointStore.SLOT_SIZE);
+    assertEquals(0, file.length() % MappedFileCheckpointStore.SLOT_SIZE);
+
+    store = new MappedFileCheckpointStore(file);
+    for (int i = 0; i < numTablets; i++) {
+      assertEquals(opId(1, i), store.get("stream", "tablet" + i));
+    }
+    // New tablets go after the loaded ones.
+    store.put("stream", "new-tablet", 2, 1);
+    store.close();
+    store = new MappedFileCheckpointStore(file);
+    assertEquals(opId(2, 1), store.get("stream", "new-tablet"));
+    assertEquals(opId(1, numTablets - 1), store.get("stream", "tablet" + (numTablets - 1)));
+    store.close();
+  }
+}
@@ -0,0 +1,164 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertNotNull;
+import static org.yb.AssertionWrappers.assertNull;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Opid;
+import org.yb.YBTestRunner;
+import org.yb.client.GetChangesResponse;
+import org.yb.client.TestUtils;
+import org.yb.client.YBTable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(value=YBTestRunner.class)
+public class TestOutputQueue {
+
+  private static final long TIMEOUT_MS = 10000;
+
+  /** Records the batches it applies, optionally holding them or failing those of a tablet. */
+  private static class RecordingClient implements OutputClient {
+    final BlockingQueue<String> applied = new LinkedBlockingQueue<>();
+    final AtomicInteger numFailures = new AtomicInteger();
+    final CountDownLatch release;
+    volatile String failingTabletId;
+
+    RecordingClient(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public void applyChanges(YBTable table, String tabletId, List<CdcService.CDCRecordPB> changes,
+                             Opid.OpIdPB checkpoint) throws Exception {
+      release.await();
+      if (tabletId.equals(failingTabletId)) {
+        numFailures.incrementAndGet();
+        throw new IOException("Injected failure");
+      }
+      applied.add(tabletId + ":" + checkpoint.getIndex());
+    }
+  }
+
+  /** A poller that only records what the output queue tells it. */
+  private static class RecordingPoller extends Poller {
+    final BlockingQueue<Long> applied = new LinkedBlockingQueue<>();
+    final AtomicInteger numResumes = new AtomicInteger();
+
+    RecordingPoller(OutputQueue queue, String tabletId) throws IOException {
+      super(queue, null, null, "stream", tabletId, null, null);
+    }
+
+    @Override
+    void batchApplied(OutputQueue.Batch batch) {
+      applied.add(batch.checkpoint.getIndex());
+    }
+
+    @Override
+    void resume() {
+      numResumes.incrementAndGet();
+    }
+  }
+
+  private static OutputQueue.Batch batch(Poller poller, String tabletId, long index) {
+    CdcService.GetChangesResponsePB.Builder resp = CdcService.GetChangesResponsePB.newBuilder();
+    resp.addRecordsBuilder()
+        .setTime(index)
+        .setOperation(CdcService.CDCRecordPB.OperationType.WRITE);
+    Opid.OpIdPB checkpoint = Opid.OpIdPB.newBuilder().setTerm(1).setIndex(index).build();
+    resp.getCheckpointBuilder().setOpId(checkpoint);
+    return new OutputQueue.Batch(poller, null, tabletId,
+                                 new GetChangesResponse(0, "uuid", resp.build()), checkpoint);
+  }
+
+  private static <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+    final T item = queue.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    assertNotNull(item);
+    return item;
+  }
+
+  @Test
+  public void testFullAndResume() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    OutputQueue queue = new OutputQueue(new RecordingClient(release), 2);
+    RecordingPoller pollerA = new RecordingPoller(queue, "tabletA");
+    RecordingPoller pollerB = new RecordingPoller(queue, "tabletB");
+
+    assertTrue(queue.offer(batch(pollerA, "tabletA", 1)));
+    assertTrue(queue.offer(batch(pollerA, "tabletA", 2)));
+    // The first batch is held by the output client, the queue is full.
+    assertFalse(queue.offer(batch(pollerB, "tabletB", 1)));
+    assertFalse(queue.offer(batch(pollerB, "tabletB", 2)));
+    assertEquals(2, queue.size());
+    assertEquals(0, pollerB.numResumes.get());
+
+    release.countDown();
+    assertEquals(1, (long) take(pollerA.applied));
+    assertEquals(2, (long) take(pollerA.applied));
+    TestUtils.waitFor(() -> pollerB.numResumes.get() > 0, TIMEOUT_MS);
+    assertEquals(0, queue.size());
+    // Turned away twice, but only resumed once, and the other poller not at all.
+    assertEquals(1, pollerB.numResumes.get());
+    assertEquals(0, pollerA.numResumes.get());
+
+    assertTrue(queue.offer(batch(pollerB, "tabletB", 1)));
+    assertEquals(1, (long) take(pollerB.applied));
+  }
+
+  @Test
+  public void testRetryHoldsUpOnlyItsTablet() throws Exception {
+    CountDownLatch release = new CountDownLatch(0);
+    RecordingClient client = new RecordingClient(release);
+    client.failingTabletId = "tabletA";
+    OutputQueue queue = new OutputQueue(client, 8);
+    RecordingPoller pollerA = new RecordingPoller(queue, "tabletA");
+    RecordingPoller pollerB = new RecordingPoller(queue, "tabletB");
+
+    assertTrue(queue.offer(batch(pollerA, "tabletA", 1)));
+    assertTrue(queue.offer(batch(pollerA, "tabletA", 2)));
+    assertTrue(queue.offer(batch(pollerB, "tabletB", 1)));
+
+    // The other tablet goes on while the failed batch is retried.
+    assertEquals("tabletB:1", take(client.applied));
+    assertEquals(1, (long) take(pollerB.applied));
+    TestUtils.waitFor(() -> client.numFailures.get() >= 3, TIMEOUT_MS);
+    // Neither the failed batch nor the one after it is checkpointed, and both stay queued.
+    assertNull(pollerA.applied.peek());
+    assertNull(client.applied.peek());
+    assertEquals(2, queue.size());
+
+    client.failingTabletId = null;
+    assertEquals("tabletA:1", take(client.applied));
+    assertEquals("tabletA:2", take(client.applied));
+    assertEquals(1, (long) take(pollerA.applied));
+    assertEquals(2, (long) take(pollerA.applied));
+    assertEquals(0, queue.size());
+
+    // Once caught up, the tablet's batches are applied right away again.
+    assertTrue(queue.offer(batch(pollerA, "tabletA", 3)));
+    assertEquals("tabletA:3", take(client.applied));
+  }
+}
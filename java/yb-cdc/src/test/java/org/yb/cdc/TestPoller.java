@@ -0,0 +1,284 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertNotNull;
+import static org.yb.AssertionWrappers.assertNull;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import com.google.common.net.HostAndPort;
+import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Opid;
+import org.yb.YBTestRunner;
+import org.yb.client.GetChangesResponse;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RunWith(value=YBTestRunner.class)
+public class TestPoller {
+
+  private static final long TIMEOUT_MS = 10000;
+  // How long to wait to make sure something doesn't happen.
+  private static final long QUIET_MS = 500;
+
+  private static final HostAndPort SERVER = HostAndPort.fromParts("127.0.0.1", 1);
+  private static final HostAndPort NEW_LEADER = HostAndPort.fromParts("127.0.0.2", 1);
+
+  private ScheduledExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /** A GetChanges sent by the poller, answered by the test. */
+  private static class Call {
+    final HostAndPort server;
+    final long fromIndex;
+    final Deferred<GetChangesResponse> response = new Deferred<>();
+
+    Call(HostAndPort server, long fromIndex) {
+      this.server = server;
+      this.fromIndex = fromIndex;
+    }
+  }
+
+  /** A poller whose GetChanges are answered by the test instead of a tablet server. */
+  private static class StubPoller extends Poller {
+    final BlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+
+    StubPoller(OutputQueue queue, ScheduledExecutorService executor, int prefetchDepth,
+               long idleBackoffMinMs, long idleBackoffMaxMs, TabletLocator tabletLocator)
+        throws IOException {
+      super(queue, Collections.singletonList(SERVER), null, "stream", "tablet", executor, null,
+            prefetchDepth, idleBackoffMinMs, idleBackoffMaxMs, null, tabletLocator);
+    }
+
+    @Override
+    Deferred<Void> getChanges(HostAndPort hp, long fromTerm, long fromIndex,
+                              Callback<Void, GetChangesResponse> cb) {
+      Call call = new Call(hp, fromIndex);
+      calls.add(call);
+      return call.response.addCallback(cb);
+    }
+  }
+
+  /** An output queue that only records the batches it's offered, unless it's full. */
+  private static class StubQueue extends OutputQueue {
+    final BlockingQueue<Batch> offered = new LinkedBlockingQueue<>();
+    volatile boolean full;
+
+    StubQueue() {
+      super(null);
+    }
+
+    @Override
+    boolean offer(Batch batch) {
+      if (full) {
+        return false;
+      }
+      offered.add(batch);
+      return true;
+    }
+  }
+
+  /** A locator that moves the tablet to a new leader once asked to relocate it. */
+  private static class StubLocator extends TabletLocator {
+    final BlockingQueue<HostAndPort> relocated = new LinkedBlockingQueue<>();
+    volatile HostAndPort server = SERVER;
+
+    StubLocator() {
+      super(null, 0, null);
+    }
+
+    @Override
+    public HostAndPort getServer(String tabletId) {
+      return server;
+    }
+
+    @Override
+    public Deferred<Void> relocate(String tabletId, HostAndPort server) {
+      relocated.add(server);
+      this.server = NEW_LEADER;
+      return Deferred.fromResult(null);
+    }
+  }
+
+  private static GetChangesResponse response(long index, int numRecords) {
+    CdcService.GetChangesResponsePB.Builder resp = CdcService.GetChangesResponsePB.newBuilder();
+    for (int i = 0; i < numRecords; i++) {
+      resp.addRecordsBuilder()
+          .setTime(i)
+          .setOperation(CdcService.CDCRecordPB.OperationType.WRITE);
+    }
+    resp.getCheckpointBuilder().setOpId(Opid.OpIdPB.newBuilder().setTerm(1).setIndex(index));
+    return new GetChangesResponse(0, "uuid", resp.build());
+  }
+
+  private static <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+    final T item = queue.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    assertNotNull(item);
+    return item;
+  }
+
+  @Test
+  public void testPrefetchBound() throws Exception {
+    StubQueue queue = new StubQueue();
+    StubPoller poller = new StubPoller(queue, executor, 2, 0, 0, null);
+    poller.poll();
+
+    Call call = take(poller.calls);
+    assertEquals(0, call.fromIndex);
+    call.response.callback(response(1, 1));
+    // The next batch is requested right away, from the checkpoint of the one just fetched.
+    call = take(poller.calls);
+    assertEquals(1, call.fromIndex);
+    call.response.callback(response(2, 1));
+
+    // Two batches are held, nothing more is fetched until one of them is applied.
+    OutputQueue.Batch first = take(queue.offered);
+    OutputQueue.Batch second = take(queue.offered);
+    assertEquals(1, first.checkpoint.getIndex());
+    assertEquals(2, second.checkpoint.getIndex());
+    assertNull(poller.calls.poll(QUIET_MS, TimeUnit.MILLISECONDS));
+
+    poller.batchApplied(first);
+    assertEquals(1, poller.getIndex());
+    call = take(poller.calls);
+    assertEquals(2, call.fromIndex);
+  }
+
+  @Test
+  public void testBatchesQueuedInOrder() throws Exception {
+    StubQueue queue = new StubQueue();
+    StubPoller poller = new StubPoller(queue, executor, 3, 0, 0, null);
+    queue.full = true;
+    poller.poll();
+
+    take(poller.calls).response.callback(response(1, 1));
+    // The queue turned the batch away, the poller holds on to it and stops fetching.
+    assertNull(poller.calls.poll(QUIET_MS, TimeUnit.MILLISECONDS));
+    assertNull(queue.offered.peek());
+
+    queue.full = false;
+    poller.resume();
+    assertEquals(1, take(queue.offered).checkpoint.getIndex());
+    Call call = take(poller.calls);
+    assertEquals(1, call.fromIndex);
+    call.response.callback(response(2, 1));
+    assertEquals(2, take(queue.offered).checkpoint.getIndex());
+  }
+
+  @Test
+  public void testIdleBackoffResetAndCap() throws Exception {
+    StubQueue queue = new StubQueue();
+    StubPoller poller = new StubPoller(queue, executor, 2, 10, 40, null);
+    poller.poll();
+
+    // Every empty batch doubles the delay before the next poll, up to the maximum.
+    long index = 0;
+    Call call = take(poller.calls);
+    for (long expectedDelayMs : new long[] { 10, 20, 40, 40 }) {
+      final long respondedNanos = System.nanoTime();
+      call.response.callback(response(++index, 0));
+      poller.batchApplied(take(queue.offered));
+      assertEquals(expectedDelayMs, poller.getMetrics().getIdleDelayMs());
+
+      call = take(poller.calls);
+      final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - respondedNanos);
+      assertTrue("polled again after " + elapsedMs + "ms", elapsedMs >= expectedDelayMs);
+      assertEquals(index, call.fromIndex);
+    }
+
+    // A batch with changes resets the delay, the next poll goes out right away.
+    call.response.callback(response(++index, 1));
+    poller.batchApplied(take(queue.offered));
+    assertEquals(0, poller.getMetrics().getIdleDelayMs());
+    call = take(poller.calls);
+    assertEquals(index, call.fromIndex);
+
+    // And the next empty batch starts over from the minimum.
+    call.response.callback(response(++index, 0));
+    poller.batchApplied(take(queue.offered));
+    assertEquals(10, poller.getMetrics().getIdleDelayMs());
+  }
+
+  @Test
+  public void testMalformedResponseIsRetried() throws Exception {
+    StubQueue queue = new StubQueue();
+    StubPoller poller = new StubPoller(queue, executor, 2, 10, 100, null);
+    poller.poll();
+
+    final AtomicBoolean released = new AtomicBoolean();
+    GetChangesResponse malformed = new GetChangesResponse(
+        0, "uuid", CdcService.GetChangesResponsePB.getDefaultInstance()) {
+      @Override
+      public synchronized CdcService.GetChangesResponsePB getRespWithoutRecords() {
+        throw new IllegalStateException("Malformed response");
+      }
+
+      @Override
+      public synchronized void release() {
+        released.set(true);
+        super.release();
+      }
+    };
+    take(poller.calls).response.callback(malformed);
+
+    // The response is dropped, and the same changes are asked for again.
+    Call call = take(poller.calls);
+    assertEquals(0, call.fromIndex);
+    assertTrue(released.get());
+    assertNull(queue.offered.peek());
+  }
+
+  @Test
+  public void testRelocateOnNotLeader() throws Exception {
+    StubQueue queue = new StubQueue();
+    StubLocator locator = new StubLocator();
+    StubPoller poller = new StubPoller(queue, executor, 2, 0, 0, locator);
+    poller.poll();
+
+    Call call = take(poller.calls);
+    assertEquals(SERVER, call.server);
+    CdcService.GetChangesResponsePB.Builder resp = CdcService.GetChangesResponsePB.newBuilder();
+    resp.getErrorBuilder().setCode(CdcService.CDCErrorPB.Code.NOT_LEADER);
+    call.response.callback(new GetChangesResponse(0, "uuid", resp.build()));
+
+    // The tablet is looked up again, and the same changes are asked of its new leader.
+    assertEquals(SERVER, take(locator.relocated));
+    call = take(poller.calls);
+    assertEquals(NEW_LEADER, call.server);
+    assertEquals(0, call.fromIndex);
+    assertNull(queue.offered.peek());
+  }
+}
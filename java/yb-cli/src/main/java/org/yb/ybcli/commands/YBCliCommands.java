@@ -13,6 +13,7 @@
 //
 package org.yb.ybcli.commands;
 
+import java.util.Iterator;
 import java.util.List;
 
 import com.google.common.net.HostAndPort;
@@ -26,6 +27,7 @@ import org.springframework.shell.core.annotation.CliOption;
 import org.springframework.stereotype.Component;
 import org.yb.ColumnSchema;
 import org.yb.Common.HostPortPB;
+import org.yb.Common.TableType;
 import org.yb.Schema;
 import org.yb.client.AsyncYBClient;
 import org.yb.client.ChangeConfigResponse;
@@ -36,6 +38,7 @@ import org.yb.client.IsLoadBalancedResponse;
 import org.yb.client.IsServerReadyResponse;
 import org.yb.client.LeaderStepDownResponse;
 import org.yb.client.ListMastersResponse;
+import org.yb.client.ListTablesOptions;
 import org.yb.client.ListTablesResponse;
 import org.yb.client.ListTabletServersResponse;
 import org.yb.client.ChangeLoadBalancerStateResponse;
@@ -167,22 +170,43 @@ public class YBCliCommands implements CommandMarker {
   }
 
   @CliCommand(value = "list tables", help = "List all the tables in this database")
-  public String listTables() {
+  public String listTables(
+      @CliOption(key = { "keyspace", "k" },
+                 help = "only list the tables of this keyspace")
+      final String keyspace,
+      @CliOption(key = { "prefix", "p" },
+                 help = "only list the tables whose name starts with this prefix")
+      final String namePrefix,
+      @CliOption(key = { "type" },
+                 help = "only list the tables of this type")
+      final TableType tableType) {
+    final long start = System.currentTimeMillis();
+    ListTablesOptions options = new ListTablesOptions()
+        .setKeyspace(keyspace)
+        .setNamePrefix(namePrefix)
+        .setExcludeSystemTables(true);
+    if (tableType != null) {
+      options.setTableTypes(tableType);
+    }
+    // Tables are printed as they're fetched, one keyspace at a time, so that large catalogs
+    // don't have to be held in memory before anything shows up.
+    System.out.println("Tables [(index) keyspace name uuid type]:");
+    int idx = 0;
     try {
-      ListTablesResponse resp = ybClient.getTablesList();
-      StringBuilder sb = new StringBuilder();
-      sb.append("Got " + resp.getTablesList().size() +
-                " tables [(index) keyspace name uuid type]:\n");
-      int idx = 1;
-      for (Master.ListTablesResponsePB.TableInfo table : resp.getTableInfoList()) {
-        sb.append("\t(" + idx + ") " + table.getNamespace().getName() + " " + table.getName() +
-                  " " + table.getId().toStringUtf8() + " " + table.getTableType() + "\n");
+      Iterator<Master.ListTablesResponsePB.TableInfo> tables = ybClient.listTables(options);
+      while (tables.hasNext()) {
+        Master.ListTablesResponsePB.TableInfo table = tables.next();
         idx++;
+        System.out.println("\t(" + idx + ") " + table.getNamespace().getName() + " " +
+                           table.getName() + " " + table.getId().toStringUtf8() + " " +
+                           table.getTableType());
       }
-      sb.append("Time taken: " + resp.getElapsedMillis() + " ms.");
-      return sb.toString();
+      System.out.flush();
+      return "Got " + idx + " tables.\n" +
+             "Time taken: " + (System.currentTimeMillis() - start) + " ms.";
     } catch (Exception e) {
-      return "Failed to fetch tables list from database at " + masterAddresses + ", error: " + e;
+      return "Failed to fetch tables list from database at " + masterAddresses + " after " +
+             idx + " tables, error: " + e;
     }
   }
 
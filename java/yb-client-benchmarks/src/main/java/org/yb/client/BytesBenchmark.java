@@ -0,0 +1,97 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.CodedOutputStream;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Byte array comparisons, used by the tablets cache for every lookup, and the varint helpers
+ * used to frame RPCs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytesBenchmark {
+
+  /** Length of the compared arrays, which only differ in their last byte. */
+  @Param({"2", "16", "256"})
+  public int length;
+
+  /** Value written and read as a varint, 1 to 5 bytes long once encoded. */
+  @Param({"100", "100000", "1000000000"})
+  public int varInt;
+
+  private byte[] a;
+  private byte[] b;
+  private ByteBuffer varIntOut;
+  private ChannelBuffer varIntIn;
+
+  @Setup
+  public void setUp() throws Exception {
+    a = new byte[length];
+    Arrays.fill(a, (byte) 'x');
+    b = a.clone();
+    b[length - 1] = 'y';
+
+    varIntOut = ByteBuffer.allocate(8);
+    byte[] encoded = new byte[CodedOutputStream.computeUInt32SizeNoTag(varInt)];
+    CodedOutputStream out = CodedOutputStream.newInstance(encoded);
+    out.writeUInt32NoTag(varInt);
+    out.flush();
+    varIntIn = ChannelBuffers.wrappedBuffer(encoded);
+  }
+
+  @Benchmark
+  public int memcmp() {
+    return Bytes.memcmp(a, b);
+  }
+
+  @Benchmark
+  public int memcmpComparator() {
+    return Bytes.MEMCMP.compare(a, b);
+  }
+
+  @Benchmark
+  public ByteBuffer putVarInt32() {
+    varIntOut.clear();
+    Bytes.putVarInt32(varIntOut, varInt);
+    return varIntOut;
+  }
+
+  @Benchmark
+  public int readVarInt32() {
+    varIntIn.readerIndex(0);
+    return Bytes.readVarInt32(varIntIn);
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.rpc.RpcHeader;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of received frames into a response header and message, out of heap and direct
+ * buffers. With the GC profiler, "gc.alloc.rate.norm" shows how many bytes are allocated per
+ * response on top of the message itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallResponseBenchmark {
+
+  /** Size of the message's string field. */
+  @Param({"64", "65536", "4194304"})
+  public int messageSize;
+
+  @Param({"false", "true"})
+  public boolean direct;
+
+  private ChannelBuffer frame;
+
+  @Setup
+  public void setUp() {
+    char[] chars = new char[messageSize];
+    Arrays.fill(chars, 'x');
+    RpcHeader.ErrorStatusPB message = RpcHeader.ErrorStatusPB.newBuilder()
+        .setMessage(new String(chars))
+        .setCode(RpcHeader.ErrorStatusPB.RpcErrorCodePB.ERROR_SERVER_TOO_BUSY)
+        .build();
+    RpcHeader.ResponseHeader header = RpcHeader.ResponseHeader.newBuilder().setCallId(1).build();
+    ChannelBuffer heapFrame = YRpc.toChannelBuffer(header, message);
+    if (direct) {
+      frame = ChannelBuffers.directBuffer(heapFrame.readableBytes());
+      frame.writeBytes(heapFrame);
+    } else {
+      frame = heapFrame;
+    }
+  }
+
+  @Benchmark
+  public RpcHeader.ErrorStatusPB decode() {
+    CallResponse response = new CallResponse(frame.duplicate());
+    RpcHeader.ErrorStatusPB.Builder builder = RpcHeader.ErrorStatusPB.newBuilder();
+    YRpc.readProtobuf(response, builder);
+    return builder.build();
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.master.Master;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of the tablet serving a partition key in the client's tablets cache, which happen
+ * for every operation sent to a tablet server. The cache is filled with fake locations, without
+ * a master.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class GetTabletBenchmark {
+
+  private static final String TABLE_ID = "table-id";
+
+  /** Number of distinct keys looked up, picked at random. */
+  private static final int NUM_KEYS = 4096;
+
+  @Param({"8", "256"})
+  public int numTablets;
+
+  /**
+   * "hash" splits the 2-byte hash space between the tablets, "range" uses 8-byte partition
+   * keys so that lookups go through the skip list.
+   */
+  @Param({"hash", "range"})
+  public String partitioning;
+
+  private AsyncYBClient client;
+  private byte[][] keys;
+
+  private byte[] key(int value) {
+    if (partitioning.equals("hash")) {
+      return new byte[] { (byte) (value >>> 8), (byte) value };
+    }
+    return ByteBuffer.allocate(8).putLong(value).array();
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    int keySpace = HashPartitionLocator.NUM_HASH_CODES;
+    Master.GetTableLocationsResponsePB.Builder response =
+        Master.GetTableLocationsResponsePB.newBuilder();
+    for (int i = 0; i < numTablets; i++) {
+      Master.TabletLocationsPB.Builder tabletPb = Master.TabletLocationsPB.newBuilder()
+          .setTabletId(ByteString.copyFromUtf8("tablet-" + i))
+          .setStale(false);
+      tabletPb.getPartitionBuilder()
+          .setPartitionKeyStart(i == 0 ? ByteString.EMPTY :
+                                ByteString.copyFrom(key(i * keySpace / numTablets)))
+          .setPartitionKeyEnd(i == numTablets - 1 ? ByteString.EMPTY :
+                              ByteString.copyFrom(key((i + 1) * keySpace / numTablets)));
+      response.addTabletLocations(tabletPb);
+    }
+    YBTable table = new YBTable(client, "table", TABLE_ID, null, null);
+    client.discoverTablets(table, response.build());
+
+    keys = new byte[NUM_KEYS][];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      keys[i] = key(ThreadLocalRandom.current().nextInt(keySpace));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  @Benchmark
+  public AsyncYBClient.RemoteTablet getTablet() {
+    byte[] key = keys[ThreadLocalRandom.current().nextInt(NUM_KEYS)];
+    return client.getTablet(TABLE_ID, key);
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.ColumnSchema.ColumnSchemaBuilder;
+import org.yb.Common;
+import org.yb.Common.PartitionSchemaPB.HashSchema;
+import org.yb.Schema;
+import org.yb.Type;
+import org.yb.client.PartitionSchema.HashBucketSchema;
+import org.yb.client.PartitionSchema.RangeSchema;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of primary and partition keys, done for every row written or looked up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyEncoderBenchmark {
+
+  private KeyEncoder encoder;
+  private PartialRow row;
+  private PartitionSchema partitionSchema;
+
+  static Schema buildSchema(ColumnSchemaBuilder... columns) {
+    int i = 0;
+    Common.SchemaPB.Builder pb = Common.SchemaPB.newBuilder();
+    for (ColumnSchemaBuilder column : columns) {
+      Common.ColumnSchemaPB.Builder columnPb =
+          ProtobufHelper.columnToPb(column.build()).toBuilder();
+      columnPb.setId(i++);
+      pb.addColumns(columnPb);
+    }
+    return ProtobufHelper.pbToSchema(pb.build());
+  }
+
+  @Setup
+  public void setUp() {
+    encoder = new KeyEncoder();
+    Schema schema = buildSchema(
+        new ColumnSchemaBuilder("a", Type.INT32).key(true),
+        new ColumnSchemaBuilder("b", Type.STRING).key(true),
+        new ColumnSchemaBuilder("c", Type.INT64).key(true),
+        new ColumnSchemaBuilder("d", Type.STRING));
+    partitionSchema = new PartitionSchema(new RangeSchema(ImmutableList.of(0, 1, 2)),
+        ImmutableList.of(new HashBucketSchema(ImmutableList.of(0, 1), 32, 0)),
+        schema, HashSchema.MULTI_COLUMN_HASH_SCHEMA);
+    row = schema.newPartialRow();
+    row.addInt("a", 12345);
+    row.addString("b", "some-moderately-long-key");
+    row.addLong("c", 1234567890123L);
+    row.addString("d", "value");
+  }
+
+  @Benchmark
+  public byte[] encodePrimaryKey() {
+    return encoder.encodePrimaryKey(row);
+  }
+
+  @Benchmark
+  public byte[] encodePartitionKey() {
+    return encoder.encodePartitionKey(row, partitionSchema);
+  }
+}
@@ -0,0 +1,78 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.ColumnSchema.ColumnSchemaBuilder;
+import org.yb.Schema;
+import org.yb.Type;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling rows through the PartialRow setters, by column index and by column name.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartialRowBenchmark {
+
+  private Schema schema;
+  private byte[] binaryValue;
+
+  @Setup
+  public void setUp() {
+    schema = KeyEncoderBenchmark.buildSchema(
+        new ColumnSchemaBuilder("key", Type.INT64).key(true),
+        new ColumnSchemaBuilder("i32", Type.INT32),
+        new ColumnSchemaBuilder("dbl", Type.DOUBLE),
+        new ColumnSchemaBuilder("str", Type.STRING),
+        new ColumnSchemaBuilder("bin", Type.BINARY));
+    binaryValue = new byte[64];
+  }
+
+  @Benchmark
+  public PartialRow settersByIndex() {
+    PartialRow row = schema.newPartialRow();
+    row.addLong(0, 42L);
+    row.addInt(1, 7);
+    row.addDouble(2, 3.14);
+    row.addString(3, "a string value");
+    row.addBinary(4, binaryValue);
+    return row;
+  }
+
+  @Benchmark
+  public PartialRow settersByName() {
+    PartialRow row = schema.newPartialRow();
+    row.addLong("key", 42L);
+    row.addInt("i32", 7);
+    row.addDouble("dbl", 3.14);
+    row.addString("str", "a string value");
+    row.addBinary("bin", binaryValue);
+    return row;
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.util.HybridTimeUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64 threads propagating timestamps to a single client, the way responses coming back on many
+ * connections would, mixed with the reads done when sending RPCs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class PropagatedTimestampBenchmark {
+
+  private AsyncYBClient client;
+  private long startTimestamp;
+
+  /** Each thread's own clock, all of them start at the same time and race each other. */
+  @State(Scope.Thread)
+  public static class ThreadClock {
+    long timestamp;
+
+    @Setup
+    public void setUp(PropagatedTimestampBenchmark benchmark) {
+      timestamp = benchmark.startTimestamp;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    startTimestamp = HybridTimeUtil.clockTimestampToHTTimestamp(System.currentTimeMillis(),
+                                                                TimeUnit.MILLISECONDS);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  /** Every thread keeps moving its timestamp forward, the worst case for contention. */
+  @Benchmark
+  public void updateIncreasing(ThreadClock clock) {
+    client.updateLastPropagatedTimestamp(++clock.timestamp);
+  }
+
+  /** Updates with a timestamp the client already saw, which don't have to write anything. */
+  @Benchmark
+  public void updateStale() {
+    client.updateLastPropagatedTimestamp(startTimestamp);
+  }
+
+  @Benchmark
+  public long get() {
+    return client.getLastPropagatedTimestamp();
+  }
+}
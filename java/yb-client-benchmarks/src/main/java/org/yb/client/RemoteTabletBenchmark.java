@@ -0,0 +1,105 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.Common;
+import org.yb.master.Master;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leader lookups with {@link AsyncYBClient#clientFor} while another thread keeps replacing the
+ * tablet's replicas, the way location refreshes and leader changes do.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoteTabletBenchmark {
+
+  private AsyncYBClient client;
+  private AsyncYBClient.RemoteTablet tablet;
+  private ReplicaSet[] snapshots;
+  private int nextSnapshot;
+
+  @Setup
+  public void setUp() {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    Master.TabletLocationsPB.Builder tabletPb = Master.TabletLocationsPB.newBuilder()
+        .setTabletId(ByteString.copyFromUtf8("tablet"))
+        .setStale(false);
+    tabletPb.getPartitionBuilder()
+        .setPartitionKeyStart(ByteString.EMPTY)
+        .setPartitionKeyEnd(ByteString.EMPTY);
+    tablet = client.createTabletFromPb("table-id", tabletPb.build());
+
+    ImmutableList<TabletClient> servers = ImmutableList.of(
+        new TabletClient(client, "ts1"),
+        new TabletClient(client, "ts2"),
+        new TabletClient(client, "ts3"));
+    Common.CloudInfoPB placement = Common.CloudInfoPB.getDefaultInstance();
+    ImmutableList<Common.CloudInfoPB> placements =
+        ImmutableList.of(placement, placement, placement);
+    snapshots = new ReplicaSet[servers.size()];
+    for (int i = 0; i < servers.size(); i++) {
+      snapshots[i] = new ReplicaSet(servers, placements, i);
+    }
+    tablet.setReplicas(snapshots[0]);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  @Benchmark
+  @Group("refreshes")
+  @GroupThreads(3)
+  public TabletClient clientFor() {
+    return client.clientFor(tablet);
+  }
+
+  @Benchmark
+  @Group("refreshes")
+  @GroupThreads(1)
+  public void setReplicas() {
+    // Only this thread touches nextSnapshot.
+    nextSnapshot = (nextSnapshot + 1) % snapshots.length;
+    tablet.setReplicas(snapshots[nextSnapshot]);
+  }
+
+  @Benchmark
+  @Group("steady")
+  @GroupThreads(4)
+  public TabletClient clientForWithoutRefreshes() {
+    return client.clientFor(tablet);
+  }
+}
@@ -0,0 +1,68 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of a request frame the way {@link TabletClient} used to, by building a protobuf
+ * header for every call, versus from the cached remote method of {@link RpcRequestHeader}.
+ * Run with the GC profiler (on by default in {@link BenchmarkRunner}) to compare allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestHeaderBenchmark {
+
+  private static final String SERVICE = "yb.server.GenericService";
+  private static final String METHOD = "Ping";
+  private static final int TIMEOUT_MILLIS = 10000;
+
+  private final ServerBase.PingRequestPB request = ServerBase.PingRequestPB.getDefaultInstance();
+
+  private int callId;
+
+  @Benchmark
+  public ChannelBuffer protobufHeader() {
+    RpcHeader.RequestHeader header = RpcHeader.RequestHeader.newBuilder()
+        .setCallId(++callId)
+        .setRemoteMethod(
+            RpcHeader.RemoteMethodPB.newBuilder().setServiceName(SERVICE).setMethodName(METHOD))
+        .setTimeoutMillis(TIMEOUT_MILLIS)
+        .build();
+    return YRpc.toChannelBuffer(header, request);
+  }
+
+  @Benchmark
+  public ChannelBuffer cachedHeader() {
+    return YRpc.toChannelBuffer(new RpcRequestHeader(SERVICE, METHOD, ++callId, TIMEOUT_MILLIS),
+                                request);
+  }
+}
@@ -0,0 +1,96 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ping round trips through a TabletClient hooked to an in-memory channel: the request is
+ * encoded and written, then a response is decoded and the RPC's callback is run. Nothing goes
+ * over the network, so this only measures the client's own encoding, framing and dispatching.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabletClientBenchmark {
+
+  /** See {@link AsyncYBClient.AsyncYBClientBuilder#writeCoalescingMaxBytes(int)}. */
+  @Param({"0", "65536"})
+  public int writeCoalescingMaxBytes;
+
+  private AsyncYBClient client;
+  private TabletClient tabletClient;
+  private DecoderEmbedder<Object> embedder;
+  private int nextCallId;
+
+  @Setup
+  public void setUp() throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1")
+        .writeCoalescingMaxBytes(writeCoalescingMaxBytes)
+        .build();
+    tabletClient = new TabletClient(client, "uuid");
+    embedder = new DecoderEmbedder<Object>(tabletClient);
+    // The first round trip also writes the connection header, keep it out of the measurements.
+    pingRoundTrip();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    embedder.finish();
+    client.close();
+  }
+
+  @Benchmark
+  public PingResponse pingRoundTrip() throws Exception {
+    PingRequest rpc = new PingRequest();
+    rpc.setTimeoutMillis(10000);
+    Deferred<PingResponse> d = rpc.getDeferred();
+    rpc.attempt++;
+    tabletClient.sendRpc(rpc);
+    int written = 0;
+    Object product;
+    while ((product = embedder.poll()) != null) {
+      written += ((ChannelBuffer) product).readableBytes();
+    }
+    if (written == 0) {
+      throw new IllegalStateException("Nothing was written for call " + nextCallId);
+    }
+
+    RpcHeader.ResponseHeader header =
+        RpcHeader.ResponseHeader.newBuilder().setCallId(nextCallId++).build();
+    embedder.offer(YRpc.toChannelBuffer(header, ServerBase.PingResponsePB.getDefaultInstance()));
+    return d.join(1000);
+  }
+}
@@ -0,0 +1,205 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.net.HostAndPort;
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bursts of pings sent over a real loopback connection to an in-process server, with and
+ * without write coalescing. Besides the throughput, two counters are reported:
+ * <ul>
+ *   <li>"writeSyscalls", the number of write system calls made by the process, read from
+ *   /proc/self/io on Linux. It includes the server's responses, written one at a time whatever
+ *   the parameters, so the difference between runs is the client's share.</li>
+ *   <li>"serverReads", the number of reads the server needed to get the requests.</li>
+ * </ul>
+ * Both drop when writes are coalesced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteCoalescingBenchmark {
+
+  /** See {@link AsyncYBClient.AsyncYBClientBuilder#writeCoalescingMaxBytes(int)}. */
+  @Param({"0", "65536"})
+  public int writeCoalescingMaxBytes;
+
+  /** Number of pings sent before waiting for their responses. */
+  @Param({"1", "64"})
+  public int burstSize;
+
+  private final AtomicLong serverReads = new AtomicLong();
+
+  private ServerBootstrap server;
+  private Channel serverChannel;
+  private AsyncYBClient client;
+  private HostAndPort serverAddress;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Counters {
+    public long writeSyscalls;
+    public long serverReads;
+    public long pings;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      writeSyscalls = 0;
+      serverReads = 0;
+      pings = 0;
+    }
+  }
+
+  /**
+   * Returns the number of write system calls this process made so far, from the "syscw" line of
+   * /proc/self/io, or 0 where that isn't available.
+   */
+  private static long getWriteSyscalls() {
+    try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/io"))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("syscw:")) {
+          return Long.parseLong(line.substring("syscw:".length()).trim());
+        }
+      }
+    } catch (IOException e) {
+      // Not on Linux, the counter stays at 0.
+    }
+    return 0;
+  }
+
+  /**
+   * Counts the reads done on the server's side, before the frames get reassembled.
+   */
+  private final class ReadCounter extends SimpleChannelUpstreamHandler {
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+      serverReads.incrementAndGet();
+      super.messageReceived(ctx, e);
+    }
+  }
+
+  /**
+   * Skips the connection header, then answers every request with an empty ping response.
+   */
+  private static final class PingServer extends FrameDecoder {
+    private boolean gotConnectionHeader;
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, Channel chan, ChannelBuffer buf)
+        throws Exception {
+      if (!gotConnectionHeader) {
+        if (buf.readableBytes() < 3) {
+          return null;
+        }
+        buf.skipBytes(3);
+        gotConnectionHeader = true;
+      }
+      if (buf.readableBytes() < 4 || buf.readableBytes() < 4 + buf.getInt(buf.readerIndex())) {
+        return null;
+      }
+      int frameSize = buf.readInt();
+      ChannelBuffer frame = buf.readSlice(frameSize);
+      RpcHeader.RequestHeader request =
+          RpcHeader.RequestHeader.parseDelimitedFrom(new ChannelBufferInputStream(frame));
+      RpcHeader.ResponseHeader header =
+          RpcHeader.ResponseHeader.newBuilder().setCallId(request.getCallId()).build();
+      chan.write(YRpc.toChannelBuffer(header, ServerBase.PingResponsePB.getDefaultInstance()));
+      return frame;
+    }
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    server = new ServerBootstrap(new NioServerSocketChannelFactory(
+        Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+    server.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() {
+        return Channels.pipeline(new ReadCounter(), new PingServer());
+      }
+    });
+    server.setOption("child.tcpNoDelay", true);
+    serverChannel = server.bind(new InetSocketAddress("127.0.0.1", 0));
+    InetSocketAddress address = (InetSocketAddress) serverChannel.getLocalAddress();
+    serverAddress = HostAndPort.fromParts(address.getHostString(), address.getPort());
+
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1")
+        .writeCoalescingMaxBytes(writeCoalescingMaxBytes)
+        .build();
+    // Connect before measuring anything.
+    client.ping(serverAddress).join(10000);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+    serverChannel.close().awaitUninterruptibly();
+    server.releaseExternalResources();
+  }
+
+  @Benchmark
+  public void pingBurst(Counters counters) throws Exception {
+    long writeSyscallsBefore = getWriteSyscalls();
+    long readsBefore = serverReads.get();
+    List<Deferred<PingResponse>> pings = new ArrayList<>(burstSize);
+    for (int i = 0; i < burstSize; i++) {
+      pings.add(client.ping(serverAddress));
+    }
+    Deferred.group(pings).join(10000);
+    counters.pings += burstSize;
+    counters.serverReads += serverReads.get() - readsBefore;
+    counters.writeSyscalls += getWriteSyscalls() - writeSyscallsBefore;
+  }
+}
@@ -31,7 +31,6 @@
 //
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.master.Master;
 import org.yb.util.Pair;
@@ -59,7 +58,7 @@ class AlterTableRequest extends YRpc<AlterTableResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     TableIdentifierPB tableID = TableIdentifierPB.newBuilder()
                                 .setTableName(name)
@@ -82,7 +81,7 @@ class AlterTableRequest extends YRpc<AlterTableResponse> {
   Pair<AlterTableResponse, Object> deserialize(final CallResponse callResponse,
                                                 String tsUUID) throws Exception {
     final AlterTableResponsePB.Builder respBuilder = AlterTableResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     AlterTableResponse response = new AlterTableResponse(deadlineTracker.getElapsedMillis(),
         tsUUID);
     return new Pair<AlterTableResponse, Object>(
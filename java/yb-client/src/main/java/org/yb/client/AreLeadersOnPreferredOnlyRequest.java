@@ -18,8 +18,6 @@ import org.yb.annotations.InterfaceAudience;
 import org.yb.master.Master;
 import org.yb.util.Pair;
 
-import com.google.protobuf.Message;
-
 @InterfaceAudience.Public
 class AreLeadersOnPreferredOnlyRequest extends YRpc<AreLeadersOnPreferredOnlyResponse> {
 
@@ -28,7 +26,7 @@ class AreLeadersOnPreferredOnlyRequest extends YRpc<AreLeadersOnPreferredOnlyRes
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.AreLeadersOnPreferredOnlyRequestPB.Builder builder =
       Master.AreLeadersOnPreferredOnlyRequestPB.newBuilder();
@@ -47,7 +45,7 @@ class AreLeadersOnPreferredOnlyRequest extends YRpc<AreLeadersOnPreferredOnlyRes
       String masterUUID) throws Exception {
     final Master.AreLeadersOnPreferredOnlyResponsePB.Builder respBuilder =
       Master.AreLeadersOnPreferredOnlyResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     AreLeadersOnPreferredOnlyResponse response =
       new AreLeadersOnPreferredOnlyResponse(deadlineTracker.getElapsedMillis(),
@@ -48,11 +48,11 @@ import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Lists;
 import com.google.common.net.HostAndPort;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.google.protobuf.Message;
 import com.stumbleupon.async.Callback;
 import com.stumbleupon.async.Deferred;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
 import org.yb.Common;
 import org.yb.Common.YQLDatabase;
 import org.yb.Schema;
@@ -63,6 +63,8 @@ import org.yb.master.Master;
 import org.yb.master.Master.GetTableLocationsResponsePB;
 import org.yb.master.Master.ListTablesResponsePB.TableInfo;
 import org.yb.util.AsyncUtil;
+import org.yb.util.DirectBufferPool;
+import org.yb.util.HybridTimeUtil;
 import org.yb.util.NetUtil;
 import org.yb.util.Pair;
 import org.yb.util.Slice;
@@ -93,25 +95,32 @@ import java.security.KeyStore;
 import java.io.FileInputStream;
 
 import javax.annotation.concurrent.GuardedBy;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
@@ -181,6 +190,16 @@ public class AsyncYBClient implements AutoCloseable {
   private final ConcurrentHashMap<String, ConcurrentSkipListMap<byte[],
       RemoteTablet>> tabletsCache = new ConcurrentHashMap<>();
 
+  /**
+   * Hash code index over tabletsCache for tables whose tablets cover the whole hash space.
+   * Entries are rebuilt from tabletsCache by {@link #discoverTablets} and replaced as a whole,
+   * so a lookup never sees a partially built locator.
+   *
+   * This map is keyed by table ID.
+   */
+  private final ConcurrentHashMap<String, HashPartitionLocator> hashPartitionLocators =
+      new ConcurrentHashMap<>();
+
   /**
    * Maps a tablet ID to the RemoteTablet that knows where all the replicas are served.
    */
@@ -195,19 +214,19 @@ public class AsyncYBClient implements AutoCloseable {
 
   /**
    * Cache that maps a TabletServer address ("ip:port") to the clients
-   * connected to it.
+   * connected to it. There are up to {@code connectionsPerServer} clients
+   * per address, picked according to {@code connectionSelectionPolicy}.
    * <p>
-   * Access to this map must be synchronized by locking its monitor.
-   * Lock ordering: when locking both this map and a TabletClient, the
-   * TabletClient must always be locked first to avoid deadlocks.  Logging
-   * the contents of this map (or calling toString) requires copying it first.
+   * Modifying this map or the pools in it must be synchronized by locking
+   * its monitor, since connecting to a server is an atomic get-and-put and
+   * we don't want to create unnecessary connections.  Lock ordering: when
+   * locking both this map and a TabletClient, the TabletClient must always
+   * be locked first to avoid deadlocks.  Logging the contents of this map
+   * (or calling toString) requires copying it first.
    * <p>
-   * This isn't a {@link ConcurrentHashMap} because we don't use it frequently
-   * (just when connecting to / disconnecting from TabletClients) and when we
-   * add something to it, we want to do an atomic get-and-put, but
-   * {@code putIfAbsent} isn't a good fit for us since it requires to create
-   * an object that may be "wasted" in case another thread wins the insertion
-   * race, and we don't want to create unnecessary connections.
+   * It's still a {@link ConcurrentHashMap} so that {@link #pooledClientFor}
+   * can pick a connection for every tablet RPC without locking, and only
+   * takes the monitor when the connection it picked has to be opened.
    * <p>
    * Upon disconnection, clients are automatically removed from this map.
    * We don't use a {@code ChannelGroup} because a {@code ChannelGroup} does
@@ -219,8 +238,8 @@ public class AsyncYBClient implements AutoCloseable {
    * that are going to cause unnecessary errors.
    * @see TabletClientPipeline#handleDisconnect
    */
-  private final HashMap<String, TabletClient> ip2client =
-      new HashMap<String, TabletClient>();
+  private final ConcurrentHashMap<String, TabletClientPool> ip2client =
+      new ConcurrentHashMap<>();
 
   // Since the masters also go through TabletClient, we need to treat them as if they were a normal
   // table. We'll use the following fake table name to identify places where we need special
@@ -233,10 +252,10 @@ public class AsyncYBClient implements AutoCloseable {
 
   /**
    * Timestamp required for HybridTime external consistency through timestamp
-   * propagation.
+   * propagation. Only ever moves forward, see {@link #updateLastPropagatedTimestamp(long)}.
    * @see src/yb/common/common.proto
    */
-  private long lastPropagatedTimestamp = NO_TIMESTAMP;
+  private final AtomicLong lastPropagatedTimestamp = new AtomicLong(NO_TIMESTAMP);
 
   // A table is considered not served when we get an empty list of locations but know
   // that a tablet exists. This is currently only used for new tables. The objects stored are
@@ -252,7 +271,58 @@ public class AsyncYBClient implements AutoCloseable {
    */
   private final Semaphore masterLookups = new Semaphore(50);
 
-  private final Random sleepRandomizer = new Random();
+  /**
+   * Master lookups currently in flight, keyed by table ID and the range of keys they cover.
+   * Concurrent lookups for keys in the same range attach to the one in flight instead of
+   * sending their own GetTableLocations.
+   * @see #locateTablet
+   * @see #getTabletLookupKey
+   */
+  private final ConcurrentHashMap<TabletLookupKey, TabletLookup> tabletLookups =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Background refreshers of the tablet locations of the tables in tabletsCache, only used when
+   * tabletLocationsTtlMs is greater than 0.
+   *
+   * This map is keyed by table ID.
+   */
+  private final ConcurrentHashMap<String, TabletLocationsRefresher> locationsRefreshers =
+      new ConcurrentHashMap<>();
+
+  private final RetryPolicy retryPolicy;
+
+  /** Limits the rate of retries, {@code null} if retries aren't limited. */
+  private final RetryBudget retryBudget;
+
+  /** Number of RPC retries scheduled so far. */
+  private final AtomicLong numRetries = new AtomicLong();
+
+  /** Number of RPCs failed because the retry budget was exhausted. */
+  private final AtomicLong numRetryBudgetExhausted = new AtomicLong();
+
+  /** Number of RPCs failed because their deadline passed while waiting for a response. */
+  private final AtomicLong numExpiredRpcs = new AtomicLong();
+
+  /** Number of RPCs sent to a connection that had no room left for them. */
+  private final AtomicLong numBackpressuredRpcs = new AtomicLong();
+
+  /** Number of hedges sent for master reads that were slower than usual. */
+  private final AtomicLong numHedgedRpcs = new AtomicLong();
+
+  /** Number of hedged master reads answered by the hedge rather than the first attempt. */
+  private final AtomicLong numHedgedRpcsWon = new AtomicLong();
+
+  /** Set once the {@link InflightRpcSweeper} got scheduled. */
+  private final AtomicBoolean inflightRpcSweeperStarted = new AtomicBoolean();
+
+  /** Used to give a unique JMX name to the metrics of every client. */
+  private static final AtomicInteger nextClientId = new AtomicInteger();
+
+  private final RpcMetrics rpcMetrics = new RpcMetrics(this);
+
+  /** Name under which rpcMetrics is registered with JMX, {@code null} if it isn't. */
+  private final ObjectName rpcMetricsObjectName;
 
   private final long defaultOperationTimeoutMs;
 
@@ -262,8 +332,31 @@ public class AsyncYBClient implements AutoCloseable {
 
   private final String certFile;
 
+  private final int connectionsPerServer;
+
+  private final ConnectionSelectionPolicy connectionSelectionPolicy;
+
+  private final int writeCoalescingMaxBytes;
+
+  private final long tabletLocationsTtlMs;
+
+  private final long inflightRpcSweepIntervalMs;
+
+  private final int maxRpcsPerConnection;
+
+  private final BackpressurePolicy backpressurePolicy;
+
+  private final double masterReadHedgePercentile;
+
+  private final long masterReadHedgeMinDelayMs;
+
+  private final DirectBufferPool directBufferPool;
+
   private volatile boolean closed;
 
+  /** Makes the next condition check fail, see {@link #injectWaitError()}. */
+  private final AtomicBoolean injectWaitError = new AtomicBoolean();
+
   private AsyncYBClient(AsyncYBClientBuilder b) {
     this.channelFactory = b.createChannelFactory();
     this.masterAddresses = b.masterAddresses;
@@ -273,6 +366,51 @@ public class AsyncYBClient implements AutoCloseable {
     this.defaultAdminOperationTimeoutMs = b.defaultAdminOperationTimeoutMs;
     this.certFile = b.certFile;
     this.defaultSocketReadTimeoutMs = b.defaultSocketReadTimeoutMs;
+    this.connectionsPerServer = b.connectionsPerServer;
+    this.connectionSelectionPolicy = b.connectionSelectionPolicy;
+    this.writeCoalescingMaxBytes = b.writeCoalescingMaxBytes;
+    this.tabletLocationsTtlMs = b.tabletLocationsTtlMs;
+    this.inflightRpcSweepIntervalMs = b.inflightRpcSweepIntervalMs;
+    this.maxRpcsPerConnection = b.maxRpcsPerConnection;
+    this.backpressurePolicy = b.backpressurePolicy;
+    this.masterReadHedgePercentile = b.masterReadHedgePercentile;
+    this.masterReadHedgeMinDelayMs = b.masterReadHedgeMinDelayMs;
+    this.directBufferPool = b.directBufferPoolMaxBytes > 0 ?
+        new DirectBufferPool(b.directBufferPoolMaxBytes) : null;
+    this.retryPolicy = b.retryPolicy;
+    this.retryBudget = b.retryBudgetMaxTokens > 0 ?
+        new RetryBudget(b.retryBudgetMaxTokens, b.retryBudgetTokensPerSecond) : null;
+    this.rpcMetricsObjectName = b.registerRpcMetricsMBean ? registerRpcMetricsMBean() : null;
+  }
+
+  /**
+   * Registers the RPC metrics with the platform MBean server.
+   * @return the name they were registered under, or {@code null} if that failed
+   */
+  private ObjectName registerRpcMetricsMBean() {
+    try {
+      ObjectName name = new ObjectName("org.yb.client:type=RpcMetrics,name=AsyncYBClient-" +
+                                       nextClientId.incrementAndGet());
+      ManagementFactory.getPlatformMBeanServer().registerMBean(rpcMetrics, name);
+      return name;
+    } catch (Exception e) {
+      LOG.warn("Couldn't register the RPC metrics MBean", e);
+      return null;
+    }
+  }
+
+  private void unregisterRpcMetricsMBean() {
+    if (rpcMetricsObjectName == null) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(rpcMetricsObjectName)) {
+        server.unregisterMBean(rpcMetricsObjectName);
+      }
+    } catch (Exception e) {
+      LOG.warn("Couldn't unregister the RPC metrics MBean " + rpcMetricsObjectName, e);
+    }
   }
 
   /**
@@ -280,19 +418,29 @@ public class AsyncYBClient implements AutoCloseable {
    * external consistency. This is only publicly visible so that it can be set
    * on tests, users should generally disregard this method.
    *
+   * The timestamp is only updated if it's newer than the current one. This doesn't take any
+   * lock, so that responses coming back on different connections don't contend on the client.
+   *
    * @param lastPropagatedTimestamp the last timestamp received from a server
+   * @throws IllegalArgumentException if the timestamp isn't a valid HybridTime timestamp
    */
   @VisibleForTesting
-  public synchronized void updateLastPropagatedTimestamp(long lastPropagatedTimestamp) {
-    if (this.lastPropagatedTimestamp == -1 ||
-      this.lastPropagatedTimestamp < lastPropagatedTimestamp) {
-      this.lastPropagatedTimestamp = lastPropagatedTimestamp;
+  public void updateLastPropagatedTimestamp(long lastPropagatedTimestamp) {
+    if (!HybridTimeUtil.isValidHTTimestamp(lastPropagatedTimestamp)) {
+      throw new IllegalArgumentException(
+          "Invalid propagated timestamp: " + lastPropagatedTimestamp);
+    }
+    long current = this.lastPropagatedTimestamp.get();
+    // NO_TIMESTAMP is smaller than any valid timestamp, so this also handles the first update.
+    while (current < lastPropagatedTimestamp &&
+           !this.lastPropagatedTimestamp.compareAndSet(current, lastPropagatedTimestamp)) {
+      current = this.lastPropagatedTimestamp.get();
     }
   }
 
   @VisibleForTesting
-  public synchronized long getLastPropagatedTimestamp() {
-    return lastPropagatedTimestamp;
+  public long getLastPropagatedTimestamp() {
+    return lastPropagatedTimestamp.get();
   }
 
   public Deferred<PingResponse> ping(final HostAndPort hp) {
@@ -528,9 +676,12 @@ public class AsyncYBClient implements AutoCloseable {
    */
   public Deferred<ListTabletServersResponse> listTabletServers() {
     checkIsClosed();
-    ListTabletServersRequest rpc = new ListTabletServersRequest(this.masterTable);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<ListTabletServersResponse>() {
+      @Override
+      public YRpc<ListTabletServersResponse> newRpc() {
+        return new ListTabletServersRequest(masterTable);
+      }
+    });
   }
 
   /**
@@ -539,9 +690,12 @@ public class AsyncYBClient implements AutoCloseable {
    */
   public Deferred<ListMastersResponse> listMasters() {
     checkIsClosed();
-    ListMastersRequest rpc = new ListMastersRequest(this.masterTable);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<ListMastersResponse>() {
+      @Override
+      public YRpc<ListMastersResponse> newRpc() {
+        return new ListMastersRequest(masterTable);
+      }
+    });
   }
 
   /**
@@ -550,9 +704,12 @@ public class AsyncYBClient implements AutoCloseable {
    */
   public Deferred<GetMasterClusterConfigResponse> getMasterClusterConfig() {
     checkIsClosed();
-    GetMasterClusterConfigRequest rpc = new GetMasterClusterConfigRequest(this.masterTable);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<GetMasterClusterConfigResponse>() {
+      @Override
+      public YRpc<GetMasterClusterConfigResponse> newRpc() {
+        return new GetMasterClusterConfigRequest(masterTable);
+      }
+    });
   }
 
   /**
@@ -586,9 +743,12 @@ public class AsyncYBClient implements AutoCloseable {
    */
   public Deferred<GetLoadMovePercentResponse> getLoadMoveCompletion() {
     checkIsClosed();
-    GetLoadMovePercentRequest rpc = new GetLoadMovePercentRequest(this.masterTable);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<GetLoadMovePercentResponse>() {
+      @Override
+      public YRpc<GetLoadMovePercentResponse> newRpc() {
+        return new GetLoadMovePercentRequest(masterTable);
+      }
+    });
   }
 
   /**
@@ -597,9 +757,12 @@ public class AsyncYBClient implements AutoCloseable {
    */
   public Deferred<GetLoadMovePercentResponse> getLeaderBlacklistCompletion() {
     checkIsClosed();
-    GetLeaderBlacklistPercentRequest rpc = new GetLeaderBlacklistPercentRequest(this.masterTable);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<GetLoadMovePercentResponse>() {
+      @Override
+      public YRpc<GetLoadMovePercentResponse> newRpc() {
+        return new GetLeaderBlacklistPercentRequest(masterTable);
+      }
+    });
   }
 
   /**
@@ -607,11 +770,14 @@ public class AsyncYBClient implements AutoCloseable {
    * @param numServers expected number of servers which need to balanced.
    * @return a deferred object that yields if the load is balanced.
    */
-  public Deferred<IsLoadBalancedResponse> getIsLoadBalanced(int numServers) {
+  public Deferred<IsLoadBalancedResponse> getIsLoadBalanced(final int numServers) {
     checkIsClosed();
-    IsLoadBalancedRequest rpc = new IsLoadBalancedRequest(this.masterTable, numServers);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<IsLoadBalancedResponse>() {
+      @Override
+      public YRpc<IsLoadBalancedResponse> newRpc() {
+        return new IsLoadBalancedRequest(masterTable, numServers);
+      }
+    });
   }
 
   /**
@@ -620,9 +786,12 @@ public class AsyncYBClient implements AutoCloseable {
    */
   public Deferred<IsLoadBalancerIdleResponse> getIsLoadBalancerIdle() {
     checkIsClosed();
-    IsLoadBalancerIdleRequest rpc = new IsLoadBalancerIdleRequest(this.masterTable);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<IsLoadBalancerIdleResponse>() {
+      @Override
+      public YRpc<IsLoadBalancerIdleResponse> newRpc() {
+        return new IsLoadBalancerIdleRequest(masterTable);
+      }
+    });
   }
 
   /**
@@ -631,9 +800,12 @@ public class AsyncYBClient implements AutoCloseable {
    */
   public Deferred<AreLeadersOnPreferredOnlyResponse> getAreLeadersOnPreferredOnly() {
     checkIsClosed();
-    AreLeadersOnPreferredOnlyRequest rpc = new AreLeadersOnPreferredOnlyRequest(this.masterTable);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<AreLeadersOnPreferredOnlyResponse>() {
+      @Override
+      public YRpc<AreLeadersOnPreferredOnlyResponse> newRpc() {
+        return new AreLeadersOnPreferredOnlyRequest(masterTable);
+      }
+    });
   }
 
   /**
@@ -641,9 +813,187 @@ public class AsyncYBClient implements AutoCloseable {
    */
   public Deferred<IsInitDbDoneResponse> getIsInitDbDone() {
     checkIsClosed();
-    IsInitDbDoneRequest rpc = new IsInitDbDoneRequest(this.masterTable);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<IsInitDbDoneResponse>() {
+      @Override
+      public YRpc<IsInitDbDoneResponse> newRpc() {
+        return new IsInitDbDoneRequest(masterTable);
+      }
+    });
+  }
+
+  /**
+   * A condition checked asynchronously, e.g. by sending an RPC.
+   */
+  public interface AsyncCondition {
+    /**
+     * @return a Deferred that yields whether or not the condition holds, or an error if it
+     * couldn't be checked
+     */
+    Deferred<Boolean> check() throws Exception;
+  }
+
+  /**
+   * Waits for a condition to hold, checking it on this client's timer rather than blocking a
+   * thread. Checks are 20ms apart at first and back off to 500ms apart, errors are ignored
+   * unless there are a lot of them.
+   * @param condition the condition to wait for
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the condition held within the timeout, false if the
+   * wait timed out, failed too many times or the client was closed
+   */
+  public Deferred<Boolean> waitForCondition(AsyncCondition condition, long timeoutMs) {
+    checkIsClosed();
+    return new ConditionWaiter(this, condition, timeoutMs).start();
+  }
+
+  /**
+   * Wait for the specific server to come online.
+   * @param hp the HostAndPort of the server
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the server responded to pings in the given time,
+   * false otherwise
+   */
+  public Deferred<Boolean> waitForServer(final HostAndPort hp, long timeoutMs) {
+    return waitForCondition(new AsyncCondition() {
+      @Override
+      public Deferred<Boolean> check() {
+        return ping(hp).addCallback(new Callback<Boolean, PingResponse>() {
+          @Override
+          public Boolean call(PingResponse response) {
+            return true;
+          }
+        });
+      }
+
+      @Override
+      public String toString() {
+        return "server " + hp + " to answer pings";
+      }
+    }, timeoutMs);
+  }
+
+  /**
+   * Wait for the tablet load to be balanced by master leader.
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @param numServers expected number of servers which need to balanced.
+   * @return a Deferred that yields true if the master leader does not return any error balance
+   * check in the given time, false otherwise
+   */
+  public Deferred<Boolean> waitForLoadBalance(long timeoutMs, final int numServers) {
+    return waitForCondition(new AsyncCondition() {
+      @Override
+      public Deferred<Boolean> check() {
+        return getIsLoadBalanced(numServers).addCallback(
+            new Callback<Boolean, IsLoadBalancedResponse>() {
+              @Override
+              public Boolean call(IsLoadBalancedResponse response) {
+                return !response.hasError();
+              }
+            });
+      }
+
+      @Override
+      public String toString() {
+        return "load to be balanced across " + numServers + " servers";
+      }
+    }, timeoutMs);
+  }
+
+  /**
+   * Wait for the load balancer of the master leader to be idle.
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the master leader does not return any error idle
+   * check in the given time, false otherwise
+   */
+  public Deferred<Boolean> waitForLoadBalancerIdle(long timeoutMs) {
+    return waitForCondition(new AsyncCondition() {
+      @Override
+      public Deferred<Boolean> check() {
+        return getIsLoadBalancerIdle().addCallback(
+            new Callback<Boolean, IsLoadBalancerIdleResponse>() {
+              @Override
+              public Boolean call(IsLoadBalancerIdleResponse response) {
+                return !response.hasError();
+              }
+            });
+      }
+
+      @Override
+      public String toString() {
+        return "load balancer to be idle";
+      }
+    }, timeoutMs);
+  }
+
+  /**
+   * Wait for the leader load to be balanced by master leader.
+   * @param timeoutMs the amount of time, in MS, to wait.
+   * @return a Deferred that yields true iff the leader count is balanced within timeoutMs.
+   */
+  public Deferred<Boolean> waitForAreLeadersOnPreferredOnlyCondition(long timeoutMs) {
+    return waitForCondition(new AsyncCondition() {
+      @Override
+      public Deferred<Boolean> check() {
+        return getAreLeadersOnPreferredOnly().addCallback(
+            new Callback<Boolean, AreLeadersOnPreferredOnlyResponse>() {
+              @Override
+              public Boolean call(AreLeadersOnPreferredOnlyResponse response) {
+                return !response.hasError();
+              }
+            });
+      }
+
+      @Override
+      public String toString() {
+        return "leaders to be on preferred zones only";
+      }
+    }, timeoutMs);
+  }
+
+  /**
+   * Wait for the replica count per ts to match the expected one.
+   * @param timeoutMs number of milliseconds before timing out.
+   * @param table the table to wait for load balancing.
+   * @param replicaMapExpected the expected map between cluster uuid and live, read replica count.
+   * @return a Deferred that yields true if the read only replica count for the table matches
+   * the expected within the expected time frame, false otherwise.
+   * @see YBTable#getMemberTypeCountsForEachTSType(long)
+   */
+  public Deferred<Boolean> waitForExpectedReplicaMap(
+      final long timeoutMs, final YBTable table,
+      final Map<String, List<List<Integer>>> replicaMapExpected) {
+    return waitForCondition(new AsyncCondition() {
+      @Override
+      public Deferred<Boolean> check() throws Exception {
+        return table.asyncGetMemberTypeCountsForEachTSType(timeoutMs).addCallback(
+            new Callback<Boolean, Map<String, List<List<Integer>>>>() {
+              @Override
+              public Boolean call(Map<String, List<List<Integer>>> replicaMap) {
+                return replicaMap.equals(replicaMapExpected);
+              }
+            });
+      }
+
+      @Override
+      public String toString() {
+        return "replicas of table " + table.getName() + " to be " + replicaMapExpected;
+      }
+    }, timeoutMs);
+  }
+
+  /**
+   * Quick and dirty error injection on wait based APIs: the next check of a condition fails.
+   */
+  @VisibleForTesting
+  void injectWaitError() {
+    injectWaitError.set(true);
+  }
+
+  /**
+   * @return true if a wait error was injected and not consumed yet, consuming it
+   */
+  boolean consumeInjectedWaitError() {
+    return injectWaitError.get() && injectWaitError.compareAndSet(true, false);
   }
 
   /**
@@ -726,10 +1076,13 @@ public class AsyncYBClient implements AutoCloseable {
    * @param name the name of the table to get a schema of.
    * @return a deferred object that yields the schema of the specified table
    */
-  Deferred<GetTableSchemaResponse> getTableSchema(String keyspace, String name) {
-    GetTableSchemaRequest rpc = new GetTableSchemaRequest(this.masterTable, name, null, keyspace);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+  Deferred<GetTableSchemaResponse> getTableSchema(final String keyspace, final String name) {
+    return sendMasterRead(new MasterRead<GetTableSchemaResponse>() {
+      @Override
+      public YRpc<GetTableSchemaResponse> newRpc() {
+        return new GetTableSchemaRequest(masterTable, name, null, keyspace);
+      }
+    });
   }
 
   /**
@@ -738,9 +1091,12 @@ public class AsyncYBClient implements AutoCloseable {
    * @return a deferred object that yields the schema of the specified table
    */
   Deferred<GetTableSchemaResponse> getTableSchemaByUUID(final String tableUUID) {
-    GetTableSchemaRequest rpc = new GetTableSchemaRequest(this.masterTable, null, tableUUID);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+    return sendMasterRead(new MasterRead<GetTableSchemaResponse>() {
+      @Override
+      public YRpc<GetTableSchemaResponse> newRpc() {
+        return new GetTableSchemaRequest(masterTable, null, tableUUID);
+      }
+    });
   }
 
   /**
@@ -770,11 +1126,44 @@ public class AsyncYBClient implements AutoCloseable {
    * @return a deferred that yields the list of table names
    */
   public Deferred<ListTablesResponse> getTablesList(
-      String nameFilter, boolean excludeSystemTables, String namespace) {
-    ListTablesRequest rpc = new ListTablesRequest(
-      this.masterTable, nameFilter, excludeSystemTables, namespace);
-    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
-    return sendRpcToTablet(rpc);
+      final String nameFilter, final boolean excludeSystemTables, final String namespace) {
+    return sendMasterRead(new MasterRead<ListTablesResponse>() {
+      @Override
+      public YRpc<ListTablesResponse> newRpc() {
+        return new ListTablesRequest(masterTable, nameFilter, excludeSystemTables, namespace);
+      }
+    });
+  }
+
+  /**
+   * Get the namespaces of all the APIs.
+   * @return a deferred that yields the list of namespaces
+   */
+  public Deferred<ListNamespacesResponse> getNamespacesList() {
+    return sendMasterRead(new MasterRead<ListNamespacesResponse>() {
+      @Override
+      public YRpc<ListNamespacesResponse> newRpc() {
+        return new ListNamespacesRequest(masterTable);
+      }
+    });
+  }
+
+  /**
+   * Get the tables of a single namespace that match the given options. Tables that don't match
+   * are dropped while the response is parsed.
+   * @param options the filters to apply, its keyspace is ignored in favor of {@code namespace}
+   * @param namespace the namespace to list the tables of, as returned by
+   *                  {@link #getNamespacesList()}
+   * @return a deferred that yields the list of matching tables
+   */
+  public Deferred<ListTablesResponse> getTablesList(
+      final ListTablesOptions options, final Master.NamespaceIdentifierPB namespace) {
+    return sendMasterRead(new MasterRead<ListTablesResponse>() {
+      @Override
+      public YRpc<ListTablesResponse> newRpc() {
+        return new ListTablesRequest(masterTable, options, namespace);
+      }
+    });
   }
 
   /**
@@ -882,7 +1271,7 @@ public class AsyncYBClient implements AutoCloseable {
     }
 
     @Override
-    ChannelBuffer serialize(Message header) {
+    ChannelBuffer serialize(RpcRequestHeader header) {
       return null;
     }
 
@@ -992,7 +1381,311 @@ public class AsyncYBClient implements AutoCloseable {
     return defaultSocketReadTimeoutMs;
   }
 
+  /**
+   * Get the maximum number of bytes of RPCs written to a connection at once when write
+   * coalescing is enabled.
+   * @return a number of bytes, 0 if write coalescing is disabled
+   */
+  int getWriteCoalescingMaxBytes() {
+    return writeCoalescingMaxBytes;
+  }
+
+  /**
+   * Get the maximum number of RPCs pending or in flight on a single connection.
+   * @return a number of RPCs, 0 if there is no limit
+   */
+  int getMaxRpcsPerConnection() {
+    return maxRpcsPerConnection;
+  }
+
+  /**
+   * Get what is done with RPCs sent to a connection that has no room left for them.
+   * @return the backpressure policy
+   */
+  BackpressurePolicy getBackpressurePolicy() {
+    return backpressurePolicy;
+  }
+
+  /**
+   * Get the pool responses are read into off the heap.
+   * @return the pool, or {@code null} if responses are read onto the heap
+   */
+  DirectBufferPool getDirectBufferPool() {
+    return directBufferPool;
+  }
+
+  /**
+   * Get the policy that decides how long to wait before retrying an RPC.
+   * @return the retry policy
+   */
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * Get the number of times an RPC was scheduled to be retried after a retryable error.
+   * @return the number of retries since this client was created
+   */
+  public long getNumRetries() {
+    return numRetries.get();
+  }
+
+  /**
+   * Get the number of RPCs that failed instead of being retried because the retry budget was
+   * exhausted.
+   * @return the number of rejected retries since this client was created
+   * @see AsyncYBClientBuilder#retryBudget(int, double)
+   */
+  public long getNumRetryBudgetExhausted() {
+    return numRetryBudgetExhausted.get();
+  }
+
+  /**
+   * Get the number of RPCs that were failed by the client because their deadline passed while
+   * waiting for a response.
+   * @return the number of expired RPCs since this client was created
+   * @see AsyncYBClientBuilder#inflightRpcSweepIntervalMs(long)
+   */
+  public long getNumExpiredRpcs() {
+    return numExpiredRpcs.get();
+  }
+
+  /**
+   * Get the number of RPCs that were sent to a connection which already had as many RPCs
+   * pending or in flight as allowed, whatever the backpressure policy did with them.
+   * @return the number of RPCs that hit the limit since this client was created
+   * @see AsyncYBClientBuilder#maxRpcsPerConnection(int, BackpressurePolicy)
+   */
+  public long getNumBackpressuredRpcs() {
+    return numBackpressuredRpcs.get();
+  }
+
+  void recordBackpressuredRpc() {
+    numBackpressuredRpcs.incrementAndGet();
+  }
+
+  /**
+   * Get the number of master reads that were slow enough for a second attempt to be sent.
+   * @return the number of hedges sent since this client was created
+   * @see AsyncYBClientBuilder#hedgeMasterReads(double, long)
+   */
+  public long getNumHedgedRpcs() {
+    return numHedgedRpcs.get();
+  }
+
+  /**
+   * Get the number of hedged master reads that were answered by the second attempt first.
+   * @return the number of hedges that won since this client was created
+   * @see AsyncYBClientBuilder#hedgeMasterReads(double, long)
+   */
+  public long getNumHedgedRpcsWon() {
+    return numHedgedRpcsWon.get();
+  }
+
+  /**
+   * Get the metrics of the RPCs sent by this client.
+   * @return the RPC metrics, which keep being updated
+   */
+  public RpcMetrics getRpcMetrics() {
+    return rpcMetrics;
+  }
+
+  /**
+   * Get the name of the JMX MBean of the RPC metrics.
+   * @return a name, or {@code null} if the metrics aren't registered with JMX
+   * @see AsyncYBClientBuilder#registerRpcMetricsMBean(boolean)
+   */
+  public ObjectName getRpcMetricsObjectName() {
+    return rpcMetricsObjectName;
+  }
+
+  /**
+   * Counts the RPCs awaiting a response on every connection.
+   * @return a map from "host:port#connection" to the number of RPCs in flight, sorted by key
+   */
+  Map<String, Integer> getNumInflightRpcsPerConnection() {
+    return countRpcsPerConnection(false);
+  }
+
+  /**
+   * Counts the RPCs waiting for their connection to be established, on every connection.
+   * @return a map from "host:port#connection" to the number of pending RPCs, sorted by key
+   */
+  Map<String, Integer> getNumPendingRpcsPerConnection() {
+    return countRpcsPerConnection(true);
+  }
+
+  private Map<String, Integer> countRpcsPerConnection(boolean pending) {
+    Map<String, Integer> counts = new TreeMap<>();
+    synchronized (ip2client) {
+      for (Map.Entry<String, TabletClientPool> e : ip2client.entrySet()) {
+        List<TabletClient> clients = e.getValue().getClients();
+        for (int i = 0; i < clients.size(); i++) {
+          TabletClient client = clients.get(i);
+          counts.put(e.getKey() + "#" + i,
+                     pending ? client.getNumPendingRpcs() : client.getNumInflightRpcs());
+        }
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Creates the RPC of an idempotent master read. Hedging sends the same read more than once,
+   * so it needs a new RPC per attempt.
+   */
+  interface MasterRead<R> {
+    YRpc<R> newRpc();
+  }
+
+  /** Number of calls a method needs to have completed before its reads get hedged. */
+  static final int MIN_CALLS_BEFORE_HEDGING = 20;
+
+  /**
+   * Sends an idempotent read to the master leader, hedging it if that's enabled.
+   * @see AsyncYBClientBuilder#hedgeMasterReads(double, long)
+   */
+  <R> Deferred<R> sendMasterRead(MasterRead<R> read) {
+    final YRpc<R> rpc = read.newRpc();
+    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
+    if (masterReadHedgePercentile == 0) {
+      return sendRpcToTablet(rpc);
+    }
+    final long delayMs = getHedgeDelayMs(rpc.serviceName(), rpc.method());
+    if (delayMs < 0) {
+      return sendRpcToTablet(rpc);
+    }
+    return new HedgedMasterRead<R>(read, rpc).send(delayMs);
+  }
+
+  /**
+   * Returns how long to wait for a master read before hedging it, or -1 if the method wasn't
+   * called enough yet to tell what a slow call is.
+   */
+  @VisibleForTesting
+  long getHedgeDelayMs(String serviceName, String methodName) {
+    long percentileMicros = rpcMetrics.forMethod(serviceName, methodName)
+        .getCallLatencyPercentile(masterReadHedgePercentile, MIN_CALLS_BEFORE_HEDGING);
+    if (percentileMicros < 0) {
+      return -1;
+    }
+    return Math.max(masterReadHedgeMinDelayMs, MILLISECONDS.convert(percentileMicros,
+                                                                    TimeUnit.MICROSECONDS));
+  }
+
+  /**
+   * A master read sent a second time if the first attempt is still waiting for an answer after
+   * the hedge delay. The hedge is only sent once the master leader got looked up again, in case
+   * the first attempt is stuck on a former leader, and the read completes with whichever attempt
+   * answers first. It only fails once both attempts failed, with the last error.
+   */
+  private final class HedgedMasterRead<R> implements TimerTask {
+    private final MasterRead<R> read;
+    private final YRpc<R> primary;
+    private final Deferred<R> result = new Deferred<>();
+    private final AtomicBoolean done = new AtomicBoolean();
+    /** Attempts sent and yet to complete. */
+    private final AtomicInteger attempts = new AtomicInteger(1);
+    /** The second attempt, once it's been created. */
+    private volatile YRpc<R> hedge;
+
+    HedgedMasterRead(MasterRead<R> read, YRpc<R> primary) {
+      this.read = read;
+      this.primary = primary;
+    }
+
+    Deferred<R> send(long delayMs) {
+      sendRpcToTablet(primary).addCallbacks(new AttemptCB(false), new AttemptErrback());
+      newTimeout(this, delayMs);
+      return result;
+    }
+
+    @Override
+    public void run(final Timeout timeout) {
+      if (done.get() || closed) {
+        return;
+      }
+      final YRpc<R> hedge = read.newRpc();
+      this.hedge = hedge;
+      // The primary may have completed since the check above, without seeing the hedge to
+      // abandon it.
+      if (done.get()) {
+        return;
+      }
+      if (primary.deadlineTracker.hasDeadline()) {
+        // The hedge shares the deadline of the first attempt.
+        if (primary.deadlineTracker.timedOut()) {
+          return;
+        }
+        hedge.setTimeoutMillis(primary.deadlineTracker.getMillisBeforeDeadline());
+      }
+      attempts.incrementAndGet();
+      numHedgedRpcs.incrementAndGet();
+      AsyncUtil.addCallbacksDeferring(locateTablet(masterTable, null),
+                                      new RetryRpcCB<R, Master.GetTableLocationsResponsePB>(hedge),
+                                      new RetryRpcErrback<R>(hedge))
+          .addCallbacks(new AttemptCB(true), new AttemptErrback());
+    }
+
+    /** Stops retrying the attempts that are still running, their results aren't needed. */
+    private void abandonAttempts() {
+      primary.abandon();
+      YRpc<R> hedge = this.hedge;
+      if (hedge != null) {
+        hedge.abandon();
+      }
+    }
+
+    private final class AttemptCB implements Callback<Object, R> {
+      private final boolean isHedge;
+
+      AttemptCB(boolean isHedge) {
+        this.isHedge = isHedge;
+      }
+
+      @Override
+      public Object call(R response) {
+        if (done.compareAndSet(false, true)) {
+          if (isHedge) {
+            numHedgedRpcsWon.incrementAndGet();
+          }
+          abandonAttempts();
+          result.callback(response);
+        }
+        return null;
+      }
+
+      @Override
+      public String toString() {
+        return "complete hedged master read";
+      }
+    }
+
+    private final class AttemptErrback implements Callback<Object, Exception> {
+      @Override
+      public Object call(Exception e) {
+        if (attempts.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+          result.callback(e);
+        }
+        return null;
+      }
+
+      @Override
+      public String toString() {
+        return "fail hedged master read";
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "hedge " + primary;
+    }
+  }
+
   <R> Deferred<R> sendRpcToTablet(final YRpc<R> request) {
+    if (request.isAbandoned()) {
+      return abandoned(request, null);
+    }
     if (cannotRetryRequest(request)) {
       return tooManyAttemptsOrTimeout(request, null);
     }
@@ -1012,7 +1705,7 @@ public class AsyncYBClient implements AutoCloseable {
     }
 
     if (tablet != null) {
-      TabletClient tabletClient = clientFor(tablet);
+      TabletClient tabletClient = pooledClientFor(clientFor(tablet));
       if (tabletClient != null) {
         request.setTablet(tablet);
         final Deferred<R> d = request.getDeferred();
@@ -1167,6 +1860,9 @@ public class AsyncYBClient implements AutoCloseable {
     if (rpc.deadlineTracker.wouldSleepingTimeout(sleepTime)) {
       return tooManyAttemptsOrTimeout(rpc, null);
     }
+    if (!acquireRetryPermit(rpc)) {
+      return retryBudgetExhausted(rpc, null);
+    }
 
     newTimeout(new RetryTimer(), sleepTime);
     return rpc.getDeferred();
@@ -1209,21 +1905,34 @@ public class AsyncYBClient implements AutoCloseable {
 
 
   long getSleepTimeForRpc(YRpc<?> rpc) {
-    byte attemptCount = rpc.attempt;
-    assert (attemptCount > 0);
-    if (attemptCount == 0) {
+    assert (rpc.attempt > 0);
+    if (rpc.attempt == 0) {
       LOG.warn("Possible bug: attempting to retry an RPC with no attempts. RPC: " + rpc,
           new Exception("Exception created to collect stack trace"));
-      attemptCount = 1;
     }
-    // TODO backoffs? Sleep in increments of 500 ms, plus some random time up to 50
-    long sleepTime = (attemptCount * SLEEP_TIME) + sleepRandomizer.nextInt(50);
+    long sleepTime = retryPolicy.getSleepTimeMs(rpc.retrySleepTimeMs);
+    rpc.retrySleepTimeMs = sleepTime;
     if (LOG.isDebugEnabled()) {
       LOG.debug("Going to sleep for " + sleepTime + " at retry " + rpc.attempt);
     }
     return sleepTime;
   }
 
+  /**
+   * Takes a retry out of the retry budget, if this client has one.
+   * @param rpc the RPC about to be retried
+   * @return whether or not the RPC can be retried
+   */
+  private boolean acquireRetryPermit(YRpc<?> rpc) {
+    if (retryBudget != null && !retryBudget.tryAcquire()) {
+      numRetryBudgetExhausted.incrementAndGet();
+      LOG.debug("Retry budget exhausted, not retrying {}", rpc);
+      return false;
+    }
+    numRetries.incrementAndGet();
+    return true;
+  }
+
   /**
    * Modifying the list returned by this method won't change how AsyncYBClient behaves,
    * but calling certain methods on the returned TabletClients can. For example,
@@ -1234,7 +1943,7 @@ public class AsyncYBClient implements AutoCloseable {
   @VisibleForTesting
   List<TabletClient> getTableClients() {
     synchronized (ip2client) {
-      return new ArrayList<TabletClient>(ip2client.values());
+      return getAllClients();
     }
   }
 
@@ -1246,6 +1955,8 @@ public class AsyncYBClient implements AutoCloseable {
   @VisibleForTesting
   void emptyTabletsCacheForTable(String tableId) {
     tabletsCache.remove(tableId);
+    hashPartitionLocators.remove(tableId);
+    locationsRefreshers.remove(tableId);
     Set<Map.Entry<Slice, RemoteTablet>> tablets = tablet2client.entrySet();
     for (Map.Entry<Slice, RemoteTablet> entry : tablets) {
       if (entry.getValue().getTableId().equals(tableId)) {
@@ -1259,21 +1970,38 @@ public class AsyncYBClient implements AutoCloseable {
       return null;
     }
 
-    synchronized (tablet.tabletServers) {
-      if (tablet.tabletServers.isEmpty()) {
-        return null;
-      }
-      if (tablet.leaderIndex == RemoteTablet.NO_LEADER_INDEX) {
-        // TODO we don't know where the leader is, either because one wasn't provided or because
-        // we couldn't resolve its IP. We'll just send the client back so it retries and probably
-        // dies after too many attempts.
-        return null;
-      } else {
-        // TODO we currently always hit the leader, we probably don't need to except for writes
-        // and some reads.
-        return tablet.tabletServers.get(tablet.leaderIndex);
-      }
+    // No locking needed, the replica set is an immutable snapshot.
+    // If we don't know where the leader is, either because one wasn't provided or because we
+    // couldn't resolve its IP, we'll just send the client back so it retries and probably dies
+    // after too many attempts.
+    // TODO we currently always hit the leader, we probably don't need to except for writes
+    // and some reads.
+    return tablet.getReplicas().getLeader();
+  }
+
+  /**
+   * Picks the connection an RPC to the given client's server goes through. Replica sets hold
+   * one connection per server, picked when the tablet's locations were last refreshed, so the
+   * connection is picked again from the server's pool for every RPC to spread them over all of
+   * its connections. Picking a live connection doesn't take any lock.
+   * @param client the connection held in the tablet's replica set, or null
+   * @return a connection to the same server, or null if {@code client} is null
+   */
+  TabletClient pooledClientFor(TabletClient client) {
+    if (client == null || connectionsPerServer == 1 || client.getHost() == null) {
+      return client;
+    }
+    final TabletClientPool pool = ip2client.get(client.getHost() + ':' + client.getPort());
+    if (pool == null) {
+      return newClient(client.getUuid(), client.getHost(), client.getPort());
+    }
+    final int slot = pool.selectSlot();
+    final TabletClient pooled = pool.get(slot);
+    if (pooled != null && pooled.isAlive()) {
+      return pooled;
     }
+    // Open the slot that was picked, rather than picking again, so that empty slots get filled.
+    return newClient(client.getUuid(), client.getHost(), client.getPort(), slot);
   }
 
   /**
@@ -1308,6 +2036,33 @@ public class AsyncYBClient implements AutoCloseable {
     return Deferred.fromError(e);
   }
 
+  /**
+   * Returns a {@link Deferred} containing an exception when an RPC isn't sent
+   * again because its result isn't wanted anymore.
+   * @param request The RPC that was abandoned.
+   * @param cause What was cause of the last failed attempt, if known.
+   * You can pass {@code null} if the cause is unknown.
+   */
+  static <R> Deferred<R> abandoned(final YRpc<R> request, final YBException cause) {
+    final Exception e = new NonRecoverableException("Abandoned: " + request, cause);
+    request.errback(e);
+    return Deferred.fromError(e);
+  }
+
+  /**
+   * Returns a {@link Deferred} containing an exception when an RPC couldn't
+   * be retried because the client's retry budget was exhausted.
+   * @param request The RPC that couldn't be retried.
+   * @param cause What was cause of the last failed attempt, if known.
+   * You can pass {@code null} if the cause is unknown.
+   */
+  static <R> Deferred<R> retryBudgetExhausted(final YRpc<R> request,
+                                              final YBException cause) {
+    final Exception e = new NonRecoverableException("Retry budget exhausted: " + request, cause);
+    request.errback(e);
+    return Deferred.fromError(e);
+  }
+
   /**
    * Sends a getTableLocations RPC to the master to find the table's tablets.
    * @param table table to lookup
@@ -1315,19 +2070,36 @@ public class AsyncYBClient implements AutoCloseable {
    * @return Deferred to track the progress
    */
   Deferred<Master.GetTableLocationsResponsePB> locateTablet(YBTable table, byte[] partitionKey) {
-    final boolean has_permit = acquireMasterLookupPermit();
     String tableId = table.getTableId();
+    // Only one lookup per range goes to the master, everyone else waits for it to discover the
+    // tablets and then retries from the cache.
+    final TabletLookupKey key = getTabletLookupKey(tableId, partitionKey);
+    final TabletLookup lookup = new TabletLookup(key);
+    TabletLookup inflight;
+    while ((inflight = tabletLookups.putIfAbsent(key, lookup)) != null) {
+      Deferred<Master.GetTableLocationsResponsePB> d = inflight.attach(partitionKey);
+      if (d != null) {
+        return d;
+      }
+      // That lookup completed in the meantime.
+      tabletLookups.remove(key, inflight);
+    }
+
+    final boolean has_permit = acquireMasterLookupPermit();
     if (!has_permit) {
       // If we failed to acquire a permit, it's worth checking if someone
       // looked up the tablet we're interested in.  Every once in a while
       // this will save us a Master lookup.
       RemoteTablet tablet = getTablet(tableId, partitionKey);
       if (tablet != null && clientFor(tablet) != null) {
-        return Deferred.fromResult(null);  // Looks like no lookup needed.
+        // Looks like no lookup needed.
+        return Deferred.<Master.GetTableLocationsResponsePB>fromResult(null).addBoth(lookup);
       }
     }
-    GetTableLocationsRequest rpc =
-        new GetTableLocationsRequest(masterTable, partitionKey, partitionKey, tableId);
+    // A lookup for a range the cache has no tablet for asks for the tablets from the key onwards,
+    // not only the one containing it, to also cover the keys of the callers waiting for it.
+    GetTableLocationsRequest rpc = new GetTableLocationsRequest(
+        masterTable, partitionKey, key.isGap ? null : partitionKey, tableId);
     rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
     final Deferred<Master.GetTableLocationsResponsePB> d;
 
@@ -1342,9 +2114,52 @@ public class AsyncYBClient implements AutoCloseable {
     if (has_permit) {
       d.addBoth(new ReleaseMasterLookupPermit<Master.GetTableLocationsResponsePB>());
     }
+    // Added last so that the waiters only retry once the tablets got discovered.
+    d.addBoth(lookup);
     return d;
   }
 
+  /**
+   * Returns the key under which lookups of the given partition key are shared:
+   * <ul>
+   *   <li>the start key of the cached tablet that contains the key, e.g. one that lost its
+   *   leader, so that the callers of every key of that tablet wait for a single lookup;</li>
+   *   <li>the start of the range of keys without a cached tablet the key falls in, which is the
+   *   whole table when none of its tablets are cached yet. The lookup asks for the tablets from
+   *   the first caller's key onwards. The waiters whose keys it doesn't cover are handed its
+   *   outcome in key order, so when they look their keys up again, those left in the same
+   *   range share a single lookup that starts at the smallest of them.</li>
+   * </ul>
+   */
+  private TabletLookupKey getTabletLookupKey(String tableId, byte[] partitionKey) {
+    if (partitionKey == null || isMasterTable(tableId)) {
+      return new TabletLookupKey(tableId, partitionKey, false);
+    }
+    ConcurrentSkipListMap<byte[], RemoteTablet> tablets = tabletsCache.get(tableId);
+    if (tablets == null) {
+      return new TabletLookupKey(tableId, EMPTY_ARRAY, true);
+    }
+    Map.Entry<byte[], RemoteTablet> floor = tablets.floorEntry(partitionKey);
+    if (floor == null) {
+      return new TabletLookupKey(tableId, EMPTY_ARRAY, true);
+    }
+    Partition partition = floor.getValue().getPartition();
+    if (partition.isEndPartition() ||
+        Bytes.memcmp(partitionKey, partition.getPartitionKeyEnd()) < 0) {
+      return new TabletLookupKey(tableId, partition.getPartitionKeyStart(), false);
+    }
+    // The key is past the end of the closest cached tablet, in a range that isn't cached.
+    return new TabletLookupKey(tableId, partition.getPartitionKeyEnd(), true);
+  }
+
+  /**
+   * Returns the number of master lookups in flight, not counting the callers waiting for them.
+   */
+  @VisibleForTesting
+  int getNumTabletLookupsInFlight() {
+    return tabletLookups.size();
+  }
+
   /**
    * Update the master config: send RPCs to all config members, use the returned data to
    * fill a {@link Master.GetTabletLocationsResponsePB} object.
@@ -1498,12 +2313,20 @@ public class AsyncYBClient implements AutoCloseable {
       }
     }
 
+    if (rpc.isAbandoned()) {
+      abandoned(rpc, ex);
+      return;
+    }
     long sleepTime = getSleepTimeForRpc(rpc);
     if (cannotRetryRequest(rpc) || rpc.deadlineTracker.wouldSleepingTimeout(sleepTime)) {
       tooManyAttemptsOrTimeout(rpc, ex);
       // Don't let it retry.
       return;
     }
+    if (!acquireRetryPermit(rpc)) {
+      retryBudgetExhausted(rpc, ex);
+      return;
+    }
     newTimeout(new RetryTimer(), sleepTime);
   }
 
@@ -1538,6 +2361,104 @@ public class AsyncYBClient implements AutoCloseable {
     }
   };
 
+  /** Orders the callers waiting for a tablet lookup by the key they look up, null first. */
+  private static final Comparator<Pair<byte[], ?>> WAITERS_BY_KEY =
+      new Comparator<Pair<byte[], ?>>() {
+        @Override
+        public int compare(Pair<byte[], ?> a, Pair<byte[], ?> b) {
+          return Bytes.memcmpMaybeNull(a.getFirst(), b.getFirst());
+        }
+      };
+
+  /**
+   * Identifies the master lookups that can be shared, see {@link #getTabletLookupKey}. A null
+   * partition key stands for the whole table.
+   */
+  private static final class TabletLookupKey {
+    final String tableId;
+    final byte[] partitionKey;
+    // Whether the partition key starts a range without any cached tablet, rather than being the
+    // start key of a cached tablet or the key looked up.
+    final boolean isGap;
+
+    TabletLookupKey(String tableId, byte[] partitionKey, boolean isGap) {
+      this.tableId = tableId;
+      this.partitionKey = partitionKey;
+      this.isGap = isGap;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TabletLookupKey)) {
+        return false;
+      }
+      TabletLookupKey other = (TabletLookupKey) o;
+      return tableId.equals(other.tableId) && Arrays.equals(partitionKey, other.partitionKey) &&
+          isGap == other.isGap;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * tableId.hashCode() + Arrays.hashCode(partitionKey)) + (isGap ? 1 : 0);
+    }
+  }
+
+  /**
+   * A master lookup in flight, along with the callers waiting for it. Added as the last callback
+   * of the lookup, it unregisters the lookup and hands its outcome to every waiter.
+   */
+  private final class TabletLookup implements Callback<Master.GetTableLocationsResponsePB,
+      Master.GetTableLocationsResponsePB> {
+    private final TabletLookupKey key;
+    private final long startTimeNanos = System.nanoTime();
+    // The partition key each waiter looks up, and the Deferred it waits on.
+    private List<Pair<byte[], Deferred<Master.GetTableLocationsResponsePB>>> waiters =
+        new ArrayList<>();
+
+    TabletLookup(TabletLookupKey key) {
+      this.key = key;
+    }
+
+    /**
+     * Registers a caller waiting for this lookup.
+     * @param partitionKey the key the caller looks up, can be null
+     * @return a Deferred that completes along with the lookup, or {@code null} if the lookup
+     * already completed
+     */
+    synchronized Deferred<Master.GetTableLocationsResponsePB> attach(byte[] partitionKey) {
+      if (waiters == null) {
+        return null;
+      }
+      Deferred<Master.GetTableLocationsResponsePB> d = new Deferred<>();
+      waiters.add(new Pair<>(partitionKey, d));
+      return d;
+    }
+
+    public Master.GetTableLocationsResponsePB call(final Master.GetTableLocationsResponsePB arg) {
+      tabletLookups.remove(key, this);
+      rpcMetrics.recordMasterLookup(System.nanoTime() - startTimeNanos);
+      final List<Pair<byte[], Deferred<Master.GetTableLocationsResponsePB>>> toNotify;
+      synchronized (this) {
+        toNotify = waiters;
+        waiters = null;
+      }
+      if (key.isGap) {
+        // The waiters the lookup didn't cover look their keys up again right from the callback,
+        // smallest key first, so that the next lookup of each range covers as many as possible.
+        Collections.sort(toNotify, WAITERS_BY_KEY);
+      }
+      for (Pair<byte[], Deferred<Master.GetTableLocationsResponsePB>> waiter : toNotify) {
+        // The argument is an Exception if the lookup failed, which the waiters' errbacks handle.
+        waiter.getSecond().callback(arg);
+      }
+      return arg;
+    }
+
+    public String toString() {
+      return "notify the callers waiting for the tablet lookup of table " + key.tableId;
+    }
+  }
+
   boolean acquireMasterLookupPermit() {
     try {
       // With such a low timeout, the JVM may chose to spin-wait instead of
@@ -1609,6 +2530,162 @@ public class AsyncYBClient implements AutoCloseable {
       // with the same start key in the CSLM in the end
       tablets.put(rt.getPartition().getPartitionKeyStart(), rt);
     }
+
+    if (!isMasterTable(tableId)) {
+      refreshHashPartitionLocator(tableId, tablets);
+      if (tabletLocationsTtlMs > 0) {
+        scheduleTabletLocationsRefresh(table);
+      }
+    }
+  }
+
+  /**
+   * Starts refreshing the tablet locations of the given table in the background, unless that's
+   * already the case. A table keeps its refresher once it has one, see
+   * {@link TabletLocationsRefresher}.
+   * @param table the table to refresh
+   */
+  private void scheduleTabletLocationsRefresh(YBTable table) {
+    TabletLocationsRefresher refresher = new TabletLocationsRefresher(table);
+    if (locationsRefreshers.putIfAbsent(table.getTableId(), refresher) == null) {
+      refresher.schedule();
+    }
+  }
+
+  /**
+   * Locations are refreshed a quarter of their TTL ahead of time, so that a slow master doesn't
+   * make them expire.
+   */
+  private long getTabletLocationsRefreshDelayMs() {
+    return Math.max(1, tabletLocationsTtlMs * 3 / 4);
+  }
+
+  @VisibleForTesting
+  boolean isTabletLocationsRefreshScheduled(String tableId) {
+    TabletLocationsRefresher refresher = locationsRefreshers.get(tableId);
+    return refresher != null && refresher.isScheduled();
+  }
+
+  /**
+   * Periodically refreshes the tablet locations of a table, as long as the table is being used.
+   * A table that wasn't looked up since the previous refresh goes idle: it stays registered but
+   * isn't refreshed anymore, until {@link #getTablet} looks it up again and wakes it up.
+   */
+  private final class TabletLocationsRefresher implements TimerTask {
+    private final YBTable table;
+
+    /** Whether or not the table was looked up since the previous refresh. */
+    private volatile boolean accessed = true;
+
+    /** Whether or not a refresh is pending, false while the table is idle. */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    TabletLocationsRefresher(YBTable table) {
+      this.table = table;
+    }
+
+    void markAccessed() {
+      // Avoid writing to the shared fields on every lookup.
+      if (!accessed) {
+        accessed = true;
+      }
+      if (!scheduled.get()) {
+        schedule();
+      }
+    }
+
+    /** Schedules the next refresh, unless one is pending already. */
+    void schedule() {
+      if (scheduled.compareAndSet(false, true)) {
+        newTimeout(this, getTabletLocationsRefreshDelayMs());
+      }
+    }
+
+    boolean isScheduled() {
+      return scheduled.get();
+    }
+
+    public void run(final Timeout timeout) {
+      final String tableId = table.getTableId();
+      if (closed || locationsRefreshers.get(tableId) != this) {
+        return;
+      }
+      if (!accessed) {
+        LOG.debug("Table {} wasn't used lately, not refreshing its tablet locations", tableId);
+        scheduled.set(false);
+        // A lookup that came in since the check above may have seen a refresh still pending.
+        if (accessed) {
+          schedule();
+        }
+        return;
+      }
+      accessed = false;
+      refreshTabletLocations(table, null).addBoth(new Callback<Object, Object>() {
+        public Object call(final Object arg) {
+          if (arg instanceof Exception) {
+            LOG.warn("Failed to refresh the tablet locations of table " + tableId +
+                     ", will retry later", (Exception) arg);
+          }
+          newTimeout(TabletLocationsRefresher.this, getTabletLocationsRefreshDelayMs());
+          return null;
+        }
+      });
+    }
+
+    public String toString() {
+      return "refresh the tablet locations of table " + table.getName();
+    }
+  }
+
+  /**
+   * Fetches the locations of a table's tablets from the master, one page at a time, and feeds
+   * them to {@link #discoverTablets}. Requests keep using the locations cached so far meanwhile.
+   * @param table the table to refresh
+   * @param startPartitionKey where to start in the table, null to start at the beginning
+   * @return a Deferred that completes once the locations of the whole table were refreshed
+   */
+  private Deferred<Object> refreshTabletLocations(final YBTable table,
+                                                  final byte[] startPartitionKey) {
+    GetTableLocationsRequest rpc =
+        new GetTableLocationsRequest(masterTable, startPartitionKey, null, table.getTableId());
+    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
+    return sendRpcToTablet(rpc).addCallbackDeferring(
+        new Callback<Deferred<Object>, Master.GetTableLocationsResponsePB>() {
+          public Deferred<Object> call(final Master.GetTableLocationsResponsePB response)
+              throws Exception {
+            discoverTablets(table, response);
+            int count = response.getTabletLocationsCount();
+            if (count == 0) {
+              return Deferred.fromResult(null);
+            }
+            byte[] lastEndPartition = ProtobufHelper.pbToPartition(
+                response.getTabletLocations(count - 1).getPartition()).getPartitionKeyEnd();
+            if (lastEndPartition.length == 0 || (startPartitionKey != null &&
+                Bytes.memcmp(lastEndPartition, startPartitionKey) <= 0)) {
+              return Deferred.fromResult(null);
+            }
+            return refreshTabletLocations(table, lastEndPartition);
+          }
+        });
+  }
+
+  /**
+   * Rebuilds the hash partition locator of a table from its current tablets and swaps it in.
+   * Rebuilds for the same table are serialized on its tablets map, so the last one to run always
+   * sees every tablet put in there before it.
+   * @param tableId the table to rebuild the locator for
+   * @param tablets the table's entry in tabletsCache
+   */
+  private void refreshHashPartitionLocator(String tableId,
+                                           ConcurrentSkipListMap<byte[], RemoteTablet> tablets) {
+    synchronized (tablets) {
+      HashPartitionLocator locator = HashPartitionLocator.build(tablets.values());
+      if (locator != null) {
+        hashPartitionLocators.put(tableId, locator);
+      } else {
+        hashPartitionLocators.remove(tableId);
+      }
+    }
   }
 
   RemoteTablet createTabletFromPb(String tableId, Master.TabletLocationsPB tabletPb) {
@@ -1638,6 +2715,23 @@ public class AsyncYBClient implements AutoCloseable {
       return tablets.firstEntry().getValue();
     }
 
+    if (tabletLocationsTtlMs > 0) {
+      TabletLocationsRefresher refresher = locationsRefreshers.get(tableId);
+      if (refresher != null) {
+        refresher.markAccessed();
+      }
+    }
+
+    // Hash partition keys are resolved with a binary search over an int array when the table's
+    // locator is available, other keys go through the skip list below.
+    HashPartitionLocator locator = hashPartitionLocators.get(tableId);
+    if (locator != null) {
+      RemoteTablet tablet = locator.getTablet(partitionKey);
+      if (tablet != null) {
+        return tablet;
+      }
+    }
+
     Map.Entry<byte[], RemoteTablet> tabletPair = tablets.floorEntry(partitionKey);
 
     if (tabletPair == null) {
@@ -1702,20 +2796,37 @@ public class AsyncYBClient implements AutoCloseable {
   }
 
   TabletClient newClient(String uuid, final String host, final int port) {
+    return newClient(uuid, host, port, -1);
+  }
+
+  /**
+   * Returns the connection in the given slot of the server's pool, connecting it if needed.
+   * @param slot the slot of the pool to use, or -1 to select one
+   */
+  private TabletClient newClient(String uuid, final String host, final int port, int slot) {
     final String hostport = host + ':' + port;
     TabletClient client;
     SocketChannel chan;
     synchronized (ip2client) {
-      client = ip2client.get(hostport);
+      TabletClientPool pool = ip2client.get(hostport);
+      if (pool == null) {
+        pool = new TabletClientPool(connectionsPerServer, connectionSelectionPolicy);
+        ip2client.put(hostport, pool);
+      }
+      if (slot < 0) {
+        slot = pool.selectSlot();
+      }
+      client = pool.get(slot);
       if (client != null && client.isAlive()) {
         return client;
       }
       final TabletClientPipeline pipeline = new TabletClientPipeline();
-      client = pipeline.init(uuid);
+      client = pipeline.init(uuid, host, port);
       chan = channelFactory.newChannel(pipeline);
-      ip2client.put(hostport, client);  // This is guaranteed to return null.
+      pool.set(slot, client);
     }
     this.client2tablets.put(client, new ArrayList<RemoteTablet>());
+    startInflightRpcSweeper();
     final SocketChannelConfig config = chan.getConfig();
     config.setConnectTimeoutMillis(5000);
     config.setTcpNoDelay(true);
@@ -1723,6 +2834,11 @@ public class AsyncYBClient implements AutoCloseable {
     // Java since the JRE doesn't expose any way to call setsockopt() with
     // TCP_KEEPIDLE.  And of course the default timeout is >2h. Sigh.
     config.setKeepAlive(true);
+    if (directBufferPool != null) {
+      // Read responses straight into direct buffers, the pool takes over when they have to be
+      // gathered from several reads.
+      config.setBufferFactory(DirectChannelBufferFactory.getInstance());
+    }
     chan.connect(new InetSocketAddress(host, port));  // Won't block.
     return client;
   }
@@ -1778,7 +2894,13 @@ public class AsyncYBClient implements AutoCloseable {
     final class ReleaseResourcesCB implements Callback<ArrayList<Void>, ArrayList<Void>> {
       public ArrayList<Void> call(final ArrayList<Void> arg) {
         LOG.debug("Releasing all remaining resources");
-        timer.stop();
+        for (Timeout timeout : timer.stop()) {
+          // Don't leave the callers of the waitFor* methods hanging.
+          if (timeout.getTask() instanceof ConditionWaiter) {
+            ((ConditionWaiter) timeout.getTask()).cancel();
+          }
+        }
+        unregisterRpcMetricsMBean();
         new ShutdownThread().start();
         return arg;
       }
@@ -1792,6 +2914,10 @@ public class AsyncYBClient implements AutoCloseable {
     return disconnectEverything().addCallback(new ReleaseResourcesCB());
   }
 
+  boolean isClosed() {
+    return closed;
+  }
+
   private void checkIsClosed() {
     if (closed) {
       throw new IllegalStateException("Cannot proceed, the client to " + getMasterAddresses() +
@@ -1805,14 +2931,14 @@ public class AsyncYBClient implements AutoCloseable {
   private Deferred<ArrayList<Void>> disconnectEverything() {
     ArrayList<Deferred<Void>> deferreds =
         new ArrayList<Deferred<Void>>(2);
-    HashMap<String, TabletClient> ip2client_copy;
+    List<TabletClient> clients_copy;
     synchronized (ip2client) {
       // Make a local copy so we can shutdown every Tablet Server clients
       // without hold the lock while we iterate over the data structure.
-      ip2client_copy = new HashMap<String, TabletClient>(ip2client);
+      clients_copy = getAllClients();
     }
 
-    for (TabletClient ts : ip2client_copy.values()) {
+    for (TabletClient ts : clients_copy) {
       deferreds.add(ts.shutdown());
     }
     final int size = deferreds.size();
@@ -1822,18 +2948,18 @@ public class AsyncYBClient implements AutoCloseable {
             // Normally, now that we've shutdown() every client, all our caches should
             // be empty since each shutdown() generates a DISCONNECTED event, which
             // causes TabletClientPipeline to call removeClientFromCache().
-            HashMap<String, TabletClient> logme = null;
+            List<TabletClient> logme = null;
             synchronized (ip2client) {
               if (!ip2client.isEmpty()) {
-                logme = new HashMap<String, TabletClient>(ip2client);
+                logme = getAllClients();
               }
             }
             if (logme != null) {
               // Putting this logging statement inside the synchronized block
-              // can lead to a deadlock, since HashMap.toString() is going to
+              // can lead to a deadlock, since List.toString() is going to
               // call TabletClient.toString() on each entry, and this locks the
               // client briefly.  Other parts of the code lock clients first and
-              // the ip2client HashMap second, so this can easily deadlock.
+              // the ip2client map second, so this can easily deadlock.
               LOG.error("Some clients are left in the client cache and haven't"
                   + " been cleaned up: " + logme);
             }
@@ -1859,8 +2985,8 @@ public class AsyncYBClient implements AutoCloseable {
   private InetSocketAddress slowSearchClientIP(final TabletClient client) {
     String hostport = null;
     synchronized (ip2client) {
-      for (final Map.Entry<String, TabletClient> e : ip2client.entrySet()) {
-        if (e.getValue() == client) {
+      for (final Map.Entry<String, TabletClientPool> e : ip2client.entrySet()) {
+        if (e.getValue().contains(client)) {
           hostport = e.getKey();
           break;
         }
@@ -1868,9 +2994,9 @@ public class AsyncYBClient implements AutoCloseable {
     }
 
     if (hostport == null) {
-      HashMap<String, TabletClient> copy;
+      List<TabletClient> copy;
       synchronized (ip2client) {
-        copy = new HashMap<String, TabletClient>(ip2client);
+        copy = getAllClients();
       }
       LOG.error("WTF?  Should never happen!  Couldn't find " + client
           + " in " + copy);
@@ -1927,12 +3053,18 @@ public class AsyncYBClient implements AutoCloseable {
       return;
     }
 
-    TabletClient old;
+    boolean removed = false;
     synchronized (ip2client) {
-      old = ip2client.remove(hostport);
+      TabletClientPool pool = ip2client.get(hostport);
+      if (pool != null) {
+        removed = pool.remove(client);
+        if (pool.isEmpty()) {
+          ip2client.remove(hostport);
+        }
+      }
     }
     LOG.debug("Removed from IP cache: {" + hostport + "} -> {" + client + "}");
-    if (old == null) {
+    if (!removed) {
       // Currently we're seeing this message when masters are disconnected and the hostport we got
       // above is different than the one the user passes (that we use to populate ip2client). At
       // worst this doubles the entries for masters, which has an insignificant impact.
@@ -1958,6 +3090,18 @@ public class AsyncYBClient implements AutoCloseable {
     }
   }
 
+  /**
+   * Must be called with ip2client synchronized.
+   * @return a copy of all the clients currently in ip2client
+   */
+  private List<TabletClient> getAllClients() {
+    List<TabletClient> clients = new ArrayList<TabletClient>();
+    for (TabletClientPool pool : ip2client.values()) {
+      clients.addAll(pool.getClients());
+    }
+    return clients;
+  }
+
   private boolean isMasterTable(String tableId) {
     // Checking that it's the same instance so there's absolutely no chance of confusing the master
     // 'table' for a user one.
@@ -1977,8 +3121,8 @@ public class AsyncYBClient implements AutoCloseable {
      */
     private boolean disconnected = false;
 
-    TabletClient init(String uuid) {
-      final TabletClient client = new TabletClient(AsyncYBClient.this, uuid);
+    TabletClient init(String uuid, String host, int port) {
+      final TabletClient client = new TabletClient(AsyncYBClient.this, uuid, host, port);
       if (certFile != null) {
         SslHandler sslHandler = this.createSslHandler(certFile);
         if (sslHandler != null) {
@@ -2151,12 +3295,56 @@ public class AsyncYBClient implements AutoCloseable {
     }
   }
 
+  /**
+   * Schedules the {@link InflightRpcSweeper}, unless it's disabled or already running. It's only
+   * started along with the first connection, there's nothing to sweep before that.
+   */
+  private void startInflightRpcSweeper() {
+    if (inflightRpcSweepIntervalMs > 0 && inflightRpcSweeperStarted.compareAndSet(false, true)) {
+      newTimeout(new InflightRpcSweeper(), inflightRpcSweepIntervalMs);
+    }
+  }
+
+  /**
+   * Periodically fails the RPCs in flight on every connection whose deadline passed. Servers
+   * are told about the deadlines, but one that stops answering without closing the connection
+   * would otherwise leave its RPCs waiting until the connection dies.
+   * @see TabletClient#expireTimedOutRpcs
+   */
+  private final class InflightRpcSweeper implements TimerTask {
+    @Override
+    public void run(final Timeout timeout) {
+      if (closed) {
+        return;
+      }
+      final List<TabletClient> clients;
+      synchronized (ip2client) {
+        clients = getAllClients();
+      }
+      int numExpired = 0;
+      for (TabletClient client : clients) {
+        numExpired += client.expireTimedOutRpcs();
+      }
+      if (numExpired > 0) {
+        numExpiredRpcs.addAndGet(numExpired);
+        LOG.debug("Failed {} RPCs whose deadline passed while waiting for a response",
+                  numExpired);
+      }
+      newTimeout(this, inflightRpcSweepIntervalMs);
+    }
+
+    @Override
+    public String toString() {
+      return "sweep the RPCs in flight";
+    }
+  }
+
   /**
    * This class encapsulates the information regarding a tablet and its locations.
    *
    * Leader failover mechanism:
    * When we get a complete peer list from the master, we place the leader in the first
-   * position of the tabletServers array. When we detect that it isn't the leader anymore (in
+   * position of the replica set's servers. When we detect that it isn't the leader anymore (in
    * TabletClient), we demote it and set the next TS in the array as the leader. When the RPC
    * gets retried, it will use that TS since we always pick the leader.
    *
@@ -2167,8 +3355,8 @@ public class AsyncYBClient implements AutoCloseable {
    *
    * Subtleties:
    * We don't keep track of a TS after it disconnects (via removeTabletServer), so if we
-   * haven't contacted one for 10 seconds (socket timeout), it will be removed from the list of
-   * tabletServers. This means that if the leader fails, we only have one other TS to "promote"
+   * haven't contacted one for 10 seconds (socket timeout), it will be removed from the replica
+   * set. This means that if the leader fails, we only have one other TS to "promote"
    * or maybe none at all. This is partly why we then set leaderIndex to NO_LEADER_INDEX.
    *
    * The effect of treating a TS as the new leader means that the Scanner will also try to hit it
@@ -2177,15 +3365,21 @@ public class AsyncYBClient implements AutoCloseable {
    * Unlike the C++ client, we don't short-circuit the call to the master if it isn't available.
    * This means that after trying all the peers to find the leader, we might get stuck waiting on
    * a reachable master.
+   *
+   * Concurrency:
+   * The replicas are published as an immutable {@link ReplicaSet} through a volatile reference.
+   * Routing an RPC is a single volatile read, while every change (refresh from the master,
+   * removal of a disconnected server, leader demotion) builds a new snapshot and swaps it in
+   * under a lock that only writers take.
    */
   public class RemoteTablet implements Comparable<RemoteTablet> {
 
-    private static final int NO_LEADER_INDEX = -1;
     private final String tableId;
     private final Slice tabletId;
-    private final ArrayList<TabletClient> tabletServers = new ArrayList<TabletClient>();
     private final Partition partition;
-    private int leaderIndex = NO_LEADER_INDEX;
+    private volatile ReplicaSet replicas = ReplicaSet.EMPTY;
+    /** Serializes the changes to {@link #replicas}, readers never take it. */
+    private final Object replicasLock = new Object();
 
     RemoteTablet(String tableId, Slice tabletId, Partition partition) {
       this.tabletId = tabletId;
@@ -2195,11 +3389,11 @@ public class AsyncYBClient implements AutoCloseable {
 
     void refreshServers(Master.TabletLocationsPB tabletLocations) throws NonRecoverableException {
 
-      synchronized (tabletServers) { // TODO not a fat lock with IP resolving in it
-        tabletServers.clear();
-        leaderIndex = NO_LEADER_INDEX;
-        List<UnknownHostException> lookupExceptions =
-            new ArrayList<>(tabletLocations.getReplicasCount());
+      synchronized (replicasLock) { // TODO not a fat lock with IP resolving in it
+        int numReplicas = tabletLocations.getReplicasCount();
+        List<TabletClient> servers = new ArrayList<>(numReplicas);
+        List<Common.CloudInfoPB> placements = new ArrayList<>(numReplicas);
+        List<UnknownHostException> lookupExceptions = new ArrayList<>(numReplicas);
         for (Master.TabletLocationsPB.ReplicaPB replica : tabletLocations.getReplicasList()) {
 
           List<Common.HostPortPB> addresses = replica.getTsInfo().getBroadcastAddressesList();
@@ -2216,16 +3410,21 @@ public class AsyncYBClient implements AutoCloseable {
           // TODO: if the TS advertises multiple host/ports, pick the right one
           // based on some kind of policy. For now just use the first always.
           try {
-            addTabletClient(uuid, addresses.get(0).getHost(), addresses.get(0).getPort(),
-                replica.getRole().equals(Metadata.RaftPeerPB.Role.LEADER));
+            TabletClient client =
+                addTabletClient(uuid, addresses.get(0).getHost(), addresses.get(0).getPort());
+            Common.CloudInfoPB placement = replica.getTsInfo().getCloudInfo();
+            if (replica.getRole().equals(Metadata.RaftPeerPB.Role.LEADER)) {
+              servers.add(0, client);
+              placements.add(0, placement);
+            } else {
+              servers.add(client);
+              placements.add(placement);
+            }
           } catch (UnknownHostException ex) {
             lookupExceptions.add(ex);
           }
         }
-        leaderIndex = 0;
-        if (leaderIndex == NO_LEADER_INDEX) {
-          LOG.warn("No leader provided for tablet " + getTabletIdAsString());
-        }
+        replicas = new ReplicaSet(servers, placements, 0);
 
         // If we found a tablet that doesn't contain a single location that we can resolve, there's
         // no point in retrying.
@@ -2237,8 +3436,14 @@ public class AsyncYBClient implements AutoCloseable {
       }
     }
 
-    // Must be called with tabletServers synchronized
-    void addTabletClient(String uuid, String host, int port, boolean isLeader)
+    /**
+     * Gets a client for the given server and registers this tablet with it, so that the
+     * tablet forgets about the server if it disconnects.
+     * Must be called with replicasLock held until the client is published in {@link #replicas},
+     * so that a concurrent removeTabletServer() sees it.
+     * @return the client to add to the replica set
+     */
+    TabletClient addTabletClient(String uuid, String host, int port)
         throws UnknownHostException {
       String ip = getIP(host);
       if (ip == null) {
@@ -2251,17 +3456,12 @@ public class AsyncYBClient implements AutoCloseable {
       if (tablets == null) {
         // We raced with removeClientFromCache and lost. The client we got was just disconnected.
         // Reconnect.
-        addTabletClient(uuid, host, port, isLeader);
-      } else {
-        synchronized (tablets) {
-          if (isLeader) {
-            tabletServers.add(0, client);
-          } else {
-            tabletServers.add(client);
-          }
-          tablets.add(this);
-        }
+        return addTabletClient(uuid, host, port);
       }
+      synchronized (tablets) {
+        tablets.add(this);
+      }
+      return client;
     }
 
     @Override
@@ -2276,20 +3476,13 @@ public class AsyncYBClient implements AutoCloseable {
      * @return True if this method removed ts from the list, else false.
      */
     boolean removeTabletServer(TabletClient ts) {
-      synchronized (tabletServers) {
-        // TODO unit test for this once we have the infra
-        int index = tabletServers.indexOf(ts);
+      synchronized (replicasLock) {
+        ReplicaSet current = replicas;
+        int index = current.indexOf(ts);
         if (index == -1) {
           return false; // we removed it already
         }
-
-        tabletServers.remove(index);
-        if (leaderIndex == index && leaderIndex == tabletServers.size()) {
-          leaderIndex = NO_LEADER_INDEX;
-        } else if (leaderIndex > index) {
-          leaderIndex--; // leader moved down the list
-        }
-
+        replicas = current.withoutServer(index);
         return true;
         // TODO if we reach 0 TS, maybe we should remove ourselves?
       }
@@ -2302,24 +3495,37 @@ public class AsyncYBClient implements AutoCloseable {
      * @param ts A TabletClient that gave a sign that it isn't this tablet's leader.
      */
     void demoteLeader(TabletClient ts) {
-      synchronized (tabletServers) {
-        int index = tabletServers.indexOf(ts);
+      synchronized (replicasLock) {
+        ReplicaSet current = replicas;
+        int index = current.indexOf(ts);
         // If this TS was removed or we're already forcing a call to the master (meaning someone
         // else beat us to it), then we just noop.
-        if (index == -1 || leaderIndex == NO_LEADER_INDEX) {
+        if (index == -1 || current.getLeaderIndex() == ReplicaSet.NO_LEADER_INDEX) {
           return;
         }
 
-        if (leaderIndex == index) {
-          if (leaderIndex + 1 == tabletServers.size()) {
-            leaderIndex = NO_LEADER_INDEX;
-          } else {
-            leaderIndex++;
-          }
+        if (current.getLeaderIndex() == index) {
+          replicas = current.withNextLeader();
         }
       }
     }
 
+    /**
+     * Returns the current replicas of this tablet. The returned snapshot never changes, later
+     * changes are only visible through a new call.
+     * @return the current replica set
+     */
+    ReplicaSet getReplicas() {
+      return replicas;
+    }
+
+    @VisibleForTesting
+    void setReplicas(ReplicaSet replicas) {
+      synchronized (replicasLock) {
+        this.replicas = replicas;
+      }
+    }
+
     public String getTableId() {
       return tableId;
     }
@@ -2388,6 +3594,8 @@ public class AsyncYBClient implements AutoCloseable {
     private static final int DEFAULT_MASTER_PORT = 7100;
     private static final int DEFAULT_BOSS_COUNT = 1;
     private static final int DEFAULT_WORKER_COUNT = 2 * Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_CONNECTIONS_PER_SERVER = 1;
+    private static final long DEFAULT_INFLIGHT_RPC_SWEEP_INTERVAL_MS = 100;
 
     private final List<HostAndPort> masterAddresses;
     private long defaultAdminOperationTimeoutMs = DEFAULT_OPERATION_TIMEOUT_MS;
@@ -2396,6 +3604,22 @@ public class AsyncYBClient implements AutoCloseable {
 
     private String certFile = null;
 
+    private int connectionsPerServer = DEFAULT_CONNECTIONS_PER_SERVER;
+    private ConnectionSelectionPolicy connectionSelectionPolicy =
+        ConnectionSelectionPolicy.LEAST_IN_FLIGHT;
+    private int writeCoalescingMaxBytes = 0;
+    private long tabletLocationsTtlMs = 0;
+    private RetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy();
+    private int retryBudgetMaxTokens = 0;
+    private double retryBudgetTokensPerSecond = 0;
+    private boolean registerRpcMetricsMBean = false;
+    private long inflightRpcSweepIntervalMs = DEFAULT_INFLIGHT_RPC_SWEEP_INTERVAL_MS;
+    private int maxRpcsPerConnection = 0;
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.REJECT;
+    private double masterReadHedgePercentile = 0;
+    private long masterReadHedgeMinDelayMs = 0;
+    private long directBufferPoolMaxBytes = 0;
+
     private Executor bossExecutor;
     private Executor workerExecutor;
     private int bossCount = DEFAULT_BOSS_COUNT;
@@ -2488,6 +3712,197 @@ public class AsyncYBClient implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets the number of connections to open to each tablet server and master. Every connection
+     * has its own socket and is served by one of the Netty worker threads, so more connections
+     * let busy servers be driven by more than one IO thread.
+     * Optional.
+     * If not provided, defaults to 1.
+     * @param connectionsPerServer the maximum number of connections per server
+     * @return this builder
+     */
+    public AsyncYBClientBuilder connectionsPerServer(int connectionsPerServer) {
+      Preconditions.checkArgument(connectionsPerServer > 0,
+          "connectionsPerServer should be greater than 0");
+      this.connectionsPerServer = connectionsPerServer;
+      return this;
+    }
+
+    /**
+     * Sets how a connection is picked among the connections to the same server. Only relevant
+     * when {@link #connectionsPerServer(int)} is greater than 1.
+     * Optional.
+     * If not provided, defaults to {@link ConnectionSelectionPolicy#LEAST_IN_FLIGHT}.
+     * @param policy the connection selection policy
+     * @return this builder
+     */
+    public AsyncYBClientBuilder connectionSelectionPolicy(ConnectionSelectionPolicy policy) {
+      Preconditions.checkNotNull(policy, "policy should not be null");
+      this.connectionSelectionPolicy = policy;
+      return this;
+    }
+
+    /**
+     * Enables write coalescing. RPCs sent from application threads are queued, and the IO thread
+     * of their connection writes everything that was queued in the meantime with a single
+     * gathering write of up to {@code maxBytes}, instead of one write per RPC. This trades a
+     * little latency for far fewer system calls when many small RPCs go to the same server.
+     * Optional.
+     * If not provided, defaults to 0.
+     * A value of 0 disables write coalescing.
+     * @param maxBytes the maximum number of bytes to write at once
+     * @return this builder
+     */
+    public AsyncYBClientBuilder writeCoalescingMaxBytes(int maxBytes) {
+      Preconditions.checkArgument(maxBytes >= 0, "maxBytes should not be negative");
+      this.writeCoalescingMaxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Enables the background refresh of tablet locations. The locations of every table that is
+     * being used are fetched again from the master before they get older than {@code ttlMs},
+     * while requests keep using the cached ones. Leader moves are then usually picked up before
+     * requests get sent to the former leader.
+     * Optional.
+     * If not provided, defaults to 0.
+     * A value of 0 disables the background refresh: locations are only fetched again once a
+     * request fails because of them.
+     * @param ttlMs the maximum age of the tablet locations of a table in use, in milliseconds
+     * @return this builder
+     */
+    public AsyncYBClientBuilder tabletLocationsTtlMs(long ttlMs) {
+      Preconditions.checkArgument(ttlMs >= 0, "ttlMs should not be negative");
+      this.tabletLocationsTtlMs = ttlMs;
+      return this;
+    }
+
+    /**
+     * Sets the policy that decides how long to wait before retrying an RPC that failed with a
+     * retryable error, e.g. because the master leader or a tablet leader moved.
+     * Optional.
+     * If not provided, defaults to an {@link ExponentialBackoffRetryPolicy} with its default
+     * base and maximum sleep times.
+     * @param retryPolicy the retry policy
+     * @return this builder
+     */
+    public AsyncYBClientBuilder retryPolicy(RetryPolicy retryPolicy) {
+      Preconditions.checkNotNull(retryPolicy, "retryPolicy should not be null");
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Limits how many retries the client makes. Every retry takes a token out of a bucket that
+     * holds up to {@code maxTokens} tokens and is refilled at {@code tokensPerSecond}. Once the
+     * bucket is empty, RPCs that would have been retried fail right away.
+     * Optional.
+     * If not provided, retries are only limited by the RPCs' timeouts and maximum attempts.
+     * @param maxTokens how many retries can be made in a burst
+     * @param tokensPerSecond how many retries per second can be sustained
+     * @return this builder
+     */
+    public AsyncYBClientBuilder retryBudget(int maxTokens, double tokensPerSecond) {
+      Preconditions.checkArgument(maxTokens > 0, "maxTokens should be greater than 0");
+      Preconditions.checkArgument(tokensPerSecond >= 0, "tokensPerSecond should not be negative");
+      this.retryBudgetMaxTokens = maxTokens;
+      this.retryBudgetTokensPerSecond = tokensPerSecond;
+      return this;
+    }
+
+    /**
+     * Sets how often the client looks for RPCs whose deadline passed while waiting for a
+     * response, and fails them. RPCs wait at most this much longer than their timeout, even when
+     * a server stops answering without closing its connection.
+     * Optional.
+     * If not provided, defaults to 100ms.
+     * A value of 0 disables the sweeps: RPCs in flight only fail once a response arrives or
+     * their connection is closed, e.g. by the socket read timeout.
+     * @param intervalMs the time between two sweeps, in milliseconds
+     * @return this builder
+     */
+    public AsyncYBClientBuilder inflightRpcSweepIntervalMs(long intervalMs) {
+      Preconditions.checkArgument(intervalMs >= 0, "intervalMs should not be negative");
+      this.inflightRpcSweepIntervalMs = intervalMs;
+      return this;
+    }
+
+    /**
+     * Limits the number of RPCs pending or in flight on a single connection, so that RPCs don't
+     * pile up in memory while a server is slow or restarting. RPCs sent past the limit are
+     * handled according to {@code policy}.
+     * Optional.
+     * If not provided, the number of RPCs per connection isn't limited.
+     * A value of 0 removes the limit.
+     * @param maxRpcs the maximum number of RPCs waiting for a connection or for a response
+     * @param policy what to do with the RPCs sent past the limit
+     * @return this builder
+     */
+    public AsyncYBClientBuilder maxRpcsPerConnection(int maxRpcs, BackpressurePolicy policy) {
+      Preconditions.checkArgument(maxRpcs >= 0, "maxRpcs should not be negative");
+      Preconditions.checkNotNull(policy, "policy should not be null");
+      this.maxRpcsPerConnection = maxRpcs;
+      this.backpressurePolicy = policy;
+      return this;
+    }
+
+    /**
+     * Hedges the idempotent reads sent to the master leader, such as listing the tablet servers
+     * or getting the cluster config: when a read takes longer than {@code percentile} of the
+     * previous calls of the same method, it is sent again after looking up the master leader
+     * anew, and completes with whichever attempt answers first. This keeps a single slow master,
+     * e.g. one stuck in a GC pause, from stalling every caller polling it.
+     * Hedging only starts once a method completed a few calls, since until then there's no
+     * telling what a slow call is.
+     * Optional.
+     * If not provided, master reads aren't hedged.
+     * A percentile of 0 disables hedging.
+     * @param percentile the percentile of the call latency after which a read is hedged,
+     *                   between 0 and 100, e.g. 99
+     * @param minDelayMs the minimum time to wait before hedging a read, in milliseconds
+     * @return this builder
+     */
+    public AsyncYBClientBuilder hedgeMasterReads(double percentile, long minDelayMs) {
+      Preconditions.checkArgument(percentile >= 0 && percentile < 100,
+                                  "percentile should be between 0 and 100");
+      Preconditions.checkArgument(minDelayMs >= 0, "minDelayMs should not be negative");
+      this.masterReadHedgePercentile = percentile;
+      this.masterReadHedgeMinDelayMs = minDelayMs;
+      return this;
+    }
+
+    /**
+     * Reads responses into direct buffers rather than onto the heap. Responses too large to
+     * arrive in a single read are gathered into buffers from a pool, which keeps up to
+     * {@code maxPooledBytes} of them around for reuse, and CDC changes are kept there until
+     * they are first accessed, see {@link GetChangesResponse}. This takes most of the garbage
+     * collection load of large responses off of clients with small heaps.
+     * Optional.
+     * If not provided, responses are read onto the heap.
+     * A value of 0 disables direct buffers.
+     * @param maxPooledBytes the maximum number of bytes kept in the pool for reuse
+     * @return this builder
+     */
+    public AsyncYBClientBuilder directBufferPool(long maxPooledBytes) {
+      Preconditions.checkArgument(maxPooledBytes >= 0, "maxPooledBytes should not be negative");
+      this.directBufferPoolMaxBytes = maxPooledBytes;
+      return this;
+    }
+
+    /**
+     * Registers the client's {@link RpcMetrics} with the platform MBean server, so that they can
+     * be read over JMX. They are unregistered when the client is shut down. Metrics are collected
+     * either way, and can always be read with {@link AsyncYBClient#getRpcMetrics()}.
+     * Optional.
+     * If not provided, defaults to false.
+     * @param register whether or not to register the metrics with JMX
+     * @return this builder
+     */
+    public AsyncYBClientBuilder registerRpcMetricsMBean(boolean register) {
+      this.registerRpcMetricsMBean = register;
+      return this;
+    }
+
     /**
      * Set the executors which will be used for the embedded Netty boss and workers.
      * Optional.
@@ -0,0 +1,41 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * What {@link AsyncYBClient} does with an RPC to send on a connection that already has as many
+ * RPCs pending or in flight as allowed.
+ * @see AsyncYBClient.AsyncYBClientBuilder#maxRpcsPerConnection(int, BackpressurePolicy)
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public enum BackpressurePolicy {
+  /** Fail the RPC right away with a {@link ConnectionBusyException}. */
+  REJECT,
+
+  /**
+   * Hold the RPC until an RPC completes or the RPC's deadline passes. The sending thread doesn't
+   * block: held RPCs are queued on the connection and sent in order as room frees up.
+   */
+  BLOCK,
+
+  /**
+   * Retry the RPC later with the client's {@link RetryPolicy}, like after a retryable server
+   * error. RPCs that aren't sent to a tablet can't be retried and are rejected.
+   */
+  RETRY
+}
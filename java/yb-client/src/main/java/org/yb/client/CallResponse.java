@@ -31,10 +31,14 @@
 //
 package org.yb.client;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
+import com.google.protobuf.CodedInputStream;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.rpc.RpcHeader;
+import org.yb.util.DirectBufferPool;
+import org.yb.util.DirectSlice;
 import org.yb.util.Slice;
 
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -42,15 +46,30 @@ import org.jboss.netty.buffer.ChannelBuffer;
 /**
  * This class handles information received from an RPC response, providing
  * access to sidecars and decoded protobufs from the message.
+ * <p>
+ * Protobufs are parsed through {@link CodedInputStream} views over the response
+ * buffer, so the main message is never copied out of the buffer before parsing,
+ * even when the buffer isn't backed by an array.
+ * <p>
+ * When the client has a {@link DirectBufferPool}, a message that is spread over
+ * several buffers (e.g. a large response that arrived in several reads) is
+ * gathered into a pooled direct buffer instead of a new heap array, and
+ * {@link #release()} has to be called once the response is parsed.
  */
 @InterfaceAudience.Private
 final class CallResponse {
   private final ChannelBuffer buf;
+  private final DirectBufferPool pool;
   private final RpcHeader.ResponseHeader header;
   private final int totalResponseSize;
 
-  // Non-header main message slice is generated upon request and cached.
-  private Slice message = null;
+  // Position and size in 'buf' of everything after the header (main message and sidecars),
+  // read upon request and cached.
+  private int messageIndex = -1;
+  private int messageLength;
+
+  // Pooled copy of everything after the header, made upon request when 'buf' is composite.
+  private DirectSlice directMessage;
 
   /**
    * Performs some sanity checks on the sizes recorded in the packet
@@ -66,7 +85,17 @@ final class CallResponse {
    * the amount of bytes specified by its length prefix.
    */
   public CallResponse(final ChannelBuffer buf) {
+    this(buf, null);
+  }
+
+  /**
+   * Same as {@link #CallResponse(ChannelBuffer)}, gathering fragmented messages
+   * into buffers from the given pool.
+   * @param pool the pool to allocate from, or {@code null} to copy onto the heap
+   */
+  CallResponse(final ChannelBuffer buf, final DirectBufferPool pool) {
     this.buf = buf;
+    this.pool = pool;
 
     this.totalResponseSize = buf.readInt();
     if (this.totalResponseSize > 0) {
@@ -74,9 +103,12 @@ final class CallResponse {
       TabletClient.ensureReadable(buf, this.totalResponseSize);
 
       final int headerSize = Bytes.readVarInt32(buf);
-      final Slice headerSlice = nextBytes(buf, headerSize);
+      YRpc.checkArrayLength(buf, headerSize);
+      TabletClient.ensureReadable(buf, headerSize);
       RpcHeader.ResponseHeader.Builder builder = RpcHeader.ResponseHeader.newBuilder();
-      YRpc.readProtobuf(headerSlice, builder);
+      YRpc.readProtobuf(newCodedInputStream(buf, buf.readerIndex(), headerSize), headerSize,
+                        builder);
+      buf.skipBytes(headerSize);
       this.header = builder.build();
     } else {
       this.header = null;
@@ -100,24 +132,75 @@ final class CallResponse {
   public int getTotalResponseSize() { return this.totalResponseSize; }
 
   /**
-   * @return A slice pointing to the section of the packet reserved for the main
-   * protobuf message.
+   * @return A stream reading the main protobuf message directly from the response
+   * buffer, without copying it.
    * @throws IllegalArgumentException If the recorded size for the main message
    * is not within reasonable limits as defined by
    * {@link YRpc#checkArrayLength(ChannelBuffer, long)}.
    * @throws IllegalStateException If the offset for the main protobuf message
    * is not valid.
    */
-  public Slice getPBMessage() {
+  CodedInputStream getPBMessageStream() {
+    final int mainLength = getPBMessageLength();
+    if (this.pool != null && isFragmented(this.buf, this.messageIndex, mainLength)) {
+      if (this.directMessage == null) {
+        this.directMessage = copyToDirectSlice(this.messageIndex, this.messageLength);
+      }
+      return CodedInputStream.newInstance(this.directMessage.toByteBuffer(0, mainLength));
+    }
+    return newCodedInputStream(this.buf, this.messageIndex, mainLength);
+  }
+
+  /**
+   * @return A pooled copy of the main protobuf message, that the caller owns and
+   * has to release. Unlike the response buffer, it can be held onto without
+   * taking space on the heap.
+   * @throws IllegalStateException If the response has no pool to allocate from,
+   * or if the offset for the main protobuf message is not valid.
+   */
+  DirectSlice getPBMessageDirectSlice() {
+    if (this.pool == null) {
+      throw new IllegalStateException("No direct buffer pool to copy the message to");
+    }
+    return copyToDirectSlice(this.messageIndex, getPBMessageLength());
+  }
+
+  /**
+   * @return the pool fragmented messages are gathered into, or {@code null}
+   */
+  DirectBufferPool getDirectBufferPool() {
+    return this.pool;
+  }
+
+  /**
+   * Gives back the pooled buffer the message may have been gathered into. Streams
+   * returned by {@link #getPBMessageStream()} can't be read afterwards.
+   */
+  void release() {
+    if (this.directMessage != null) {
+      this.directMessage.release();
+      this.directMessage = null;
+    }
+  }
+
+  /**
+   * @return The size of the main protobuf message.
+   * @throws IllegalArgumentException If the recorded size for the main message
+   * is not within reasonable limits as defined by
+   * {@link YRpc#checkArrayLength(ChannelBuffer, long)}.
+   * @throws IllegalStateException If the offset for the main protobuf message
+   * is not valid.
+   */
+  int getPBMessageLength() {
     cacheMessage();
     final int mainLength = this.header.getSidecarOffsetsCount() == 0 ?
-        this.message.length() : this.header.getSidecarOffsets(0);
-    if (mainLength < 0 || mainLength > this.message.length()) {
+        this.messageLength : this.header.getSidecarOffsets(0);
+    if (mainLength < 0 || mainLength > this.messageLength) {
       throw new IllegalStateException("Main protobuf message invalid. "
           + "Length is " + mainLength + " while the size of the message "
-          + "excluding the header is " + this.message.length());
+          + "excluding the header is " + this.messageLength);
     }
-    return subslice(this.message, 0, mainLength);
+    return mainLength;
   }
 
   /**
@@ -142,44 +225,68 @@ final class CallResponse {
 
     final int prevOffset = sidecarList.get(sidecar);
     final int nextOffset = sidecar + 1 == sidecarList.size() ?
-        this.message.length() : sidecarList.get(sidecar + 1);
+        this.messageLength : sidecarList.get(sidecar + 1);
     final int length = nextOffset - prevOffset;
 
-    if (prevOffset < 0 || length < 0 || prevOffset + length > this.message.length()) {
+    if (prevOffset < 0 || length < 0 || prevOffset + length > this.messageLength) {
       throw new IllegalStateException("Sidecar " + sidecar + " invalid "
           + "(offset = " + prevOffset + ", length = " + length + "). The size "
-          + "of the message " + "excluding the header is " + this.message.length());
+          + "of the message " + "excluding the header is " + this.messageLength);
     }
 
-    return subslice(this.message, prevOffset, length);
+    return slice(this.messageIndex + prevOffset, length);
   }
 
-  // Reads the message after the header if not read yet
+  // Locates the message after the header if not done yet.
   private void cacheMessage() {
-    if (this.message != null) return;
+    if (this.messageIndex >= 0) return;
     final int length = Bytes.readVarInt32(buf);
-    this.message = nextBytes(buf, length);
+    YRpc.checkArrayLength(buf, length);
+    TabletClient.ensureReadable(buf, length);
+    this.messageIndex = buf.readerIndex();
+    this.messageLength = length;
+    buf.skipBytes(length);
   }
 
-  // Accounts for a parent slice's offset when making a new one with relative offsets.
-  private static Slice subslice(Slice parent, int offset, int length) {
-    return new Slice(parent.getRawArray(), parent.getRawOffset() + offset, length);
+  // Generates a slice for the 'length' bytes of 'buf' starting at 'index'.
+  private Slice slice(final int index, final int length) {
+    if (buf.hasArray()) {  // Zero copy.
+      return new Slice(buf.array(), buf.arrayOffset() + index, length);
+    }
+    // We have to copy the payload out of the buffer :(
+    final byte[] payload = new byte[length];
+    buf.getBytes(index, payload);
+    return new Slice(payload);
   }
 
-  // After checking the length, generates a slice for the next 'length'
-  // bytes of 'buf'.
-  private static Slice nextBytes(final ChannelBuffer buf, final int length) {
-    YRpc.checkArrayLength(buf, length);
-    byte[] payload;
-    int offset;
-    if (buf.hasArray()) {  // Zero copy.
-      payload = buf.array();
-      offset = buf.arrayOffset() + buf.readerIndex();
-    } else {  // We have to copy the entire payload out of the buffer :(
-      payload = new byte[length];
-      buf.readBytes(payload);
-      offset = 0;
+  // Copies the 'length' bytes of 'buf' starting at 'index' into a new slice from the pool,
+  // one component at a time so that composite buffers don't get copied onto the heap first.
+  private DirectSlice copyToDirectSlice(final int index, final int length) {
+    final DirectSlice slice = this.pool.allocate(length);
+    int offset = 0;
+    for (ByteBuffer component : this.buf.toByteBuffers(index, length)) {
+      final int size = component.remaining();
+      slice.setBytes(offset, component);
+      offset += size;
+    }
+    return slice;
+  }
+
+  // Whether or not the 'length' bytes of 'buf' starting at 'index' span several buffers.
+  private static boolean isFragmented(final ChannelBuffer buf,
+                                      final int index,
+                                      final int length) {
+    return !buf.hasArray() && buf.toByteBuffers(index, length).length > 1;
+  }
+
+  // Creates a stream over the 'length' bytes of 'buf' starting at 'index'. Buffers backed by
+  // an array or a single NIO buffer are read in place, composite buffers may get copied.
+  private static CodedInputStream newCodedInputStream(final ChannelBuffer buf,
+                                                      final int index,
+                                                      final int length) {
+    if (buf.hasArray()) {
+      return CodedInputStream.newInstance(buf.array(), buf.arrayOffset() + index, length);
     }
-    return new Slice(payload, offset, length);
+    return CodedInputStream.newInstance(buf.toByteBuffer(index, length));
   }
 }
@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -58,7 +57,7 @@ class ChangeConfigRequest extends YRpc<ChangeConfigResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Consensus.ChangeConfigRequestPB.Builder builder =
       Consensus.ChangeConfigRequestPB.newBuilder();
@@ -108,7 +107,7 @@ class ChangeConfigRequest extends YRpc<ChangeConfigResponse> {
                                                  String masterUUID) throws Exception {
     final Consensus.ChangeConfigResponsePB.Builder respBuilder =
       Consensus.ChangeConfigResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     ChangeConfigResponse response =
       new ChangeConfigResponse(deadlineTracker.getElapsedMillis(),
@@ -18,8 +18,6 @@ import org.yb.annotations.InterfaceAudience;
 import org.yb.master.Master;
 import org.yb.util.Pair;
 
-import com.google.protobuf.Message;
-
 @InterfaceAudience.Public
 class ChangeEncryptionInfoRequest extends YRpc<ChangeEncryptionInfoResponse> {
   private String encryptionKeyFile;
@@ -32,7 +30,7 @@ class ChangeEncryptionInfoRequest extends YRpc<ChangeEncryptionInfoResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.ChangeEncryptionInfoRequestPB.Builder builder =
       Master.ChangeEncryptionInfoRequestPB.newBuilder()
@@ -56,7 +54,7 @@ class ChangeEncryptionInfoRequest extends YRpc<ChangeEncryptionInfoResponse> {
       CallResponse callResponse, String uuid) throws Exception {
     final Master.ChangeEncryptionInfoResponsePB.Builder respBuilder =
       Master.ChangeEncryptionInfoResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasError = respBuilder.hasError();
     ChangeEncryptionInfoResponse response =
         new ChangeEncryptionInfoResponse(deadlineTracker.getElapsedMillis(), uuid,
@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -39,7 +38,7 @@ class ChangeLoadBalancerStateRequest extends YRpc<ChangeLoadBalancerStateRespons
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.ChangeLoadBalancerStateRequestPB.Builder builder =
       Master.ChangeLoadBalancerStateRequestPB.newBuilder();
@@ -61,7 +60,7 @@ class ChangeLoadBalancerStateRequest extends YRpc<ChangeLoadBalancerStateRespons
                                                  String masterUUID) throws Exception {
     final Master.ChangeLoadBalancerStateResponsePB.Builder respBuilder =
         Master.ChangeLoadBalancerStateResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     ChangeLoadBalancerStateResponse response =
       new ChangeLoadBalancerStateResponse(
@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -39,7 +38,7 @@ class ChangeMasterClusterConfigRequest extends YRpc<ChangeMasterClusterConfigRes
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.ChangeMasterClusterConfigRequestPB.Builder builder =
       Master.ChangeMasterClusterConfigRequestPB.newBuilder();
@@ -61,7 +60,7 @@ class ChangeMasterClusterConfigRequest extends YRpc<ChangeMasterClusterConfigRes
                                                  String masterUUID) throws Exception {
     final Master.ChangeMasterClusterConfigResponsePB.Builder respBuilder =
       Master.ChangeMasterClusterConfigResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     ChangeMasterClusterConfigResponse response =
       new ChangeMasterClusterConfigResponse(deadlineTracker.getElapsedMillis(),
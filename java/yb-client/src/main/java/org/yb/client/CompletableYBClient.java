@@ -0,0 +1,512 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.net.HostAndPort;
+import com.stumbleupon.async.Deferred;
+import org.yb.Schema;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+import org.yb.master.Master;
+import org.yb.util.AsyncUtil;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * An asynchronous client for YB whose operations return {@link CompletableFuture}s.
+ * <p>
+ * This class acts as a wrapper around {@link AsyncYBClient}, for callers who compose operations
+ * with the standard library rather than with {@link Deferred}s. Every future is completed from
+ * the executor given at construction, so the continuations added to it never run on the
+ * client's I/O or timer threads, and can block if they have to.
+ * <p>
+ * On top of the operations of {@link AsyncYBClient}, it offers batch helpers that send the same
+ * call to many servers at once, without holding a thread per server.
+ * <p>
+ * This class is thread-safe.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class CompletableYBClient implements AutoCloseable {
+
+  private final AsyncYBClient asyncClient;
+
+  private final Executor executor;
+
+  /**
+   * Creates a client whose futures are completed from the common fork/join pool.
+   * @param asyncClient the client to send the operations with
+   */
+  public CompletableYBClient(AsyncYBClient asyncClient) {
+    this(asyncClient, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param asyncClient the client to send the operations with
+   * @param executor the executor completing the futures, and running the continuations that
+   *                 don't specify their own
+   */
+  public CompletableYBClient(AsyncYBClient asyncClient, Executor executor) {
+    this.asyncClient = asyncClient;
+    this.executor = executor;
+  }
+
+  /**
+   * Get the client this one wraps.
+   * @return the underlying async client
+   */
+  public AsyncYBClient getAsyncClient() {
+    return asyncClient;
+  }
+
+  /**
+   * Get the executor that completes the futures.
+   * @return the executor given at construction
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  private <T> CompletableFuture<T> toFuture(Deferred<T> d) {
+    return AsyncUtil.toCompletableFuture(d, executor);
+  }
+
+  /**
+   * Calls an operation that returns a {@code Deferred}, turning the exceptions it throws before
+   * returning into a failed future.
+   */
+  private <T> CompletableFuture<T> call(DeferredCall<T> call) {
+    try {
+      return toFuture(call.call());
+    } catch (Exception e) {
+      CompletableFuture<T> future = new CompletableFuture<T>();
+      future.completeExceptionally(e);
+      return future;
+    }
+  }
+
+  private interface DeferredCall<T> {
+    Deferred<T> call() throws Exception;
+  }
+
+  /**
+   * @see AsyncYBClient#ping(HostAndPort)
+   */
+  public CompletableFuture<PingResponse> ping(final HostAndPort hp) {
+    return call(new DeferredCall<PingResponse>() {
+      @Override
+      public Deferred<PingResponse> call() {
+        return asyncClient.ping(hp);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#setFlag(HostAndPort, String, String)
+   */
+  public CompletableFuture<SetFlagResponse> setFlag(final HostAndPort hp, final String flag,
+                                                    final String value) {
+    return call(new DeferredCall<SetFlagResponse>() {
+      @Override
+      public Deferred<SetFlagResponse> call() {
+        return asyncClient.setFlag(hp, flag, value);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getMasterAddresses(HostAndPort)
+   */
+  public CompletableFuture<GetMasterAddressesResponse> getMasterAddresses(final HostAndPort hp) {
+    return call(new DeferredCall<GetMasterAddressesResponse>() {
+      @Override
+      public Deferred<GetMasterAddressesResponse> call() {
+        return asyncClient.getMasterAddresses(hp);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#isServerReady(HostAndPort, boolean)
+   */
+  public CompletableFuture<IsServerReadyResponse> isServerReady(final HostAndPort hp,
+                                                                final boolean isTserver) {
+    return call(new DeferredCall<IsServerReadyResponse>() {
+      @Override
+      public Deferred<IsServerReadyResponse> call() {
+        return asyncClient.isServerReady(hp, isTserver);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#createTable(String, String, Schema, CreateTableOptions)
+   */
+  public CompletableFuture<YBTable> createTable(final String keyspace, final String name,
+                                                final Schema schema,
+                                                final CreateTableOptions options) {
+    return call(new DeferredCall<YBTable>() {
+      @Override
+      public Deferred<YBTable> call() {
+        return asyncClient.createTable(keyspace, name, schema, options);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#deleteTable(String, String)
+   */
+  public CompletableFuture<DeleteTableResponse> deleteTable(final String keyspace,
+                                                            final String name) {
+    return call(new DeferredCall<DeleteTableResponse>() {
+      @Override
+      public Deferred<DeleteTableResponse> call() {
+        return asyncClient.deleteTable(keyspace, name);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#openTable(String, String)
+   */
+  public CompletableFuture<YBTable> openTable(final String keyspace, final String name) {
+    return call(new DeferredCall<YBTable>() {
+      @Override
+      public Deferred<YBTable> call() {
+        return asyncClient.openTable(keyspace, name);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#tableExists(String, String)
+   */
+  public CompletableFuture<Boolean> tableExists(final String keyspace, final String name) {
+    return call(new DeferredCall<Boolean>() {
+      @Override
+      public Deferred<Boolean> call() {
+        return asyncClient.tableExists(keyspace, name);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getTablesList(String, boolean, String)
+   */
+  public CompletableFuture<ListTablesResponse> getTablesList(final String nameFilter,
+                                                             final boolean excludeSystemTables,
+                                                             final String namespace) {
+    return call(new DeferredCall<ListTablesResponse>() {
+      @Override
+      public Deferred<ListTablesResponse> call() {
+        return asyncClient.getTablesList(nameFilter, excludeSystemTables, namespace);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#listTabletServers()
+   */
+  public CompletableFuture<ListTabletServersResponse> listTabletServers() {
+    return call(new DeferredCall<ListTabletServersResponse>() {
+      @Override
+      public Deferred<ListTabletServersResponse> call() {
+        return asyncClient.listTabletServers();
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#listMasters()
+   */
+  public CompletableFuture<ListMastersResponse> listMasters() {
+    return call(new DeferredCall<ListMastersResponse>() {
+      @Override
+      public Deferred<ListMastersResponse> call() {
+        return asyncClient.listMasters();
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getMasterClusterConfig()
+   */
+  public CompletableFuture<GetMasterClusterConfigResponse> getMasterClusterConfig() {
+    return call(new DeferredCall<GetMasterClusterConfigResponse>() {
+      @Override
+      public Deferred<GetMasterClusterConfigResponse> call() {
+        return asyncClient.getMasterClusterConfig();
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#changeMasterClusterConfig(Master.SysClusterConfigEntryPB)
+   */
+  public CompletableFuture<ChangeMasterClusterConfigResponse> changeMasterClusterConfig(
+      final Master.SysClusterConfigEntryPB config) {
+    return call(new DeferredCall<ChangeMasterClusterConfigResponse>() {
+      @Override
+      public Deferred<ChangeMasterClusterConfigResponse> call() {
+        return asyncClient.changeMasterClusterConfig(config);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#changeLoadBalancerState(boolean)
+   */
+  public CompletableFuture<ChangeLoadBalancerStateResponse> changeLoadBalancerState(
+      final boolean isEnable) {
+    return call(new DeferredCall<ChangeLoadBalancerStateResponse>() {
+      @Override
+      public Deferred<ChangeLoadBalancerStateResponse> call() {
+        return asyncClient.changeLoadBalancerState(isEnable);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getLoadMoveCompletion()
+   */
+  public CompletableFuture<GetLoadMovePercentResponse> getLoadMoveCompletion() {
+    return call(new DeferredCall<GetLoadMovePercentResponse>() {
+      @Override
+      public Deferred<GetLoadMovePercentResponse> call() {
+        return asyncClient.getLoadMoveCompletion();
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getLeaderBlacklistCompletion()
+   */
+  public CompletableFuture<GetLoadMovePercentResponse> getLeaderBlacklistCompletion() {
+    return call(new DeferredCall<GetLoadMovePercentResponse>() {
+      @Override
+      public Deferred<GetLoadMovePercentResponse> call() {
+        return asyncClient.getLeaderBlacklistCompletion();
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getIsLoadBalanced(int)
+   */
+  public CompletableFuture<IsLoadBalancedResponse> getIsLoadBalanced(final int numServers) {
+    return call(new DeferredCall<IsLoadBalancedResponse>() {
+      @Override
+      public Deferred<IsLoadBalancedResponse> call() {
+        return asyncClient.getIsLoadBalanced(numServers);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getIsLoadBalancerIdle()
+   */
+  public CompletableFuture<IsLoadBalancerIdleResponse> getIsLoadBalancerIdle() {
+    return call(new DeferredCall<IsLoadBalancerIdleResponse>() {
+      @Override
+      public Deferred<IsLoadBalancerIdleResponse> call() {
+        return asyncClient.getIsLoadBalancerIdle();
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getAreLeadersOnPreferredOnly()
+   */
+  public CompletableFuture<AreLeadersOnPreferredOnlyResponse> getAreLeadersOnPreferredOnly() {
+    return call(new DeferredCall<AreLeadersOnPreferredOnlyResponse>() {
+      @Override
+      public Deferred<AreLeadersOnPreferredOnlyResponse> call() {
+        return asyncClient.getAreLeadersOnPreferredOnly();
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#getIsInitDbDone()
+   */
+  public CompletableFuture<IsInitDbDoneResponse> getIsInitDbDone() {
+    return call(new DeferredCall<IsInitDbDoneResponse>() {
+      @Override
+      public Deferred<IsInitDbDoneResponse> call() {
+        return asyncClient.getIsInitDbDone();
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#waitForCondition(AsyncYBClient.AsyncCondition, long)
+   */
+  public CompletableFuture<Boolean> waitForCondition(final AsyncYBClient.AsyncCondition condition,
+                                                     final long timeoutMs) {
+    return call(new DeferredCall<Boolean>() {
+      @Override
+      public Deferred<Boolean> call() {
+        return asyncClient.waitForCondition(condition, timeoutMs);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#waitForServer(HostAndPort, long)
+   */
+  public CompletableFuture<Boolean> waitForServer(final HostAndPort hp, final long timeoutMs) {
+    return call(new DeferredCall<Boolean>() {
+      @Override
+      public Deferred<Boolean> call() {
+        return asyncClient.waitForServer(hp, timeoutMs);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#waitForLoadBalance(long, int)
+   */
+  public CompletableFuture<Boolean> waitForLoadBalance(final long timeoutMs,
+                                                      final int numServers) {
+    return call(new DeferredCall<Boolean>() {
+      @Override
+      public Deferred<Boolean> call() {
+        return asyncClient.waitForLoadBalance(timeoutMs, numServers);
+      }
+    });
+  }
+
+  /**
+   * @see AsyncYBClient#waitForLoadBalancerIdle(long)
+   */
+  public CompletableFuture<Boolean> waitForLoadBalancerIdle(final long timeoutMs) {
+    return call(new DeferredCall<Boolean>() {
+      @Override
+      public Deferred<Boolean> call() {
+        return asyncClient.waitForLoadBalancerIdle(timeoutMs);
+      }
+    });
+  }
+
+  /**
+   * Sends the same call to many servers at once.
+   * @param servers the servers to call
+   * @param call the call to send to each server
+   * @return a future that yields the response of each server, in the iteration order of
+   * {@code servers}, or fails with the error of one of the failed calls once all of them
+   * completed
+   */
+  public <V> CompletableFuture<Map<HostAndPort, V>> callAll(
+      Collection<HostAndPort> servers,
+      Function<HostAndPort, CompletableFuture<V>> call) {
+    final Map<HostAndPort, CompletableFuture<V>> futures = new LinkedHashMap<>();
+    for (HostAndPort hp : servers) {
+      CompletableFuture<V> future;
+      try {
+        future = call.apply(hp);
+      } catch (RuntimeException e) {
+        future = new CompletableFuture<V>();
+        future.completeExceptionally(e);
+      }
+      futures.put(hp, future);
+    }
+    return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+        .thenApplyAsync(new Function<Void, Map<HostAndPort, V>>() {
+          @Override
+          public Map<HostAndPort, V> apply(Void ignored) {
+            Map<HostAndPort, V> results = new LinkedHashMap<>();
+            for (Map.Entry<HostAndPort, CompletableFuture<V>> entry : futures.entrySet()) {
+              results.put(entry.getKey(), entry.getValue().join());
+            }
+            return results;
+          }
+        }, executor);
+  }
+
+  /**
+   * Pings many servers at once.
+   * @see #ping(HostAndPort)
+   * @see #callAll(Collection, Function)
+   */
+  public CompletableFuture<Map<HostAndPort, PingResponse>> ping(Collection<HostAndPort> servers) {
+    return callAll(servers, new Function<HostAndPort, CompletableFuture<PingResponse>>() {
+      @Override
+      public CompletableFuture<PingResponse> apply(HostAndPort hp) {
+        return ping(hp);
+      }
+    });
+  }
+
+  /**
+   * Checks whether many servers are ready at once.
+   * @see #isServerReady(HostAndPort, boolean)
+   * @see #callAll(Collection, Function)
+   */
+  public CompletableFuture<Map<HostAndPort, IsServerReadyResponse>> isServerReady(
+      Collection<HostAndPort> servers, final boolean isTserver) {
+    return callAll(servers,
+                   new Function<HostAndPort, CompletableFuture<IsServerReadyResponse>>() {
+                     @Override
+                     public CompletableFuture<IsServerReadyResponse> apply(HostAndPort hp) {
+                       return isServerReady(hp, isTserver);
+                     }
+                   });
+  }
+
+  /**
+   * Sets a flag on many servers at once.
+   * @see #setFlag(HostAndPort, String, String)
+   * @see #callAll(Collection, Function)
+   */
+  public CompletableFuture<Map<HostAndPort, SetFlagResponse>> setFlag(
+      Collection<HostAndPort> servers, final String flag, final String value) {
+    return callAll(servers, new Function<HostAndPort, CompletableFuture<SetFlagResponse>>() {
+      @Override
+      public CompletableFuture<SetFlagResponse> apply(HostAndPort hp) {
+        return setFlag(hp, flag, value);
+      }
+    });
+  }
+
+  /**
+   * Waits for many servers to come online at once.
+   * @see #waitForServer(HostAndPort, long)
+   * @see #callAll(Collection, Function)
+   * @return a future that yields, for each server, whether or not it came online in time
+   */
+  public CompletableFuture<Map<HostAndPort, Boolean>> waitForServers(
+      Collection<HostAndPort> servers, final long timeoutMs) {
+    return callAll(servers, new Function<HostAndPort, CompletableFuture<Boolean>>() {
+      @Override
+      public CompletableFuture<Boolean> apply(HostAndPort hp) {
+        return waitForServer(hp, timeoutMs);
+      }
+    });
+  }
+
+  /**
+   * Closes the underlying client, blocking until it's shut down.
+   * @see AsyncYBClient#close()
+   */
+  @Override
+  public void close() throws Exception {
+    asyncClient.close();
+  }
+}
@@ -0,0 +1,227 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.annotations.InterfaceAudience;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Polls an {@link AsyncYBClient.AsyncCondition} on the client's timer until it holds, the
+ * timeout passes or it failed too many times.
+ * <p>
+ * No thread is blocked while waiting: every check is issued from the timer or from the callback
+ * of the previous check. The timeout is enforced by a timer of its own, so a check that never
+ * completes doesn't hold up the wait. Checks start {@link #MIN_POLL_INTERVAL_MS} apart, so that conditions
+ * about to hold are noticed quickly, and the interval doubles after every check up to
+ * {@link #MAX_POLL_INTERVAL_MS}, so that long waits don't keep the master busy.
+ */
+@InterfaceAudience.Private
+final class ConditionWaiter implements TimerTask {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConditionWaiter.class);
+
+  /** Time between the first two checks. */
+  static final long MIN_POLL_INTERVAL_MS = 20;
+
+  /** Longest time between two checks, that of the former blocking waits. */
+  static final long MAX_POLL_INTERVAL_MS = AsyncYBClient.SLEEP_TIME;
+
+  /** Number of failed checks after which the wait gives up. */
+  static final int MAX_ERRORS_TO_IGNORE = 2500;
+
+  /** Log errors every so many errors. */
+  private static final int LOG_ERRORS_EVERY_NUM_ITERS = 100;
+
+  /** Log info after these many checks. */
+  private static final int LOG_EVERY_NUM_ITERS = 200;
+
+  private final AsyncYBClient client;
+  private final AsyncYBClient.AsyncCondition condition;
+  private final long timeoutMs;
+  private final long start = System.currentTimeMillis();
+  private final Deferred<Boolean> result = new Deferred<>();
+  /** Set once the result is known, so that it's only called back once. */
+  private final AtomicBoolean done = new AtomicBoolean();
+
+  // Only accessed by one check at a time.
+  private long intervalMs = MIN_POLL_INTERVAL_MS;
+  private int numErrors;
+  private int numIters;
+  private Exception lastException;
+
+  ConditionWaiter(AsyncYBClient client, AsyncYBClient.AsyncCondition condition,
+                  long timeoutMs) {
+    this.client = client;
+    this.condition = condition;
+    this.timeoutMs = timeoutMs;
+  }
+
+  /**
+   * Checks the condition right away, then every so often until the wait is over.
+   * @return a Deferred that yields true if the condition held in time, false otherwise
+   */
+  Deferred<Boolean> start() {
+    if (timeoutMs > 0) {
+      client.newTimeout(new DeadlineTimeout(), timeoutMs);
+    }
+    check();
+    return result;
+  }
+
+  @Override
+  public void run(final Timeout timeout) {
+    check();
+  }
+
+  /**
+   * Gives up on the wait, called when the client shuts down while a check is scheduled.
+   */
+  void cancel() {
+    complete(false);
+  }
+
+  long getIntervalMs() {
+    return intervalMs;
+  }
+
+  private void check() {
+    if (done.get()) {
+      return;
+    }
+    if (client.isClosed()) {
+      LOG.warn("Client closed while waiting for " + condition);
+      complete(false);
+      return;
+    }
+    Deferred<Boolean> d;
+    try {
+      if (client.consumeInjectedWaitError()) {
+        String msg = "Simulated exception due to injected error.";
+        LOG.info(msg);
+        throw new RuntimeException(msg);
+      }
+      d = condition.check();
+    } catch (Exception e) {
+      d = Deferred.fromError(e);
+    }
+    d.addCallbacks(new CheckCB(), new CheckErrback());
+  }
+
+  private void scheduleNextCheck() {
+    if (done.get()) {
+      return;
+    }
+    if (client.isClosed()) {
+      // The timer is stopped, a check scheduled on it would never run.
+      LOG.warn("Client closed while waiting for " + condition);
+      complete(false);
+      return;
+    }
+    numIters++;
+    if (numIters % LOG_EVERY_NUM_ITERS == 0) {
+      LOG.info("Tried operation {} times so far.", numIters);
+    }
+    long remainingMs = timeoutMs - (System.currentTimeMillis() - start);
+    if (remainingMs <= 0) {
+      LOG.error("Timed out waiting for operation. Final exception was {}.",
+                lastException != null ? lastException.toString() : "none");
+      giveUp();
+      return;
+    }
+    client.newTimeout(this, Math.min(intervalMs, remainingMs));
+    intervalMs = Math.min(intervalMs * 2, MAX_POLL_INTERVAL_MS);
+  }
+
+  private void giveUp() {
+    LOG.error("Returning failure after {} iterations, num errors = {}.", numIters, numErrors);
+    complete(false);
+  }
+
+  private void complete(boolean holds) {
+    if (done.compareAndSet(false, true)) {
+      result.callback(holds);
+    }
+  }
+
+  /** Ends the wait once the timeout passed, even if a check is still running. */
+  private final class DeadlineTimeout implements TimerTask {
+    @Override
+    public void run(final Timeout timeout) {
+      if (!done.get()) {
+        LOG.error("Timed out waiting for {} after {}ms. Final exception was {}.", condition,
+                  timeoutMs, lastException != null ? lastException.toString() : "none");
+        complete(false);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "time out " + ConditionWaiter.this;
+    }
+  }
+
+  private final class CheckCB implements Callback<Object, Boolean> {
+    @Override
+    public Object call(Boolean holds) {
+      if (holds) {
+        complete(true);
+      } else {
+        scheduleNextCheck();
+      }
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return "check " + condition;
+    }
+  }
+
+  private final class CheckErrback implements Callback<Object, Exception> {
+    @Override
+    public Object call(Exception e) {
+      // We will get exceptions if we cannot connect to the other end. Save them for the final
+      // debug message in case we never succeed.
+      lastException = e;
+      numErrors++;
+      if (numErrors % LOG_ERRORS_EVERY_NUM_ITERS == 0) {
+        LOG.warn("Hit {} errors so far. Latest is : {}.", numErrors, e.toString());
+      }
+      if (numErrors >= MAX_ERRORS_TO_IGNORE) {
+        LOG.error("Hit too many errors, final exception is " + e.toString());
+        giveUp();
+      } else {
+        scheduleNextCheck();
+      }
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return "check " + condition + " failed";
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "wait for " + condition;
+  }
+}
@@ -0,0 +1,32 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * Exception thrown when an RPC couldn't be sent because its connection already had as many RPCs
+ * pending or in flight as allowed.
+ * @see AsyncYBClient.AsyncYBClientBuilder#maxRpcsPerConnection(int, BackpressurePolicy)
+ */
+@SuppressWarnings("serial")
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class ConnectionBusyException extends RecoverableException {
+
+  ConnectionBusyException(final String msg) {
+    super(msg);
+  }
+}
@@ -0,0 +1,32 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * How {@link AsyncYBClient} picks one of its connections to a server when it keeps more than one
+ * connection per server.
+ * @see AsyncYBClient.AsyncYBClientBuilder#connectionsPerServer(int)
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public enum ConnectionSelectionPolicy {
+  /** Cycle through the connections in order. */
+  ROUND_ROBIN,
+
+  /** Use the connection with the fewest RPCs waiting for a response. */
+  LEAST_IN_FLIGHT
+}
@@ -1,6 +1,5 @@
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.yb.cdc.CdcService.CreateCDCStreamRequestPB;
 import org.yb.cdc.CdcService.CreateCDCStreamResponsePB;
@@ -15,7 +14,7 @@ public class CreateCDCStreamRequest extends YRpc<CreateCDCStreamResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final CreateCDCStreamRequestPB.Builder builder = CreateCDCStreamRequestPB.newBuilder();
     builder.setTableId(this.tableId);
@@ -34,7 +33,7 @@ public class CreateCDCStreamRequest extends YRpc<CreateCDCStreamResponse> {
   Pair<CreateCDCStreamResponse, Object> deserialize(
           CallResponse callResponse, String uuid) throws Exception {
     final CreateCDCStreamResponsePB.Builder respBuilder = CreateCDCStreamResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
 
     CreateCDCStreamResponse response = new CreateCDCStreamResponse(
             deadlineTracker.getElapsedMillis(), uuid, respBuilder.getStreamId().toStringUtf8());
@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -46,7 +45,7 @@ class CreateKeyspaceRequest extends YRpc<CreateKeyspaceResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.CreateNamespaceRequestPB.Builder builder =
       Master.CreateNamespaceRequestPB.newBuilder();
@@ -70,7 +69,7 @@ class CreateKeyspaceRequest extends YRpc<CreateKeyspaceResponse> {
                                                    String masterUUID) throws Exception {
     final Master.CreateNamespaceResponsePB.Builder respBuilder =
         Master.CreateNamespaceResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     CreateKeyspaceResponse response =
         new CreateKeyspaceResponse(deadlineTracker.getElapsedMillis(), masterUUID,
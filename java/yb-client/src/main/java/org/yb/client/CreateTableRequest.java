@@ -31,7 +31,6 @@
 //
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import org.yb.Common.PartitionSchemaPB;
 import org.yb.Common.TableType;
 import org.yb.Schema;
@@ -66,7 +65,7 @@ class CreateTableRequest extends YRpc<CreateTableResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     this.builder.setName(this.name);
     Master.NamespaceIdentifierPB.Builder nsBuilder = Master.NamespaceIdentifierPB.newBuilder();
@@ -88,7 +87,7 @@ class CreateTableRequest extends YRpc<CreateTableResponse> {
   Pair<CreateTableResponse, Object> deserialize(final CallResponse callResponse,
                                                 String tsUUID) throws Exception {
     final Master.CreateTableResponsePB.Builder builder = Master.CreateTableResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), builder);
+    readProtobuf(callResponse, builder);
     CreateTableResponse response =
         new CreateTableResponse(deadlineTracker.getElapsedMillis(), tsUUID);
     return new Pair<CreateTableResponse, Object>(
@@ -31,7 +31,6 @@
 //
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.master.Master;
 import org.yb.util.Pair;
@@ -55,7 +54,7 @@ class DeleteTableRequest extends YRpc<DeleteTableResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.DeleteTableRequestPB.Builder builder = Master.DeleteTableRequestPB.newBuilder();
     Master.TableIdentifierPB.Builder tbuilder = Master.TableIdentifierPB.newBuilder();
@@ -80,7 +79,7 @@ class DeleteTableRequest extends YRpc<DeleteTableResponse> {
   Pair<DeleteTableResponse, Object> deserialize(CallResponse callResponse,
                                                 String tsUUID) throws Exception {
     final Master.DeleteTableResponsePB.Builder builder = Master.DeleteTableResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), builder);
+    readProtobuf(callResponse, builder);
     DeleteTableResponse response =
         new DeleteTableResponse(deadlineTracker.getElapsedMillis(), tsUUID);
     return new Pair<DeleteTableResponse, Object>(
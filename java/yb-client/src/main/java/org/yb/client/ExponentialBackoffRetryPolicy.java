@@ -0,0 +1,83 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.base.Preconditions;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with "decorrelated jitter": every sleep is picked uniformly between the
+ * base sleep time and three times the previous sleep, and capped. The first retry counts the
+ * base sleep time as the previous sleep, so it's already spread over [base, 3 * base]. The sleep time grows
+ * exponentially on average, while clients that failed at the same time, e.g. because the master
+ * leader went away, quickly spread their retries out instead of coming back in lockstep.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+  public static final long DEFAULT_BASE_SLEEP_TIME_MS = 100;
+  public static final long DEFAULT_MAX_SLEEP_TIME_MS = 5000;
+
+  private final long baseSleepTimeMs;
+  private final long maxSleepTimeMs;
+
+  /**
+   * Creates a policy that uses {@link #DEFAULT_BASE_SLEEP_TIME_MS} and
+   * {@link #DEFAULT_MAX_SLEEP_TIME_MS}.
+   */
+  public ExponentialBackoffRetryPolicy() {
+    this(DEFAULT_BASE_SLEEP_TIME_MS, DEFAULT_MAX_SLEEP_TIME_MS);
+  }
+
+  /**
+   * @param baseSleepTimeMs the shortest sleep time
+   * @param maxSleepTimeMs the longest sleep time
+   */
+  public ExponentialBackoffRetryPolicy(long baseSleepTimeMs, long maxSleepTimeMs) {
+    Preconditions.checkArgument(baseSleepTimeMs > 0, "baseSleepTimeMs should be greater than 0");
+    Preconditions.checkArgument(maxSleepTimeMs >= baseSleepTimeMs,
+        "maxSleepTimeMs should be at least baseSleepTimeMs");
+    this.baseSleepTimeMs = baseSleepTimeMs;
+    this.maxSleepTimeMs = maxSleepTimeMs;
+  }
+
+  @Override
+  public long getSleepTimeMs(long previousSleepTimeMs) {
+    long previous = Math.max(baseSleepTimeMs, previousSleepTimeMs);
+    long upperBound = Math.min(maxSleepTimeMs, previous * 3);
+    if (upperBound == baseSleepTimeMs) {
+      // The cap is the base sleep time, there's nothing to spread the sleeps over.
+      return baseSleepTimeMs;
+    }
+    return ThreadLocalRandom.current().nextLong(baseSleepTimeMs, upperBound + 1);
+  }
+
+  public long getBaseSleepTimeMs() {
+    return baseSleepTimeMs;
+  }
+
+  public long getMaxSleepTimeMs() {
+    return maxSleepTimeMs;
+  }
+
+  @Override
+  public String toString() {
+    return "ExponentialBackoffRetryPolicy(base=" + baseSleepTimeMs + "ms, max=" +
+        maxSleepTimeMs + "ms)";
+  }
+}
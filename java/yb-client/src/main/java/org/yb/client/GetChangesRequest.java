@@ -14,11 +14,16 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.yb.Opid;
 import org.yb.cdc.CdcService;
+import org.yb.util.DirectSlice;
 import org.yb.util.Pair;
+
+import java.io.IOException;
 import org.yb.cdc.CdcService.GetChangesRequestPB;
 import org.yb.cdc.CdcService.GetChangesResponsePB;
 
@@ -37,7 +42,7 @@ public class GetChangesRequest extends YRpc<GetChangesResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final GetChangesRequestPB.Builder builder = GetChangesRequestPB.newBuilder();
     builder.setStreamId(ByteString.copyFromUtf8(this.streamId));
@@ -62,11 +67,47 @@ public class GetChangesRequest extends YRpc<GetChangesResponse> {
   @Override
   Pair<GetChangesResponse, Object> deserialize(
           CallResponse callResponse, String uuid) throws Exception {
+    if (callResponse.getDirectBufferPool() != null) {
+      // Keep the changes off the heap until they're accessed, only the error is needed now.
+      final DirectSlice message = callResponse.getPBMessageDirectSlice();
+      final CdcService.CDCErrorPB error;
+      try {
+        error = readError(message);
+      } catch (IOException e) {
+        message.release();
+        throw new InvalidResponseException("Invalid RPC response: length=" + message.length(), e);
+      }
+      return new Pair<GetChangesResponse, Object>(
+              new GetChangesResponse(deadlineTracker.getElapsedMillis(), uuid, message), error);
+    }
     final GetChangesResponsePB.Builder respBuilder = GetChangesResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     GetChangesResponse response = new GetChangesResponse(
             deadlineTracker.getElapsedMillis(), uuid, respBuilder.build());
     return new Pair<GetChangesResponse, Object>(
             response, respBuilder.hasError() ? respBuilder.getError() : null);
   }
+
+  /**
+   * Reads the error field out of a serialized GetChangesResponsePB, skipping over the rest.
+   * @return the error, or null if the response doesn't have one
+   */
+  private static CdcService.CDCErrorPB readError(DirectSlice message) throws IOException {
+    final CodedInputStream input = CodedInputStream.newInstance(message.toByteBuffer());
+    input.setSizeLimit(message.length());
+    CdcService.CDCErrorPB.Builder error = null;
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (WireFormat.getTagFieldNumber(tag) == GetChangesResponsePB.ERROR_FIELD_NUMBER &&
+          WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+        if (error == null) {
+          error = CdcService.CDCErrorPB.newBuilder();
+        }
+        // Repeated occurrences of a message field are merged, like a full parse would.
+        input.readMessage(error, ExtensionRegistryLite.getEmptyRegistry());
+      } else {
+        input.skipField(tag);
+      }
+    }
+    return error == null ? null : error.build();
+  }
 }
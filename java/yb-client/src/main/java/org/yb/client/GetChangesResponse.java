@@ -13,19 +13,184 @@
 
 package org.yb.client;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
 import org.yb.annotations.InterfaceAudience;
+import org.yb.cdc.CdcService;
 import org.yb.cdc.CdcService.GetChangesResponsePB;
+import org.yb.util.DirectSlice;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response to a GetChanges RPC.
+ * <p>
+ * When the client reads responses into direct buffers, the changes are kept off the heap as
+ * they were received and only parsed on the first call to {@link #getResp()}, after which the
+ * buffer goes back to the pool. A response that is never accessed should be {@link #release()
+ * released}, otherwise its buffer is lost to the pool and only reclaimed by the garbage
+ * collector.
+ * <p>
+ * Consumers that hold on to responses until their changes are applied can keep the changes off
+ * the heap meanwhile: {@link #getRespWithoutRecords()} and {@link #getRecordsCount()} skip over
+ * the records, and {@link #readRecords()} parses them only when they're needed, without keeping
+ * them around. The response is then released once its records were applied.
+ */
 @InterfaceAudience.Public
 public class GetChangesResponse extends YRpcResponse {
-  private final GetChangesResponsePB resp;
+  // The parsed message, or null until the raw one is parsed. Guarded by 'this'.
+  private GetChangesResponsePB resp;
+  // The serialized message, or null once parsed or released. Guarded by 'this'.
+  private DirectSlice rawResp;
+  // The message without its records, or null until it's asked for. Guarded by 'this'.
+  private GetChangesResponsePB respWithoutRecords;
+  // The number of records, or -1 until the message without its records is parsed.
+  // Guarded by 'this'.
+  private int numRecords = -1;
 
-  GetChangesResponse(long ellapsedMillis, String uuid, GetChangesResponsePB resp) {
+  public GetChangesResponse(long ellapsedMillis, String uuid, GetChangesResponsePB resp) {
     super(ellapsedMillis, uuid);
     this.resp = resp;
   }
 
-  public GetChangesResponsePB getResp() {
+  /**
+   * Creates a response that takes over the given serialized message, and parses it lazily.
+   */
+  GetChangesResponse(long ellapsedMillis, String uuid, DirectSlice rawResp) {
+    super(ellapsedMillis, uuid);
+    this.rawResp = rawResp;
+  }
+
+  /**
+   * @return the response message, parsed on the first call if it was kept serialized
+   * @throws IllegalStateException if the response was released before being parsed
+   * @throws InvalidResponseException if the serialized message is invalid
+   */
+  public synchronized GetChangesResponsePB getResp() {
+    if (resp == null) {
+      if (rawResp == null) {
+        throw new IllegalStateException("Response was released without being parsed");
+      }
+      try {
+        final GetChangesResponsePB.Builder builder = GetChangesResponsePB.newBuilder();
+        YRpc.readProtobuf(CodedInputStream.newInstance(rawResp.toByteBuffer()),
+                          rawResp.length(), builder);
+        resp = builder.build();
+      } finally {
+        rawResp.release();
+        rawResp = null;
+      }
+    }
     return resp;
   }
+
+  /**
+   * @return the response message without its records, which aren't parsed if the message was
+   * kept serialized
+   * @throws IllegalStateException if the response was released before being parsed
+   * @throws InvalidResponseException if the serialized message is invalid
+   */
+  public synchronized GetChangesResponsePB getRespWithoutRecords() {
+    if (respWithoutRecords == null) {
+      if (resp != null) {
+        respWithoutRecords = resp.toBuilder().clearRecords().build();
+        numRecords = resp.getRecordsCount();
+      } else {
+        // Copy everything but the records, which are only counted.
+        final CodedInputStream input = newRawInput();
+        final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        final CodedOutputStream output = CodedOutputStream.newInstance(copy);
+        int count = 0;
+        try {
+          for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (WireFormat.getTagFieldNumber(tag) == GetChangesResponsePB.RECORDS_FIELD_NUMBER) {
+              input.skipField(tag);
+              count++;
+            } else {
+              input.skipField(tag, output);
+            }
+          }
+          output.flush();
+        } catch (IOException e) {
+          throw invalidResponse(e);
+        }
+        final GetChangesResponsePB.Builder builder = GetChangesResponsePB.newBuilder();
+        final byte[] bytes = copy.toByteArray();
+        YRpc.readProtobuf(CodedInputStream.newInstance(bytes), bytes.length, builder);
+        respWithoutRecords = builder.build();
+        numRecords = count;
+      }
+    }
+    return respWithoutRecords;
+  }
+
+  /**
+   * @return the number of records in the response, counted without parsing them
+   * @throws IllegalStateException if the response was released before being parsed
+   * @throws InvalidResponseException if the serialized message is invalid
+   */
+  public synchronized int getRecordsCount() {
+    getRespWithoutRecords();
+    return numRecords;
+  }
+
+  /**
+   * Parses the records of the response. When the message was kept serialized, they are parsed
+   * again on every call and the response doesn't keep them, so that they're only on the heap
+   * while the caller uses them.
+   * @return the records, in order
+   * @throws IllegalStateException if the response was released before being parsed
+   * @throws InvalidResponseException if the serialized message is invalid
+   */
+  public synchronized List<CdcService.CDCRecordPB> readRecords() {
+    if (resp != null) {
+      return resp.getRecordsList();
+    }
+    final CodedInputStream input = newRawInput();
+    final List<CdcService.CDCRecordPB> records = new ArrayList<>();
+    try {
+      for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+        if (WireFormat.getTagFieldNumber(tag) == GetChangesResponsePB.RECORDS_FIELD_NUMBER &&
+            WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+          final CdcService.CDCRecordPB.Builder record = CdcService.CDCRecordPB.newBuilder();
+          input.readMessage(record, ExtensionRegistryLite.getEmptyRegistry());
+          records.add(record.build());
+        } else {
+          input.skipField(tag);
+        }
+      }
+    } catch (IOException e) {
+      throw invalidResponse(e);
+    }
+    return records;
+  }
+
+  private CodedInputStream newRawInput() {
+    if (rawResp == null) {
+      throw new IllegalStateException("Response was released without being parsed");
+    }
+    final CodedInputStream input = CodedInputStream.newInstance(rawResp.toByteBuffer());
+    input.setSizeLimit(rawResp.length());
+    return input;
+  }
+
+  private InvalidResponseException invalidResponse(IOException e) {
+    return new InvalidResponseException("Invalid RPC response: length=" + rawResp.length(), e);
+  }
+
+  /**
+   * Gives back the buffer holding the serialized message, if it wasn't parsed yet. The message
+   * can't be accessed afterwards. This is a no-op for responses that were parsed already.
+   */
+  public synchronized void release() {
+    if (rawResp != null) {
+      rawResp.release();
+      rawResp = null;
+    }
+  }
 }
@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -35,7 +34,7 @@ class GetLoadMovePercentRequest extends YRpc<GetLoadMovePercentResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.GetLoadMovePercentRequestPB.Builder builder =
       Master.GetLoadMovePercentRequestPB.newBuilder();
@@ -55,7 +54,7 @@ class GetLoadMovePercentRequest extends YRpc<GetLoadMovePercentResponse> {
       String masterUUID) throws Exception {
     final Master.GetLoadMovePercentResponsePB.Builder respBuilder =
       Master.GetLoadMovePercentResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     GetLoadMovePercentResponse response =
       new GetLoadMovePercentResponse(
@@ -18,8 +18,6 @@ import org.yb.annotations.InterfaceAudience;
 import org.yb.tserver.Tserver;
 import org.yb.util.Pair;
 
-import com.google.protobuf.Message;
-
 @InterfaceAudience.Public
 class GetMasterAddressesRequest extends YRpc<GetMasterAddressesResponse> {
   public GetMasterAddressesRequest() {
@@ -27,7 +25,7 @@ class GetMasterAddressesRequest extends YRpc<GetMasterAddressesResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Tserver.GetMasterAddressesRequestPB.Builder builder =
         Tserver.GetMasterAddressesRequestPB.newBuilder();
@@ -47,7 +45,7 @@ class GetMasterAddressesRequest extends YRpc<GetMasterAddressesResponse> {
       CallResponse callResponse, String uuid) throws Exception {
     final Tserver.GetMasterAddressesResponsePB.Builder respBuilder =
         Tserver.GetMasterAddressesResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     GetMasterAddressesResponse response =
         new GetMasterAddressesResponse(deadlineTracker.getElapsedMillis(), uuid,
                                        respBuilder.getMasterAddresses(), respBuilder.hasError());
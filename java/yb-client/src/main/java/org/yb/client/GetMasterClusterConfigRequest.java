@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -35,7 +34,7 @@ class GetMasterClusterConfigRequest extends YRpc<GetMasterClusterConfigResponse>
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.GetMasterClusterConfigRequestPB.Builder builder =
       Master.GetMasterClusterConfigRequestPB.newBuilder();
@@ -55,7 +54,7 @@ class GetMasterClusterConfigRequest extends YRpc<GetMasterClusterConfigResponse>
       String masterUUID) throws Exception {
     final Master.GetMasterClusterConfigResponsePB.Builder respBuilder =
       Master.GetMasterClusterConfigResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     GetMasterClusterConfigResponse response =
       new GetMasterClusterConfigResponse(
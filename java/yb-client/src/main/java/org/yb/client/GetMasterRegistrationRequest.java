@@ -31,7 +31,6 @@
 //
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import static org.yb.consensus.Metadata.*;
 import static org.yb.master.Master.*;
 
@@ -51,7 +50,7 @@ public class GetMasterRegistrationRequest extends YRpc<GetMasterRegistrationResp
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final GetMasterRegistrationRequestPB.Builder builder =
         GetMasterRegistrationRequestPB.newBuilder();
@@ -71,7 +70,7 @@ public class GetMasterRegistrationRequest extends YRpc<GetMasterRegistrationResp
                                                           String tsUUID) throws Exception {
     final GetMasterRegistrationResponsePB.Builder respBuilder =
         GetMasterRegistrationResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     RaftPeerPB.Role role = RaftPeerPB.Role.FOLLOWER;
     if (!respBuilder.hasError() || respBuilder.getError().getCode() !=
         MasterErrorPB.Code.CATALOG_MANAGER_NOT_INITIALIZED) {
@@ -32,7 +32,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import com.google.protobuf.UnsafeByteOperations;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.master.Master;
@@ -76,14 +75,14 @@ class GetTableLocationsRequest extends YRpc<Master.GetTableLocationsResponsePB>
       throws Exception {
     Master.GetTableLocationsResponsePB.Builder builder = Master.GetTableLocationsResponsePB
         .newBuilder();
-    readProtobuf(callResponse.getPBMessage(), builder);
+    readProtobuf(callResponse, builder);
     Master.GetTableLocationsResponsePB resp = builder.build();
     return new Pair<Master.GetTableLocationsResponsePB, Object>(
         resp, builder.hasError() ? builder.getError() : null);
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     final Master.GetTableLocationsRequestPB.Builder builder = Master
         .GetTableLocationsRequestPB.newBuilder();
     builder.setTable(Master.TableIdentifierPB.newBuilder().
@@ -32,7 +32,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import static org.yb.master.Master.*;
 
 import org.yb.Schema;
@@ -62,7 +61,7 @@ public class GetTableSchemaRequest extends YRpc<GetTableSchemaResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     assert name != null || uuid != null;
     final GetTableSchemaRequestPB.Builder builder = GetTableSchemaRequestPB.newBuilder();
@@ -92,7 +91,7 @@ public class GetTableSchemaRequest extends YRpc<GetTableSchemaResponse> {
   Pair<GetTableSchemaResponse, Object> deserialize(CallResponse callResponse,
                                                    String tsUUID) throws Exception {
     final GetTableSchemaResponsePB.Builder respBuilder = GetTableSchemaResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     Schema schema = ProtobufHelper.pbToSchema(respBuilder.getSchema());
     GetTableSchemaResponse response = new GetTableSchemaResponse(
         deadlineTracker.getElapsedMillis(),
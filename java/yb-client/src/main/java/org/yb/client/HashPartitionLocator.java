@@ -0,0 +1,127 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable index from a 16-bit hash code to the tablet that serves it.
+ * <p>
+ * Hash-partitioned tables split the fixed [0, 65536) hash space into contiguous ranges, one per
+ * tablet, and their partition keys are the big-endian 2-byte hash code. Instead of walking the
+ * tablets skip list and comparing byte arrays, a lookup here is a binary search over the start
+ * hash codes of the tablets, held in a primitive array. Instances are never modified once built:
+ * {@link AsyncYBClient} builds a new one every time it learns about new tablets and swaps it in,
+ * so readers don't need any synchronization.
+ * <p>
+ * A locator takes two arrays as long as the number of tablets, and it's only built for tables
+ * whose tablets are known to cover the whole hash space.
+ */
+@InterfaceAudience.Private
+final class HashPartitionLocator {
+
+  /** Number of distinct hash codes, i.e. the size of the hash space. */
+  static final int NUM_HASH_CODES = 1 << 16;
+
+  /** Size in bytes of a hash partition key. */
+  static final int HASH_PARTITION_KEY_SIZE = 2;
+
+  // The first hash code served by each tablet, in increasing order, starting with 0.
+  private final int[] startHashes;
+  // The tablet serving the hash codes from the same index in startHashes up to the next one.
+  private final AsyncYBClient.RemoteTablet[] tablets;
+
+  private HashPartitionLocator(int[] startHashes, AsyncYBClient.RemoteTablet[] tablets) {
+    this.startHashes = startHashes;
+    this.tablets = tablets;
+  }
+
+  /**
+   * Builds a locator out of a table's tablets.
+   * @param tablets the table's tablets, sorted by partition start key. The collection may be
+   *                modified concurrently, it's only iterated over once.
+   * @return a locator, or {@code null} if the tablets don't form a complete and contiguous
+   * hash partitioning (e.g. some tablets are yet to be discovered)
+   */
+  static HashPartitionLocator build(Collection<AsyncYBClient.RemoteTablet> tablets) {
+    // Tablets may be discovered while this runs, so validate and index the same snapshot.
+    List<AsyncYBClient.RemoteTablet> snapshot = new ArrayList<>(tablets);
+    int nextHash = 0;
+    for (AsyncYBClient.RemoteTablet tablet : snapshot) {
+      Partition partition = tablet.getPartition();
+      byte[] start = partition.getPartitionKeyStart();
+      byte[] end = partition.getPartitionKeyEnd();
+      if (!isHashKey(start) || !isHashKey(end)) {
+        return null;
+      }
+      int startHash = start.length == 0 ? 0 : hashCode(start);
+      int endHash = end.length == 0 ? NUM_HASH_CODES : hashCode(end);
+      if (startHash != nextHash || endHash <= startHash) {
+        // Either there's a gap, or an overlap between tablets from different generations.
+        return null;
+      }
+      nextHash = endHash;
+    }
+    if (nextHash != NUM_HASH_CODES) {
+      return null;
+    }
+
+    int[] startHashes = new int[snapshot.size()];
+    AsyncYBClient.RemoteTablet[] tabletsByStart = new AsyncYBClient.RemoteTablet[snapshot.size()];
+    int i = 0;
+    for (AsyncYBClient.RemoteTablet tablet : snapshot) {
+      byte[] start = tablet.getPartition().getPartitionKeyStart();
+      startHashes[i] = start.length == 0 ? 0 : hashCode(start);
+      tabletsByStart[i] = tablet;
+      i++;
+    }
+    return new HashPartitionLocator(startHashes, tabletsByStart);
+  }
+
+  /**
+   * Finds the tablet that contains the given partition key.
+   * @param partitionKey a 2-byte hash partition key
+   * @return the tablet, or {@code null} if the key isn't a hash partition key
+   */
+  AsyncYBClient.RemoteTablet getTablet(byte[] partitionKey) {
+    if (partitionKey == null || partitionKey.length != HASH_PARTITION_KEY_SIZE) {
+      return null;
+    }
+    int index = Arrays.binarySearch(startHashes, hashCode(partitionKey));
+    // When the hash code isn't a start hash code, binarySearch returns -(insertion point) - 1,
+    // and the tablet serving it is the one right before the insertion point. The first start
+    // hash code is always 0, so the insertion point is never 0.
+    return tablets[index >= 0 ? index : -index - 2];
+  }
+
+  /**
+   * Returns whether or not the given partition key bound is a valid hash partition key bound,
+   * which is either empty (start or end of the hash space) or a 2-byte hash code.
+   */
+  static boolean isHashKey(byte[] key) {
+    return key.length == 0 || key.length == HASH_PARTITION_KEY_SIZE;
+  }
+
+  /**
+   * Decodes the big-endian unsigned 16-bit hash code at the start of the given key.
+   */
+  static int hashCode(byte[] key) {
+    return ((key[0] & 0xff) << 8) | (key[1] & 0xff);
+  }
+}
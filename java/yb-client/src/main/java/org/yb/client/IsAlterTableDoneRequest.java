@@ -31,7 +31,6 @@
 //
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import static org.yb.master.Master.*;
 
 import org.yb.annotations.InterfaceAudience;
@@ -57,7 +56,7 @@ class IsAlterTableDoneRequest extends YRpc<IsAlterTableDoneResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final IsAlterTableDoneRequestPB.Builder builder = IsAlterTableDoneRequestPB.newBuilder();
     TableIdentifierPB tableID = TableIdentifierPB.newBuilder()
@@ -81,7 +80,7 @@ class IsAlterTableDoneRequest extends YRpc<IsAlterTableDoneResponse> {
   Pair<IsAlterTableDoneResponse, Object> deserialize(final CallResponse callResponse,
                                                        String tsUUID) throws Exception {
     final IsAlterTableDoneResponsePB.Builder respBuilder = IsAlterTableDoneResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     IsAlterTableDoneResponse resp = new IsAlterTableDoneResponse(deadlineTracker.getElapsedMillis(),
         tsUUID, respBuilder.getDone());
     return new Pair<IsAlterTableDoneResponse, Object>(
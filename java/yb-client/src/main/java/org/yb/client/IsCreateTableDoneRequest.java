@@ -32,7 +32,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.master.Master;
 import org.yb.util.Pair;
@@ -64,14 +63,14 @@ class IsCreateTableDoneRequest extends YRpc<Master.IsCreateTableDoneResponsePB>
       final CallResponse callResponse, String tsUUID) throws Exception {
     Master.IsCreateTableDoneResponsePB.Builder builder = Master.IsCreateTableDoneResponsePB
         .newBuilder();
-    readProtobuf(callResponse.getPBMessage(), builder);
+    readProtobuf(callResponse, builder);
     Master.IsCreateTableDoneResponsePB resp = builder.build();
     return new Pair<Master.IsCreateTableDoneResponsePB, Object>(
         resp, builder.hasError() ? builder.getError() : null);
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     final Master.IsCreateTableDoneRequestPB.Builder builder = Master
         .IsCreateTableDoneRequestPB.newBuilder();
     builder.setTable(Master.TableIdentifierPB.newBuilder().setTableId(
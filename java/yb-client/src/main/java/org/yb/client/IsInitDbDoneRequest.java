@@ -13,7 +13,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.master.Master;
 import org.yb.util.Pair;
@@ -43,7 +42,7 @@ class IsInitDbDoneRequest extends YRpc<IsInitDbDoneResponse> {
       String masterUUID) throws Exception {
     final Master.IsInitDbDoneResponsePB.Builder respBuilder =
         Master.IsInitDbDoneResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     IsInitDbDoneResponse response =
         new IsInitDbDoneResponse(
@@ -59,7 +58,7 @@ class IsInitDbDoneRequest extends YRpc<IsInitDbDoneResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.IsInitDbDoneRequestPB.Builder builder = Master
         .IsInitDbDoneRequestPB.newBuilder();
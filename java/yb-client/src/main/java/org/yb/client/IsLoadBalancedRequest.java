@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -35,7 +34,7 @@ class IsLoadBalancedRequest extends YRpc<IsLoadBalancedResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.IsLoadBalancedRequestPB.Builder builder =
       Master.IsLoadBalancedRequestPB.newBuilder();
@@ -55,7 +54,7 @@ class IsLoadBalancedRequest extends YRpc<IsLoadBalancedResponse> {
       String masterUUID) throws Exception {
     final Master.IsLoadBalancedResponsePB.Builder respBuilder =
       Master.IsLoadBalancedResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     IsLoadBalancedResponse response =
       new IsLoadBalancedResponse(deadlineTracker.getElapsedMillis(),
@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -31,7 +30,7 @@ class IsLoadBalancerIdleRequest extends YRpc<IsLoadBalancerIdleResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.IsLoadBalancerIdleRequestPB.Builder builder =
       Master.IsLoadBalancerIdleRequestPB.newBuilder();
@@ -50,7 +49,7 @@ class IsLoadBalancerIdleRequest extends YRpc<IsLoadBalancerIdleResponse> {
       String masterUUID) throws Exception {
     final Master.IsLoadBalancerIdleResponsePB.Builder respBuilder =
       Master.IsLoadBalancerIdleResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     IsLoadBalancerIdleResponse response =
       new IsLoadBalancerIdleResponse(deadlineTracker.getElapsedMillis(),
@@ -18,8 +18,6 @@ import org.yb.annotations.InterfaceAudience;
 import org.yb.tserver.Tserver;
 import org.yb.util.Pair;
 
-import com.google.protobuf.Message;
-
 @InterfaceAudience.Public
 class IsServerReadyRequest extends YRpc<IsServerReadyResponse> {
   public IsServerReadyRequest() {
@@ -27,7 +25,7 @@ class IsServerReadyRequest extends YRpc<IsServerReadyResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Tserver.IsTabletServerReadyRequestPB.Builder builder =
         Tserver.IsTabletServerReadyRequestPB.newBuilder();
@@ -49,7 +47,7 @@ class IsServerReadyRequest extends YRpc<IsServerReadyResponse> {
       CallResponse callResponse, String uuid) throws Exception {
     final Tserver.IsTabletServerReadyResponsePB.Builder respBuilder =
         Tserver.IsTabletServerReadyResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasError = respBuilder.hasError();
     IsServerReadyResponse response =
         new IsServerReadyResponse(deadlineTracker.getElapsedMillis(), uuid,
@@ -0,0 +1,149 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in microseconds, with a bounded relative error.
+ * <p>
+ * Values below 32 are counted exactly. Above that, every power of two is split into 16 buckets
+ * of equal width, so a value is reported at most 1/16th (6.25%) above what was recorded. This is
+ * the same log-linear layout as an HDR histogram with one significant digit, using a fixed
+ * array of 592 counters that covers up to 2^40 microseconds (about 12 days). Larger values are
+ * counted as that maximum.
+ * <p>
+ * Recording only takes a few atomic increments and can be done from any thread. Snapshots
+ * aren't atomic: values recorded while one is taken may or may not be part of it.
+ */
+@InterfaceAudience.Private
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** Values below this are counted in a bucket of their own. */
+  private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+  /** Largest value that can be recorded, anything above counts as this. */
+  static final long MAX_VALUE = (1L << 40) - 1;
+
+  private static final int NUM_BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value.
+   * @param value a latency in microseconds, negative values count as 0
+   */
+  void record(long value) {
+    if (value < 0) {
+      value = 0;
+    } else if (value > MAX_VALUE) {
+      value = MAX_VALUE;
+    }
+    counts.incrementAndGet(bucketIndex(value));
+    sum.add(value);
+    long currentMax;
+    while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+      // Someone else raised the maximum in the meantime, check again.
+    }
+  }
+
+  /**
+   * Records a duration measured with {@link System#nanoTime()}.
+   */
+  void recordNanos(long nanos) {
+    record(nanos / 1000);
+  }
+
+  static int bucketIndex(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return the largest value counted in the given bucket
+   */
+  static long bucketUpperBound(int index) {
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+    int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+    int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+
+  LatencySnapshot snapshot() {
+    long[] snapshotCounts = new long[NUM_BUCKETS];
+    long count = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      snapshotCounts[i] = counts.get(i);
+      count += snapshotCounts[i];
+    }
+    if (count == 0) {
+      return LatencySnapshot.EMPTY;
+    }
+    long snapshotMax = max.get();
+    return new LatencySnapshot(count,
+                               (double) sum.sum() / count,
+                               snapshotMax,
+                               percentile(snapshotCounts, count, snapshotMax, 50),
+                               percentile(snapshotCounts, count, snapshotMax, 90),
+                               percentile(snapshotCounts, count, snapshotMax, 99),
+                               percentile(snapshotCounts, count, snapshotMax, 99.9));
+  }
+
+  /**
+   * Computes a single percentile of the values recorded so far, without taking a snapshot.
+   * @param percentile the percentile, between 0 and 100
+   * @param minCount the number of values needed for the percentile to be meaningful
+   * @return the percentile in microseconds, or -1 if fewer than {@code minCount} values were
+   * recorded
+   */
+  long percentile(double percentile, long minCount) {
+    long[] snapshotCounts = new long[NUM_BUCKETS];
+    long count = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      snapshotCounts[i] = counts.get(i);
+      count += snapshotCounts[i];
+    }
+    if (count == 0 || count < minCount) {
+      return -1;
+    }
+    return percentile(snapshotCounts, count, max.get(), percentile);
+  }
+
+  private static long percentile(long[] counts, long count, long max, double percentile) {
+    long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(bucketUpperBound(i), max);
+      }
+    }
+    return max;
+  }
+}
@@ -0,0 +1,86 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * Immutable summary of a latency distribution, in microseconds. Percentiles are within 6.25%
+ * of the actual values.
+ * @see RpcMetrics
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class LatencySnapshot {
+
+  static final LatencySnapshot EMPTY = new LatencySnapshot(0, 0, 0, 0, 0, 0, 0);
+
+  private final long count;
+  private final double meanMicros;
+  private final long maxMicros;
+  private final long p50Micros;
+  private final long p90Micros;
+  private final long p99Micros;
+  private final long p999Micros;
+
+  LatencySnapshot(long count, double meanMicros, long maxMicros, long p50Micros,
+                  long p90Micros, long p99Micros, long p999Micros) {
+    this.count = count;
+    this.meanMicros = meanMicros;
+    this.maxMicros = maxMicros;
+    this.p50Micros = p50Micros;
+    this.p90Micros = p90Micros;
+    this.p99Micros = p99Micros;
+    this.p999Micros = p999Micros;
+  }
+
+  /**
+   * @return the number of recorded values
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public double getMeanMicros() {
+    return meanMicros;
+  }
+
+  public long getMaxMicros() {
+    return maxMicros;
+  }
+
+  public long getP50Micros() {
+    return p50Micros;
+  }
+
+  public long getP90Micros() {
+    return p90Micros;
+  }
+
+  public long getP99Micros() {
+    return p99Micros;
+  }
+
+  public long getP999Micros() {
+    return p999Micros;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d, mean=%.1fus, p50=%dus, p90=%dus, p99=%dus, p99.9=%dus, " +
+                         "max=%dus", count, meanMicros, p50Micros, p90Micros, p99Micros,
+                         p999Micros, maxMicros);
+  }
+}
@@ -14,7 +14,6 @@
 package org.yb.client;
 
 import com.google.protobuf.ByteString;
-import com.google.protobuf.Message;
 import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.yb.annotations.InterfaceAudience;
@@ -33,7 +32,7 @@ class LeaderStepDownRequest extends YRpc<LeaderStepDownResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Consensus.LeaderStepDownRequestPB.Builder builder =
       Consensus.LeaderStepDownRequestPB.newBuilder();
@@ -55,7 +54,7 @@ class LeaderStepDownRequest extends YRpc<LeaderStepDownResponse> {
                                                    String masterUUID) throws Exception {
     final Consensus.LeaderStepDownResponsePB.Builder respBuilder =
       Consensus.LeaderStepDownResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
 
     LeaderStepDownResponse response = new LeaderStepDownResponse(
@@ -13,7 +13,6 @@
 
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import org.yb.Common.HostPortPB;
 import org.yb.consensus.Metadata;
 import org.yb.WireProtocol;
@@ -33,7 +32,7 @@ class ListMastersRequest extends YRpc<ListMastersResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.ListMastersRequestPB.Builder builder =
       Master.ListMastersRequestPB.newBuilder();
@@ -53,7 +52,7 @@ class ListMastersRequest extends YRpc<ListMastersResponse> {
                                                 String masterUUID) throws Exception {
     final Master.ListMastersResponsePB.Builder respBuilder =
       Master.ListMastersResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     List<ServerInfo> masters = new ArrayList<ServerInfo>();
     boolean hasErr = respBuilder.hasError();
     if (!hasErr) {
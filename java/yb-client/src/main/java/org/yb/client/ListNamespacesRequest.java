@@ -0,0 +1,56 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.master.Master;
+import org.yb.util.Pair;
+
+@InterfaceAudience.Private
+class ListNamespacesRequest extends YRpc<ListNamespacesResponse> {
+
+  ListNamespacesRequest(YBTable masterTable) {
+    super(masterTable);
+  }
+
+  @Override
+  ChannelBuffer serialize(RpcRequestHeader header) {
+    assert header.isInitialized();
+    // Leaving the database type unset lists the namespaces of every API.
+    final Master.ListNamespacesRequestPB.Builder builder =
+        Master.ListNamespacesRequestPB.newBuilder();
+    return toChannelBuffer(header, builder.build());
+  }
+
+  @Override
+  String serviceName() { return MASTER_SERVICE_NAME; }
+
+  @Override
+  String method() {
+    return "ListNamespaces";
+  }
+
+  @Override
+  Pair<ListNamespacesResponse, Object> deserialize(CallResponse callResponse,
+                                                   String tsUUID) throws Exception {
+    final Master.ListNamespacesResponsePB.Builder respBuilder =
+        Master.ListNamespacesResponsePB.newBuilder();
+    readProtobuf(callResponse, respBuilder);
+    ListNamespacesResponse response = new ListNamespacesResponse(
+        deadlineTracker.getElapsedMillis(), tsUUID, respBuilder.getNamespacesList());
+    return new Pair<ListNamespacesResponse, Object>(
+        response, respBuilder.hasError() ? respBuilder.getError() : null);
+  }
+}
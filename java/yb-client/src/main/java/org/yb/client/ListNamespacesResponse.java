@@ -0,0 +1,43 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+import org.yb.master.Master;
+
+import java.util.List;
+
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class ListNamespacesResponse extends YRpcResponse {
+
+  private final List<Master.NamespaceIdentifierPB> namespacesList;
+
+  ListNamespacesResponse(long ellapsedMillis,
+                         String tsUUID,
+                         List<Master.NamespaceIdentifierPB> namespacesList) {
+    super(ellapsedMillis, tsUUID);
+    this.namespacesList = namespacesList;
+  }
+
+  /**
+   * Get the namespaces of all the APIs, i.e. YSQL databases, YCQL keyspaces and the YEDIS
+   * keyspace.
+   * @return a list of namespace identifiers, with their id, name and database type
+   */
+  public List<Master.NamespaceIdentifierPB> getNamespacesList() {
+    return namespacesList;
+  }
+}
@@ -0,0 +1,105 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.Common.TableType;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+import org.yb.master.Master;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * This is a builder class for the filters applied when listing tables with
+ * {@link YBClient#listTables(ListTablesOptions)}. Filters the master doesn't support are applied
+ * by the client while it parses each response, so tables that don't match are never kept.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class ListTablesOptions {
+
+  private String namePrefix;
+  private String keyspace;
+  private Set<TableType> tableTypes;
+  private boolean excludeSystemTables;
+
+  /**
+   * Only list the tables whose name starts with the given prefix.
+   * @param namePrefix the prefix, or null to list tables with any name
+   * @return this instance
+   */
+  public ListTablesOptions setNamePrefix(String namePrefix) {
+    this.namePrefix = namePrefix;
+    return this;
+  }
+
+  /**
+   * Only list the tables of the given keyspace.
+   * @param keyspace the keyspace name, or null to list the tables of every keyspace
+   * @return this instance
+   */
+  public ListTablesOptions setKeyspace(String keyspace) {
+    this.keyspace = keyspace;
+    return this;
+  }
+
+  /**
+   * Only list the tables of the given types.
+   * @param tableTypes the types, none to list tables of any type
+   * @return this instance
+   */
+  public ListTablesOptions setTableTypes(TableType... tableTypes) {
+    this.tableTypes = tableTypes.length == 0 ? null : EnumSet.copyOf(Arrays.asList(tableTypes));
+    return this;
+  }
+
+  /**
+   * Skip system tables, except for the YEDIS ones which are stored as system tables, like
+   * {@link YBClient#getTablesList()} does.
+   * @param excludeSystemTables whether or not to skip system tables
+   * @return this instance
+   */
+  public ListTablesOptions setExcludeSystemTables(boolean excludeSystemTables) {
+    this.excludeSystemTables = excludeSystemTables;
+    return this;
+  }
+
+  String getNamePrefix() {
+    return namePrefix;
+  }
+
+  String getKeyspace() {
+    return keyspace;
+  }
+
+  boolean getExcludeSystemTables() {
+    return excludeSystemTables;
+  }
+
+  /**
+   * Checks a table against the filters the master can't apply. The master only matches
+   * substrings of names, so the prefix is checked again here.
+   */
+  boolean matches(Master.ListTablesResponsePB.TableInfo table) {
+    if (namePrefix != null && !table.getName().startsWith(namePrefix)) {
+      return false;
+    }
+    if (tableTypes != null && !tableTypes.contains(table.getTableType())) {
+      return false;
+    }
+    return true;
+  }
+}
@@ -31,13 +31,16 @@
 //
 package org.yb.client;
 
-import com.google.protobuf.Message;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.Common.YQLDatabase;
 import org.yb.master.Master;
 import org.yb.util.Pair;
 import org.jboss.netty.buffer.ChannelBuffer;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -47,6 +50,10 @@ class ListTablesRequest extends YRpc<ListTablesResponse> {
   private final String nameFilter;
   private final String namespace;
   private final boolean excludeSystemTables;
+  // Namespace to list the tables of, takes precedence over 'namespace' when set.
+  private final Master.NamespaceIdentifierPB namespaceId;
+  // Filters applied while parsing the response, or null to keep all the tables.
+  private final ListTablesOptions options;
 
   ListTablesRequest(
       YBTable masterTable, String nameFilter, boolean excludeSystemTables, String namespace) {
@@ -54,10 +61,28 @@ class ListTablesRequest extends YRpc<ListTablesResponse> {
     this.nameFilter = nameFilter;
     this.excludeSystemTables = excludeSystemTables;
     this.namespace = namespace;
+    this.namespaceId = null;
+    this.options = null;
+  }
+
+  /**
+   * Lists the tables of a single namespace that match the given options.
+   * @param namespaceId the namespace, as returned by {@link ListNamespacesRequest}
+   */
+  ListTablesRequest(YBTable masterTable, ListTablesOptions options,
+                    Master.NamespaceIdentifierPB namespaceId) {
+    super(masterTable);
+    // The master matches substrings, which narrows down the tables to check for the prefix.
+    this.nameFilter = options.getNamePrefix();
+    this.excludeSystemTables = options.getExcludeSystemTables() &&
+        !YBClient.REDIS_KEYSPACE_NAME.equals(namespaceId.getName());
+    this.namespace = null;
+    this.namespaceId = namespaceId;
+    this.options = options;
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final Master.ListTablesRequestPB.Builder builder =
         Master.ListTablesRequestPB.newBuilder();
@@ -67,7 +92,9 @@ class ListTablesRequest extends YRpc<ListTablesResponse> {
     if (excludeSystemTables) {
       builder.setExcludeSystemTables(excludeSystemTables);
     }
-    if (namespace != null) {
+    if (namespaceId != null) {
+      builder.setNamespace(namespaceId);
+    } else if (namespace != null) {
       final Master.NamespaceIdentifierPB.Builder namespaceBuilder =
           Master.NamespaceIdentifierPB.newBuilder();
           namespaceBuilder.setName(namespace);
@@ -87,12 +114,56 @@ class ListTablesRequest extends YRpc<ListTablesResponse> {
   @Override
   Pair<ListTablesResponse, Object> deserialize(CallResponse callResponse,
                                                String tsUUID) throws Exception {
+    if (options != null) {
+      return deserializeFiltered(callResponse, tsUUID);
+    }
     final Master.ListTablesResponsePB.Builder respBuilder =
         Master.ListTablesResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     ListTablesResponse response = new ListTablesResponse(deadlineTracker.getElapsedMillis(),
                                                          tsUUID, respBuilder.getTablesList());
     return new Pair<ListTablesResponse, Object>(
         response, respBuilder.hasError() ? respBuilder.getError() : null);
   }
+
+  /**
+   * Parses the tables one at a time and only keeps the ones that match the options, instead of
+   * building the whole response first.
+   */
+  private Pair<ListTablesResponse, Object> deserializeFiltered(CallResponse callResponse,
+                                                               String tsUUID) {
+    final int length = callResponse.getPBMessageLength();
+    final CodedInputStream input = callResponse.getPBMessageStream();
+    input.setSizeLimit(length);
+    final List<Master.ListTablesResponsePB.TableInfo> tables =
+        new ArrayList<Master.ListTablesResponsePB.TableInfo>();
+    Master.MasterErrorPB.Builder error = null;
+    try {
+      for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+        final int field = WireFormat.getTagFieldNumber(tag);
+        if (WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+          input.skipField(tag);
+        } else if (field == Master.ListTablesResponsePB.TABLES_FIELD_NUMBER) {
+          final Master.ListTablesResponsePB.TableInfo table = input.readMessage(
+              Master.ListTablesResponsePB.TableInfo.parser(),
+              ExtensionRegistryLite.getEmptyRegistry());
+          if (options.matches(table)) {
+            tables.add(table);
+          }
+        } else if (field == Master.ListTablesResponsePB.ERROR_FIELD_NUMBER) {
+          if (error == null) {
+            error = Master.MasterErrorPB.newBuilder();
+          }
+          input.readMessage(error, ExtensionRegistryLite.getEmptyRegistry());
+        } else {
+          input.skipField(tag);
+        }
+      }
+    } catch (IOException e) {
+      throw new InvalidResponseException("Invalid RPC response: length=" + length, e);
+    }
+    ListTablesResponse response = new ListTablesResponse(deadlineTracker.getElapsedMillis(),
+                                                         tsUUID, tables);
+    return new Pair<ListTablesResponse, Object>(response, error == null ? null : error.build());
+  }
 }
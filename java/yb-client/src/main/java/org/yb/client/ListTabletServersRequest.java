@@ -31,7 +31,6 @@
 //
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import static org.yb.master.Master.*;
 
 import org.yb.annotations.InterfaceAudience;
@@ -50,7 +49,7 @@ public class ListTabletServersRequest extends YRpc<ListTabletServersResponse> {
     super(masterTable);
   }
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final ListTabletServersRequestPB.Builder builder = ListTabletServersRequestPB.newBuilder();
     return toChannelBuffer(header, builder.build());
@@ -69,7 +68,7 @@ public class ListTabletServersRequest extends YRpc<ListTabletServersResponse> {
                                                       String tsUUID) throws Exception {
     final ListTabletServersResponsePB.Builder respBuilder =
       ListTabletServersResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     boolean hasErr = respBuilder.hasError();
     int serversCount = hasErr ? 0 : respBuilder.getServersCount();
     List<ServerInfo> servers = new ArrayList<ServerInfo>();
@@ -13,7 +13,6 @@
 
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import org.yb.consensus.Metadata;
 import org.yb.WireProtocol;
 import org.yb.annotations.InterfaceAudience;
@@ -28,7 +27,7 @@ class PingRequest extends YRpc<PingResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final ServerBase.PingRequestPB.Builder builder =
       ServerBase.PingRequestPB.newBuilder();
@@ -47,7 +46,7 @@ class PingRequest extends YRpc<PingResponse> {
   Pair<PingResponse, Object> deserialize(CallResponse callResponse,
                                          String uuid) throws Exception {
     final ServerBase.PingResponsePB.Builder respBuilder = ServerBase.PingResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     PingResponse response = new PingResponse(deadlineTracker.getElapsedMillis(), uuid);
 
     return new Pair<PingResponse, Object>(response, null);
@@ -0,0 +1,127 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.collect.ImmutableList;
+import org.yb.Common;
+import org.yb.annotations.InterfaceAudience;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of a tablet's replicas: the tablet servers hosting them, the index of the
+ * one believed to be the leader, and where each of them is placed. Changes never modify a
+ * snapshot, they return a new one.
+ * @see AsyncYBClient.RemoteTablet
+ */
+@InterfaceAudience.Private
+final class ReplicaSet {
+
+  static final int NO_LEADER_INDEX = -1;
+
+  static final ReplicaSet EMPTY = new ReplicaSet(ImmutableList.<TabletClient>of(),
+      ImmutableList.<Common.CloudInfoPB>of(), NO_LEADER_INDEX);
+
+  private final ImmutableList<TabletClient> servers;
+  private final ImmutableList<Common.CloudInfoPB> placements;
+  private final int leaderIndex;
+
+  /**
+   * @param servers the tablet servers hosting the replicas
+   * @param placements the placement of each server, in the same order
+   * @param leaderIndex the index of the leader in {@code servers}, or {@link #NO_LEADER_INDEX}
+   */
+  ReplicaSet(List<TabletClient> servers, List<Common.CloudInfoPB> placements, int leaderIndex) {
+    if (servers.size() != placements.size()) {
+      throw new IllegalArgumentException("Got " + servers.size() + " servers but " +
+          placements.size() + " placements");
+    }
+    this.servers = ImmutableList.copyOf(servers);
+    this.placements = ImmutableList.copyOf(placements);
+    this.leaderIndex = leaderIndex;
+  }
+
+  /**
+   * @return the leader's client, or {@code null} if there are no servers or no known leader
+   */
+  TabletClient getLeader() {
+    if (leaderIndex == NO_LEADER_INDEX || leaderIndex >= servers.size()) {
+      return null;
+    }
+    return servers.get(leaderIndex);
+  }
+
+  int getLeaderIndex() {
+    return leaderIndex;
+  }
+
+  List<TabletClient> getServers() {
+    return servers;
+  }
+
+  List<Common.CloudInfoPB> getPlacements() {
+    return placements;
+  }
+
+  /**
+   * Returns the index of the server the given client connects to, which may be another
+   * connection from the same pool than the one held in this replica set, or -1 if it isn't
+   * one of the replicas.
+   */
+  int indexOf(TabletClient server) {
+    for (int i = 0; i < servers.size(); i++) {
+      if (servers.get(i).isSameServer(server)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns a copy of this replica set without the server at the given index. If it was the
+   * leader, the next server gets promoted, unless it was the last one in which case there's no
+   * leader anymore.
+   */
+  ReplicaSet withoutServer(int index) {
+    ImmutableList.Builder<TabletClient> newServers = ImmutableList.builder();
+    ImmutableList.Builder<Common.CloudInfoPB> newPlacements = ImmutableList.builder();
+    for (int i = 0; i < servers.size(); i++) {
+      if (i != index) {
+        newServers.add(servers.get(i));
+        newPlacements.add(placements.get(i));
+      }
+    }
+    int newLeaderIndex = leaderIndex;
+    if (leaderIndex == index && leaderIndex == servers.size() - 1) {
+      newLeaderIndex = NO_LEADER_INDEX;
+    } else if (leaderIndex > index) {
+      newLeaderIndex--; // leader moved down the list
+    }
+    return new ReplicaSet(newServers.build(), newPlacements.build(), newLeaderIndex);
+  }
+
+  /**
+   * Returns a copy of this replica set where the server after the leader is the leader, or
+   * without a leader if the leader was the last server.
+   */
+  ReplicaSet withNextLeader() {
+    int newLeaderIndex = leaderIndex + 1 == servers.size() ? NO_LEADER_INDEX : leaderIndex + 1;
+    return new ReplicaSet(servers, placements, newLeaderIndex);
+  }
+
+  @Override
+  public String toString() {
+    return "ReplicaSet(servers=" + servers + ", leaderIndex=" + leaderIndex + ")";
+  }
+}
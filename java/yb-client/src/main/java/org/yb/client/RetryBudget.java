@@ -0,0 +1,80 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import org.yb.annotations.InterfaceAudience;
+
+/**
+ * Token bucket that limits how many retries a client can make. Every retry takes a token, and
+ * tokens come back at a fixed rate up to the size of the bucket. Once the bucket is empty,
+ * retries fail right away: when a server or the network is down for long, clients then stop
+ * piling retries on top of the regular traffic.
+ * <p>
+ * This class is thread-safe.
+ */
+@InterfaceAudience.Private
+final class RetryBudget {
+
+  private final double maxTokens;
+  private final double tokensPerNano;
+
+  private double tokens;
+  private long lastRefillNanos;
+
+  /**
+   * @param maxTokens the size of the bucket, i.e. how many retries can be made in a burst
+   * @param tokensPerSecond how many retries per second can be made once the bucket is empty
+   */
+  RetryBudget(int maxTokens, double tokensPerSecond) {
+    this(maxTokens, tokensPerSecond, System.nanoTime());
+  }
+
+  @VisibleForTesting
+  RetryBudget(int maxTokens, double tokensPerSecond, long nowNanos) {
+    Preconditions.checkArgument(maxTokens > 0, "maxTokens should be greater than 0");
+    Preconditions.checkArgument(tokensPerSecond >= 0, "tokensPerSecond should not be negative");
+    this.maxTokens = maxTokens;
+    this.tokensPerNano = tokensPerSecond / 1e9;
+    this.tokens = maxTokens;
+    this.lastRefillNanos = nowNanos;
+  }
+
+  /**
+   * Takes a token out of the bucket if there is one.
+   * @return whether or not a retry can be made
+   */
+  boolean tryAcquire() {
+    return tryAcquire(System.nanoTime());
+  }
+
+  @VisibleForTesting
+  synchronized boolean tryAcquire(long nowNanos) {
+    if (nowNanos > lastRefillNanos) {
+      tokens = Math.min(maxTokens, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+      lastRefillNanos = nowNanos;
+    }
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "RetryBudget(maxTokens=" + maxTokens + ", tokensPerSecond=" + tokensPerNano * 1e9 + ")";
+  }
+}
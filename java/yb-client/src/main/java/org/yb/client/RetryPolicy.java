@@ -0,0 +1,35 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * Decides how long {@link AsyncYBClient} waits before retrying an RPC that failed with a
+ * retryable error. Implementations are shared by all the RPCs of a client, so they have to be
+ * thread-safe.
+ * @see AsyncYBClient.AsyncYBClientBuilder#retryPolicy(RetryPolicy)
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface RetryPolicy {
+  /**
+   * Computes the time to sleep before the next attempt of an RPC.
+   * @param previousSleepTimeMs the time slept before the previous attempt of the same RPC,
+   * or 0 if it wasn't retried yet
+   * @return a sleep time in milliseconds
+   */
+  long getSleepTimeMs(long previousSleepTimeMs);
+}
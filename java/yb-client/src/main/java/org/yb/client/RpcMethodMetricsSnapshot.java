@@ -0,0 +1,147 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+/**
+ * Immutable metrics of the calls made to one RPC method, since the client was created.
+ * <p>
+ * A call spans from the moment it's issued until its callback runs, including master lookups,
+ * queuing and retries. Each attempt is timed separately, from the moment its request is
+ * written until its response is received, which is the network round trip plus the time spent
+ * on the server. A call latency much higher than the attempt latency points at the client side.
+ * @see RpcMetrics
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class RpcMethodMetricsSnapshot {
+
+  private final String serviceName;
+  private final String methodName;
+  private final long calls;
+  private final long failures;
+  private final long attempts;
+  private final long bytesSent;
+  private final long bytesReceived;
+  private final long serializeTimeMicros;
+  private final long deserializeTimeMicros;
+  private final LatencySnapshot callLatency;
+  private final LatencySnapshot attemptLatency;
+
+  RpcMethodMetricsSnapshot(String serviceName, String methodName, long calls, long failures,
+                           long attempts, long bytesSent, long bytesReceived,
+                           long serializeTimeMicros, long deserializeTimeMicros,
+                           LatencySnapshot callLatency, LatencySnapshot attemptLatency) {
+    this.serviceName = serviceName;
+    this.methodName = methodName;
+    this.calls = calls;
+    this.failures = failures;
+    this.attempts = attempts;
+    this.bytesSent = bytesSent;
+    this.bytesReceived = bytesReceived;
+    this.serializeTimeMicros = serializeTimeMicros;
+    this.deserializeTimeMicros = deserializeTimeMicros;
+    this.callLatency = callLatency;
+    this.attemptLatency = attemptLatency;
+  }
+
+  /**
+   * @return the RPC service, e.g. "yb.master.MasterService"
+   */
+  public String getServiceName() {
+    return serviceName;
+  }
+
+  /**
+   * @return the RPC method, e.g. "GetTableLocations"
+   */
+  public String getMethodName() {
+    return methodName;
+  }
+
+  /**
+   * @return the number of completed calls, successful or not
+   */
+  public long getCalls() {
+    return calls;
+  }
+
+  /**
+   * @return the number of calls that completed with an error
+   */
+  public long getFailures() {
+    return failures;
+  }
+
+  /**
+   * @return the number of requests sent, including retries
+   */
+  public long getAttempts() {
+    return attempts;
+  }
+
+  /**
+   * @return the number of bytes of requests written, including framing
+   */
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
+  /**
+   * @return the number of bytes of responses received, including framing
+   */
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  /**
+   * @return the total time spent serializing requests
+   */
+  public long getSerializeTimeMicros() {
+    return serializeTimeMicros;
+  }
+
+  /**
+   * @return the total time spent deserializing responses
+   */
+  public long getDeserializeTimeMicros() {
+    return deserializeTimeMicros;
+  }
+
+  /**
+   * @return the latencies of the calls, from being issued to completing
+   */
+  public LatencySnapshot getCallLatency() {
+    return callLatency;
+  }
+
+  /**
+   * @return the latencies of the attempts, from the request being written to its response
+   * being received
+   */
+  public LatencySnapshot getAttemptLatency() {
+    return attemptLatency;
+  }
+
+  @Override
+  public String toString() {
+    return serviceName + "." + methodName + ": calls=" + calls + ", failures=" + failures +
+        ", attempts=" + attempts + ", bytesSent=" + bytesSent + ", bytesReceived=" +
+        bytesReceived + ", serializeTime=" + serializeTimeMicros + "us, deserializeTime=" +
+        deserializeTimeMicros + "us, callLatency={" + callLatency + "}, attemptLatency={" +
+        attemptLatency + "}";
+  }
+}
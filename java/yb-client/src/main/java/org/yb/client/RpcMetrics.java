@@ -0,0 +1,220 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side metrics of the RPCs sent by an {@link AsyncYBClient}, per service and method.
+ * <p>
+ * They tell where the time of a slow call goes: waiting for the master to locate its tablet,
+ * being queued or retried on the client, or in the network and on the server. Metrics are
+ * always collected, read them with {@link #snapshot()} or through JMX.
+ * @see AsyncYBClient#getRpcMetrics()
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class RpcMetrics implements RpcMetricsMXBean {
+
+  private final AsyncYBClient client;
+
+  /** Metrics per method, keyed by service name and then by method name. */
+  private final ConcurrentHashMap<String, ConcurrentHashMap<String, MethodMetrics>> services =
+      new ConcurrentHashMap<>();
+
+  private final LatencyHistogram masterLookupLatency = new LatencyHistogram();
+
+  RpcMetrics(AsyncYBClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Returns the metrics of the given method, registering it on its first call.
+   */
+  MethodMetrics forMethod(String serviceName, String methodName) {
+    ConcurrentHashMap<String, MethodMetrics> methods = services.get(serviceName);
+    if (methods == null) {
+      methods = new ConcurrentHashMap<>();
+      ConcurrentHashMap<String, MethodMetrics> existing =
+          services.putIfAbsent(serviceName, methods);
+      if (existing != null) {
+        methods = existing;
+      }
+    }
+    MethodMetrics metrics = methods.get(methodName);
+    if (metrics == null) {
+      metrics = new MethodMetrics();
+      MethodMetrics existing = methods.putIfAbsent(methodName, metrics);
+      if (existing != null) {
+        metrics = existing;
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Records how long a tablet location lookup took.
+   * @param nanos duration measured with {@link System#nanoTime()}
+   */
+  void recordMasterLookup(long nanos) {
+    masterLookupLatency.recordNanos(nanos);
+  }
+
+  /**
+   * @return a copy of all the metrics as of now
+   */
+  public RpcMetricsSnapshot snapshot() {
+    return new RpcMetricsSnapshot(getMethods(), getMasterLookupLatency(), getInflightRpcs(),
+                                  getPendingRpcs(), getNumRetries(),
+                                  getNumRetryBudgetExhausted(), getNumExpiredRpcs(),
+                                  getNumBackpressuredRpcs(), getNumHedgedRpcs(),
+                                  getNumHedgedRpcsWon());
+  }
+
+  @Override
+  public List<RpcMethodMetricsSnapshot> getMethods() {
+    List<RpcMethodMetricsSnapshot> snapshots = new ArrayList<>();
+    for (Map.Entry<String, ConcurrentHashMap<String, MethodMetrics>> service :
+         new TreeMap<>(services).entrySet()) {
+      for (Map.Entry<String, MethodMetrics> method :
+           new TreeMap<>(service.getValue()).entrySet()) {
+        snapshots.add(method.getValue().snapshot(service.getKey(), method.getKey()));
+      }
+    }
+    return ImmutableList.copyOf(snapshots);
+  }
+
+  @Override
+  public LatencySnapshot getMasterLookupLatency() {
+    return masterLookupLatency.snapshot();
+  }
+
+  @Override
+  public Map<String, Integer> getInflightRpcs() {
+    return ImmutableMap.copyOf(client.getNumInflightRpcsPerConnection());
+  }
+
+  @Override
+  public Map<String, Integer> getPendingRpcs() {
+    return ImmutableMap.copyOf(client.getNumPendingRpcsPerConnection());
+  }
+
+  @Override
+  public long getNumRetries() {
+    return client.getNumRetries();
+  }
+
+  @Override
+  public long getNumRetryBudgetExhausted() {
+    return client.getNumRetryBudgetExhausted();
+  }
+
+  @Override
+  public long getNumExpiredRpcs() {
+    return client.getNumExpiredRpcs();
+  }
+
+  @Override
+  public long getNumBackpressuredRpcs() {
+    return client.getNumBackpressuredRpcs();
+  }
+
+  @Override
+  public long getNumHedgedRpcs() {
+    return client.getNumHedgedRpcs();
+  }
+
+  @Override
+  public long getNumHedgedRpcsWon() {
+    return client.getNumHedgedRpcsWon();
+  }
+
+  /**
+   * Live metrics of one RPC method. Updated by {@link TabletClient} for every attempt, and by
+   * {@link YRpc} when a call completes.
+   */
+  static final class MethodMetrics {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder serializeNanos = new LongAdder();
+    private final LongAdder deserializeNanos = new LongAdder();
+    private final LatencyHistogram callLatency = new LatencyHistogram();
+    private final LatencyHistogram attemptLatency = new LatencyHistogram();
+
+    /**
+     * Records a request being sent.
+     * @param serializeNanos time spent serializing the request
+     * @param bytes size of the serialized request
+     */
+    void recordRequest(long serializeNanos, int bytes) {
+      attempts.increment();
+      this.serializeNanos.add(serializeNanos);
+      bytesSent.add(bytes);
+    }
+
+    /**
+     * Records a response being received.
+     * @param attemptNanos time elapsed since the request was sent
+     * @param deserializeNanos time spent deserializing the response
+     * @param bytes size of the response
+     */
+    void recordResponse(long attemptNanos, long deserializeNanos, int bytes) {
+      attemptLatency.recordNanos(attemptNanos);
+      this.deserializeNanos.add(deserializeNanos);
+      bytesReceived.add(bytes);
+    }
+
+    /**
+     * Records a call completing.
+     * @param nanos time elapsed since the call was issued
+     * @param failed whether or not the call failed
+     */
+    void recordCall(long nanos, boolean failed) {
+      callLatency.recordNanos(nanos);
+      calls.increment();
+      if (failed) {
+        failures.increment();
+      }
+    }
+
+    /**
+     * @return the given percentile of the call latency in microseconds, or -1 if fewer than
+     * {@code minCalls} calls completed
+     */
+    long getCallLatencyPercentile(double percentile, long minCalls) {
+      return callLatency.percentile(percentile, minCalls);
+    }
+
+    RpcMethodMetricsSnapshot snapshot(String serviceName, String methodName) {
+      return new RpcMethodMetricsSnapshot(serviceName, methodName, calls.sum(), failures.sum(),
+                                          attempts.sum(), bytesSent.sum(), bytesReceived.sum(),
+                                          serializeNanos.sum() / 1000,
+                                          deserializeNanos.sum() / 1000,
+                                          callLatency.snapshot(), attemptLatency.snapshot());
+    }
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of a client's {@link RpcMetrics}. Every attribute is computed when it's read.
+ * @see AsyncYBClient.AsyncYBClientBuilder#registerRpcMetricsMBean(boolean)
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface RpcMetricsMXBean {
+
+  /**
+   * @return the metrics of every RPC method called so far
+   */
+  List<RpcMethodMetricsSnapshot> getMethods();
+
+  /**
+   * @return the latencies of the tablet location lookups done by the master, including the
+   * time spent waiting for a lookup permit
+   */
+  LatencySnapshot getMasterLookupLatency();
+
+  /**
+   * @return the number of RPCs awaiting a response on each connection, keyed by
+   * "host:port#connection"
+   */
+  Map<String, Integer> getInflightRpcs();
+
+  /**
+   * @return the number of RPCs waiting for their connection to be established, keyed by
+   * "host:port#connection"
+   */
+  Map<String, Integer> getPendingRpcs();
+
+  /**
+   * @see AsyncYBClient#getNumRetries()
+   */
+  long getNumRetries();
+
+  /**
+   * @see AsyncYBClient#getNumRetryBudgetExhausted()
+   */
+  long getNumRetryBudgetExhausted();
+
+  /**
+   * @see AsyncYBClient#getNumExpiredRpcs()
+   */
+  long getNumExpiredRpcs();
+
+  /**
+   * @see AsyncYBClient#getNumBackpressuredRpcs()
+   */
+  long getNumBackpressuredRpcs();
+
+  /**
+   * @see AsyncYBClient#getNumHedgedRpcs()
+   */
+  long getNumHedgedRpcs();
+
+  /**
+   * @see AsyncYBClient#getNumHedgedRpcsWon()
+   */
+  long getNumHedgedRpcsWon();
+}
@@ -0,0 +1,147 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time copy of a client's {@link RpcMetrics}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public final class RpcMetricsSnapshot {
+
+  private final List<RpcMethodMetricsSnapshot> methods;
+  private final LatencySnapshot masterLookupLatency;
+  private final Map<String, Integer> inflightRpcs;
+  private final Map<String, Integer> pendingRpcs;
+  private final long numRetries;
+  private final long numRetryBudgetExhausted;
+  private final long numExpiredRpcs;
+  private final long numBackpressuredRpcs;
+  private final long numHedgedRpcs;
+  private final long numHedgedRpcsWon;
+
+  RpcMetricsSnapshot(List<RpcMethodMetricsSnapshot> methods,
+                     LatencySnapshot masterLookupLatency,
+                     Map<String, Integer> inflightRpcs,
+                     Map<String, Integer> pendingRpcs,
+                     long numRetries,
+                     long numRetryBudgetExhausted,
+                     long numExpiredRpcs,
+                     long numBackpressuredRpcs,
+                     long numHedgedRpcs,
+                     long numHedgedRpcsWon) {
+    this.methods = methods;
+    this.masterLookupLatency = masterLookupLatency;
+    this.inflightRpcs = inflightRpcs;
+    this.pendingRpcs = pendingRpcs;
+    this.numRetries = numRetries;
+    this.numRetryBudgetExhausted = numRetryBudgetExhausted;
+    this.numExpiredRpcs = numExpiredRpcs;
+    this.numBackpressuredRpcs = numBackpressuredRpcs;
+    this.numHedgedRpcs = numHedgedRpcs;
+    this.numHedgedRpcsWon = numHedgedRpcsWon;
+  }
+
+  /**
+   * @return the metrics of every RPC method called so far, sorted by service and method name
+   */
+  public List<RpcMethodMetricsSnapshot> getMethods() {
+    return methods;
+  }
+
+  /**
+   * Finds the metrics of the given RPC method.
+   * @param serviceName the RPC service, e.g. "yb.master.MasterService"
+   * @param methodName the RPC method, e.g. "GetTableLocations"
+   * @return the method's metrics, or {@code null} if it was never called
+   */
+  public RpcMethodMetricsSnapshot getMethod(String serviceName, String methodName) {
+    for (RpcMethodMetricsSnapshot method : methods) {
+      if (method.getServiceName().equals(serviceName) &&
+          method.getMethodName().equals(methodName)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @see RpcMetricsMXBean#getMasterLookupLatency()
+   */
+  public LatencySnapshot getMasterLookupLatency() {
+    return masterLookupLatency;
+  }
+
+  /**
+   * @see RpcMetricsMXBean#getInflightRpcs()
+   */
+  public Map<String, Integer> getInflightRpcs() {
+    return inflightRpcs;
+  }
+
+  /**
+   * @see RpcMetricsMXBean#getPendingRpcs()
+   */
+  public Map<String, Integer> getPendingRpcs() {
+    return pendingRpcs;
+  }
+
+  public long getNumRetries() {
+    return numRetries;
+  }
+
+  public long getNumRetryBudgetExhausted() {
+    return numRetryBudgetExhausted;
+  }
+
+  public long getNumExpiredRpcs() {
+    return numExpiredRpcs;
+  }
+
+  public long getNumBackpressuredRpcs() {
+    return numBackpressuredRpcs;
+  }
+
+  public long getNumHedgedRpcs() {
+    return numHedgedRpcs;
+  }
+
+  public long getNumHedgedRpcsWon() {
+    return numHedgedRpcsWon;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder();
+    for (RpcMethodMetricsSnapshot method : methods) {
+      buf.append(method).append('\n');
+    }
+    buf.append("masterLookupLatency={").append(masterLookupLatency).append("}\n");
+    buf.append("inflightRpcs=").append(inflightRpcs).append('\n');
+    buf.append("pendingRpcs=").append(pendingRpcs).append('\n');
+    buf.append("numRetries=").append(numRetries);
+    buf.append(", numRetryBudgetExhausted=").append(numRetryBudgetExhausted);
+    buf.append(", numExpiredRpcs=").append(numExpiredRpcs);
+    buf.append(", numBackpressuredRpcs=").append(numBackpressuredRpcs);
+    buf.append(", numHedgedRpcs=").append(numHedgedRpcs);
+    buf.append(", numHedgedRpcsWon=").append(numHedgedRpcsWon);
+    return buf.toString();
+  }
+}
@@ -0,0 +1,158 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.CodedOutputStream;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.rpc.RpcHeader;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The header of an RPC request, serialized exactly like an {@link RpcHeader.RequestHeader}
+ * without building one.
+ * <p>
+ * The only part of the header that is the same for every call of a method is its
+ * {@link RpcHeader.RemoteMethodPB}. It gets serialized once per service and method, and the
+ * resulting bytes are copied as is into every request. The call ID and timeout are the only
+ * fields encoded per call, so encoding a header doesn't allocate anything but this object.
+ */
+@InterfaceAudience.Private
+final class RpcRequestHeader {
+
+  /**
+   * The serialized remote_method field (tag, length and RemoteMethodPB) of every method called
+   * so far, keyed by service name and then by method name.
+   */
+  private static final ConcurrentHashMap<String, ConcurrentHashMap<String, byte[]>>
+      REMOTE_METHODS = new ConcurrentHashMap<>();
+
+  private final byte[] remoteMethod;
+  private final int callId;
+  private final boolean hasTimeout;
+  private final int timeoutMillis;
+
+  /**
+   * Creates the header of a call without a timeout.
+   */
+  RpcRequestHeader(String serviceName, String methodName, int callId) {
+    this(remoteMethodField(serviceName, methodName), callId, false, 0);
+  }
+
+  /**
+   * Creates the header of a call that the server has to answer within {@code timeoutMillis}.
+   */
+  RpcRequestHeader(String serviceName, String methodName, int callId, int timeoutMillis) {
+    this(remoteMethodField(serviceName, methodName), callId, true, timeoutMillis);
+  }
+
+  private RpcRequestHeader(byte[] remoteMethod, int callId, boolean hasTimeout,
+                           int timeoutMillis) {
+    this.remoteMethod = remoteMethod;
+    this.callId = callId;
+    this.hasTimeout = hasTimeout;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Returns the serialized remote_method field of the given method, computing it on the first
+   * call.
+   */
+  static byte[] remoteMethodField(String serviceName, String methodName) {
+    ConcurrentHashMap<String, byte[]> methods = REMOTE_METHODS.get(serviceName);
+    if (methods == null) {
+      methods = new ConcurrentHashMap<>();
+      ConcurrentHashMap<String, byte[]> existing =
+          REMOTE_METHODS.putIfAbsent(serviceName, methods);
+      if (existing != null) {
+        methods = existing;
+      }
+    }
+    byte[] field = methods.get(methodName);
+    if (field == null) {
+      RpcHeader.RemoteMethodPB remoteMethod = RpcHeader.RemoteMethodPB.newBuilder()
+          .setServiceName(serviceName)
+          .setMethodName(methodName)
+          .build();
+      field = new byte[CodedOutputStream.computeMessageSize(
+          RpcHeader.RequestHeader.REMOTE_METHOD_FIELD_NUMBER, remoteMethod)];
+      CodedOutputStream out = CodedOutputStream.newInstance(field);
+      try {
+        out.writeMessage(RpcHeader.RequestHeader.REMOTE_METHOD_FIELD_NUMBER, remoteMethod);
+        out.checkNoSpaceLeft();
+      } catch (IOException e) {
+        throw new NonRecoverableException("Cannot serialize " + remoteMethod, e);
+      }
+      // Racing threads compute the same bytes, keeping either is fine.
+      methods.put(methodName, field);
+    }
+    return field;
+  }
+
+  /**
+   * Always true, all the required fields are set by construction. Mirrors
+   * {@link com.google.protobuf.MessageLite#isInitialized()}.
+   */
+  boolean isInitialized() {
+    return true;
+  }
+
+  int getCallId() {
+    return callId;
+  }
+
+  int getSerializedSize() {
+    int size = CodedOutputStream.computeInt32Size(RpcHeader.RequestHeader.CALL_ID_FIELD_NUMBER,
+                                                   callId) + remoteMethod.length;
+    if (hasTimeout) {
+      size += CodedOutputStream.computeUInt32Size(
+          RpcHeader.RequestHeader.TIMEOUT_MILLIS_FIELD_NUMBER, timeoutMillis);
+    }
+    return size;
+  }
+
+  /**
+   * Writes the header, in field order like protobuf does.
+   */
+  void writeTo(CodedOutputStream out) throws IOException {
+    out.writeInt32(RpcHeader.RequestHeader.CALL_ID_FIELD_NUMBER, callId);
+    out.writeRawBytes(remoteMethod);
+    if (hasTimeout) {
+      out.writeUInt32(RpcHeader.RequestHeader.TIMEOUT_MILLIS_FIELD_NUMBER, timeoutMillis);
+    }
+  }
+
+  /**
+   * Builds the equivalent protobuf, only meant for tests and debugging.
+   */
+  RpcHeader.RequestHeader toPB() {
+    RpcHeader.RequestHeader.Builder builder =
+        RpcHeader.RequestHeader.newBuilder().setCallId(callId);
+    try {
+      builder.mergeFrom(remoteMethod);
+    } catch (IOException e) {
+      throw new NonRecoverableException("Cannot parse the remote method of call " + callId, e);
+    }
+    if (hasTimeout) {
+      builder.setTimeoutMillis(timeoutMillis);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public String toString() {
+    return toPB().toString();
+  }
+}
@@ -13,7 +13,6 @@
 
 package org.yb.client;
 
-import com.google.protobuf.Message;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.util.Pair;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -32,7 +31,7 @@ class SetFlagRequest extends YRpc<SetFlagResponse> {
   }
 
   @Override
-  ChannelBuffer serialize(Message header) {
+  ChannelBuffer serialize(RpcRequestHeader header) {
     assert header.isInitialized();
     final ServerBase.SetFlagRequestPB.Builder builder = ServerBase.SetFlagRequestPB.newBuilder();
     builder.setFlag(flag);
@@ -54,7 +53,7 @@ class SetFlagRequest extends YRpc<SetFlagResponse> {
                                          String uuid) throws Exception {
     final ServerBase.SetFlagResponsePB.Builder respBuilder =
         ServerBase.SetFlagResponsePB.newBuilder();
-    readProtobuf(callResponse.getPBMessage(), respBuilder);
+    readProtobuf(callResponse, respBuilder);
     SetFlagResponse response =
         new SetFlagResponse(deadlineTracker.getElapsedMillis(), uuid, respBuilder.getResult());
     return new Pair<SetFlagResponse, Object>(response, null);
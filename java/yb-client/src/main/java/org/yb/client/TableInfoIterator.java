@@ -0,0 +1,100 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.stumbleupon.async.Deferred;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.master.Master;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the tables that match some {@link ListTablesOptions}, one namespace at a time.
+ * <p>
+ * The master returns all the tables of a ListTables call at once, so rather than listing the
+ * whole catalog, this lists the namespaces first and then the tables of each namespace as the
+ * previous one is exhausted. Only the matching tables of a single namespace are held at any
+ * given time, and callers can start processing them before the rest are fetched.
+ * <p>
+ * This class is not thread-safe.
+ */
+@InterfaceAudience.Private
+final class TableInfoIterator implements Iterator<Master.ListTablesResponsePB.TableInfo> {
+
+  private final AsyncYBClient client;
+  private final ListTablesOptions options;
+  private final long timeoutMs;
+
+  // Namespaces left to list the tables of, null until the namespaces are fetched.
+  private Iterator<Master.NamespaceIdentifierPB> namespaces;
+  private Iterator<Master.ListTablesResponsePB.TableInfo> tables = Collections.emptyIterator();
+
+  /**
+   * @param timeoutMs the timeout of each call to the master, in milliseconds
+   */
+  TableInfoIterator(AsyncYBClient client, ListTablesOptions options, long timeoutMs) {
+    this.client = client;
+    this.options = options;
+    this.timeoutMs = timeoutMs;
+  }
+
+  /**
+   * {@inheritDoc}
+   * This fetches the tables of the next namespaces from the master if needed.
+   * @throws YBException if a call to the master fails
+   */
+  @Override
+  public boolean hasNext() {
+    while (!tables.hasNext()) {
+      if (namespaces == null) {
+        namespaces = listNamespaces();
+      }
+      if (!namespaces.hasNext()) {
+        return false;
+      }
+      tables = join(client.getTablesList(options, namespaces.next()))
+          .getTableInfoList().iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public Master.ListTablesResponsePB.TableInfo next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return tables.next();
+  }
+
+  private Iterator<Master.NamespaceIdentifierPB> listNamespaces() {
+    if (options.getKeyspace() != null) {
+      return Collections.singletonList(Master.NamespaceIdentifierPB.newBuilder()
+          .setName(options.getKeyspace())
+          .build()).iterator();
+    }
+    return join(client.getNamespacesList()).getNamespacesList().iterator();
+  }
+
+  private <R> R join(Deferred<R> d) {
+    try {
+      return d.join(timeoutMs);
+    } catch (YBException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new NonRecoverableException("Couldn't list tables: " + e.getMessage(), e);
+    }
+  }
+}
@@ -50,6 +50,7 @@ import org.yb.annotations.InterfaceAudience;
 import org.yb.master.Master;
 import org.yb.rpc.RpcHeader;
 import org.yb.tserver.Tserver;
+import org.yb.util.DirectBufferPool;
 import org.yb.util.Pair;
 
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -62,8 +63,9 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
-import org.jboss.netty.handler.codec.replay.ReplayingDecoder;
-import org.jboss.netty.handler.codec.replay.VoidEnum;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,9 +73,15 @@ import javax.security.sasl.SaslException;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -96,14 +104,23 @@ import java.util.concurrent.atomic.AtomicInteger;
  * channel isn't connected.
  */
 @InterfaceAudience.Private
-public class TabletClient extends ReplayingDecoder<VoidEnum> {
+public class TabletClient extends FrameDecoder {
 
   public static final Logger LOG = LoggerFactory.getLogger(TabletClient.class);
 
   private ArrayList<YRpc<?>> pending_rpcs;
 
+  /**
+   * Size of pending_rpcs, readable without synchronizing on `this'.
+   * Only modified while synchronized on `this'.
+   */
+  private volatile int numPendingRpcs;
+
   /** The connection header.  */
   private static final byte[] RPC_HEADER = new byte[] { 'Y', 'B', 1 };
+
+  /** Size of the total length prefix of every response frame. */
+  static final int FRAME_LENGTH_PREFIX_SIZE = 4;
   public static final int CONNECTION_CTX_CALL_ID = -3;
 
   /**
@@ -142,31 +159,250 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
   private final ConcurrentHashMap<Integer, YRpc<?>> rpcs_inflight =
       new ConcurrentHashMap<Integer, YRpc<?>>();
 
+  /** Maximum number of entries in {@link #expiredCallIds}. */
+  private static final int MAX_EXPIRED_CALL_IDS = 4096;
+
+  /**
+   * IDs of the RPCs failed by {@link #expireTimedOutRpcs} whose response hasn't arrived yet.
+   * A late response to one of them is dropped instead of being treated as a protocol error.
+   * Past {@link #MAX_EXPIRED_CALL_IDS} entries, IDs aren't remembered anymore: the server is so
+   * far behind that the connection gets closed by the first late response it sends.
+   */
+  private final Set<Integer> expiredCallIds =
+      Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
   private final AsyncYBClient ybClient;
 
   private final String uuid;
 
+  /** Address of the server this client connects to, or null if it isn't known. */
+  private final String host;
+  private final int port;
+
   private final long socketReadTimeoutMs;
 
+  /**
+   * Maximum number of bytes written to the channel at once when coalescing
+   * writes, or 0 if every RPC is written on its own.
+   */
+  private final int writeCoalescingMaxBytes;
+
+  /**
+   * Encoded RPCs waiting for {@link #flushOutbound} to write them.
+   * Only used when coalescing writes.
+   */
+  private final ConcurrentLinkedQueue<ChannelBuffer> outbound =
+      new ConcurrentLinkedQueue<ChannelBuffer>();
+
+  /**
+   * Set while a {@link #flushOutbound} is scheduled on the IO thread and
+   * hasn't started yet.
+   */
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  /**
+   * Maximum number of RPCs pending or in flight on this connection, or 0 if
+   * there's no limit.
+   */
+  private final int maxRpcs;
+
+  /** What to do with RPCs sent past {@link #maxRpcs}. */
+  private final BackpressurePolicy backpressurePolicy;
+
+  /** Pool that fragmented responses get gathered into, or null to gather them on the heap. */
+  private final DirectBufferPool directBufferPool;
+
+  /**
+   * Number of RPCs admitted on this connection that haven't left it yet, at most
+   * {@link #maxRpcs}. Only maintained when there is a limit. Slots are taken before an RPC
+   * gets pending or in flight and given back once it's not anymore, so that concurrent senders
+   * can't go past the limit.
+   */
+  private final AtomicInteger numAdmittedRpcs = new AtomicInteger();
+
+  /**
+   * RPCs parked by {@link BackpressurePolicy#BLOCK} until a slot frees up, in the order they
+   * were sent. The sending thread isn't blocked, the RPCs get sent by whoever gives back a slot.
+   */
+  private final ConcurrentLinkedQueue<YRpc<?>> blockedRpcs =
+      new ConcurrentLinkedQueue<YRpc<?>>();
+
+  /** Set while a thread is sending the parked RPCs, see {@link #sendBlockedRpcs}. */
+  private final AtomicBoolean sendingBlockedRpcs = new AtomicBoolean();
+
   public TabletClient(AsyncYBClient client, String uuid) {
+    this(client, uuid, null, 0);
+  }
+
+  TabletClient(AsyncYBClient client, String uuid, String host, int port) {
     this.ybClient = client;
     this.uuid = uuid;
+    this.host = host;
+    this.port = port;
     this.socketReadTimeoutMs = client.getDefaultSocketReadTimeoutMs();
+    this.writeCoalescingMaxBytes = client.getWriteCoalescingMaxBytes();
+    this.maxRpcs = client.getMaxRpcsPerConnection();
+    this.backpressurePolicy = client.getBackpressurePolicy();
+    this.directBufferPool = client.getDirectBufferPool();
   }
 
   <R> void sendRpc(YRpc<R> rpc) {
+    if (maxRpcs > 0 && !admitRpc(rpc)) {
+      return;
+    }
+    writeOrQueueRpc(rpc);
+  }
+
+  /**
+   * Takes a slot on this connection for one more RPC, and applies the
+   * backpressure policy if there's none left.
+   * @return {@code true} if the RPC can be sent, {@code false} if it was
+   * failed, parked or rescheduled instead
+   */
+  private <R> boolean admitRpc(final YRpc<R> rpc) {
+    // Parked RPCs go first, a new one doesn't get a slot ahead of them.
+    if ((backpressurePolicy != BackpressurePolicy.BLOCK || blockedRpcs.isEmpty()) &&
+        tryReserveSlot()) {
+      return true;
+    }
+    ybClient.recordBackpressuredRpc();
+    switch (backpressurePolicy) {
+      case BLOCK:
+        parkRpc(rpc);
+        return false;
+      case RETRY:
+        if (rpc.getTablet() != null) {
+          ybClient.handleRetryableError(rpc, new ConnectionBusyException(
+              getPeerUuidLoggingString() + "Too many RPCs queued, retrying " + rpc), this);
+          return false;
+        }
+        // Not sent to a tablet, so there's nothing to retry it with.
+        break;
+      default:
+        break;
+    }
+    rpc.errback(new ConnectionBusyException(getPeerUuidLoggingString() +
+        "Too many RPCs queued (" + maxRpcs + "), rejecting " + rpc));
+    return false;
+  }
+
+  /**
+   * Takes one of the {@link #maxRpcs} slots of this connection, if any is left.
+   */
+  private boolean tryReserveSlot() {
+    while (true) {
+      final int admitted = numAdmittedRpcs.get();
+      if (admitted >= maxRpcs) {
+        return false;
+      }
+      if (numAdmittedRpcs.compareAndSet(admitted, admitted + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Gives back the slots of RPCs that left this connection, and sends the
+   * parked RPCs that fit in them. To be called once RPCs left rpcs_inflight
+   * or pending_rpcs, or were failed before getting there.
+   * @param numRpcs number of RPCs that left
+   */
+  private void releaseSlots(final int numRpcs) {
+    if (maxRpcs == 0 || numRpcs == 0) {
+      return;
+    }
+    numAdmittedRpcs.addAndGet(-numRpcs);
+    sendBlockedRpcs();
+  }
+
+  /**
+   * Parks an RPC until a slot frees up or its deadline passes, whichever
+   * comes first.
+   */
+  private void parkRpc(final YRpc<?> rpc) {
+    blockedRpcs.add(rpc);
+    if (rpc.deadlineTracker.hasDeadline()) {
+      final class BlockedRpcTimeout implements TimerTask {
+        @Override
+        public void run(final Timeout timeout) {
+          // Whoever removes the RPC from the queue owns it.
+          if (blockedRpcs.remove(rpc)) {
+            AsyncYBClient.tooManyAttemptsOrTimeout(rpc, null);
+          }
+        }
+      }
+      ybClient.newTimeout(new BlockedRpcTimeout(),
+                          Math.max(1, rpc.deadlineTracker.getMillisBeforeDeadline()));
+    }
+    // A slot may have been given back since we failed to take it, before the RPC got parked.
+    sendBlockedRpcs();
+  }
+
+  /**
+   * Sends the parked RPCs for as long as there are slots for them. Only one
+   * thread does it at a time, the others leave it to that thread, which
+   * checks for slots again once it's done.
+   */
+  private void sendBlockedRpcs() {
+    while (!blockedRpcs.isEmpty() && numAdmittedRpcs.get() < maxRpcs) {
+      if (!sendingBlockedRpcs.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        while (!blockedRpcs.isEmpty() && tryReserveSlot()) {
+          final YRpc<?> rpc = blockedRpcs.poll();
+          if (rpc == null) {
+            // Its deadline passed meanwhile.
+            numAdmittedRpcs.decrementAndGet();
+            continue;
+          }
+          if (rpc.deadlineTracker.timedOut()) {
+            numAdmittedRpcs.decrementAndGet();
+            AsyncYBClient.tooManyAttemptsOrTimeout(rpc, null);
+            continue;
+          }
+          // Gives the slot back by itself if the RPC fails right away, the loop above picks it
+          // up again.
+          writeOrQueueRpc(rpc);
+        }
+      } finally {
+        sendingBlockedRpcs.set(false);
+      }
+    }
+  }
+
+  private synchronized boolean isDead() {
+    return dead;
+  }
+
+  /**
+   * Returns the number of RPCs pending or in flight on this connection.
+   */
+  int getNumQueuedRpcs() {
+    return numPendingRpcs + rpcs_inflight.size();
+  }
+
+  /**
+   * Returns the number of RPCs waiting for this connection to be established.
+   */
+  int getNumPendingRpcs() {
+    return numPendingRpcs;
+  }
+
+  private <R> void writeOrQueueRpc(YRpc<R> rpc) {
     if (!rpc.deadlineTracker.hasDeadline()) {
       LOG.warn(getPeerUuidLoggingString() + " sending an rpc without a timeout " + rpc);
     }
     if (chan != null) {
       final ChannelBuffer serialized = encode(rpc);
       if (serialized == null) {  // Error during encoding.
+        releaseSlots(1);
         return;  // Stop here.  RPC has been failed already.
       }
 
       final Channel chan = this.chan;  // Volatile read.
       if (chan != null) {  // Double check if we disconnected during encode().
-        Channels.write(chan, serialized);
+        write(chan, serialized);
         return;
       }
     }
@@ -182,9 +418,11 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
           pending_rpcs = new ArrayList<YRpc<?>>();
         }
         pending_rpcs.add(rpc);
+        numPendingRpcs = pending_rpcs.size();
       }
     }
     if (copyOfDead) {
+      releaseSlots(1);
       failOrRetryRpc(rpc, new ConnectionResetException(null));
       return;
     } else if (tryagain) {
@@ -193,7 +431,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
       // a second time,  we will either succeed to send the RPC if we're still
       // connected, or fail through to the code below if we got disconnected
       // in the mean time.
-      sendRpc(rpc);
+      writeOrQueueRpc(rpc);
       return;
     }
   }
@@ -204,11 +442,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     final String service = rpc.serviceName();
     final String method = rpc.method();
     try {
-      final RpcHeader.RequestHeader.Builder headerBuilder = RpcHeader.RequestHeader.newBuilder()
-          .setCallId(rpcid)
-          .setRemoteMethod(
-              RpcHeader.RemoteMethodPB.newBuilder().setServiceName(service).setMethodName(method));
-
+      final RpcRequestHeader header;
       // If any timeout is set, find the lowest non-zero one, since this will be the deadline that
       // the server must respect.
       if (rpc.deadlineTracker.hasDeadline() || socketReadTimeoutMs > 0) {
@@ -222,10 +456,19 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
           localRpcTimeoutMs = socketReadTimeoutMs;
         }
 
-        headerBuilder.setTimeoutMillis((int) Math.min(millisBeforeDeadline, localRpcTimeoutMs));
+        header = new RpcRequestHeader(service, method, rpcid,
+                                      (int) Math.min(millisBeforeDeadline, localRpcTimeoutMs));
+      } else {
+        header = new RpcRequestHeader(service, method, rpcid);
       }
 
-      payload = rpc.serialize(headerBuilder.build());
+      final long serializeStart = System.nanoTime();
+      payload = rpc.serialize(header);
+      final RpcMetrics.MethodMetrics methodMetrics =
+          ybClient.getRpcMetrics().forMethod(service, method);
+      rpc.sendTimeNanos = System.nanoTime();
+      methodMetrics.recordRequest(rpc.sendTimeNanos - serializeStart, payload.readableBytes());
+      rpc.methodMetrics = methodMetrics;
     } catch (Exception e) {
         LOG.error("Uncaught exception while serializing RPC: " + rpc, e);
         rpc.errback(e);  // Make the RPC fail with the exception.
@@ -239,6 +482,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
           + ".  This happened when sending out: " + rpc;
       LOG.error(wtf);
       // Make it fail. This isn't an expected failure mode.
+      releaseSlots(1);
       oldrpc.errback(new NonRecoverableException(wtf));
     }
 
@@ -250,13 +494,110 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     return payload;
   }
 
+  /**
+   * Writes an encoded RPC to the channel, right away unless writes are
+   * coalesced. In that case the RPC is queued, and the channel's IO thread
+   * writes everything that got queued until it ran the flush at once.
+   */
+  private void write(final Channel chan, final ChannelBuffer serialized) {
+    if (writeCoalescingMaxBytes == 0) {
+      Channels.write(chan, serialized);
+      return;
+    }
+    outbound.add(serialized);
+    if (flushScheduled.compareAndSet(false, true)) {
+      // When called from the IO thread itself, this runs the flush right away.
+      chan.getPipeline().execute(new Runnable() {
+        @Override
+        public void run() {
+          // Clear the flag first: anything queued from now on is either
+          // picked up by this flush or schedules another one.
+          flushScheduled.set(false);
+          flushOutbound(chan);
+        }
+      });
+    }
+  }
+
+  /**
+   * Writes all the queued RPCs, gathered into composite buffers of up to
+   * {@link #writeCoalescingMaxBytes} so that each batch goes out with a single
+   * gathering write.
+   */
+  private void flushOutbound(final Channel chan) {
+    final ArrayList<ChannelBuffer> batch = new ArrayList<ChannelBuffer>();
+    int batchBytes = 0;
+    ChannelBuffer buf;
+    while ((buf = outbound.poll()) != null) {
+      batch.add(buf);
+      batchBytes += buf.readableBytes();
+      if (batchBytes >= writeCoalescingMaxBytes) {
+        writeBatch(chan, batch);
+        batch.clear();
+        batchBytes = 0;
+      }
+    }
+    if (!batch.isEmpty()) {
+      writeBatch(chan, batch);
+    }
+  }
+
+  private static void writeBatch(final Channel chan, final List<ChannelBuffer> batch) {
+    if (batch.size() == 1) {
+      Channels.write(chan, batch.get(0));
+    } else {
+      // A gathering composite is written with a single writev() of its components, a
+      // non-gathering one would get copied into a single buffer first.
+      Channels.write(chan,
+          ChannelBuffers.wrappedBuffer(true, batch.toArray(new ChannelBuffer[batch.size()])));
+    }
+  }
+
+  /**
+   * Fails the RPCs in flight whose deadline passed, the same way RPCs that time out before being
+   * sent are failed. Called periodically by {@link AsyncYBClient}, so that RPCs sent to a server
+   * that stopped answering without closing the connection don't wait for the connection to die.
+   * @return the number of RPCs that were failed
+   */
+  int expireTimedOutRpcs() {
+    int numExpired = 0;
+    for (Map.Entry<Integer, YRpc<?>> entry : rpcs_inflight.entrySet()) {
+      final YRpc<?> rpc = entry.getValue();
+      if (!rpc.deadlineTracker.timedOut()) {
+        continue;
+      }
+      final Integer rpcid = entry.getKey();
+      // Registered before removing the RPC, so that decode() finds it if it's handling the
+      // response right now and loses the race.
+      final boolean remembered = expiredCallIds.size() < MAX_EXPIRED_CALL_IDS &&
+          expiredCallIds.add(rpcid);
+      if (!rpcs_inflight.remove(rpcid, rpc)) {
+        // The response won, decode() completes the RPC.
+        if (remembered) {
+          expiredCallIds.remove(rpcid);
+        }
+        continue;
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(getPeerUuidLoggingString() + "RPC #" + rpcid + " timed out while waiting for "
+            + "its response: " + rpc);
+      }
+      AsyncYBClient.tooManyAttemptsOrTimeout(rpc, null);
+      numExpired++;
+    }
+    releaseSlots(numExpired);
+    return numExpired;
+  }
+
   public Deferred<Void> shutdown() {
     // First, check whether we have RPCs in flight and cancel them.
-    for (Iterator<YRpc<?>> ite = rpcs_inflight.values().iterator(); ite
-        .hasNext();) {
-      YRpc<?> rpc = ite.next();
-      rpc.errback(new ConnectionResetException(null));
-      ite.remove();
+    int numRemoved = 0;
+    for (Map.Entry<Integer, YRpc<?>> entry : rpcs_inflight.entrySet()) {
+      // Skip the RPCs whose response is being handled right now.
+      if (rpcs_inflight.remove(entry.getKey(), entry.getValue())) {
+        entry.getValue().errback(new ConnectionResetException(null));
+        numRemoved++;
+      }
     }
 
     // Same for the pending RPCs.
@@ -265,10 +606,19 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
         for (Iterator<YRpc<?>> ite = pending_rpcs.iterator(); ite.hasNext();) {
           ite.next().errback(new ConnectionResetException(null));
           ite.remove();
+          numRemoved++;
         }
+        numPendingRpcs = 0;
       }
     }
 
+    // And for the ones waiting for room on this connection.
+    YRpc<?> blocked;
+    while ((blocked = blockedRpcs.poll()) != null) {
+      blocked.errback(new ConnectionResetException(null));
+    }
+    releaseSlots(numRemoved);
+
     final Channel chancopy = chan;
     if (chancopy == null) {
       return Deferred.fromResult(null);
@@ -311,6 +661,28 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     return d;
   }
 
+  /**
+   * Returns the next complete response frame in the given buffer, including its length prefix.
+   * Nothing is consumed from the buffer until the whole frame has been received, so partial
+   * frames are never parsed.
+   * @param buf Buffer accumulating the bytes read from the channel.
+   * @return A slice of {@code buf} holding exactly one frame, or {@code null} if the frame
+   * hasn't been fully received yet.
+   * @throws IllegalArgumentException If the recorded frame size is not within reasonable
+   * limits as defined by {@link YRpc#checkArrayLength(ChannelBuffer, long)}.
+   */
+  static ChannelBuffer nextFrame(final ChannelBuffer buf) {
+    if (buf.readableBytes() < FRAME_LENGTH_PREFIX_SIZE) {
+      return null;
+    }
+    final int totalResponseSize = buf.getInt(buf.readerIndex());
+    YRpc.checkArrayLength(buf, totalResponseSize);
+    if (buf.readableBytes() < FRAME_LENGTH_PREFIX_SIZE + totalResponseSize) {
+      return null;
+    }
+    return buf.readSlice(FRAME_LENGTH_PREFIX_SIZE + totalResponseSize);
+  }
+
   /**
    * The reason we are suppressing the unchecked conversions is because the YRpc is coming
    * from a collection that has RPCs with different generics, and there's no way to get "decoded"
@@ -319,17 +691,22 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
    */
   @Override
   @SuppressWarnings("unchecked")
-  protected Object decode(ChannelHandlerContext ctx, Channel chan, ChannelBuffer buf,
-                              VoidEnum voidEnum) {
-    final long start = System.nanoTime();
-    final int rdx = buf.readerIndex();
-    LOG.debug("------------------>> ENTERING DECODE >>------------------");
+  protected Object decode(ChannelHandlerContext ctx, Channel chan, ChannelBuffer cumulation) {
+    if (cumulation == null) {
+      return null;
+    }
 
+    final ChannelBuffer buf = nextFrame(cumulation);
     if (buf == null) {
+      // Wait until the rest of the frame is read from the socket.
       return null;
     }
 
-    CallResponse response = new CallResponse(buf);
+    final long start = System.nanoTime();
+    final int rdx = buf.readerIndex();
+    LOG.debug("------------------>> ENTERING DECODE >>------------------");
+
+    CallResponse response = new CallResponse(buf, directBufferPool);
     if (response.isEmpty()) {
       // Skip empty messages which we are using as heartbeats.
       return null;
@@ -349,6 +726,12 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     final YRpc rpc = rpcs_inflight.get(rpcid);
 
     if (rpc == null) {
+      if (expiredCallIds.remove(rpcid)) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(getPeerUuidLoggingString() + "Dropping the late response to RPC #" + rpcid);
+        }
+        return null;
+      }
       final String msg = getPeerUuidLoggingString() + "Invalid rpcid: " + rpcid + " found in "
           + buf + '=' + Bytes.pretty(buf);
       LOG.error(msg);
@@ -365,41 +748,60 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     Pair<Object, Object> decoded = null;
     Exception exception = null;
     YBException retryableHeaderException = null;
-    if (header.hasIsError() && header.getIsError()) {
-      RpcHeader.ErrorStatusPB.Builder errorBuilder = RpcHeader.ErrorStatusPB.newBuilder();
-      YRpc.readProtobuf(response.getPBMessage(), errorBuilder);
-      RpcHeader.ErrorStatusPB error = errorBuilder.build();
-      if (error.getCode().equals(RpcHeader.ErrorStatusPB.RpcErrorCodePB.ERROR_SERVER_TOO_BUSY)) {
-        // We can't return right away, we still need to remove ourselves from 'rpcs_inflight', so we
-        // populate 'retryableHeaderException'.
-        retryableHeaderException = new TabletServerErrorException(uuid, error);
+    long deserializeNanos = 0;
+    try {
+      if (header.hasIsError() && header.getIsError()) {
+        RpcHeader.ErrorStatusPB.Builder errorBuilder = RpcHeader.ErrorStatusPB.newBuilder();
+        YRpc.readProtobuf(response, errorBuilder);
+        RpcHeader.ErrorStatusPB error = errorBuilder.build();
+        if (error.getCode().equals(RpcHeader.ErrorStatusPB.RpcErrorCodePB.ERROR_SERVER_TOO_BUSY)) {
+          // We can't return right away, we still need to remove ourselves from 'rpcs_inflight', so
+          // we populate 'retryableHeaderException'.
+          retryableHeaderException = new TabletServerErrorException(uuid, error);
+        } else {
+          String message = getPeerUuidLoggingString() +
+              "Tablet server sent error " + error.getMessage();
+          exception = new NonRecoverableException(message);
+          LOG.error(message); // can be useful
+        }
       } else {
-        String message = getPeerUuidLoggingString() +
-            "Tablet server sent error " + error.getMessage();
-        exception = new NonRecoverableException(message);
-        LOG.error(message); // can be useful
-      }
-    } else {
-      try {
-        decoded = rpc.deserialize(response, this.uuid);
-      } catch (Exception ex) {
-        exception = ex;
+        final long deserializeStart = System.nanoTime();
+        try {
+          decoded = rpc.deserialize(response, this.uuid);
+        } catch (Exception ex) {
+          exception = ex;
+        }
+        deserializeNanos = System.nanoTime() - deserializeStart;
       }
+    } finally {
+      // Everything was parsed out of the response, give back any pooled buffer it used.
+      response.release();
     }
     if (LOG.isDebugEnabled()) {
       LOG.debug(getPeerUuidLoggingString() + "rpcid=" + rpcid
           + ", response size=" + (buf.readerIndex() - rdx) + " bytes"
-          + ", " + actualReadableBytes() + " readable bytes left"
+          + ", " + cumulation.readableBytes() + " readable bytes left"
           + ", rpc=" + rpc);
     }
 
     {
       final YRpc<?> removed = rpcs_inflight.remove(rpcid);
       if (removed == null) {
+        // Nobody gets the response, give back its pooled buffer if it kept one.
+        releaseResponse(decoded);
+        if (expiredCallIds.remove(rpcid)) {
+          // The RPC timed out while we were decoding its response, it has been failed already.
+          return null;
+        }
         // The RPC we were decoding was cleaned up already, give up.
         throw new NonRecoverableException("RPC not found");
       }
     }
+    releaseSlots(1);
+    if (rpc.methodMetrics != null) {
+      rpc.methodMetrics.recordResponse(start - rpc.sendTimeNanos, deserializeNanos,
+                                       buf.capacity());
+    }
 
     // This check is specifically for the ERROR_SERVER_TOO_BUSY case above.
     if (retryableHeaderException != null) {
@@ -452,6 +854,17 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     return null;  // Stop processing here.  The Deferred does everything else.
   }
 
+  /**
+   * Releases a decoded response that won't be handed to its RPC, if it holds on to a pooled
+   * buffer.
+   * @param decoded the decoded response, or null if there's none
+   */
+  private static void releaseResponse(final Pair<Object, Object> decoded) {
+    if (decoded != null && decoded.getFirst() instanceof GetChangesResponse) {
+      ((GetChangesResponse) decoded.getFirst()).release();
+    }
+  }
+
   /**
    * Takes care of a few kinds of TS errors that we handle differently, like tablets or leaders
    * moving. Builds and returns an exception if we don't know what to do with it.
@@ -530,8 +943,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
   @Override
   protected Object decodeLast(final ChannelHandlerContext ctx,
                               final Channel chan,
-                              final ChannelBuffer buf,
-                              final VoidEnum unused) {
+                              final ChannelBuffer buf) {
     // When we disconnect, decodeLast is called instead of decode.
     // We simply check whether there's any data left in the buffer, in which
     // case we attempt to process it.  But if there's no data left, then we
@@ -539,7 +951,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     // doesn't contain enough data, which unnecessarily pollutes the logs.
     if (buf.readable()) {
       try {
-        return decode(ctx, chan, buf, unused);
+        return decode(ctx, chan, buf);
       } finally {
         if (buf.readable()) {
           LOG.error(getPeerUuidLoggingString() + "After decoding the last message on " + chan
@@ -577,11 +989,11 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
 
   /**
    * Ensures that at least a {@code nbytes} are readable from the given buffer.
-   * If there aren't enough bytes in the buffer this will raise an exception
-   * and cause the {@link ReplayingDecoder} to undo whatever we did thus far
-   * so we can wait until we read more from the socket.
+   * Since {@link #decode} only hands out complete frames, failing this check
+   * means the frame is corrupted (its sections don't add up to its length).
    * @param buf Buffer to check.
    * @param nbytes Number of bytes desired.
+   * @throws IndexOutOfBoundsException if fewer than {@code nbytes} are readable.
    */
   static void ensureReadable(final ChannelBuffer buf, final int nbytes) {
     buf.markReaderIndex();
@@ -612,7 +1024,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
   public void channelDisconnected(final ChannelHandlerContext ctx,
                                   final ChannelStateEvent e) throws Exception {
     chan = null;
-    super.channelDisconnected(ctx, e);  // Let the ReplayingDecoder cleanup.
+    super.channelDisconnected(ctx, e);  // Let the FrameDecoder cleanup.
     cleanup(e.getChannel());
   }
 
@@ -623,7 +1035,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     // No need to call super.channelClosed() because we already called
     // super.channelDisconnected().  If we get here without getting a
     // DISCONNECTED event, then we were never connected in the first place so
-    // the ReplayingDecoder has nothing to cleanup.
+    // the FrameDecoder has nothing to cleanup.
     cleanup(e.getChannel());
   }
 
@@ -636,22 +1048,30 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
   private void cleanup(final Channel chan) {
     final ConnectionResetException exception =
         new ConnectionResetException(getPeerUuidLoggingString() + "Connection reset on " + chan);
-    for (Iterator<YRpc<?>> ite = rpcs_inflight.values().iterator(); ite
-        .hasNext();) {
-      YRpc<?> rpc = ite.next();
-      failOrRetryRpc(rpc, exception);
-      ite.remove();
+    int numRemoved = 0;
+    for (Map.Entry<Integer, YRpc<?>> entry : rpcs_inflight.entrySet()) {
+      // Skip the RPCs whose response is being handled right now.
+      if (rpcs_inflight.remove(entry.getKey(), entry.getValue())) {
+        failOrRetryRpc(entry.getValue(), exception);
+        numRemoved++;
+      }
     }
+    expiredCallIds.clear();
 
     final ArrayList<YRpc<?>> rpcs;
     synchronized (this) {
       dead = true;
       rpcs = pending_rpcs;
       pending_rpcs = null;
+      numPendingRpcs = 0;
     }
     if (rpcs != null) {
+      numRemoved += rpcs.size();
       failOrRetryRpcs(rpcs, exception);
     }
+    // The RPCs waiting for room on this connection are sent to the dead connection once slots
+    // are given back, which fails or retries them as well.
+    releaseSlots(numRemoved);
   }
 
   /**
@@ -694,7 +1114,7 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     } else if (e instanceof ReadTimeoutException) {
       LOG.debug(getPeerUuidLoggingString() + "Encountered a read timeout");
       // Doing the cleanup here since we want to invalidate all the RPCs right _now_, and not let
-      // the ReplayingDecoder continue decoding through Channels.close() below.
+      // the FrameDecoder continue decoding through Channels.close() below.
       cleanup(c);
     } else {
       LOG.debug(getPeerUuidLoggingString() + "Unexpected exception " + e.getMessage() +
@@ -727,11 +1147,13 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     synchronized (this) {
       rpcs = pending_rpcs;
       pending_rpcs = null;
+      numPendingRpcs = 0;
     }
     if (rpcs != null) {
       for (final YRpc<?> rpc : rpcs) {
         LOG.debug(getPeerUuidLoggingString() + "Executing RPC queued: " + rpc);
-        sendRpc(rpc);
+        // Already admitted when it got queued.
+        writeOrQueueRpc(rpc);
       }
     }
   }
@@ -748,6 +1170,34 @@ public class TabletClient extends ReplayingDecoder<VoidEnum> {
     return uuid;
   }
 
+  /**
+   * Returns the IP of the server this client connects to, or null if it isn't known.
+   */
+  String getHost() {
+    return host;
+  }
+
+  int getPort() {
+    return port;
+  }
+
+  /**
+   * Returns whether or not the given client connects to the same server as this one. Clients
+   * from the same connection pool do.
+   */
+  boolean isSameServer(TabletClient other) {
+    return this == other ||
+        (other != null && host != null && host.equals(other.host) && port == other.port);
+  }
+
+  /**
+   * Returns the number of RPCs sent on this connection that are still waiting for a response.
+   * @return the size of rpcs_inflight
+   */
+  int getNumInflightRpcs() {
+    return rpcs_inflight.size();
+  }
+
   public String toString() {
     final StringBuilder buf = new StringBuilder(13 + 10 + 6 + 64 + 7 + 32 + 16 + 1 + 17 + 2 + 1);
     buf.append("TabletClient@")           // =13
@@ -0,0 +1,136 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.yb.annotations.InterfaceAudience;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The set of connections {@link AsyncYBClient} keeps to a single server.
+ * <p>
+ * The pool has a fixed number of slots, each of which holds at most one {@link TabletClient}.
+ * Slots are filled lazily: a slot only gets a connection once it's selected, and it's emptied
+ * when its connection goes away.
+ * <p>
+ * Slots can be selected and read from any thread, which is what the RPC path does for every
+ * tablet RPC. Slots are only filled or emptied while holding the monitor of
+ * {@link AsyncYBClient}'s ip2client map, so that a slot is never connected twice.
+ */
+@InterfaceAudience.Private
+final class TabletClientPool {
+
+  private final AtomicReferenceArray<TabletClient> clients;
+
+  private final ConnectionSelectionPolicy policy;
+
+  // Number of slots handed out with ROUND_ROBIN, the next slot is this modulo the size.
+  private final AtomicInteger nextSlot = new AtomicInteger();
+
+  TabletClientPool(int size, ConnectionSelectionPolicy policy) {
+    this.clients = new AtomicReferenceArray<>(size);
+    this.policy = policy;
+  }
+
+  /**
+   * Picks the slot the next RPC to this server should use. The caller is responsible for
+   * (re)connecting the slot if it's empty or its client is dead.
+   * @return the index of the selected slot
+   */
+  int selectSlot() {
+    if (clients.length() == 1) {
+      return 0;
+    }
+    if (policy == ConnectionSelectionPolicy.ROUND_ROBIN) {
+      return Math.floorMod(nextSlot.getAndIncrement(), clients.length());
+    }
+    // LEAST_IN_FLIGHT: an empty slot counts as having nothing in flight, but a live connection
+    // wins ties so that new connections only get opened once the existing ones are busy.
+    int bestSlot = 0;
+    int bestInflight = Integer.MAX_VALUE;
+    boolean bestIsLive = false;
+    for (int i = 0; i < clients.length(); i++) {
+      TabletClient client = clients.get(i);
+      boolean isLive = client != null && client.isAlive();
+      int inflight = isLive ? client.getNumInflightRpcs() : 0;
+      if (inflight < bestInflight || (inflight == bestInflight && isLive && !bestIsLive)) {
+        bestSlot = i;
+        bestInflight = inflight;
+        bestIsLive = isLive;
+      }
+    }
+    return bestSlot;
+  }
+
+  TabletClient get(int slot) {
+    return clients.get(slot);
+  }
+
+  void set(int slot, TabletClient client) {
+    clients.set(slot, client);
+  }
+
+  /**
+   * Empties the slot holding the given client, if any.
+   * @return true if the client was found in this pool
+   */
+  boolean remove(TabletClient client) {
+    for (int i = 0; i < clients.length(); i++) {
+      if (clients.compareAndSet(i, client, null)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean contains(TabletClient client) {
+    for (int i = 0; i < clients.length(); i++) {
+      if (clients.get(i) == client) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean isEmpty() {
+    for (int i = 0; i < clients.length(); i++) {
+      if (clients.get(i) != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the clients currently held by this pool, without empty slots
+   */
+  List<TabletClient> getClients() {
+    List<TabletClient> result = new ArrayList<>(clients.length());
+    for (int i = 0; i < clients.length(); i++) {
+      TabletClient c = clients.get(i);
+      if (c != null) {
+        result.add(c);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return clients.toString();
+  }
+}
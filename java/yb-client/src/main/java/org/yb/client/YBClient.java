@@ -33,6 +33,7 @@ package org.yb.client;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,6 +54,7 @@ import org.yb.tserver.Tserver;
 
 import com.google.common.net.HostAndPort;
 import com.stumbleupon.async.Deferred;
+import com.stumbleupon.async.TimeoutException;
 
 /**
  * A synchronous and thread-safe client for YB.
@@ -72,6 +74,9 @@ public class YBClient implements AutoCloseable {
   // Number of retries on retriable errors, could make it time based as needed.
   private static final int MAX_NUM_RETRIES = 25;
 
+  // Time given to an asynchronous wait past its own timeout before giving up on joining it.
+  private static final long JOIN_WAIT_SLACK_MS = 1000;
+
   // Redis default table name.
   public static final String REDIS_DEFAULT_TABLE_NAME = "redis";
 
@@ -81,19 +86,6 @@ public class YBClient implements AutoCloseable {
   // Redis key column name.
   public static final String REDIS_KEY_COLUMN_NAME = "key";
 
-  // Number of response errors to tolerate.
-  private static final int MAX_ERRORS_TO_IGNORE = 2500;
-
-  // Log errors every so many errors.
-  private static final int LOG_ERRORS_EVERY_NUM_ITERS = 100;
-
-  // Log info after these many iterations.
-  private static final int LOG_EVERY_NUM_ITERS = 200;
-
-  // Simple way to inject an error on Wait based APIs. If enabled, after first inject,
-  // it will be turned off. We can enhance it to use more options like every-N etc.
-  private boolean injectWaitError = false;
-
   public YBClient(AsyncYBClient asyncClient) {
     this.asyncClient = asyncClient;
   }
@@ -743,143 +735,35 @@ public class YBClient implements AutoCloseable {
     boolean get() throws Exception;
   }
 
-  /**
-   * Checks the ping of the given ip and port.
-   */
-  private class ServerCondition implements Condition {
-    private HostAndPort hp;
-    public ServerCondition(HostAndPort hp) {
-      this.hp = hp;
-    }
-    @Override
-    public boolean get() throws Exception {
-      return ping(hp.getHostText(), hp.getPort());
-    }
-  }
-
-  /**
-   * Checks whether the IsLoadBalancedResponse has no error.
-   */
-  private class LoadBalanceCondition implements Condition {
-    private int numServers;
-    public LoadBalanceCondition(int numServers) {
-      this.numServers = numServers;
-    }
-    @Override
-    public boolean get() throws Exception {
-      IsLoadBalancedResponse resp = getIsLoadBalanced(numServers);
-      return !resp.hasError();
-    }
-  }
-
-  /**
-   * Checks whether the IsLoadBalancerIdleResponse has no error.
-   */
-  private class LoadBalancerIdleCondition implements Condition {
-    public LoadBalancerIdleCondition() {
-    }
-    @Override
-    public boolean get() throws Exception {
-      IsLoadBalancerIdleResponse resp = getIsLoadBalancerIdle();
-      return !resp.hasError();
-    }
-  }
-
-  private class AreLeadersOnPreferredOnlyCondition implements Condition {
-    @Override
-    public boolean get() throws Exception {
-      AreLeadersOnPreferredOnlyResponse resp = getAreLeadersOnPreferredOnly();
-      return !resp.hasError();
-    }
-  }
-
-  private class ReplicaMapCondition implements Condition {
-    private YBTable table;
-    Map<String, List<List<Integer>>> replicaMapExpected;
-    private long deadline;
-    public ReplicaMapCondition(YBTable table,
-                               Map<String, List<List<Integer>>> replicaMapExpected,
-                               long deadline) {
-      this.table = table;
-      this.replicaMapExpected = replicaMapExpected;
-      this.deadline = deadline;
-    }
-    @Override
-    public boolean get() throws Exception {
-      Map<String, List<List<Integer>>> replicaMap =
-          table.getMemberTypeCountsForEachTSType(deadline);
-      return replicaMap.equals(replicaMapExpected);
-    }
-  }
-
   /**
    * Quick and dirty error injection on Wait based API's.
    * After every use, for now, will get automatically disabled.
    */
   public void injectWaitError() {
-    injectWaitError = true;
+    asyncClient.injectWaitError();
   }
 
   /**
-   * Helper method that loops on a condition every 500ms until it returns true or the
-   * operation times out.
-   * @param condition the Condition which implements a boolean get() method.
-   * @param timeoutMs the amount of time, in MS, to wait.
-   * @return true if the condition is true within the time frame, false otherwise.
+   * Blocks until an asynchronous wait is over. The wait gives up by itself after its timeout,
+   * joining it only takes a little longer in case the client's timer got stopped meanwhile.
+   * @param wait a Deferred returned by one of the waitFor* methods of {@link AsyncYBClient}
+   * @param timeoutMs the timeout that was given to the wait
+   * @return true if the condition held in time, false otherwise
    */
-  private boolean waitForCondition(Condition condition, final long timeoutMs) {
-    Exception finalException = null;
-    long start = System.currentTimeMillis();
-    int numErrors = 0;
-    int numIters = 0;
-    String errorMessage = null;
-    do {
-      try {
-        if (injectWaitError) {
-          Thread.sleep(AsyncYBClient.SLEEP_TIME);
-          injectWaitError = false;
-          String msg = "Simulated expection due to injected error.";
-          LOG.info(msg);
-          throw new RuntimeException(msg);
-        }
-        if (condition.get()) {
-          return true;
-        }
-      } catch (Exception e) {
-        // We will get exceptions if we cannot connect to the other end. Catch them and save for
-        // final debug if we never succeed.
-        finalException = e;
-        numErrors++;
-        if (numErrors % LOG_ERRORS_EVERY_NUM_ITERS == 0) {
-          LOG.warn("Hit {} errors so far. Latest is : {}.", numErrors, finalException.toString());
-        }
-        if (numErrors >= MAX_ERRORS_TO_IGNORE) {
-          errorMessage = "Hit too many errors, final exception is " + finalException.toString();
-          break;
-        }
-      }
-
-      numIters++;
-      if (numIters % LOG_EVERY_NUM_ITERS == 0) {
-        LOG.info("Tried operation {} times so far.", numIters);
-      }
-
-      // Need to wait even when ping has an exception, so the sleep is outside the above try block.
-      try {
-        Thread.sleep(AsyncYBClient.SLEEP_TIME);
-      } catch (Exception e) {}
-    } while (System.currentTimeMillis() - start < timeoutMs);
-
-    if (errorMessage == null) {
-      LOG.error("Timed out waiting for operation. Final exception was {}.",
-                finalException != null ? finalException.toString() : "none");
-    } else {
-      LOG.error(errorMessage);
+  private boolean joinWait(Deferred<Boolean> wait, long timeoutMs) {
+    try {
+      return wait.join(Math.min(Math.max(0, timeoutMs), Long.MAX_VALUE - JOIN_WAIT_SLACK_MS) +
+                       JOIN_WAIT_SLACK_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (TimeoutException e) {
+      LOG.error("Wait didn't complete {}ms past its timeout, giving up.", JOIN_WAIT_SLACK_MS);
+      return false;
+    } catch (Exception e) {
+      LOG.error("Failed waiting for operation.", e);
+      return false;
     }
-
-    LOG.error("Returning failure after {} iterations, num errors = {}.", numIters, numErrors);
-
-    return false;
   }
 
   /**
@@ -889,8 +773,7 @@ public class YBClient implements AutoCloseable {
   * @return true if the server responded to pings in the given time, false otherwise
   */
   public boolean waitForServer(final HostAndPort hp, final long timeoutMs) {
-    Condition serverCondition = new ServerCondition(hp);
-    return waitForCondition(serverCondition, timeoutMs);
+    return joinWait(asyncClient.waitForServer(hp, timeoutMs), timeoutMs);
   }
 
   /**
@@ -900,8 +783,7 @@ public class YBClient implements AutoCloseable {
   * @return true if the master leader does not return any error balance check.
   */
   public boolean waitForLoadBalance(final long timeoutMs, int numServers) {
-    Condition loadBalanceCondition = new LoadBalanceCondition(numServers);
-    return waitForCondition(loadBalanceCondition, timeoutMs);
+    return joinWait(asyncClient.waitForLoadBalance(timeoutMs, numServers), timeoutMs);
   }
 
   /**
@@ -910,8 +792,7 @@ public class YBClient implements AutoCloseable {
   * @return true if the master leader does not return any error balance check.
   */
   public boolean waitForLoadBalancerIdle(final long timeoutMs) {
-    Condition loadBalancerIdleCondition = new LoadBalancerIdleCondition();
-    return waitForCondition(loadBalancerIdleCondition, timeoutMs);
+    return joinWait(asyncClient.waitForLoadBalancerIdle(timeoutMs), timeoutMs);
   }
 
   /**
@@ -920,9 +801,7 @@ public class YBClient implements AutoCloseable {
    * @return true iff the leader count is balanced within timeoutMs.
    */
   public boolean waitForAreLeadersOnPreferredOnlyCondition(final long timeoutMs) {
-    Condition areLeadersOnPreferredOnlyCondition =
-        new AreLeadersOnPreferredOnlyCondition();
-    return waitForCondition(areLeadersOnPreferredOnlyCondition, timeoutMs);
+    return joinWait(asyncClient.waitForAreLeadersOnPreferredOnlyCondition(timeoutMs), timeoutMs);
   }
 
   /**
@@ -938,8 +817,8 @@ public class YBClient implements AutoCloseable {
    */
   public boolean waitForExpectedReplicaMap(final long timeoutMs, YBTable table,
                                             Map<String, List<List<Integer>>> replicaMapExpected) {
-    Condition replicaMapCondition = new ReplicaMapCondition(table, replicaMapExpected, timeoutMs);
-    return waitForCondition(replicaMapCondition, timeoutMs);
+    return joinWait(asyncClient.waitForExpectedReplicaMap(timeoutMs, table, replicaMapExpected),
+                    timeoutMs);
   }
 
   /**
@@ -997,6 +876,28 @@ public class YBClient implements AutoCloseable {
     return d.join(getDefaultAdminOperationTimeoutMs());
   }
 
+  /**
+   * Get the namespaces of all the APIs.
+   * @return the list of namespaces
+   */
+  public ListNamespacesResponse getNamespacesList() throws Exception {
+    Deferred<ListNamespacesResponse> d = asyncClient.getNamespacesList();
+    return d.join(getDefaultAdminOperationTimeoutMs());
+  }
+
+  /**
+   * Iterates over the tables that match the given options. Unlike {@link #getTablesList()},
+   * the tables are fetched one namespace at a time as the iterator advances, so the memory used
+   * doesn't grow with the size of the catalog and the first tables can be processed right away.
+   * Calls to the master are bounded by the default admin operation timeout, and their failures
+   * are thrown by the iterator as {@link YBException}s.
+   * @param options the filters to apply
+   * @return an iterator over the matching tables
+   */
+  public Iterator<Master.ListTablesResponsePB.TableInfo> listTables(ListTablesOptions options) {
+    return new TableInfoIterator(asyncClient, options, getDefaultAdminOperationTimeoutMs());
+  }
+
   /**
    * Create for a given tablet and stream.
    * @param hp host port of the server.
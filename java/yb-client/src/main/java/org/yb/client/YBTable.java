@@ -37,6 +37,7 @@ import org.yb.Schema;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.annotations.InterfaceStability;
 
+import com.stumbleupon.async.Callback;
 import com.stumbleupon.async.Deferred;
 
 import java.util.List;
@@ -226,11 +227,32 @@ public class YBTable {
    */
   public Map<String, List<List<Integer>>> getMemberTypeCountsForEachTSType(long deadline)
       throws Exception {
+    return getMemberTypeCountsForEachTSType(getTabletsLocations(deadline));
+  }
+
+  /**
+   * Asynchronously computes the same map as {@link #getMemberTypeCountsForEachTSType(long)}.
+   * @param deadline deadline in milliseconds for the getTabletsLocations rpc.
+   * @return a {@link Deferred} object that yields a map from placement zone to a list of lists
+   * of integers.
+   */
+  public Deferred<Map<String, List<List<Integer>>>> asyncGetMemberTypeCountsForEachTSType(
+      long deadline) throws Exception {
+    return asyncGetTabletsLocations(deadline).addCallback(
+        new Callback<Map<String, List<List<Integer>>>, List<LocatedTablet>>() {
+          @Override
+          public Map<String, List<List<Integer>>> call(List<LocatedTablet> tablets) {
+            return getMemberTypeCountsForEachTSType(tablets);
+          }
+        });
+  }
+
+  private static Map<String, List<List<Integer>>> getMemberTypeCountsForEachTSType(
+      List<LocatedTablet> tablets) {
     // Intermediate map which contains an internal map from ts uuid to live and
     // read replica counts.
     Map<String, Map<String, List<Integer>>> intermediateMap =
         new HashMap<String, Map<String, List<Integer>>>();
-    List<LocatedTablet> tablets = getTabletsLocations(deadline);
     for (LocatedTablet tablet : tablets) {
       for (LocatedTablet.Replica replica : tablet.getReplicas()) {
         String placementUuid = replica.getTsPlacementUuid();
@@ -40,13 +40,12 @@
 //
 package org.yb.client;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
-import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.stumbleupon.async.Deferred;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.util.Pair;
-import org.yb.util.Slice;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 
@@ -112,6 +111,20 @@ public abstract class YRpc<R> {
    */
   byte attempt;  // package-private for TabletClient and AsyncYBClient only.
 
+  // How long we slept before the latest retry of this RPC, 0 if it wasn't retried yet. Used by the
+  // RetryPolicy to compute the next sleep time.
+  long retrySleepTimeMs;
+
+  // When the current call was issued, as given by System.nanoTime().
+  private long startTimeNanos;
+
+  // When the latest attempt was written out, as given by System.nanoTime(). Set by TabletClient.
+  long sendTimeNanos;
+
+  // Metrics of this RPC's method, set by TabletClient once a request is sent. The completed call
+  // is recorded there.
+  RpcMetrics.MethodMetrics methodMetrics;
+
   // Maximum number of attempts to try the RPC. Default 100 times.
   byte maxAttempts = 100;
 
@@ -120,6 +133,10 @@ public abstract class YRpc<R> {
   // tablet.
   private volatile boolean retrySameServer;
 
+  // Whether or not the result of this RPC is still wanted. An abandoned RPC isn't retried anymore,
+  // e.g. the attempt that lost a hedged read.
+  private volatile boolean abandoned;
+
   YRpc(YBTable table) {
     this.table = table;
     this.deadlineTracker = new DeadlineTracker();
@@ -132,7 +149,7 @@ public abstract class YRpc<R> {
    * Notice that this method is package-private, so only classes within this
    * package can use this as a base class.
    */
-  abstract ChannelBuffer serialize(Message header);
+  abstract ChannelBuffer serialize(RpcRequestHeader header);
 
   /**
    * Package private way of getting the name of the RPC service.
@@ -177,6 +194,10 @@ public abstract class YRpc<R> {
     deferred = null;
     attempt = 0;
     deadlineTracker.reset();
+    if (methodMetrics != null) {
+      methodMetrics.recordCall(System.nanoTime() - startTimeNanos, result instanceof Exception);
+      methodMetrics = null;
+    }
     d.callback(result);
   }
 
@@ -204,6 +225,7 @@ public abstract class YRpc<R> {
   final Deferred<R> getDeferred() {
     if (deferred == null) {
       deferred = new Deferred<R>();
+      startTimeNanos = System.nanoTime();
     }
     return deferred;
   }
@@ -228,6 +250,14 @@ public abstract class YRpc<R> {
     this.retrySameServer = retrySameServer;
   }
 
+  boolean isAbandoned() {
+    return abandoned;
+  }
+
+  void abandon() {
+    this.abandoned = true;
+  }
+
   void setTimeoutMillis(long timeout) {
     deadlineTracker.setDeadline(timeout);
   }
@@ -253,24 +283,62 @@ public abstract class YRpc<R> {
     return buf.toString();
   }
 
-  static void readProtobuf(final Slice slice,
+  /**
+   * Parses the main message of a response into the given builder, reading it
+   * straight out of the response buffer.
+   * @param response The response holding the message.
+   * @param builder The builder to merge the message into.
+   */
+  static void readProtobuf(final CallResponse response,
+                           final Message.Builder builder) {
+    readProtobuf(response.getPBMessageStream(), response.getPBMessageLength(), builder);
+  }
+
+  static void readProtobuf(final CodedInputStream input,
+                           final int length,
                            final Message.Builder builder) {
-    final int length = slice.length();
-    final byte[] payload = slice.getRawArray();
-    final int offset = slice.getRawOffset();
     try {
-      builder.mergeFrom(payload, offset, length);
+      // The default limit is lower than the largest messages we accept.
+      input.setSizeLimit(length);
+      builder.mergeFrom(input);
       if (!builder.isInitialized()) {
         throw new RuntimeException("Could not deserialize the response," +
                 " incompatible RPC? Error is: " + builder.getInitializationErrorString());
       }
-    } catch (InvalidProtocolBufferException e) {
-      final String msg = "Invalid RPC response: length=" + length
-              + ", payload=" + Bytes.pretty(payload);
+    } catch (IOException e) {
+      final String msg = "Invalid RPC response: length=" + length;
       throw new InvalidResponseException(msg, e);
     }
   }
 
+  /**
+   * Serializes a request into a frame: its total size, then its header and its protobuf, each
+   * prefixed with its own size.
+   */
+  static ChannelBuffer toChannelBuffer(RpcRequestHeader header, Message pb) {
+    final int headerSize = header.getSerializedSize();
+    final int pbSize = pb.getSerializedSize();
+    final int totalSize = CodedOutputStream.computeRawVarint32Size(headerSize) + headerSize +
+        CodedOutputStream.computeRawVarint32Size(pbSize) + pbSize;
+    final byte[] buf = new byte[totalSize + 4];
+    final ChannelBuffer chanBuf = ChannelBuffers.wrappedBuffer(buf);
+    chanBuf.clear();
+    chanBuf.writeInt(totalSize);
+    final CodedOutputStream out = CodedOutputStream.newInstance(buf, 4, totalSize);
+    try {
+      out.writeRawVarint32(headerSize);
+      header.writeTo(out);
+
+      out.writeRawVarint32(pbSize);
+      pb.writeTo(out);
+      out.checkNoSpaceLeft();
+    } catch (IOException e) {
+      throw new NonRecoverableException("Cannot serialize the following message " + pb, e);
+    }
+    chanBuf.writerIndex(buf.length);
+    return chanBuf;
+  }
+
   static ChannelBuffer toChannelBuffer(Message header, Message pb) {
     int totalSize = IPCUtil.getTotalSizeWhenWrittenDelimited(header, pb);
     byte[] buf = new byte[totalSize+4];
@@ -35,6 +35,10 @@ import com.stumbleupon.async.Callback;
 import com.stumbleupon.async.Deferred;
 import org.yb.annotations.InterfaceAudience;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Utility methods for various parts of async, such as Deferred.
  * TODO (KUDU-602): Some of these methods could eventually be contributed back to async or to a
@@ -62,4 +66,62 @@ public class AsyncUtil {
     return d.addCallbacks((Callback<R, T>) ((Object) cb),
                           (Callback<R, E>) ((Object) eb));
   }
+
+  /**
+   * Adapts a {@code Deferred} to a {@link CompletableFuture}.
+   * <p>
+   * The future is completed from {@code executor}, so that the continuations the caller adds
+   * to it never run on one of the client's I/O or timer threads. If {@code executor} rejects
+   * the task, the future is completed from the thread that completed {@code d}. The callback
+   * chain of {@code d} is left as is.
+   * @param d The {@code Deferred} to adapt.
+   * @param executor The executor completing the future.
+   * @return a future that completes with the result or the error of {@code d}.
+   */
+  public static <T> CompletableFuture<T> toCompletableFuture(final Deferred<T> d,
+                                                            final Executor executor) {
+    final CompletableFuture<T> future = new CompletableFuture<T>();
+    d.addCallbacks(new Callback<T, T>() {
+      @Override
+      public T call(final T result) {
+        completeFrom(executor, new Runnable() {
+          @Override
+          public void run() {
+            future.complete(result);
+          }
+        });
+        return result;
+      }
+
+      @Override
+      public String toString() {
+        return "complete future";
+      }
+    }, new Callback<Exception, Exception>() {
+      @Override
+      public Exception call(final Exception e) {
+        completeFrom(executor, new Runnable() {
+          @Override
+          public void run() {
+            future.completeExceptionally(e);
+          }
+        });
+        return e;
+      }
+
+      @Override
+      public String toString() {
+        return "complete future exceptionally";
+      }
+    });
+    return future;
+  }
+
+  private static void completeFrom(Executor executor, Runnable completion) {
+    try {
+      executor.execute(completion);
+    } catch (RejectedExecutionException e) {
+      completion.run();
+    }
+  }
 }
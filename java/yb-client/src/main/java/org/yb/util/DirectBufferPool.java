@@ -0,0 +1,166 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.util;
+
+import com.google.common.base.Preconditions;
+import org.yb.annotations.InterfaceAudience;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct {@link ByteBuffer}s handed out as reference counted {@link DirectSlice}s.
+ * <p>
+ * Buffers are grouped in power of two size classes, from {@link #MIN_BUFFER_SIZE} up to
+ * {@link #MAX_POOLED_BUFFER_SIZE}. A request is served from the smallest class that fits it,
+ * reusing a buffer released earlier when there is one. Released buffers are kept for reuse as
+ * long as the pool holds less than its maximum number of bytes, and dropped otherwise. Larger
+ * requests get a buffer of their own, which is never pooled.
+ * <p>
+ * Allocating direct memory is expensive, and a direct buffer's memory is only freed once the
+ * buffer gets garbage collected, so reusing them keeps large responses from churning through
+ * either the heap or the native memory.
+ * <p>
+ * This class is thread-safe.
+ */
+@InterfaceAudience.Private
+public final class DirectBufferPool {
+
+  /** Size of the smallest size class. */
+  public static final int MIN_BUFFER_SIZE = 4 * 1024;
+
+  /** Size of the largest size class, larger buffers aren't pooled. */
+  public static final int MAX_POOLED_BUFFER_SIZE = 16 * 1024 * 1024;
+
+  private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+  private static final int NUM_SIZE_CLASSES =
+      Integer.numberOfTrailingZeros(MAX_POOLED_BUFFER_SIZE) - MIN_SHIFT + 1;
+
+  private final long maxPooledBytes;
+
+  private final Queue<ByteBuffer>[] freeBuffers;
+
+  /** Number of bytes held by the buffers in {@link #freeBuffers}. */
+  private final AtomicLong pooledBytes = new AtomicLong();
+
+  private final AtomicLong numAllocatedBuffers = new AtomicLong();
+  private final AtomicLong numReusedBuffers = new AtomicLong();
+
+  /**
+   * @param maxPooledBytes maximum number of bytes the released buffers kept for reuse can add
+   * up to
+   */
+  @SuppressWarnings("unchecked")
+  public DirectBufferPool(long maxPooledBytes) {
+    Preconditions.checkArgument(maxPooledBytes >= 0,
+                                "maxPooledBytes must not be negative: %s", maxPooledBytes);
+    this.maxPooledBytes = maxPooledBytes;
+    this.freeBuffers = new Queue[NUM_SIZE_CLASSES];
+    for (int i = 0; i < NUM_SIZE_CLASSES; i++) {
+      freeBuffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+    }
+  }
+
+  /**
+   * Allocates a slice of the given length. The caller owns its only reference, and has to
+   * {@link DirectSlice#release() release} it for the memory to be reused.
+   * @param length the length of the slice, in bytes
+   * @return a slice whose content is undefined
+   */
+  public DirectSlice allocate(int length) {
+    Preconditions.checkArgument(length >= 0, "length must not be negative: %s", length);
+    final int sizeClass = sizeClass(length);
+    ByteBuffer buffer = null;
+    if (sizeClass >= 0) {
+      buffer = freeBuffers[sizeClass].poll();
+    }
+    if (buffer != null) {
+      pooledBytes.addAndGet(-buffer.capacity());
+      numReusedBuffers.incrementAndGet();
+    } else {
+      final int capacity = sizeClass >= 0 ? MIN_BUFFER_SIZE << sizeClass : length;
+      buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+      numAllocatedBuffers.incrementAndGet();
+    }
+    return new DirectSlice(this, buffer, length);
+  }
+
+  /**
+   * Takes back the buffer of a slice whose last reference was released.
+   */
+  void recycle(ByteBuffer buffer) {
+    final int capacity = buffer.capacity();
+    if (capacity > MAX_POOLED_BUFFER_SIZE) {
+      return;
+    }
+    // Reserve the space first so that concurrent releases can't go over the limit.
+    if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+      pooledBytes.addAndGet(-capacity);
+      return;
+    }
+    freeBuffers[sizeClass(capacity)].offer(buffer);
+  }
+
+  /**
+   * @return the index of the smallest size class that fits {@code length} bytes, or -1 if it
+   * is too large to be pooled
+   */
+  static int sizeClass(int length) {
+    if (length > MAX_POOLED_BUFFER_SIZE) {
+      return -1;
+    }
+    if (length <= MIN_BUFFER_SIZE) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_SHIFT;
+  }
+
+  /**
+   * @return the maximum number of bytes kept for reuse
+   */
+  public long getMaxPooledBytes() {
+    return maxPooledBytes;
+  }
+
+  /**
+   * @return the number of bytes currently kept for reuse
+   */
+  public long getPooledBytes() {
+    return pooledBytes.get();
+  }
+
+  /**
+   * @return the number of direct buffers allocated so far
+   */
+  public long getNumAllocatedBuffers() {
+    return numAllocatedBuffers.get();
+  }
+
+  /**
+   * @return the number of allocations served by a buffer from the pool so far
+   */
+  public long getNumReusedBuffers() {
+    return numReusedBuffers.get();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(pooledBytes=" + getPooledBytes() +
+        ", maxPooledBytes=" + maxPooledBytes + ", allocated=" + getNumAllocatedBuffers() +
+        ", reused=" + getNumReusedBuffers() + ')';
+  }
+}
@@ -0,0 +1,209 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Shorts;
+import org.yb.annotations.InterfaceAudience;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Little Endian slice of a direct {@link ByteBuffer}, the off-heap counterpart of {@link Slice}.
+ * <p>
+ * Direct slices are allocated from a {@link DirectBufferPool} and are reference counted: the
+ * slice starts with a count of 1, {@link #retain()} increments it and {@link #release()}
+ * decrements it. The memory goes back to the pool once the count drops to 0, after which the
+ * slice must not be accessed anymore. Slices that are never released are reclaimed by the
+ * garbage collector like any direct buffer, they are just lost to the pool.
+ */
+@InterfaceAudience.Private
+public final class DirectSlice {
+
+  private static final AtomicIntegerFieldUpdater<DirectSlice> REF_CNT_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(DirectSlice.class, "refCnt");
+
+  private final DirectBufferPool pool;
+  /**
+   * The whole pooled buffer, in little endian order with its position at 0 and its limit at its
+   * capacity. Only its duplicates get repositioned.
+   */
+  private final ByteBuffer buffer;
+  private final int length;
+
+  private volatile int refCnt = 1;
+
+  DirectSlice(DirectBufferPool pool, ByteBuffer buffer, int length) {
+    this.pool = pool;
+    this.buffer = buffer;
+    this.length = length;
+  }
+
+  /**
+   * Length of this slice.
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * @return the current reference count, 0 once the slice was released
+   */
+  public int refCnt() {
+    return refCnt;
+  }
+
+  /**
+   * Increments the reference count, for another owner to use the slice.
+   * @return this slice
+   * @throws IllegalStateException if the slice was released already
+   */
+  public DirectSlice retain() {
+    for (;;) {
+      int cnt = refCnt;
+      if (cnt == 0) {
+        throw new IllegalStateException("Slice was released already");
+      }
+      if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt + 1)) {
+        return this;
+      }
+    }
+  }
+
+  /**
+   * Decrements the reference count, giving the memory back to the pool if it drops to 0.
+   * @return true if the memory was given back
+   * @throws IllegalStateException if the slice was released already
+   */
+  public boolean release() {
+    for (;;) {
+      int cnt = refCnt;
+      if (cnt == 0) {
+        throw new IllegalStateException("Slice was released already");
+      }
+      if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt - 1)) {
+        if (cnt == 1) {
+          pool.recycle(buffer);
+          return true;
+        }
+        return false;
+      }
+    }
+  }
+
+  private void checkIndexes(int index, int size) {
+    Preconditions.checkPositionIndexes(index, index + size, length);
+    if (refCnt == 0) {
+      throw new IllegalStateException("Slice was released already");
+    }
+  }
+
+  /**
+   * Gets a byte at the specified absolute {@code index} in this slice.
+   */
+  public byte getByte(int index) {
+    checkIndexes(index, 1);
+    return buffer.get(index);
+  }
+
+  /**
+   * Gets a 16-bit short integer at the specified absolute {@code index} in this slice.
+   */
+  public short getShort(int index) {
+    checkIndexes(index, Shorts.BYTES);
+    return buffer.getShort(index);
+  }
+
+  /**
+   * Gets a 32-bit integer at the specified absolute {@code index} in this slice.
+   */
+  public int getInt(int index) {
+    checkIndexes(index, Ints.BYTES);
+    return buffer.getInt(index);
+  }
+
+  /**
+   * Gets a 64-bit long integer at the specified absolute {@code index} in this slice.
+   */
+  public long getLong(int index) {
+    checkIndexes(index, Longs.BYTES);
+    return buffer.getLong(index);
+  }
+
+  /**
+   * Transfers {@code length} bytes of this slice starting at {@code index} to
+   * {@code destination} starting at {@code destinationIndex}.
+   */
+  public void getBytes(int index, byte[] destination, int destinationIndex, int length) {
+    checkIndexes(index, length);
+    ByteBuffer src = buffer.duplicate();
+    src.position(index);
+    src.get(destination, destinationIndex, length);
+  }
+
+  /**
+   * Copies {@code source}'s remaining bytes into this slice starting at {@code index}, and
+   * advances the position of {@code source} accordingly.
+   */
+  public void setBytes(int index, ByteBuffer source) {
+    checkIndexes(index, source.remaining());
+    ByteBuffer dst = buffer.duplicate();
+    dst.position(index);
+    dst.put(source);
+  }
+
+  /**
+   * Copies the data of this slice onto the heap.
+   */
+  public Slice copySlice() {
+    byte[] copy = new byte[length];
+    getBytes(0, copy, 0, length);
+    return new Slice(copy);
+  }
+
+  /**
+   * Returns a read-only view of this slice, which is only valid until the slice is released.
+   */
+  public ByteBuffer toByteBuffer() {
+    return toByteBuffer(0, length);
+  }
+
+  /**
+   * Returns a read-only view of part of this slice, which is only valid until the slice is
+   * released.
+   */
+  public ByteBuffer toByteBuffer(int index, int length) {
+    checkIndexes(index, length);
+    ByteBuffer view = buffer.asReadOnlyBuffer();
+    view.position(index);
+    view.limit(index + length);
+    return view.slice();
+  }
+
+  /**
+   * Decodes this slice's data into a string using the specified charset.
+   */
+  public String toString(Charset charset) {
+    return charset.decode(toByteBuffer()).toString();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(length=" + length + ", refCnt=" + refCnt + ')';
+  }
+}
@@ -44,6 +44,18 @@ public class HybridTimeUtil {
   public static final int hybridTimeNumBitsToShift = 12;
   public static final int hybridTimeLogicalBitsMask = (1 << hybridTimeNumBitsToShift) - 1;
 
+  /**
+   * Checks whether the provided value can be an encoded HT timestamp. HybridTime is unsigned on
+   * the server side, values that don't fit in a signed long (including the invalid and max
+   * HybridTime sentinels) are treated as invalid here.
+   *
+   * @param htTimestamp the encoded HT timestamp
+   * @return true if the timestamp is valid
+   */
+  public static boolean isValidHTTimestamp(long htTimestamp) {
+    return htTimestamp >= 0;
+  }
+
   /**
    * Converts the provided timestamp, in the provided unit, to the HybridTime timestamp
    * format. Logical bits are set to 0.
@@ -0,0 +1,164 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.yb.WireProtocol;
+import org.yb.consensus.Metadata;
+import org.yb.master.Master;
+import org.yb.rpc.RpcHeader;
+import org.yb.util.Pair;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process server that speaks the RPC protocol and plays a single leader master, so that
+ * client code paths going through the master can be tested without a cluster. It answers
+ * GetMasterRegistration by itself, other methods get the responses set by the test. Calls to
+ * methods without a response are counted but never answered.
+ */
+class FakeMaster implements AutoCloseable {
+
+  private final ServerBootstrap bootstrap;
+  private final Channel serverChannel;
+  private final ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor();
+
+  private final ConcurrentHashMap<String, Message> responses = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Pair<Long, Message>> nextResponses =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, AtomicInteger> numCalls = new ConcurrentHashMap<>();
+
+  FakeMaster() {
+    responses.put("GetMasterRegistration", Master.GetMasterRegistrationResponsePB.newBuilder()
+        .setInstanceId(WireProtocol.NodeInstancePB.newBuilder()
+            .setPermanentUuid(ByteString.copyFromUtf8("fake-master"))
+            .setInstanceSeqno(0))
+        .setRole(Metadata.RaftPeerPB.Role.LEADER)
+        .build());
+    bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(
+        Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+    bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() {
+        return Channels.pipeline(new RequestDecoder());
+      }
+    });
+    serverChannel = bootstrap.bind(new InetSocketAddress("127.0.0.1", 0));
+  }
+
+  /** @return the port this master listens on, at 127.0.0.1 */
+  int getPort() {
+    return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+  }
+
+  /** @return this master's address, to build a client with */
+  String getAddress() {
+    return "127.0.0.1:" + getPort();
+  }
+
+  /** Answers every call to the given method of the master service with the given response. */
+  void setResponse(String method, Message response) {
+    responses.put(method, response);
+  }
+
+  /**
+   * Answers only the next call to the given method with the given response, after a delay.
+   * The calls after it get the response set with {@link #setResponse}.
+   */
+  void setNextResponse(String method, long delayMs, Message response) {
+    nextResponses.put(method, new Pair<Long, Message>(delayMs, response));
+  }
+
+  /** @return how many calls to the given method were received so far */
+  int getNumCalls(String method) {
+    AtomicInteger calls = numCalls.get(method);
+    return calls == null ? 0 : calls.get();
+  }
+
+  @Override
+  public void close() {
+    serverChannel.close().awaitUninterruptibly();
+    bootstrap.releaseExternalResources();
+    delayer.shutdownNow();
+  }
+
+  private void answer(final Channel chan, int callId, String method) {
+    AtomicInteger calls = numCalls.get(method);
+    if (calls == null) {
+      numCalls.putIfAbsent(method, new AtomicInteger());
+      calls = numCalls.get(method);
+    }
+    calls.incrementAndGet();
+
+    Pair<Long, Message> next = nextResponses.remove(method);
+    Message response = next != null ? next.getSecond() : responses.get(method);
+    if (response == null) {
+      return;
+    }
+    RpcHeader.ResponseHeader header =
+        RpcHeader.ResponseHeader.newBuilder().setCallId(callId).build();
+    final ChannelBuffer buf = YRpc.toChannelBuffer(header, response);
+    if (next == null || next.getFirst() <= 0) {
+      chan.write(buf);
+      return;
+    }
+    delayer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        chan.write(buf);
+      }
+    }, next.getFirst(), TimeUnit.MILLISECONDS);
+  }
+
+  private final class RequestDecoder extends FrameDecoder {
+    private boolean gotConnectionHeader;
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, Channel chan, ChannelBuffer buf)
+        throws Exception {
+      if (!gotConnectionHeader) {
+        if (buf.readableBytes() < 3) {
+          return null;
+        }
+        buf.skipBytes(3);
+        gotConnectionHeader = true;
+      }
+      if (buf.readableBytes() < 4 || buf.readableBytes() < 4 + buf.getInt(buf.readerIndex())) {
+        return null;
+      }
+      int frameSize = buf.readInt();
+      ChannelBuffer frame = buf.readSlice(frameSize);
+      RpcHeader.RequestHeader request =
+          RpcHeader.RequestHeader.parseDelimitedFrom(new ChannelBufferInputStream(frame));
+      answer(chan, request.getCallId(), request.getRemoteMethod().getMethodName());
+      return frame;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.YBTestRunner;
+import org.yb.rpc.RpcHeader;
+import org.yb.util.DirectBufferPool;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+@RunWith(value=YBTestRunner.class)
+public class TestCallResponse {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TestCallResponse.class);
+
+  private static final int MESSAGE_SIZE = 4 * 1024 * 1024;
+
+  private static RpcHeader.ErrorStatusPB largeMessage() {
+    char[] chars = new char[MESSAGE_SIZE];
+    Arrays.fill(chars, 'x');
+    return RpcHeader.ErrorStatusPB.newBuilder()
+        .setMessage(new String(chars))
+        .setCode(RpcHeader.ErrorStatusPB.RpcErrorCodePB.ERROR_SERVER_TOO_BUSY)
+        .build();
+  }
+
+  private static ChannelBuffer frame(RpcHeader.ErrorStatusPB message, boolean direct) {
+    RpcHeader.ResponseHeader header = RpcHeader.ResponseHeader.newBuilder().setCallId(1).build();
+    ChannelBuffer heapFrame = YRpc.toChannelBuffer(header, message);
+    if (!direct) {
+      return heapFrame;
+    }
+    ChannelBuffer directFrame = ChannelBuffers.directBuffer(heapFrame.readableBytes());
+    directFrame.writeBytes(heapFrame);
+    return directFrame;
+  }
+
+  private static RpcHeader.ErrorStatusPB decode(ChannelBuffer frame) {
+    CallResponse response = new CallResponse(frame);
+    RpcHeader.ErrorStatusPB.Builder builder = RpcHeader.ErrorStatusPB.newBuilder();
+    YRpc.readProtobuf(response, builder);
+    return builder.build();
+  }
+
+  @Test
+  public void testDecodeFragmented() {
+    RpcHeader.ErrorStatusPB message = largeMessage();
+    DirectBufferPool pool = new DirectBufferPool(2 * DirectBufferPool.MAX_POOLED_BUFFER_SIZE);
+    for (int i = 0; i < 2; i++) {
+      ChannelBuffer frame = frame(message, true);
+      int half = frame.readableBytes() / 2;
+      // Split the frame the way the frame decoder's cumulation would after two reads.
+      ChannelBuffer fragmented = ChannelBuffers.wrappedBuffer(frame.slice(0, half),
+          frame.slice(half, frame.readableBytes() - half));
+      CallResponse response = new CallResponse(fragmented, pool);
+      RpcHeader.ErrorStatusPB.Builder builder = RpcHeader.ErrorStatusPB.newBuilder();
+      YRpc.readProtobuf(response, builder);
+      response.release();
+      assertEquals(message, builder.build());
+    }
+    // The second response reused the buffer of the first.
+    assertEquals(1, pool.getNumAllocatedBuffers());
+    assertEquals(1, pool.getNumReusedBuffers());
+  }
+
+  /**
+   * @return the number of bytes allocated by this thread to decode the given frame
+   */
+  private static long bytesAllocatedToDecode(ChannelBuffer frame) {
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long before = bean.getThreadAllocatedBytes(threadId);
+    decode(frame);
+    return bean.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  @Test
+  public void testDecode() {
+    RpcHeader.ErrorStatusPB message = largeMessage();
+    for (boolean direct : new boolean[] { false, true }) {
+      ChannelBuffer frame = frame(message, direct);
+      CallResponse response = new CallResponse(frame.duplicate());
+      assertEquals(1, response.getHeader().getCallId());
+      assertEquals(message.getSerializedSize(), response.getPBMessageLength());
+      assertEquals(message, decode(frame));
+    }
+  }
+
+  @Test
+  public void testBytesAllocatedPerResponse() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean &&
+                      ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+
+    RpcHeader.ErrorStatusPB message = largeMessage();
+    for (boolean direct : new boolean[] { false, true }) {
+      // Warm up so that class loading doesn't count towards the allocations.
+      for (int i = 0; i < 3; i++) {
+        decode(frame(message, direct));
+      }
+      ChannelBuffer frame = frame(message, direct);
+      long allocated = bytesAllocatedToDecode(frame);
+      LOG.info("Decoding a " + frame.capacity() + "-byte " + (direct ? "direct" : "heap") +
+               " response allocated " + allocated + " bytes");
+      // Parsing has to copy the string field once, the response itself shouldn't be copied
+      // on top of that.
+      assertTrue("Allocated " + allocated + " bytes to decode a " + MESSAGE_SIZE +
+                 "-byte message", allocated < MESSAGE_SIZE * 3 / 2);
+    }
+  }
+}
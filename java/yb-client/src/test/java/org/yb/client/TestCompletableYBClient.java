@@ -0,0 +1,119 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertSame;
+import static org.yb.AssertionWrappers.assertTrue;
+import static org.yb.AssertionWrappers.fail;
+
+import com.google.common.net.HostAndPort;
+import com.stumbleupon.async.Deferred;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.util.AsyncUtil;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(value=YBTestRunner.class)
+public class TestCompletableYBClient {
+
+  private static final String EXECUTOR_THREAD_NAME = "completable-client-test";
+
+  private AsyncYBClient asyncClient;
+  private CompletableYBClient client;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor(
+        r -> new Thread(r, EXECUTOR_THREAD_NAME));
+    asyncClient = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    client = new CompletableYBClient(asyncClient, executor);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+    executor.shutdownNow();
+  }
+
+  @Test(timeout = 10000)
+  public void testCompletesFromExecutor() throws Exception {
+    Deferred<String> d = new Deferred<>();
+    CompletableFuture<String> future = AsyncUtil.toCompletableFuture(d, executor);
+    CompletableFuture<String> thread = future.thenApply(s -> Thread.currentThread().getName());
+    d.callback("done");
+    assertEquals("done", future.get());
+    assertEquals(EXECUTOR_THREAD_NAME, thread.get());
+    // The Deferred still yields its result to its own callbacks.
+    assertEquals("done", d.join());
+  }
+
+  @Test(timeout = 10000)
+  public void testError() throws Exception {
+    Deferred<String> d = new Deferred<>();
+    CompletableFuture<String> future = AsyncUtil.toCompletableFuture(d, executor);
+    NonRecoverableException error = new NonRecoverableException("failed");
+    d.callback(error);
+    try {
+      future.get();
+      fail("The future should have failed");
+    } catch (ExecutionException e) {
+      assertSame(error, e.getCause());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testCallAll() throws Exception {
+    List<HostAndPort> servers = Arrays.asList(HostAndPort.fromParts("a", 1),
+                                              HostAndPort.fromParts("b", 2),
+                                              HostAndPort.fromParts("c", 3));
+    Map<HostAndPort, Integer> ports =
+        client.callAll(servers, hp -> CompletableFuture.completedFuture(hp.getPort())).get();
+    assertEquals(servers, Arrays.asList(ports.keySet().toArray()));
+    assertEquals(Arrays.asList(1, 2, 3), Arrays.asList(ports.values().toArray()));
+
+    CompletableFuture<Map<HostAndPort, Integer>> failed = client.callAll(servers, hp -> {
+      if (hp.getPort() == 2) {
+        throw new IllegalStateException("Could not create a client to " + hp);
+      }
+      return CompletableFuture.completedFuture(hp.getPort());
+    });
+    try {
+      failed.join();
+      fail("The batch should have failed");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testWaitForCondition() throws Exception {
+    CompletableFuture<Boolean> wait = client.waitForCondition(
+        () -> Deferred.fromResult(true), TimeUnit.SECONDS.toMillis(10));
+    assertTrue(wait.get());
+  }
+}
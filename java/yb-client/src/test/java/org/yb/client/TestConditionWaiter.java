@@ -0,0 +1,175 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import com.stumbleupon.async.Deferred;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(value=YBTestRunner.class)
+public class TestConditionWaiter {
+
+  private AsyncYBClient client;
+
+  @Before
+  public void setUp() {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  /**
+   * Holds once it was checked a given number of times, and fails every other check.
+   */
+  private static class CountingCondition implements AsyncYBClient.AsyncCondition {
+    final AtomicInteger numChecks = new AtomicInteger();
+    private final int checksBeforeHolding;
+    private final boolean failChecks;
+
+    CountingCondition(int checksBeforeHolding, boolean failChecks) {
+      this.checksBeforeHolding = checksBeforeHolding;
+      this.failChecks = failChecks;
+    }
+
+    @Override
+    public Deferred<Boolean> check() {
+      int check = numChecks.incrementAndGet();
+      if (check >= checksBeforeHolding) {
+        return Deferred.fromResult(true);
+      }
+      if (failChecks && check % 2 == 0) {
+        return Deferred.fromError(new NonRecoverableException("check " + check + " failed"));
+      }
+      return Deferred.fromResult(false);
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testBacksOff() throws Exception {
+    CountingCondition condition = new CountingCondition(8, false);
+    ConditionWaiter waiter = new ConditionWaiter(client, condition, 60000);
+    long start = System.currentTimeMillis();
+    assertTrue(waiter.start().join());
+    long elapsed = System.currentTimeMillis() - start;
+    assertEquals(8, condition.numChecks.get());
+    // Waited 20 + 40 + 80 + 160 + 320 + 500 + 500ms between the checks.
+    assertTrue("Waited " + elapsed + "ms", elapsed >= 1600 && elapsed < 5000);
+    assertEquals(ConditionWaiter.MAX_POLL_INTERVAL_MS, waiter.getIntervalMs());
+  }
+
+  @Test(timeout = 10000)
+  public void testHoldsRightAway() throws Exception {
+    CountingCondition condition = new CountingCondition(1, false);
+    assertTrue(client.waitForCondition(condition, 60000).join());
+    assertEquals(1, condition.numChecks.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testIgnoresErrors() throws Exception {
+    CountingCondition condition = new CountingCondition(5, true);
+    client.injectWaitError();
+    assertTrue(client.waitForCondition(condition, 60000).join());
+    // The injected error didn't check the condition.
+    assertEquals(5, condition.numChecks.get());
+    assertFalse(client.consumeInjectedWaitError());
+  }
+
+  @Test(timeout = 10000)
+  public void testTimeout() throws Exception {
+    CountingCondition condition = new CountingCondition(Integer.MAX_VALUE, false);
+    long start = System.currentTimeMillis();
+    assertFalse(client.waitForCondition(condition, 300).join());
+    long elapsed = System.currentTimeMillis() - start;
+    assertTrue("Waited " + elapsed + "ms", elapsed >= 300 && elapsed < 2000);
+  }
+
+  @Test(timeout = 10000)
+  public void testTimeoutWhileChecking() throws Exception {
+    // A check that never completes, like an RPC lost along with its connection.
+    AsyncYBClient.AsyncCondition condition = new AsyncYBClient.AsyncCondition() {
+      @Override
+      public Deferred<Boolean> check() {
+        return new Deferred<Boolean>();
+      }
+    };
+    long start = System.currentTimeMillis();
+    assertFalse(client.waitForCondition(condition, 300).join(5000));
+    long elapsed = System.currentTimeMillis() - start;
+    assertTrue("Waited " + elapsed + "ms", elapsed >= 300 && elapsed < 2000);
+  }
+
+  @Test(timeout = 10000)
+  public void testClientShutdownWhileChecking() throws Exception {
+    final Deferred<Boolean> check = new Deferred<Boolean>();
+    AsyncYBClient.AsyncCondition condition = new AsyncYBClient.AsyncCondition() {
+      @Override
+      public Deferred<Boolean> check() {
+        return check;
+      }
+    };
+    Deferred<Boolean> wait = client.waitForCondition(condition, 60000);
+    client.close();
+    client = null;
+    // The next check can't be scheduled anymore, the wait is over.
+    check.callback(false);
+    assertFalse(wait.join(5000));
+  }
+
+  @Test(timeout = 10000)
+  public void testClientShutdown() throws Exception {
+    CountingCondition condition = new CountingCondition(Integer.MAX_VALUE, false);
+    Deferred<Boolean> wait = client.waitForCondition(condition, 60000);
+    Thread.sleep(100);
+    client.close();
+    client = null;
+    assertFalse(wait.join(5000));
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrentWaits() throws Exception {
+    final AtomicBoolean holds = new AtomicBoolean();
+    AsyncYBClient.AsyncCondition condition = new AsyncYBClient.AsyncCondition() {
+      @Override
+      public Deferred<Boolean> check() {
+        return Deferred.fromResult(holds.get());
+      }
+    };
+    List<Deferred<Boolean>> waits = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      waits.add(client.waitForCondition(condition, 60000));
+    }
+    Thread.sleep(200);
+    holds.set(true);
+    for (Deferred<Boolean> wait : waits) {
+      assertTrue(wait.join(5000));
+    }
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Opid;
+import org.yb.YBTestRunner;
+import org.yb.cdc.CdcService;
+import org.yb.util.DirectBufferPool;
+import org.yb.util.DirectSlice;
+
+import java.nio.ByteBuffer;
+
+@RunWith(value=YBTestRunner.class)
+public class TestGetChangesResponse {
+
+  private static CdcService.GetChangesResponsePB newResponse(int numRecords) {
+    CdcService.GetChangesResponsePB.Builder builder = CdcService.GetChangesResponsePB.newBuilder()
+        .setRecordFormat(CdcService.CDCRecordFormat.WAL);
+    for (int i = 0; i < numRecords; i++) {
+      builder.addRecordsBuilder()
+          .setTime(i)
+          .setOperation(CdcService.CDCRecordPB.OperationType.WRITE);
+    }
+    builder.getCheckpointBuilder().setOpId(Opid.OpIdPB.newBuilder().setTerm(2).setIndex(7));
+    return builder.build();
+  }
+
+  private static DirectSlice serialize(DirectBufferPool pool,
+                                       CdcService.GetChangesResponsePB resp) {
+    byte[] bytes = resp.toByteArray();
+    DirectSlice slice = pool.allocate(bytes.length);
+    slice.setBytes(0, ByteBuffer.wrap(bytes));
+    return slice;
+  }
+
+  @Test
+  public void testRecordsStaySerialized() {
+    DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+    CdcService.GetChangesResponsePB expected = newResponse(3);
+    DirectSlice slice = serialize(pool, expected);
+    GetChangesResponse response = new GetChangesResponse(0, "uuid", slice);
+
+    assertEquals(expected.toBuilder().clearRecords().build(), response.getRespWithoutRecords());
+    assertEquals(3, response.getRecordsCount());
+    // The records can be read again, the response only drops them once released.
+    assertEquals(expected.getRecordsList(), response.readRecords());
+    assertEquals(expected.getRecordsList(), response.readRecords());
+    assertEquals(1, slice.refCnt());
+
+    response.release();
+    assertEquals(0, slice.refCnt());
+    // The parts parsed already are still there.
+    assertEquals(3, response.getRecordsCount());
+    try {
+      response.readRecords();
+      fail("Records shouldn't be readable once the response is released");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testParsedResponse() {
+    CdcService.GetChangesResponsePB expected = newResponse(2);
+    GetChangesResponse response = new GetChangesResponse(0, "uuid", expected);
+    assertEquals(2, response.getRecordsCount());
+    assertFalse(response.getRespWithoutRecords().hasError());
+    assertEquals(0, response.getRespWithoutRecords().getRecordsCount());
+    assertEquals(expected.getRecordsList(), response.readRecords());
+    response.release();
+    assertEquals(expected, response.getResp());
+  }
+
+  @Test
+  public void testGetRespAfterRecords() {
+    DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+    CdcService.GetChangesResponsePB expected = newResponse(1);
+    DirectSlice slice = serialize(pool, expected);
+    GetChangesResponse response = new GetChangesResponse(0, "uuid", slice);
+    assertEquals(1, response.getRecordsCount());
+    assertEquals(expected, response.getResp());
+    assertEquals(0, slice.refCnt());
+    assertEquals(expected.getRecordsList(), response.readRecords());
+  }
+}
@@ -0,0 +1,145 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertNotNull;
+import static org.yb.AssertionWrappers.assertNull;
+import static org.yb.AssertionWrappers.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.util.Slice;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+@RunWith(value=YBTestRunner.class)
+public class TestHashPartitionLocator {
+
+  private AsyncYBClient client;
+
+  @Before
+  public void setUp() {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  private static byte[] hashKey(int hash) {
+    return hash == HashPartitionLocator.NUM_HASH_CODES ?
+        new byte[0] : new byte[] { (byte) (hash >>> 8), (byte) hash };
+  }
+
+  private AsyncYBClient.RemoteTablet tablet(int startHash, int endHash) {
+    byte[] start = startHash == 0 ? new byte[0] : hashKey(startHash);
+    Partition partition =
+        new Partition(start, hashKey(endHash), ImmutableList.<Integer>of());
+    return client.new RemoteTablet("table", new Slice(Bytes.UTF8("tablet-" + startHash)),
+                                   partition);
+  }
+
+  @Test
+  public void testLookup() {
+    List<AsyncYBClient.RemoteTablet> tablets = new ArrayList<>();
+    int numTablets = 7;
+    int step = HashPartitionLocator.NUM_HASH_CODES / numTablets;
+    for (int i = 0; i < numTablets; i++) {
+      int end = i == numTablets - 1 ? HashPartitionLocator.NUM_HASH_CODES : (i + 1) * step;
+      tablets.add(tablet(i * step, end));
+    }
+    HashPartitionLocator locator = HashPartitionLocator.build(tablets);
+    assertNotNull(locator);
+
+    for (int i = 0; i < numTablets; i++) {
+      int start = i * step;
+      assertSame(tablets.get(i), locator.getTablet(hashKey(start)));
+      if (i > 0) {
+        assertSame(tablets.get(i - 1), locator.getTablet(hashKey(start - 1)));
+      }
+    }
+    assertSame(tablets.get(numTablets - 1), locator.getTablet(hashKey(0xffff)));
+
+    // Keys that aren't hash codes aren't handled by the locator.
+    assertNull(locator.getTablet(null));
+    assertNull(locator.getTablet(new byte[] { 1 }));
+    assertNull(locator.getTablet(new byte[] { 1, 2, 3 }));
+  }
+
+  @Test
+  public void testSingleTablet() {
+    AsyncYBClient.RemoteTablet tablet = tablet(0, HashPartitionLocator.NUM_HASH_CODES);
+    HashPartitionLocator locator = HashPartitionLocator.build(ImmutableList.of(tablet));
+    assertNotNull(locator);
+    assertSame(tablet, locator.getTablet(hashKey(0)));
+    assertSame(tablet, locator.getTablet(hashKey(0x1234)));
+    assertSame(tablet, locator.getTablet(hashKey(0xffff)));
+  }
+
+  @Test
+  public void testIncompleteCoverage() {
+    // A gap in the middle of the hash space.
+    assertNull(HashPartitionLocator.build(ImmutableList.of(
+        tablet(0, 0x4000), tablet(0x8000, HashPartitionLocator.NUM_HASH_CODES))));
+    // The end of the hash space isn't covered.
+    assertNull(HashPartitionLocator.build(ImmutableList.of(tablet(0, 0x8000))));
+    // No tablets at all.
+    assertNull(HashPartitionLocator.build(ImmutableList.<AsyncYBClient.RemoteTablet>of()));
+  }
+
+  @Test
+  public void testNonHashKeys() {
+    Partition partition = new Partition(new byte[0], Bytes.UTF8("abc"),
+                                        ImmutableList.<Integer>of());
+    AsyncYBClient.RemoteTablet rangeTablet =
+        client.new RemoteTablet("table", new Slice(Bytes.UTF8("range")), partition);
+    assertNull(HashPartitionLocator.build(ImmutableList.of(rangeTablet)));
+  }
+
+  @Test
+  public void testTabletsAddedDuringBuild() {
+    final List<AsyncYBClient.RemoteTablet> before = ImmutableList.of(
+        tablet(0, 0x8000), tablet(0x8000, HashPartitionLocator.NUM_HASH_CODES));
+    // A tablet of a newer generation, discovered while the locator is built.
+    final List<AsyncYBClient.RemoteTablet> after = ImmutableList.of(
+        before.get(0), tablet(0x4000, 0x8000), before.get(1));
+    // Like the tablets skip list, the collection changes between two reads.
+    AbstractCollection<AsyncYBClient.RemoteTablet> tablets =
+        new AbstractCollection<AsyncYBClient.RemoteTablet>() {
+          private int numReads;
+
+          @Override
+          public Iterator<AsyncYBClient.RemoteTablet> iterator() {
+            return (numReads++ == 0 ? before : after).iterator();
+          }
+
+          @Override
+          public int size() {
+            return numReads == 0 ? before.size() : after.size();
+          }
+        };
+    HashPartitionLocator locator = HashPartitionLocator.build(tablets);
+    assertNotNull(locator);
+    assertSame(before.get(0), locator.getTablet(hashKey(0x4000)));
+    assertSame(before.get(1), locator.getTablet(hashKey(0xffff)));
+  }
+}
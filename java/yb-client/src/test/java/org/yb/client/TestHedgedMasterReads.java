@@ -0,0 +1,123 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertTrue;
+import static org.yb.AssertionWrappers.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.WireProtocol;
+import org.yb.YBTestRunner;
+import org.yb.master.Master;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(value=YBTestRunner.class)
+public class TestHedgedMasterReads {
+
+  private static final String SERVICE = "yb.master.MasterService";
+  private static final String METHOD = "ListTabletServers";
+
+  private AsyncYBClient client;
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  private void recordCalls(int numCalls, long latencyMs) {
+    RpcMetrics.MethodMetrics metrics = client.getRpcMetrics().forMethod(SERVICE, METHOD);
+    for (int i = 0; i < numCalls; i++) {
+      metrics.recordCall(TimeUnit.MILLISECONDS.toNanos(latencyMs), false);
+    }
+  }
+
+  @Test
+  public void testHedgeDelay() throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1")
+        .hedgeMasterReads(90, 20)
+        .build();
+
+    // Not enough calls to know what a slow call is.
+    recordCalls(AsyncYBClient.MIN_CALLS_BEFORE_HEDGING - 1, 1);
+    assertEquals(-1L, client.getHedgeDelayMs(SERVICE, METHOD));
+
+    // Fast calls get hedged after the minimum delay.
+    recordCalls(1, 1);
+    assertEquals(20L, client.getHedgeDelayMs(SERVICE, METHOD));
+
+    // Once more than 10% of the calls are slow, the percentile follows them. The histogram
+    // buckets are a bit over 6% wide at that scale.
+    recordCalls(AsyncYBClient.MIN_CALLS_BEFORE_HEDGING, 500);
+    long delayMs = client.getHedgeDelayMs(SERVICE, METHOD);
+    assertTrue("Hedge delay is " + delayMs + "ms", delayMs >= 500 && delayMs <= 540);
+  }
+
+  @Test
+  public void testHedgeWinsAndLoserStops() throws Exception {
+    try (FakeMaster master = new FakeMaster()) {
+      master.setResponse(METHOD, Master.ListTabletServersResponsePB.getDefaultInstance());
+      client = new AsyncYBClient.AsyncYBClientBuilder(master.getAddress())
+          .hedgeMasterReads(90, 20)
+          .build();
+
+      // Find the master first, no hedging without enough calls recorded.
+      client.listTabletServers().join(10000);
+      assertEquals(0L, client.getNumHedgedRpcs());
+      recordCalls(AsyncYBClient.MIN_CALLS_BEFORE_HEDGING, 1);
+
+      // The first attempt hangs, then fails with an error that would have it retried.
+      Master.ListTabletServersResponsePB.Builder notLeader =
+          Master.ListTabletServersResponsePB.newBuilder();
+      notLeader.getErrorBuilder()
+          .setCode(Master.MasterErrorPB.Code.NOT_THE_LEADER)
+          .getStatusBuilder().setCode(WireProtocol.AppStatusPB.ErrorCode.UNKNOWN_ERROR);
+      master.setNextResponse(METHOD, 1000, notLeader.build());
+
+      client.listTabletServers().join(10000);
+      assertEquals(1L, client.getNumHedgedRpcs());
+      assertEquals(1L, client.getNumHedgedRpcsWon());
+      assertEquals(3, master.getNumCalls(METHOD));
+
+      // Once its error comes back, the losing attempt isn't sent again.
+      Thread.sleep(3000);
+      assertEquals(3, master.getNumCalls(METHOD));
+    }
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    assertEquals(0L, client.getNumHedgedRpcs());
+    assertEquals(0L, client.getNumHedgedRpcsWon());
+    assertEquals(0L, client.getRpcMetrics().snapshot().getNumHedgedRpcs());
+  }
+
+  @Test
+  public void testInvalidPercentile() throws Exception {
+    for (double percentile : new double[] { -1, 100 }) {
+      try {
+        new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").hedgeMasterReads(percentile, 0);
+        fail("Percentile " + percentile + " should have been rejected");
+      } catch (IllegalArgumentException e) {
+        // Expected.
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertNotNull;
+import static org.yb.AssertionWrappers.assertTrue;
+import static org.yb.AssertionWrappers.fail;
+
+import com.google.common.net.HostAndPort;
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+@RunWith(value=YBTestRunner.class)
+public class TestInflightRpcSweeper {
+
+  private AsyncYBClient client;
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  private static Deferred<PingResponse> sendPing(TabletClient tabletClient, long timeoutMs) {
+    PingRequest rpc = new PingRequest();
+    rpc.setTimeoutMillis(timeoutMs);
+    Deferred<PingResponse> d = rpc.getDeferred();
+    rpc.attempt++;
+    tabletClient.sendRpc(rpc);
+    return d;
+  }
+
+  private static void respond(DecoderEmbedder<Object> embedder, int callId) {
+    RpcHeader.ResponseHeader header =
+        RpcHeader.ResponseHeader.newBuilder().setCallId(callId).build();
+    embedder.offer(YRpc.toChannelBuffer(header, ServerBase.PingResponsePB.getDefaultInstance()));
+  }
+
+  @Test
+  public void testExpireTimedOutRpcs() throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    TabletClient tabletClient = new TabletClient(client, "uuid");
+    DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(tabletClient);
+
+    Deferred<PingResponse> expiring = sendPing(tabletClient, 50);
+    Deferred<PingResponse> waiting = sendPing(tabletClient, 60000);
+    assertEquals(0, tabletClient.expireTimedOutRpcs());
+    Thread.sleep(100);
+    assertEquals(1, tabletClient.expireTimedOutRpcs());
+    assertEquals(1, tabletClient.getNumInflightRpcs());
+    try {
+      expiring.join(1000);
+      fail("The RPC should have timed out");
+    } catch (NonRecoverableException e) {
+      assertTrue(e.getMessage().startsWith("Time out"));
+    }
+
+    // The late response is dropped without affecting the connection.
+    respond(embedder, 0);
+    respond(embedder, 1);
+    assertNotNull(waiting.join(1000));
+    assertEquals(0, tabletClient.getNumInflightRpcs());
+  }
+
+  @Test
+  public void testSweeperFailsRpcsToUnresponsiveServer() throws Exception {
+    // The connection gets established by the kernel, but nothing is ever read or answered.
+    try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1")
+          .defaultAdminOperationTimeoutMs(500)
+          .defaultSocketReadTimeoutMs(60000)
+          .build();
+      long start = System.currentTimeMillis();
+      try {
+        client.ping(HostAndPort.fromParts("127.0.0.1", server.getLocalPort())).join(10000);
+        fail("The ping should have timed out");
+      } catch (NonRecoverableException e) {
+        assertTrue(e.getMessage().startsWith("Time out"));
+      }
+      assertTrue(System.currentTimeMillis() - start < 5000);
+      assertEquals(1, client.getNumExpiredRpcs());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeInterval() {
+    new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").inflightRpcSweepIntervalMs(-1);
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Common.TableType;
+import org.yb.YBTestRunner;
+import org.yb.master.Master;
+import org.yb.rpc.RpcHeader;
+import org.yb.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(value=YBTestRunner.class)
+public class TestListTablesOptions {
+
+  private static Master.ListTablesResponsePB.TableInfo table(String name, TableType type) {
+    return Master.ListTablesResponsePB.TableInfo.newBuilder()
+        .setId(ByteString.copyFromUtf8(name + "-id"))
+        .setName(name)
+        .setTableType(type)
+        .build();
+  }
+
+  private static Pair<ListTablesResponse, Object> deserialize(
+      ListTablesOptions options, Master.ListTablesResponsePB message) throws Exception {
+    RpcHeader.ResponseHeader header = RpcHeader.ResponseHeader.newBuilder().setCallId(1).build();
+    CallResponse response = new CallResponse(YRpc.toChannelBuffer(header, message));
+    ListTablesRequest request = new ListTablesRequest(
+        null, options, Master.NamespaceIdentifierPB.newBuilder().setName("ks").build());
+    return request.deserialize(response, "master");
+  }
+
+  @Test
+  public void testMatches() {
+    ListTablesOptions options = new ListTablesOptions();
+    assertTrue(options.matches(table("foo", TableType.YQL_TABLE_TYPE)));
+
+    options.setNamePrefix("fo");
+    assertTrue(options.matches(table("foo", TableType.YQL_TABLE_TYPE)));
+    // The master's filter matches substrings, the prefix has to be checked by the client.
+    assertFalse(options.matches(table("afoo", TableType.YQL_TABLE_TYPE)));
+
+    options.setTableTypes(TableType.PGSQL_TABLE_TYPE, TableType.REDIS_TABLE_TYPE);
+    assertFalse(options.matches(table("foo", TableType.YQL_TABLE_TYPE)));
+    assertTrue(options.matches(table("foo", TableType.PGSQL_TABLE_TYPE)));
+
+    options.setTableTypes();
+    assertTrue(options.matches(table("foo", TableType.YQL_TABLE_TYPE)));
+  }
+
+  @Test
+  public void testFilteredResponse() throws Exception {
+    List<Master.ListTablesResponsePB.TableInfo> expected = new ArrayList<>();
+    Master.ListTablesResponsePB.Builder message = Master.ListTablesResponsePB.newBuilder();
+    for (int i = 0; i < 100; i++) {
+      Master.ListTablesResponsePB.TableInfo table = table(
+          (i % 2 == 0 ? "users_" : "orders_") + i,
+          i % 3 == 0 ? TableType.PGSQL_TABLE_TYPE : TableType.YQL_TABLE_TYPE);
+      if (i % 2 == 0 && i % 3 != 0) {
+        expected.add(table);
+      }
+      message.addTables(table);
+    }
+    ListTablesOptions options = new ListTablesOptions()
+        .setNamePrefix("users_")
+        .setTableTypes(TableType.YQL_TABLE_TYPE);
+    Pair<ListTablesResponse, Object> result = deserialize(options, message.build());
+    assertEquals(expected, result.getFirst().getTableInfoList());
+    assertEquals(null, result.getSecond());
+  }
+
+  @Test
+  public void testErrorResponse() throws Exception {
+    Master.MasterErrorPB error = Master.MasterErrorPB.newBuilder()
+        .setCode(Master.MasterErrorPB.Code.NAMESPACE_NOT_FOUND)
+        .setStatus(org.yb.WireProtocol.AppStatusPB.newBuilder()
+            .setCode(org.yb.WireProtocol.AppStatusPB.ErrorCode.NOT_FOUND))
+        .build();
+    Pair<ListTablesResponse, Object> result = deserialize(
+        new ListTablesOptions(), Master.ListTablesResponsePB.newBuilder().setError(error).build());
+    assertTrue(result.getFirst().getTableInfoList().isEmpty());
+    assertEquals(error, result.getSecond());
+  }
+}
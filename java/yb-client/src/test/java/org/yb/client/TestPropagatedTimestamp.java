@@ -0,0 +1,97 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@RunWith(value=YBTestRunner.class)
+public class TestPropagatedTimestamp {
+
+  private AsyncYBClient client;
+
+  @Before
+  public void setUp() {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  @Test
+  public void testOnlyMovesForward() {
+    assertEquals(AsyncYBClient.NO_TIMESTAMP, client.getLastPropagatedTimestamp());
+    client.updateLastPropagatedTimestamp(0);
+    assertEquals(0L, client.getLastPropagatedTimestamp());
+    client.updateLastPropagatedTimestamp(100);
+    assertEquals(100L, client.getLastPropagatedTimestamp());
+    client.updateLastPropagatedTimestamp(50);
+    assertEquals(100L, client.getLastPropagatedTimestamp());
+  }
+
+  @Test
+  public void testRejectsInvalidTimestamps() {
+    client.updateLastPropagatedTimestamp(100);
+    for (long timestamp : new long[] { AsyncYBClient.NO_TIMESTAMP, -2, Long.MIN_VALUE }) {
+      try {
+        client.updateLastPropagatedTimestamp(timestamp);
+        fail("Accepted timestamp " + timestamp);
+      } catch (IllegalArgumentException e) {
+        // Expected.
+      }
+    }
+    assertEquals(100L, client.getLastPropagatedTimestamp());
+  }
+
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    final int numThreads = 64;
+    final int updatesPerThread = 10000;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < numThreads; i++) {
+      final int offset = i;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        // Threads interleave their timestamps, so they keep overtaking each other.
+        for (int j = 0; j < updatesPerThread; j++) {
+          client.updateLastPropagatedTimestamp((long) j * numThreads + offset);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals((long) updatesPerThread * numThreads - 1, client.getLastPropagatedTimestamp());
+  }
+}
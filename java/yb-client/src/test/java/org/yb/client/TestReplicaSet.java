@@ -0,0 +1,146 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertNull;
+import static org.yb.AssertionWrappers.assertSame;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Common;
+import org.yb.YBTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(value=YBTestRunner.class)
+public class TestReplicaSet {
+
+  private AsyncYBClient client;
+  private TabletClient ts1;
+  private TabletClient ts2;
+  private TabletClient ts3;
+
+  @Before
+  public void setUp() {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    ts1 = new TabletClient(client, "ts1");
+    ts2 = new TabletClient(client, "ts2");
+    ts3 = new TabletClient(client, "ts3");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  private ReplicaSet threeReplicas(int leaderIndex) {
+    Common.CloudInfoPB placement = Common.CloudInfoPB.getDefaultInstance();
+    return new ReplicaSet(ImmutableList.of(ts1, ts2, ts3),
+        ImmutableList.of(placement, placement, placement), leaderIndex);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull(ReplicaSet.EMPTY.getLeader());
+    assertEquals(-1, ReplicaSet.EMPTY.indexOf(ts1));
+    assertNull(new ReplicaSet(ImmutableList.<TabletClient>of(),
+        ImmutableList.<Common.CloudInfoPB>of(), 0).getLeader());
+  }
+
+  @Test
+  public void testDemoteLeader() {
+    ReplicaSet replicas = threeReplicas(0);
+    assertSame(ts1, replicas.getLeader());
+    replicas = replicas.withNextLeader();
+    assertSame(ts2, replicas.getLeader());
+    replicas = replicas.withNextLeader();
+    assertSame(ts3, replicas.getLeader());
+    replicas = replicas.withNextLeader();
+    assertNull(replicas.getLeader());
+    assertEquals(ReplicaSet.NO_LEADER_INDEX, replicas.getLeaderIndex());
+  }
+
+  @Test
+  public void testRemoveServer() {
+    ReplicaSet original = threeReplicas(1);
+
+    // Removing a follower before the leader moves the leader down the list.
+    ReplicaSet replicas = original.withoutServer(0);
+    assertEquals(2, replicas.getServers().size());
+    assertEquals(2, replicas.getPlacements().size());
+    assertSame(ts2, replicas.getLeader());
+
+    // Removing the leader promotes the next server.
+    replicas = original.withoutServer(1);
+    assertSame(ts3, replicas.getLeader());
+
+    // Unless it was the last one.
+    replicas = threeReplicas(2).withoutServer(2);
+    assertNull(replicas.getLeader());
+
+    // Snapshots never change.
+    assertEquals(3, original.getServers().size());
+    assertSame(ts2, original.getLeader());
+  }
+
+  @Test
+  public void testConcurrentReadsDuringChanges() throws Exception {
+    final AtomicReference<ReplicaSet> current = new AtomicReference<>(threeReplicas(0));
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread reader = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (!done.get()) {
+              ReplicaSet replicas = current.get();
+              TabletClient leader = replicas.getLeader();
+              // A snapshot is always consistent: its leader is one of its servers.
+              assertTrue(leader == null || replicas.getServers().contains(leader));
+            }
+          } catch (Throwable t) {
+            failure.set(t);
+          }
+        }
+      });
+      reader.start();
+      readers.add(reader);
+    }
+    for (int i = 0; i < 100000; i++) {
+      ReplicaSet replicas = current.get();
+      if (replicas.getLeader() == null || replicas.getServers().size() < 2) {
+        current.set(threeReplicas(i % 3));
+      } else if (i % 2 == 0) {
+        current.set(replicas.withNextLeader());
+      } else {
+        current.set(replicas.withoutServer(i % replicas.getServers().size()));
+      }
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertNull(failure.get());
+  }
+}
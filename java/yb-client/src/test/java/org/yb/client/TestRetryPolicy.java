@@ -0,0 +1,124 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(value=YBTestRunner.class)
+public class TestRetryPolicy {
+
+  @Test
+  public void testExponentialBackoffBounds() {
+    final long base = 10;
+    final long max = 1000;
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy(base, max);
+    for (int run = 0; run < 100; run++) {
+      long previous = 0;
+      for (int attempt = 1; attempt <= 20; attempt++) {
+        long sleep = policy.getSleepTimeMs(previous);
+        assertTrue("sleep " + sleep + " below base", sleep >= base);
+        assertTrue("sleep " + sleep + " above cap", sleep <= max);
+        assertTrue("sleep " + sleep + " grew too fast", sleep <= Math.max(base, previous) * 3);
+        previous = sleep;
+      }
+    }
+    // The cap leaves nothing to spread over.
+    assertEquals(base, new ExponentialBackoffRetryPolicy(base, base).getSleepTimeMs(0));
+  }
+
+  @Test
+  public void testExponentialBackoffFirstRetryJitter() {
+    final long base = 100;
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy(base, 10000);
+    // Clients failing at the same time don't all come back after exactly the base sleep time.
+    boolean sawAboveBase = false;
+    for (int i = 0; i < 100; i++) {
+      long sleep = policy.getSleepTimeMs(0);
+      assertTrue("sleep " + sleep + " below base", sleep >= base);
+      assertTrue("sleep " + sleep + " above 3 * base", sleep <= 3 * base);
+      sawAboveBase |= sleep > base;
+    }
+    assertTrue(sawAboveBase);
+  }
+
+  @Test
+  public void testExponentialBackoffGrows() {
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy(10, 100000);
+    long total = 0;
+    long previous = 0;
+    for (int attempt = 1; attempt <= 10; attempt++) {
+      previous = policy.getSleepTimeMs(previous);
+      total += previous;
+    }
+    // Linear growth would be 10 + 20 + ... + 100 = 550ms, the expected sum is several times that.
+    assertTrue("total sleep " + total, total > 550);
+  }
+
+  @Test
+  public void testExponentialBackoffJitter() {
+    RetryPolicy policy = new ExponentialBackoffRetryPolicy(10, 10000);
+    boolean sawDifferentSleeps = false;
+    long first = policy.getSleepTimeMs(1000);
+    for (int i = 0; i < 100 && !sawDifferentSleeps; i++) {
+      sawDifferentSleeps = policy.getSleepTimeMs(1000) != first;
+    }
+    assertTrue(sawDifferentSleeps);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCap() {
+    new ExponentialBackoffRetryPolicy(100, 10);
+  }
+
+  @Test
+  public void testRetryBudget() {
+    long now = 0;
+    RetryBudget budget = new RetryBudget(3, 2, now);
+    assertTrue(budget.tryAcquire(now));
+    assertTrue(budget.tryAcquire(now));
+    assertTrue(budget.tryAcquire(now));
+    assertFalse(budget.tryAcquire(now));
+
+    // 2 tokens per second: one comes back after 500ms.
+    now += TimeUnit.MILLISECONDS.toNanos(400);
+    assertFalse(budget.tryAcquire(now));
+    now += TimeUnit.MILLISECONDS.toNanos(200);
+    assertTrue(budget.tryAcquire(now));
+    assertFalse(budget.tryAcquire(now));
+
+    // The bucket never holds more than its size.
+    now += TimeUnit.SECONDS.toNanos(100);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(budget.tryAcquire(now));
+    }
+    assertFalse(budget.tryAcquire(now));
+  }
+
+  @Test
+  public void testClientDefaults() throws Exception {
+    try (AsyncYBClient client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build()) {
+      assertTrue(client.getRetryPolicy() instanceof ExponentialBackoffRetryPolicy);
+      assertEquals(0, client.getNumRetries());
+      assertEquals(0, client.getNumRetryBudgetExhausted());
+    }
+  }
+}
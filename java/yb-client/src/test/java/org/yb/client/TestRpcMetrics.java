@@ -0,0 +1,144 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertNotNull;
+import static org.yb.AssertionWrappers.assertNull;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+@RunWith(value=YBTestRunner.class)
+public class TestRpcMetrics {
+
+  private AsyncYBClient client;
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  @Test
+  public void testHistogramBuckets() {
+    for (long value = 0; value < 1000000; value += 7) {
+      int index = LatencyHistogram.bucketIndex(value);
+      long upperBound = LatencyHistogram.bucketUpperBound(index);
+      assertTrue(upperBound >= value);
+      assertTrue(upperBound <= value + value / 16);
+      if (index > 0) {
+        assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+      }
+    }
+  }
+
+  @Test
+  public void testHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.snapshot().getCount());
+    for (long value = 1; value <= 10000; value++) {
+      histogram.record(value);
+    }
+    histogram.record(-1);
+    histogram.record(Long.MAX_VALUE);
+
+    LatencySnapshot snapshot = histogram.snapshot();
+    assertEquals(10002, snapshot.getCount());
+    assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getMaxMicros());
+    assertTrue(snapshot.getP50Micros() >= 5000 && snapshot.getP50Micros() <= 5000 * 17 / 16);
+    assertTrue(snapshot.getP90Micros() >= 9000 && snapshot.getP90Micros() <= 9000 * 17 / 16);
+    assertTrue(snapshot.getP99Micros() >= 9900 && snapshot.getP99Micros() <= 9900 * 17 / 16);
+  }
+
+  @Test
+  public void testPingMetrics() throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    TabletClient tabletClient = new TabletClient(client, "uuid");
+    DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(tabletClient);
+
+    PingRequest rpc = new PingRequest();
+    rpc.setTimeoutMillis(10000);
+    Deferred<PingResponse> d = rpc.getDeferred();
+    rpc.attempt++;
+    tabletClient.sendRpc(rpc);
+    RpcHeader.ResponseHeader header = RpcHeader.ResponseHeader.newBuilder().setCallId(0).build();
+    embedder.offer(YRpc.toChannelBuffer(header, ServerBase.PingResponsePB.getDefaultInstance()));
+    assertNotNull(d.join(1000));
+
+    RpcMetricsSnapshot snapshot = client.getRpcMetrics().snapshot();
+    assertNull(snapshot.getMethod("yb.master.MasterService", "GetTableLocations"));
+    RpcMethodMetricsSnapshot ping = snapshot.getMethod("yb.server.GenericService", "Ping");
+    assertNotNull(ping);
+    assertEquals(1, ping.getCalls());
+    assertEquals(0, ping.getFailures());
+    assertEquals(1, ping.getAttempts());
+    assertTrue(ping.getBytesSent() > 0);
+    assertTrue(ping.getBytesReceived() > 0);
+    assertEquals(1, ping.getCallLatency().getCount());
+    assertEquals(1, ping.getAttemptLatency().getCount());
+    assertTrue(ping.getCallLatency().getMaxMicros() >= ping.getAttemptLatency().getMaxMicros());
+  }
+
+  @Test
+  public void testFailedLookupMetrics() throws Exception {
+    // Nothing listens on this port, so the lookup fails.
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1")
+        .defaultAdminOperationTimeoutMs(1000)
+        .build();
+    YBTable table = new YBTable(client, "table", "table-id", null, null);
+    try {
+      client.locateTablet(table, new byte[0]).join(10000);
+    } catch (Exception e) {
+      // Expected.
+    }
+    assertEquals(1, client.getRpcMetrics().getMasterLookupLatency().getCount());
+  }
+
+  @Test
+  public void testJmx() throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+    assertNull(client.getRpcMetricsObjectName());
+    client.close();
+
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1")
+        .registerRpcMetricsMBean(true)
+        .build();
+    ObjectName name = client.getRpcMetricsObjectName();
+    assertNotNull(name);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertTrue(server.isRegistered(name));
+    assertEquals(0L, server.getAttribute(name, "NumRetries"));
+    assertNotNull(server.getAttribute(name, "Methods"));
+    assertNotNull(server.getAttribute(name, "MasterLookupLatency"));
+
+    client.close();
+    client = null;
+    assertFalse(server.isRegistered(name));
+  }
+}
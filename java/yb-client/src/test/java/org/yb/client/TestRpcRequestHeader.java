@@ -0,0 +1,93 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertArrayEquals;
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertSame;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.master.Master;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+@RunWith(value=YBTestRunner.class)
+public class TestRpcRequestHeader {
+
+  private static final String SERVICE = "yb.master.MasterService";
+  private static final String METHOD = "GetTableLocations";
+
+  private static RpcHeader.RequestHeader.Builder protobufHeader(int callId) {
+    return RpcHeader.RequestHeader.newBuilder()
+        .setCallId(callId)
+        .setRemoteMethod(RpcHeader.RemoteMethodPB.newBuilder()
+                             .setServiceName(SERVICE)
+                             .setMethodName(METHOD));
+  }
+
+  private static byte[] toBytes(ChannelBuffer buf) {
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.getBytes(buf.readerIndex(), bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testSameBytesAsProtobuf() {
+    // Cover call IDs and timeouts whose varints take from 1 to 5 bytes, and a negative call ID
+    // which protobuf encodes on 10 bytes.
+    for (int value : new int[] { 0, 1, 300, 70000, Integer.MAX_VALUE, -1 }) {
+      RpcRequestHeader header = new RpcRequestHeader(SERVICE, METHOD, value);
+      RpcHeader.RequestHeader expected = protobufHeader(value).build();
+      assertEquals(expected.getSerializedSize(), header.getSerializedSize());
+      assertEquals(expected, header.toPB());
+
+      if (value >= 0) {
+        header = new RpcRequestHeader(SERVICE, METHOD, 42, value);
+        expected = protobufHeader(42).setTimeoutMillis(value).build();
+        assertEquals(expected.getSerializedSize(), header.getSerializedSize());
+        assertEquals(expected, header.toPB());
+      }
+    }
+  }
+
+  @Test
+  public void testSameFrameAsProtobuf() {
+    Master.GetTableLocationsRequestPB pb = Master.GetTableLocationsRequestPB.newBuilder()
+        .setTable(Master.TableIdentifierPB.newBuilder().setTableName("test_table"))
+        .setMaxReturnedLocations(10)
+        .build();
+    assertArrayEquals(
+        toBytes(YRpc.toChannelBuffer(protobufHeader(7).setTimeoutMillis(5000).build(), pb)),
+        toBytes(YRpc.toChannelBuffer(new RpcRequestHeader(SERVICE, METHOD, 7, 5000), pb)));
+    assertArrayEquals(
+        toBytes(YRpc.toChannelBuffer(protobufHeader(8).build(),
+                                     ServerBase.PingRequestPB.getDefaultInstance())),
+        toBytes(YRpc.toChannelBuffer(new RpcRequestHeader(SERVICE, METHOD, 8),
+                                     ServerBase.PingRequestPB.getDefaultInstance())));
+  }
+
+  @Test
+  public void testRemoteMethodIsCached() {
+    byte[] field = RpcRequestHeader.remoteMethodField(SERVICE, METHOD);
+    assertSame(field, RpcRequestHeader.remoteMethodField(SERVICE, METHOD));
+    assertSame(field, RpcRequestHeader.remoteMethodField(new String(SERVICE),
+                                                         new String(METHOD)));
+    assertEquals(RpcHeader.RemoteMethodPB.newBuilder().setServiceName(SERVICE).setMethodName("Ping")
+                     .build(),
+                 new RpcRequestHeader(SERVICE, "Ping", 1).toPB().getRemoteMethod());
+  }
+}
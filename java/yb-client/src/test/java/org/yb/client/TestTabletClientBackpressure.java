@@ -0,0 +1,176 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertNotNull;
+import static org.yb.AssertionWrappers.assertTrue;
+import static org.yb.AssertionWrappers.fail;
+
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+@RunWith(value=YBTestRunner.class)
+public class TestTabletClientBackpressure {
+
+  private static final int MAX_RPCS = 2;
+
+  private AsyncYBClient client;
+  private TabletClient tabletClient;
+  private DecoderEmbedder<Object> embedder;
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  private void setUp(BackpressurePolicy policy) {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1")
+        .maxRpcsPerConnection(MAX_RPCS, policy)
+        .build();
+    tabletClient = new TabletClient(client, "uuid");
+    embedder = new DecoderEmbedder<Object>(tabletClient);
+  }
+
+  private Deferred<PingResponse> sendPing(long timeoutMs) {
+    PingRequest rpc = new PingRequest();
+    rpc.setTimeoutMillis(timeoutMs);
+    Deferred<PingResponse> d = rpc.getDeferred();
+    rpc.attempt++;
+    tabletClient.sendRpc(rpc);
+    return d;
+  }
+
+  private void respond(int callId) {
+    RpcHeader.ResponseHeader header =
+        RpcHeader.ResponseHeader.newBuilder().setCallId(callId).build();
+    embedder.offer(YRpc.toChannelBuffer(header, ServerBase.PingResponsePB.getDefaultInstance()));
+  }
+
+  @Test
+  public void testReject() throws Exception {
+    setUp(BackpressurePolicy.REJECT);
+    Deferred<PingResponse> first = sendPing(10000);
+    sendPing(10000);
+    assertEquals(MAX_RPCS, tabletClient.getNumQueuedRpcs());
+    try {
+      sendPing(10000).join(1000);
+      fail("The RPC should have been rejected");
+    } catch (ConnectionBusyException e) {
+      // Expected.
+    }
+    assertEquals(1, client.getNumBackpressuredRpcs());
+    assertEquals(MAX_RPCS, tabletClient.getNumQueuedRpcs());
+
+    // Once a response is received, there's room again.
+    respond(0);
+    assertNotNull(first.join(1000));
+    Deferred<PingResponse> third = sendPing(10000);
+    respond(1);
+    respond(2);
+    assertNotNull(third.join(1000));
+    assertEquals(0, tabletClient.getNumQueuedRpcs());
+  }
+
+  @Test
+  public void testRetryWithoutTabletIsRejected() throws Exception {
+    setUp(BackpressurePolicy.RETRY);
+    sendPing(10000);
+    sendPing(10000);
+    try {
+      sendPing(10000).join(1000);
+      fail("The RPC should have been rejected");
+    } catch (ConnectionBusyException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testConcurrentSendersDontGoPastTheLimit() throws Exception {
+    setUp(BackpressurePolicy.REJECT);
+    final int numThreads = 8;
+    final int numRpcsPerThread = 50;
+    Thread[] senders = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      senders[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < numRpcsPerThread; j++) {
+            sendPing(10000);
+          }
+        }
+      };
+    }
+    for (Thread sender : senders) {
+      sender.start();
+    }
+    for (Thread sender : senders) {
+      sender.join(10000);
+    }
+    assertEquals(MAX_RPCS, tabletClient.getNumQueuedRpcs());
+    assertEquals(numThreads * numRpcsPerThread - MAX_RPCS, client.getNumBackpressuredRpcs());
+  }
+
+  @Test
+  public void testBlock() throws Exception {
+    setUp(BackpressurePolicy.BLOCK);
+    sendPing(10000);
+    sendPing(10000);
+
+    // The RPC is held without blocking the sender.
+    Deferred<PingResponse> blocked = sendPing(10000);
+    Deferred<PingResponse> next = sendPing(10000);
+    assertEquals(2, client.getNumBackpressuredRpcs());
+    assertEquals(MAX_RPCS, tabletClient.getNumQueuedRpcs());
+
+    // Held RPCs are sent in order as room frees up.
+    respond(0);
+    assertEquals(MAX_RPCS, tabletClient.getNumInflightRpcs());
+    respond(2);
+    assertNotNull(blocked.join(1000));
+    respond(1);
+    respond(3);
+    assertNotNull(next.join(1000));
+    assertEquals(0, tabletClient.getNumQueuedRpcs());
+  }
+
+  @Test
+  public void testBlockUntilDeadline() throws Exception {
+    setUp(BackpressurePolicy.BLOCK);
+    sendPing(10000);
+    sendPing(10000);
+    long start = System.currentTimeMillis();
+    try {
+      sendPing(100).join(1000);
+      fail("The RPC should have timed out");
+    } catch (NonRecoverableException e) {
+      assertTrue(e.getMessage().startsWith("Time out"));
+    }
+    assertTrue(System.currentTimeMillis() - start >= 100);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeMaxRpcs() {
+    new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1")
+        .maxRpcsPerConnection(-1, BackpressurePolicy.REJECT);
+  }
+}
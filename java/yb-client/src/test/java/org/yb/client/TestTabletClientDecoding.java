@@ -0,0 +1,128 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertNotNull;
+import static org.yb.AssertionWrappers.assertNull;
+
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(value=YBTestRunner.class)
+public class TestTabletClientDecoding {
+
+  private AsyncYBClient client;
+
+  @Before
+  public void setUp() {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  private static ChannelBuffer pingResponseFrame(int callId) {
+    RpcHeader.ResponseHeader header =
+        RpcHeader.ResponseHeader.newBuilder().setCallId(callId).build();
+    return YRpc.toChannelBuffer(header, ServerBase.PingResponsePB.getDefaultInstance());
+  }
+
+  private static ChannelBuffer heartbeatFrame() {
+    ChannelBuffer buf = ChannelBuffers.buffer(TabletClient.FRAME_LENGTH_PREFIX_SIZE);
+    buf.writeInt(0);
+    return buf;
+  }
+
+  private static Deferred<PingResponse> sendPing(TabletClient tabletClient) {
+    PingRequest rpc = new PingRequest();
+    rpc.setTimeoutMillis(10000);
+    Deferred<PingResponse> d = rpc.getDeferred();
+    rpc.attempt++;
+    tabletClient.sendRpc(rpc);
+    return d;
+  }
+
+  @Test
+  public void testNextFrame() {
+    ChannelBuffer frame = pingResponseFrame(0);
+    int frameSize = frame.readableBytes();
+    ChannelBuffer buf = ChannelBuffers.dynamicBuffer();
+
+    // Nothing is consumed until the whole frame is there.
+    for (int i = 0; i < frameSize - 1; i++) {
+      buf.writeByte(frame.getByte(i));
+      assertNull(TabletClient.nextFrame(buf));
+      assertEquals(0, buf.readerIndex());
+    }
+    buf.writeByte(frame.getByte(frameSize - 1));
+    buf.writeBytes(heartbeatFrame());
+
+    ChannelBuffer first = TabletClient.nextFrame(buf);
+    assertNotNull(first);
+    assertEquals(frameSize, first.readableBytes());
+    ChannelBuffer second = TabletClient.nextFrame(buf);
+    assertNotNull(second);
+    assertEquals(TabletClient.FRAME_LENGTH_PREFIX_SIZE, second.readableBytes());
+    assertFalse(buf.readable());
+  }
+
+  @Test
+  public void testFragmentedResponses() throws Exception {
+    TabletClient tabletClient = new TabletClient(client, "uuid");
+    // The embedder fires channelConnected, so RPCs get written straight to its channel.
+    DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(tabletClient);
+
+    final int numPings = 3;
+    List<Deferred<PingResponse>> pings = new ArrayList<>();
+    for (int i = 0; i < numPings; i++) {
+      pings.add(sendPing(tabletClient));
+    }
+    assertEquals(numPings, tabletClient.getNumInflightRpcs());
+
+    ChannelBuffer stream = ChannelBuffers.dynamicBuffer();
+    stream.writeBytes(heartbeatFrame());
+    for (int i = 0; i < numPings; i++) {
+      stream.writeBytes(pingResponseFrame(i));
+      stream.writeBytes(heartbeatFrame());
+    }
+
+    // Feed the stream in small, uneven pieces so that frames straddle reads.
+    int fragmentSize = 1;
+    while (stream.readable()) {
+      embedder.offer(stream.readBytes(Math.min(fragmentSize, stream.readableBytes())));
+      fragmentSize = fragmentSize % 5 + 1;
+    }
+
+    for (Deferred<PingResponse> d : pings) {
+      assertNotNull(d.join(1000));
+    }
+    assertEquals(0, tabletClient.getNumInflightRpcs());
+  }
+}
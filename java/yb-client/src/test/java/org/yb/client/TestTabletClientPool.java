@@ -0,0 +1,210 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertNotSame;
+import static org.yb.AssertionWrappers.assertSame;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import com.google.protobuf.ByteString;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Common;
+import org.yb.YBTestRunner;
+import org.yb.consensus.Metadata;
+import org.yb.master.Master;
+import org.yb.server.ServerBase;
+import org.yb.util.Pair;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+@RunWith(value=YBTestRunner.class)
+public class TestTabletClientPool {
+
+  private AsyncYBClient client;
+
+  @Before
+  public void setUp() {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  @Test
+  public void testRoundRobin() {
+    TabletClientPool pool = new TabletClientPool(3, ConnectionSelectionPolicy.ROUND_ROBIN);
+    for (int i = 0; i < 7; i++) {
+      assertEquals(i % 3, pool.selectSlot());
+    }
+  }
+
+  @Test
+  public void testConcurrentRoundRobin() throws Exception {
+    final int numSlots = 4;
+    final int numSelectsPerThread = 1000;
+    final TabletClientPool pool =
+        new TabletClientPool(numSlots, ConnectionSelectionPolicy.ROUND_ROBIN);
+    final AtomicIntegerArray counts = new AtomicIntegerArray(numSlots);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < numSlots; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < numSelectsPerThread; j++) {
+            counts.incrementAndGet(pool.selectSlot());
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // Selecting without a lock still hands out every slot in turn.
+    for (int i = 0; i < numSlots; i++) {
+      assertEquals(numSelectsPerThread, counts.get(i));
+    }
+  }
+
+  @Test
+  public void testLeastInFlightPrefersLiveClients() {
+    TabletClientPool pool = new TabletClientPool(3, ConnectionSelectionPolicy.LEAST_IN_FLIGHT);
+    // Nothing connected yet, the first slot gets filled first.
+    assertEquals(0, pool.selectSlot());
+
+    // An idle live connection wins over opening a new one.
+    TabletClient tc = new TabletClient(client, "uuid");
+    pool.set(1, tc);
+    assertEquals(1, pool.selectSlot());
+    assertTrue(pool.contains(tc));
+    assertFalse(pool.isEmpty());
+
+    assertTrue(pool.remove(tc));
+    assertFalse(pool.remove(tc));
+    assertTrue(pool.isEmpty());
+    assertEquals(0, pool.getClients().size());
+  }
+
+  @Test
+  public void testSingleSlot() {
+    TabletClientPool pool = new TabletClientPool(1, ConnectionSelectionPolicy.ROUND_ROBIN);
+    assertEquals(0, pool.selectSlot());
+    assertEquals(0, pool.selectSlot());
+  }
+
+  /** A ping routed like a tablet RPC, to the leader of the tablet holding its key. */
+  private static class TabletPingRequest extends YRpc<PingResponse> implements YRpc.HasKey {
+    TabletPingRequest(YBTable table) {
+      super(table);
+    }
+
+    @Override
+    ChannelBuffer serialize(RpcRequestHeader header) {
+      return toChannelBuffer(header, ServerBase.PingRequestPB.getDefaultInstance());
+    }
+
+    @Override
+    String serviceName() {
+      return GENERIC_SERVICE_NAME;
+    }
+
+    @Override
+    String method() {
+      return "Ping";
+    }
+
+    @Override
+    Pair<PingResponse, Object> deserialize(CallResponse callResponse, String uuid) {
+      return new Pair<PingResponse, Object>(new PingResponse(0, uuid), null);
+    }
+
+    @Override
+    public byte[] partitionKey() {
+      return new byte[0];
+    }
+  }
+
+  @Test
+  public void testTabletRpcsSpreadOverConnections() throws Exception {
+    final int numConnections = 4;
+    try (ServerSocket server = new ServerSocket(0)) {
+      AsyncYBClient pooled = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1")
+          .connectionsPerServer(numConnections)
+          .connectionSelectionPolicy(ConnectionSelectionPolicy.ROUND_ROBIN)
+          .build();
+      try {
+        Master.TabletLocationsPB.Builder tabletPb = Master.TabletLocationsPB.newBuilder()
+            .setTabletId(ByteString.copyFromUtf8("tablet"))
+            .setStale(false);
+        tabletPb.getPartitionBuilder()
+            .setPartitionKeyStart(ByteString.EMPTY)
+            .setPartitionKeyEnd(ByteString.EMPTY);
+        Master.TabletLocationsPB.ReplicaPB.Builder replicaPb = tabletPb.addReplicasBuilder()
+            .setRole(Metadata.RaftPeerPB.Role.LEADER);
+        replicaPb.getTsInfoBuilder()
+            .setPermanentUuid(ByteString.copyFromUtf8("ts"))
+            .addPrivateRpcAddresses(Common.HostPortPB.newBuilder()
+                .setHost("127.0.0.1").setPort(server.getLocalPort()));
+        YBTable table = new YBTable(pooled, "table", "table-id", null, null);
+        pooled.discoverTablets(table, Master.GetTableLocationsResponsePB.newBuilder()
+            .addTabletLocations(tabletPb).build());
+
+        // Discovering the tablet pins a single connection in its replica set.
+        TabletClient pinned =
+            pooled.getTablet("table-id", new byte[0]).getReplicas().getLeader();
+        for (int i = 0; i < numConnections * 2; i++) {
+          TabletPingRequest rpc = new TabletPingRequest(table);
+          rpc.setTimeoutMillis(10000);
+          pooled.sendRpcToTablet(rpc);
+        }
+
+        // The RPCs went through every connection of the pool, not only the pinned one.
+        List<Socket> accepted = new ArrayList<>();
+        server.setSoTimeout(10000);
+        try {
+          for (int i = 0; i < numConnections; i++) {
+            accepted.add(server.accept());
+          }
+          assertEquals(numConnections, accepted.size());
+        } finally {
+          for (Socket socket : accepted) {
+            socket.close();
+          }
+        }
+
+        // Any connection of the pool stands for the replica, e.g. to demote the leader.
+        TabletClient other = pooled.pooledClientFor(pinned);
+        assertNotSame(pinned, other);
+        assertTrue(pinned.isSameServer(other));
+        assertEquals(0, pooled.getTablet("table-id", new byte[0]).getReplicas().indexOf(other));
+        assertSame(pinned, pooled.getTablet("table-id", new byte[0]).getReplicas().getLeader());
+      } finally {
+        pooled.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertNotNull;
+
+import com.google.protobuf.CodedInputStream;
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+import org.yb.rpc.RpcHeader;
+import org.yb.server.ServerBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(value=YBTestRunner.class)
+public class TestTabletClientWrites {
+
+  private AsyncYBClient client;
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  /**
+   * Sends pings through a TabletClient hooked to an embedded channel, checks what got written
+   * and answers them.
+   */
+  private void checkPingRoundTrips(int writeCoalescingMaxBytes) throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1")
+        .writeCoalescingMaxBytes(writeCoalescingMaxBytes)
+        .build();
+    TabletClient tabletClient = new TabletClient(client, "uuid");
+    DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(tabletClient);
+
+    final int numPings = 10;
+    List<Deferred<PingResponse>> pings = new ArrayList<>();
+    for (int i = 0; i < numPings; i++) {
+      PingRequest rpc = new PingRequest();
+      rpc.setTimeoutMillis(10000);
+      pings.add(rpc.getDeferred());
+      rpc.attempt++;
+      tabletClient.sendRpc(rpc);
+    }
+
+    // Whether or not writes got coalesced, the connection header has to come first, followed by
+    // every request frame in one piece.
+    ChannelBuffer written = ChannelBuffers.dynamicBuffer();
+    Object product;
+    while ((product = embedder.poll()) != null) {
+      written.writeBytes((ChannelBuffer) product);
+    }
+    assertEquals('Y', written.readByte());
+    assertEquals('B', written.readByte());
+    assertEquals(1, written.readByte());
+    for (int i = 0; i < numPings; i++) {
+      int frameSize = written.readInt();
+      ChannelBuffer frame = written.readSlice(frameSize);
+      CodedInputStream in = CodedInputStream.newInstance(frame.array(),
+          frame.arrayOffset() + frame.readerIndex(), frame.readableBytes());
+      int headerSize = in.readRawVarint32();
+      int oldLimit = in.pushLimit(headerSize);
+      RpcHeader.RequestHeader header = RpcHeader.RequestHeader.parseFrom(in);
+      in.popLimit(oldLimit);
+      assertEquals(i, header.getCallId());
+      assertEquals("Ping", header.getRemoteMethod().getMethodName());
+    }
+    assertFalse(written.readable());
+
+    for (int i = 0; i < numPings; i++) {
+      RpcHeader.ResponseHeader header = RpcHeader.ResponseHeader.newBuilder().setCallId(i).build();
+      embedder.offer(
+          YRpc.toChannelBuffer(header, ServerBase.PingResponsePB.getDefaultInstance()));
+    }
+    for (Deferred<PingResponse> d : pings) {
+      assertNotNull(d.join(1000));
+    }
+    assertEquals(0, tabletClient.getNumInflightRpcs());
+  }
+
+  @Test
+  public void testUncoalescedWrites() throws Exception {
+    checkPingRoundTrips(0);
+  }
+
+  @Test
+  public void testCoalescedWrites() throws Exception {
+    checkPingRoundTrips(64 * 1024);
+  }
+
+  @Test
+  public void testCoalescedWritesSmallBatches() throws Exception {
+    // Smaller than a single ping, so every batch is flushed as soon as an RPC is queued.
+    checkPingRoundTrips(1);
+  }
+}
@@ -0,0 +1,131 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertNotNull;
+import static org.yb.AssertionWrappers.assertNull;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Common;
+import org.yb.YBTestRunner;
+import org.yb.consensus.Metadata;
+import org.yb.master.Master;
+
+@RunWith(value=YBTestRunner.class)
+public class TestTabletLocationsRefresh {
+
+  private AsyncYBClient client;
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  private static Master.GetTableLocationsResponsePB singleTabletLocations() {
+    Master.TabletLocationsPB.Builder tabletPb = Master.TabletLocationsPB.newBuilder()
+        .setTabletId(ByteString.copyFromUtf8("tablet"))
+        .setStale(false);
+    tabletPb.getPartitionBuilder()
+        .setPartitionKeyStart(ByteString.EMPTY)
+        .setPartitionKeyEnd(ByteString.EMPTY);
+    return Master.GetTableLocationsResponsePB.newBuilder().addTabletLocations(tabletPb).build();
+  }
+
+  @Test
+  public void testRefreshDisabledByDefault() throws Exception {
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build();
+    YBTable table = new YBTable(client, "table", "table-id", null, null);
+    client.discoverTablets(table, singleTabletLocations());
+    assertFalse(client.isTabletLocationsRefreshScheduled("table-id"));
+  }
+
+  @Test
+  public void testIdleTableStopsBeingRefreshed() throws Exception {
+    // Nothing listens on this port, refreshes fail quickly and the cached locations stay.
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1")
+        .tabletLocationsTtlMs(100)
+        .defaultAdminOperationTimeoutMs(500)
+        .build();
+    YBTable table = new YBTable(client, "table", "table-id", null, null);
+    client.discoverTablets(table, singleTabletLocations());
+    assertTrue(client.isTabletLocationsRefreshScheduled("table-id"));
+
+    // The table keeps being refreshed as long as it's used.
+    long deadline = System.currentTimeMillis() + 3000;
+    while (System.currentTimeMillis() < deadline) {
+      assertNotNull(client.getTablet("table-id", new byte[0]));
+      assertTrue(client.isTabletLocationsRefreshScheduled("table-id"));
+      Thread.sleep(10);
+    }
+
+    // Once it isn't anymore, its refreshes stop.
+    deadline = System.currentTimeMillis() + 10000;
+    while (client.isTabletLocationsRefreshScheduled("table-id") &&
+           System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertFalse(client.isTabletLocationsRefreshScheduled("table-id"));
+
+    // The cached locations are still served, and using the table again resumes the refreshes.
+    assertNotNull(client.getTablet("table-id", new byte[0]));
+    assertTrue(client.isTabletLocationsRefreshScheduled("table-id"));
+  }
+
+  @Test
+  public void testRefreshUpdatesLocations() throws Exception {
+    try (FakeMaster master = new FakeMaster()) {
+      // The tablet moved to a leader on the master's own port, the client only knows about a
+      // tablet without any replica.
+      Master.GetTableLocationsResponsePB.Builder moved = singleTabletLocations().toBuilder();
+      Master.TabletLocationsPB.ReplicaPB.Builder replicaPb = moved.getTabletLocationsBuilder(0)
+          .addReplicasBuilder()
+          .setRole(Metadata.RaftPeerPB.Role.LEADER);
+      replicaPb.getTsInfoBuilder()
+          .setPermanentUuid(ByteString.copyFromUtf8("ts"))
+          .addPrivateRpcAddresses(Common.HostPortPB.newBuilder()
+              .setHost("127.0.0.1").setPort(master.getPort()));
+      master.setResponse("GetTableLocations", moved.build());
+
+      client = new AsyncYBClient.AsyncYBClientBuilder(master.getAddress())
+          .tabletLocationsTtlMs(100)
+          .build();
+      YBTable table = new YBTable(client, "table", "table-id", null, null);
+      client.discoverTablets(table, singleTabletLocations());
+      assertNull(client.getTablet("table-id", new byte[0]).getReplicas().getLeader());
+
+      long deadline = System.currentTimeMillis() + 10000;
+      while (client.getTablet("table-id", new byte[0]).getReplicas().getLeader() == null &&
+             System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      TabletClient leader = client.getTablet("table-id", new byte[0]).getReplicas().getLeader();
+      assertNotNull(leader);
+      assertEquals(master.getPort(), leader.getPort());
+      assertTrue(master.getNumCalls("GetTableLocations") > 0);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeTtl() {
+    new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1").tabletLocationsTtlMs(-1);
+  }
+}
@@ -0,0 +1,227 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertTrue;
+import static org.yb.AssertionWrappers.fail;
+
+import com.google.protobuf.ByteString;
+import com.stumbleupon.async.Deferred;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Common;
+import org.yb.YBTestRunner;
+import org.yb.consensus.Metadata;
+import org.yb.master.Master;
+import org.yb.server.ServerBase;
+import org.yb.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(value=YBTestRunner.class)
+public class TestTabletLookupCoalescing {
+
+  private AsyncYBClient client;
+
+  @Before
+  public void setUp() {
+    // Nothing listens on this port, so lookups stay in flight until they time out.
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1")
+        .defaultAdminOperationTimeoutMs(2000)
+        .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+  }
+
+  private static Master.TabletLocationsPB.Builder tabletLocations(String tabletId,
+                                                                  byte[] start, byte[] end) {
+    Master.TabletLocationsPB.Builder tabletPb = Master.TabletLocationsPB.newBuilder()
+        .setTabletId(ByteString.copyFromUtf8(tabletId))
+        .setStale(false);
+    tabletPb.getPartitionBuilder()
+        .setPartitionKeyStart(ByteString.copyFrom(start))
+        .setPartitionKeyEnd(ByteString.copyFrom(end));
+    return tabletPb;
+  }
+
+  /** A ping routed like a tablet RPC, to the leader of the tablet holding the given key. */
+  private static class TabletPingRequest extends YRpc<PingResponse> implements YRpc.HasKey {
+    private final byte[] partitionKey;
+
+    TabletPingRequest(YBTable table, byte[] partitionKey) {
+      super(table);
+      this.partitionKey = partitionKey;
+    }
+
+    @Override
+    ChannelBuffer serialize(RpcRequestHeader header) {
+      return toChannelBuffer(header, ServerBase.PingRequestPB.getDefaultInstance());
+    }
+
+    @Override
+    String serviceName() {
+      return GENERIC_SERVICE_NAME;
+    }
+
+    @Override
+    String method() {
+      return "Ping";
+    }
+
+    @Override
+    Pair<PingResponse, Object> deserialize(CallResponse callResponse, String uuid) {
+      return new Pair<PingResponse, Object>(new PingResponse(0, uuid), null);
+    }
+
+    @Override
+    public byte[] partitionKey() {
+      return partitionKey;
+    }
+  }
+
+  private static void assertAllFail(List<Deferred<Master.GetTableLocationsResponsePB>> lookups)
+      throws Exception {
+    // Every caller still hears about the outcome of the shared lookup.
+    int numFailed = 0;
+    for (Deferred<Master.GetTableLocationsResponsePB> d : lookups) {
+      try {
+        d.join(10000);
+        fail("The lookup can't succeed without a master");
+      } catch (NonRecoverableException e) {
+        numFailed++;
+      }
+    }
+    assertEquals(lookups.size(), numFailed);
+  }
+
+  @Test
+  public void testConcurrentLookupsShareOneMasterLookup() throws Exception {
+    YBTable table = new YBTable(client, "table", "table-id", null, null);
+
+    // Nothing is known about the table yet, the lookups of all its keys are shared.
+    final int numLookups = 100;
+    List<Deferred<Master.GetTableLocationsResponsePB>> lookups = new ArrayList<>();
+    for (int i = 0; i < numLookups; i++) {
+      lookups.add(client.locateTablet(table, new byte[] { (byte) (i >>> 8), (byte) i }));
+    }
+    // One lookup for the table, plus possibly one for the master leader it's waiting on.
+    int inflight = client.getNumTabletLookupsInFlight();
+    assertTrue("lookups in flight: " + inflight, inflight >= 1 && inflight <= 2);
+    assertAllFail(lookups);
+  }
+
+  @Test
+  public void testLookupsOfKeysInTheSameTabletAreShared() throws Exception {
+    YBTable table = new YBTable(client, "table", "table-id", null, null);
+    // Two tablets whose leaders aren't known, e.g. right after they were invalidated.
+    client.discoverTablets(table, Master.GetTableLocationsResponsePB.newBuilder()
+        .addTabletLocations(tabletLocations("tablet-1", new byte[0], new byte[] { (byte) 0x80, 0 }))
+        .addTabletLocations(tabletLocations("tablet-2", new byte[] { (byte) 0x80, 0 }, new byte[0]))
+        .build());
+
+    // Distinct keys, half of them in each tablet.
+    final int numLookups = 100;
+    List<Deferred<Master.GetTableLocationsResponsePB>> lookups = new ArrayList<>();
+    for (int i = 0; i < numLookups; i++) {
+      int hash = i * 0xffff / numLookups;
+      lookups.add(client.locateTablet(table, new byte[] { (byte) (hash >>> 8), (byte) hash }));
+    }
+    // One lookup per tablet, plus possibly one for the master leader they're waiting on.
+    int inflight = client.getNumTabletLookupsInFlight();
+    assertTrue("lookups in flight: " + inflight, inflight >= 2 && inflight <= 3);
+    assertAllFail(lookups);
+  }
+
+  @Test
+  public void testLookupsOfKeysInTheSameGapAreShared() throws Exception {
+    YBTable table = new YBTable(client, "table", "table-id", null, null);
+    // Only the middle of the table is cached, the keys on either side of it aren't.
+    client.discoverTablets(table, Master.GetTableLocationsResponsePB.newBuilder()
+        .addTabletLocations(tabletLocations("tablet-2", new byte[] { 0x40, 0 },
+                                            new byte[] { (byte) 0x80, 0 }))
+        .build());
+
+    List<Deferred<Master.GetTableLocationsResponsePB>> lookups = new ArrayList<>();
+    for (int i = 0; i < 0x40; i++) {
+      lookups.add(client.locateTablet(table, new byte[] { (byte) i, 0 }));
+      lookups.add(client.locateTablet(table, new byte[] { (byte) (0x80 + i), 0 }));
+    }
+    // One lookup per range that isn't cached, plus possibly one for the master leader.
+    int inflight = client.getNumTabletLookupsInFlight();
+    assertTrue("lookups in flight: " + inflight, inflight >= 2 && inflight <= 3);
+    assertAllFail(lookups);
+  }
+
+  private static Master.TabletLocationsPB.Builder servedTablet(String tabletId, int startHash,
+                                                               int endHash, int port) {
+    Master.TabletLocationsPB.Builder tabletPb = tabletLocations(
+        tabletId,
+        startHash == 0 ? new byte[0] : new byte[] { (byte) startHash, 0 },
+        endHash == 0x100 ? new byte[0] : new byte[] { (byte) endHash, 0 });
+    Master.TabletLocationsPB.ReplicaPB.Builder replicaPb = tabletPb.addReplicasBuilder()
+        .setRole(Metadata.RaftPeerPB.Role.LEADER);
+    replicaPb.getTsInfoBuilder()
+        .setPermanentUuid(ByteString.copyFromUtf8("ts"))
+        .addPrivateRpcAddresses(Common.HostPortPB.newBuilder()
+            .setHost("127.0.0.1").setPort(port));
+    return tabletPb;
+  }
+
+  @Test
+  public void testConcurrentMissesOnDifferentKeys() throws Exception {
+    try (FakeMaster master = new FakeMaster()) {
+      // The fake master also serves the tablets.
+      master.setResponse("Ping", ServerBase.PingResponsePB.getDefaultInstance());
+      // Like a master asked for the tablets from the first caller's key onwards, the first lookup
+      // only returns the last two tablets, and only after the other callers are waiting for it.
+      master.setNextResponse("GetTableLocations", 1000,
+          Master.GetTableLocationsResponsePB.newBuilder()
+              .addTabletLocations(servedTablet("tablet-3", 0x80, 0xc0, master.getPort()))
+              .addTabletLocations(servedTablet("tablet-4", 0xc0, 0x100, master.getPort()))
+              .build());
+      master.setResponse("GetTableLocations", Master.GetTableLocationsResponsePB.newBuilder()
+          .addTabletLocations(servedTablet("tablet-1", 0, 0x40, master.getPort()))
+          .addTabletLocations(servedTablet("tablet-2", 0x40, 0x80, master.getPort()))
+          .build());
+
+      AsyncYBClient served = new AsyncYBClient.AsyncYBClientBuilder(master.getAddress()).build();
+      try {
+        YBTable table = new YBTable(served, "table", "table-id", null, null);
+        List<Deferred<PingResponse>> pings = new ArrayList<>();
+        for (int hash : new int[] { 0x90, 0x10, 0x50, 0xd0 }) {
+          TabletPingRequest rpc = new TabletPingRequest(table, new byte[] { (byte) hash, 0 });
+          rpc.setTimeoutMillis(10000);
+          pings.add(served.sendRpcToTablet(rpc));
+        }
+        for (Deferred<PingResponse> d : pings) {
+          d.join(10000);
+        }
+        // The first lookup was shared by all the keys, and the two it didn't cover shared the
+        // next one, instead of each looking its key up.
+        assertEquals(2, master.getNumCalls("GetTableLocations"));
+        assertEquals(4, master.getNumCalls("Ping"));
+      } finally {
+        served.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,134 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.util;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertFalse;
+import static org.yb.AssertionWrappers.assertTrue;
+import static org.yb.AssertionWrappers.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+@RunWith(value=YBTestRunner.class)
+public class TestDirectBufferPool {
+
+  @Test
+  public void testSizeClasses() {
+    assertEquals(0, DirectBufferPool.sizeClass(0));
+    assertEquals(0, DirectBufferPool.sizeClass(DirectBufferPool.MIN_BUFFER_SIZE));
+    assertEquals(1, DirectBufferPool.sizeClass(DirectBufferPool.MIN_BUFFER_SIZE + 1));
+    assertEquals(1, DirectBufferPool.sizeClass(2 * DirectBufferPool.MIN_BUFFER_SIZE));
+    assertTrue(DirectBufferPool.sizeClass(DirectBufferPool.MAX_POOLED_BUFFER_SIZE) > 0);
+    assertEquals(-1, DirectBufferPool.sizeClass(DirectBufferPool.MAX_POOLED_BUFFER_SIZE + 1));
+  }
+
+  @Test
+  public void testReadWrite() {
+    DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+    ByteBuffer data = ByteBuffer.allocate(15).order(ByteOrder.LITTLE_ENDIAN);
+    data.put((byte) 1).putShort((short) 2).putInt(3).putLong(4);
+    data.flip();
+
+    DirectSlice slice = pool.allocate(data.remaining());
+    slice.setBytes(0, data);
+    assertEquals(15, slice.length());
+    assertEquals(1, slice.getByte(0));
+    assertEquals(2, slice.getShort(1));
+    assertEquals(3, slice.getInt(3));
+    assertEquals(4L, slice.getLong(7));
+    assertEquals(new Slice(data.array()), slice.copySlice());
+    assertTrue(slice.toByteBuffer().isReadOnly());
+    assertEquals(15, slice.toByteBuffer().remaining());
+    try {
+      slice.getInt(12);
+      fail("Read past the end of the slice");
+    } catch (IndexOutOfBoundsException e) {
+      // Expected.
+    }
+    slice.release();
+
+    DirectSlice text = pool.allocate(5);
+    text.setBytes(0, ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)));
+    assertEquals("hello", text.toString(StandardCharsets.UTF_8));
+    text.release();
+  }
+
+  @Test
+  public void testReferenceCounting() {
+    DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+    DirectSlice slice = pool.allocate(100);
+    assertEquals(1, slice.refCnt());
+    slice.retain();
+    assertEquals(2, slice.refCnt());
+    assertFalse(slice.release());
+    assertEquals(0, pool.getPooledBytes());
+    assertTrue(slice.release());
+    assertEquals(0, slice.refCnt());
+    assertEquals(DirectBufferPool.MIN_BUFFER_SIZE, pool.getPooledBytes());
+
+    try {
+      slice.release();
+      fail("Released a slice twice");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    try {
+      slice.retain();
+      fail("Retained a released slice");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    try {
+      slice.getByte(0);
+      fail("Read a released slice");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testRecycling() {
+    DirectBufferPool pool = new DirectBufferPool(3 * DirectBufferPool.MIN_BUFFER_SIZE);
+    pool.allocate(DirectBufferPool.MIN_BUFFER_SIZE).release();
+    assertEquals(1, pool.getNumAllocatedBuffers());
+
+    // Buffers of the same size class get reused.
+    DirectSlice slice = pool.allocate(10);
+    assertEquals(1, pool.getNumAllocatedBuffers());
+    assertEquals(1, pool.getNumReusedBuffers());
+    assertEquals(0, pool.getPooledBytes());
+    slice.release();
+
+    // Buffers of another size class don't.
+    DirectSlice larger = pool.allocate(DirectBufferPool.MIN_BUFFER_SIZE + 1);
+    assertEquals(2, pool.getNumAllocatedBuffers());
+    larger.release();
+    assertEquals(3 * DirectBufferPool.MIN_BUFFER_SIZE, pool.getPooledBytes());
+
+    // The pool is full, released buffers are dropped.
+    pool.allocate(DirectBufferPool.MIN_BUFFER_SIZE * 4).release();
+    assertEquals(3 * DirectBufferPool.MIN_BUFFER_SIZE, pool.getPooledBytes());
+
+    // Buffers over the largest size class are never pooled.
+    DirectBufferPool unbounded = new DirectBufferPool(Long.MAX_VALUE);
+    unbounded.allocate(DirectBufferPool.MAX_POOLED_BUFFER_SIZE + 1).release();
+    assertEquals(0, unbounded.getPooledBytes());
+  }
+}